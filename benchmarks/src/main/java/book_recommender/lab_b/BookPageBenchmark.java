@@ -0,0 +1,106 @@
+package book_recommender.lab_b;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark del calcolo delle valutazioni mostrate nella pagina di dettaglio di un libro.
+ *
+ * <p>Le medie per caratteristica che {@code BookDetailsController} mostrava calcolandole dalle
+ * singole valutazioni vengono ora lette dalle statistiche per libro ({@link RatingStats})
+ * insieme al resto della pagina ({@link BookPage}); qui vengono misurati la lettura della
+ * pagina, l'aggiornamento delle statistiche a ogni valutazione salvata e il loro ricalcolo
+ * completo dopo un'importazione. Le scritture vengono annullate alla fine di ogni chiamata,
+ * quindi il catalogo non cambia tra una misura e l'altra.</p>
+ *
+ * <p>La cache delle pagine è disattivata, così ogni lettura arriva al database.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dbookrecommender.bookPageCache.capacity=0")
+@State(Scope.Benchmark)
+public class BookPageBenchmark {
+
+    /**
+     * Numero di libri del catalogo.
+     */
+    @Param({"10000", "100000", "1000000"})
+    public int books;
+
+    private SyntheticCatalog catalog;
+    /** Connessione usata per tutta la durata del benchmark */
+    private Connection conn;
+    /** Sequenza dei libri letti, uguale in ogni esecuzione */
+    private final SplittableRandom random = new SplittableRandom(SyntheticCatalog.SEED);
+
+    /**
+     * Apre il catalogo, creandolo alla prima esecuzione.
+     */
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        catalog = new SyntheticCatalog(books);
+        conn = catalog.open().getConnection();
+        conn.setAutoCommit(false);
+    }
+
+    /**
+     * Chiude le connessioni al database del catalogo.
+     */
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        conn.rollback();
+        conn.close();
+        DatabaseManager.getInstance().closeConnection();
+    }
+
+    /**
+     * Lettura della pagina con una sola query: libro, statistiche, recensioni e consigli.
+     */
+    @Benchmark
+    public BookPage loadPage() throws Exception {
+        return BookPage.load(conn, 1 + random.nextInt(books));
+    }
+
+    /**
+     * Lettura della pagina come la esegue il server per un titolo, compresa la risoluzione
+     * del titolo e la scelta dei libri simili.
+     */
+    @Benchmark
+    public BookPage queryPageByTitle() throws Exception {
+        return BookService.queryBookPage(catalog.title(random.nextInt(books)));
+    }
+
+    /**
+     * Aggiornamento delle statistiche per una nuova valutazione.
+     */
+    @Benchmark
+    public void applyRating() throws Exception {
+        int[] ratings = new int[RatingStats.DIMENSIONS];
+        for (int i = 0; i < ratings.length; i++) {
+            ratings[i] = 1 + random.nextInt(5);
+        }
+        RatingStats.applyRating(conn, 1 + random.nextInt(books), null, ratings);
+        conn.rollback();
+    }
+
+    /**
+     * Ricalcolo delle statistiche di tutti i libri.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public void rebuildStats() throws Exception {
+        RatingStats.rebuild(conn);
+        conn.rollback();
+    }
+}
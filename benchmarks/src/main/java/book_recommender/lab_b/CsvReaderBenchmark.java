@@ -0,0 +1,63 @@
+package book_recommender.lab_b;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark della lettura dei file CSV importati all'avvio del server.
+ *
+ * <p>Ogni chiamata legge un intero file con {@link CsvReader}, che ha preso il posto della
+ * vecchia {@code parseCsvLine}, e converte in stringa tutti i campi di ogni riga, come fa
+ * l'importazione. Il database non viene usato.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvReaderBenchmark {
+
+    /**
+     * Numero di libri del catalogo.
+     */
+    @Param({"10000", "100000", "1000000"})
+    public int books;
+
+    /**
+     * File letto.
+     */
+    @Param({"BOOKS", "USERS", "LIBRARIES", "RATINGS", "RECOMMENDATIONS"})
+    public BulkImporter.Dataset dataset;
+
+    private File file;
+
+    /**
+     * Genera il file, se non esiste già.
+     */
+    @Setup(Level.Trial)
+    public void generate() throws Exception {
+        file = new SyntheticCatalog(books).file(dataset);
+    }
+
+    /**
+     * @return La lunghezza totale dei campi letti, perché il lavoro non venga eliminato
+     */
+    @Benchmark
+    public long readFile() throws Exception {
+        long length = 0;
+        try (CsvReader reader = new CsvReader(file)) {
+            while (reader.next()) {
+                for (int i = 0; i < reader.fieldCount(); i++) {
+                    length += reader.field(i).length();
+                }
+            }
+        }
+        return length;
+    }
+}
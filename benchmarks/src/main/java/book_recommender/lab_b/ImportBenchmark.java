@@ -0,0 +1,87 @@
+package book_recommender.lab_b;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark dell'importazione di un singolo file con {@link BulkImporter}: caricamento nella
+ * tabella di appoggio e unione alle tabelle definitive, per ognuno dei file che il server
+ * importava con un proprio metodo {@code import*}.
+ *
+ * <p>Prima di ogni misura il database di importazione viene ricreato vuoto e vengono
+ * importati i file da cui dipende quello misurato (ad esempio libri e utenti prima delle
+ * valutazioni), così ogni misura parte dallo stesso stato.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+
+    /**
+     * Numero di libri del catalogo.
+     */
+    @Param({"10000", "100000", "1000000"})
+    public int books;
+
+    /**
+     * File importato.
+     */
+    @Param({"BOOKS", "USERS", "LIBRARIES", "RATINGS", "RECOMMENDATIONS"})
+    public BulkImporter.Dataset dataset;
+
+    private SyntheticCatalog catalog;
+    private Connection conn;
+
+    /**
+     * Genera i file e apre il database di importazione, separato da quello del catalogo.
+     */
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        catalog = new SyntheticCatalog(books);
+        for (BulkImporter.Dataset required : BulkImporter.Dataset.values()) {
+            catalog.file(required);
+        }
+        conn = DatabaseManager.createRemoteInstance(catalog.jdbcUrl("import"), "sa", "").getConnection();
+        conn.setAutoCommit(false);
+    }
+
+    /**
+     * Ricrea il database e importa i file da cui dipende quello misurato.
+     */
+    @Setup(Level.Iteration)
+    public void prepare() throws Exception {
+        DatabaseSchema.recreate(conn);
+        BulkImporter importer = new BulkImporter(conn);
+        for (BulkImporter.Dataset required : dataset.dependencies()) {
+            importer.importFile(required, catalog.file(required));
+        }
+        conn.commit();
+    }
+
+    /**
+     * Chiude le connessioni al database di importazione.
+     */
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        conn.close();
+        DatabaseManager.getInstance().closeConnection();
+    }
+
+    /**
+     * @return Il numero di righe caricate
+     */
+    @Benchmark
+    public int importFile() throws Exception {
+        int rows = new BulkImporter(conn).importFile(dataset, catalog.file(dataset));
+        conn.commit();
+        return rows;
+    }
+}
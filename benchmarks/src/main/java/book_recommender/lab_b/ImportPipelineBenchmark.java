@@ -0,0 +1,73 @@
+package book_recommender.lab_b;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark dell'importazione completa eseguita all'avvio del server: i cinque file letti e
+ * caricati in parallelo da {@link ImportPipeline} e uniti nell'ordine delle dipendenze.
+ *
+ * <p>Prima di ogni misura il database di importazione viene ricreato vuoto.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImportPipelineBenchmark {
+
+    /**
+     * Numero di libri del catalogo.
+     */
+    @Param({"10000", "100000", "1000000"})
+    public int books;
+
+    private SyntheticCatalog catalog;
+    private DatabaseManager manager;
+
+    /**
+     * Genera i file e apre il database di importazione, separato da quello del catalogo.
+     */
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        catalog = new SyntheticCatalog(books);
+        for (BulkImporter.Dataset dataset : BulkImporter.Dataset.values()) {
+            catalog.file(dataset);
+        }
+        manager = DatabaseManager.createRemoteInstance(catalog.jdbcUrl("import"), "sa", "");
+    }
+
+    /**
+     * Ricrea il database vuoto.
+     */
+    @Setup(Level.Iteration)
+    public void prepare() throws Exception {
+        try (Connection conn = manager.getConnection()) {
+            DatabaseSchema.recreate(conn);
+        }
+    }
+
+    /**
+     * Chiude le connessioni al database di importazione.
+     */
+    @TearDown(Level.Trial)
+    public void close() {
+        manager.closeConnection();
+    }
+
+    @Benchmark
+    public void importAll() throws Exception {
+        ImportPipeline pipeline = new ImportPipeline(manager.getPool());
+        for (BulkImporter.Dataset dataset : BulkImporter.Dataset.values()) {
+            pipeline.addFile(dataset, catalog.file(dataset));
+        }
+        pipeline.run((fraction, message) -> {
+        });
+    }
+}
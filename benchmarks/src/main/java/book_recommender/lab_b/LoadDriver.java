@@ -0,0 +1,654 @@
+package book_recommender.lab_b;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generatore di carico a ciclo chiuso che simula le sessioni degli utenti del client.
+ *
+ * <p>Ogni client virtuale gira su un proprio virtual thread e ripete sessioni complete:
+ * accesso con le stesse query di {@link LoginController}, una sequenza casuale di azioni
+ * (ricerche, apertura della pagina di un libro, valutazione, librerie, consigli) e uscita.
+ * Un client avvia l'operazione successiva solo quando la precedente è terminata, dopo un
+ * eventuale tempo di riflessione, quindi il carico offerto dipende dal numero di client e
+ * dalla velocità del database.</p>
+ *
+ * <p>Le operazioni passano per le classi di servizio usate dalle schermate del client
+ * ({@link BookService}, {@link RatingService}, {@link LibraryService},
+ * {@link RecommendationService}). I libri aperti, valutati e consigliati sono scelti con
+ * popolarità distribuita secondo Zipf, come nei dati di {@link DatasetGenerator}.</p>
+ *
+ * <p>Per ogni operazione vengono riportati il numero di esecuzioni, gli errori, il
+ * throughput e i percentili della latenza, registrati con HdrHistogram. Durante la prova
+ * viene stampato un riepilogo ogni {@code --report} secondi; le misure del periodo di
+ * riscaldamento vengono scartate.</p>
+ *
+ * <p>Opzioni (tutte facoltative):</p>
+ * <ul>
+ *   <li>{@code --clients N}: client virtuali (predefinito 50);</li>
+ *   <li>{@code --duration S}: durata della misura in secondi (predefinita 60);</li>
+ *   <li>{@code --warmup S}: durata del riscaldamento in secondi (predefinita 10);</li>
+ *   <li>{@code --think MS}: tempo medio di riflessione tra le azioni, distribuito
+ *       esponenzialmente (predefinito 0);</li>
+ *   <li>{@code --report S}: intervallo dei riepiloghi intermedi (predefinito 5);</li>
+ *   <li>{@code --seed N}: seme delle scelte casuali (predefinito 1);</li>
+ *   <li>{@code --catalog LIBRI}: usa il catalogo sintetico H2 di {@link SyntheticCatalog}
+ *       con il numero di libri indicato;</li>
+ *   <li>{@code --url URL --user U --password P}: usa il database indicato.</li>
+ * </ul>
+ * <p>Senza {@code --catalog} né {@code --url} viene usato il database predefinito di
+ * {@link DatabaseManager}. Le dimensioni del pool si impostano con le proprietà
+ * {@code bookrecommender.pool.*}. La registrazione del client e le valutazioni usano
+ * {@code INSERT ... ON CONFLICT}, disponibile solo in PostgreSQL: sul catalogo H2 queste
+ * operazioni risultano tra gli errori.</p>
+ *
+ * <p>Tutti i client virtuali girano nello stesso processo e condividerebbero le cache delle
+ * pagine dei libri ({@link BookPageCache}), che misurerebbero la cache e non il database: se non
+ * indicate con {@code -D}, le proprietà {@code bookrecommender.bookPageCache.capacity} e
+ * {@code bookrecommender.bookPageCache.clientCapacity} vengono poste a 0 prima del primo uso.
+ * I titoli di {@link TitleResolver} restano condivisi, come sul server dei libri, e vengono
+ * caricati prima della prova; {@link BookSearchIndex} non viene avviato. Il riepilogo finale
+ * indica quali cache erano attive.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public final class LoadDriver {
+
+    /**
+     * Proprietà delle cache delle pagine dei libri, disattivate se non indicate.
+     */
+    private static final String[] PAGE_CACHE_PROPERTIES = {
+            "bookrecommender.bookPageCache.capacity",
+            "bookrecommender.bookPageCache.clientCapacity"
+    };
+
+    /**
+     * Operazioni misurate. Il peso indica la frequenza relativa delle azioni all'interno di
+     * una sessione; accesso, registrazione del client e uscita avvengono una volta per
+     * sessione.
+     */
+    enum Operation {
+        LOGIN("accesso", 0),
+        CONNECT("registrazione", 0),
+        SEARCH_TITLE("ricerca titolo", 40),
+        SEARCH_AUTHOR("ricerca autore", 15),
+        BOOK_PAGE("pagina libro", 25),
+        RATE("valutazione", 8),
+        LIBRARY("libreria", 6),
+        RECOMMEND("consiglio", 6),
+        LOGOUT("uscita", 0);
+
+        private final String label;
+        private final int weight;
+
+        Operation(String label, int weight) {
+            this.label = label;
+            this.weight = weight;
+        }
+    }
+
+    /** Numero minimo di azioni in una sessione */
+    private static final int MIN_ACTIONS = 5;
+    /** Numero massimo di azioni in una sessione */
+    private static final int MAX_ACTIONS = 20;
+    /** Dimensione delle pagine di ricerca, come nelle schermate di ricerca */
+    private static final int PAGE_SIZE = 50;
+    /** Numero massimo di utenti, libri e parole letti dal database */
+    private static final int FIXTURE_LIMIT = 100_000;
+    /** Numero massimo di libri in una libreria o in un consiglio salvati dal generatore */
+    private static final int MAX_SELECTION = 3;
+
+    /** Misure di ogni operazione */
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    /** Somma dei pesi delle azioni */
+    private final int totalWeight;
+
+    private final DatabaseManager dbManager;
+    private final int clients;
+    private final double thinkMillis;
+    private final long seed;
+
+    /** Utenti (id e password) tra cui i client scelgono */
+    private String[][] users;
+    /** Titoli dei libri */
+    private String[] titles;
+    /** Parole dei titoli usate nelle ricerche per titolo */
+    private String[] titleWords;
+    /** Nomi degli autori (il primo di ogni libro) usati nelle ricerche per autore */
+    private String[] authorNames;
+    /** Popolarità dei libri */
+    private DatasetGenerator.Popularity popularity;
+
+    /** Impostato per fermare i client */
+    private volatile boolean stopped;
+
+    /**
+     * Crea il generatore di carico.
+     *
+     * @param dbManager Database su cui eseguire le sessioni
+     * @param clients Numero di client virtuali
+     * @param thinkMillis Tempo medio di riflessione tra le azioni, in millisecondi
+     * @param seed Seme delle scelte casuali
+     */
+    public LoadDriver(DatabaseManager dbManager, int clients, double thinkMillis, long seed) {
+        this.dbManager = dbManager;
+        this.clients = clients;
+        this.thinkMillis = thinkMillis;
+        this.seed = seed;
+
+        int weights = 0;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+            weights += operation.weight;
+        }
+        this.totalWeight = weights;
+    }
+
+    /**
+     * Punto di ingresso da riga di comando.
+     *
+     * @param args Opzioni (vedi la descrizione della classe)
+     * @throws Exception se non è possibile preparare o eseguire la prova
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        for (String property : PAGE_CACHE_PROPERTIES) {
+            if (System.getProperty(property) == null) {
+                System.setProperty(property, "0");
+            }
+        }
+
+        DatabaseManager dbManager;
+        if (options.containsKey("catalog")) {
+            dbManager = new SyntheticCatalog(Integer.parseInt(options.get("catalog"))).open();
+        } else if (options.containsKey("url")) {
+            dbManager = DatabaseManager.createRemoteInstance(options.get("url"),
+                    options.getOrDefault("user", ""), options.getOrDefault("password", ""));
+        } else {
+            dbManager = DatabaseManager.getInstance();
+        }
+
+        LoadDriver driver = new LoadDriver(dbManager,
+                Integer.parseInt(options.getOrDefault("clients", "50")),
+                Double.parseDouble(options.getOrDefault("think", "0")),
+                Long.parseLong(options.getOrDefault("seed", "1")));
+        try {
+            driver.loadFixtures();
+            driver.run(Integer.parseInt(options.getOrDefault("warmup", "10")),
+                    Integer.parseInt(options.getOrDefault("duration", "60")),
+                    Integer.parseInt(options.getOrDefault("report", "5")));
+        } finally {
+            dbManager.closeConnection();
+        }
+    }
+
+    /**
+     * Legge le opzioni nella forma {@code --nome valore}.
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Opzione non valida: " + args[i]
+                        + " (uso: --clients N --duration S --warmup S --think MS --report S --seed N"
+                        + " [--catalog LIBRI | --url URL --user U --password P])");
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    /**
+     * Legge dal database utenti, titoli e termini di ricerca usati dalle sessioni e carica i
+     * titoli di {@link TitleResolver}, così il caricamento non rientra nella misura.
+     *
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public void loadFixtures() throws SQLException {
+        List<String[]> userRows = new ArrayList<>();
+        List<String> titleRows = new ArrayList<>();
+        Set<String> words = new LinkedHashSet<>();
+        Set<String> authors = new LinkedHashSet<>();
+
+        try (Connection conn = dbManager.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT user_id, password FROM users ORDER BY user_id LIMIT ?")) {
+                pstmt.setInt(1, FIXTURE_LIMIT);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        userRows.add(new String[]{rs.getString(1), rs.getString(2)});
+                    }
+                }
+            }
+
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT title, authors FROM books ORDER BY id LIMIT ?")) {
+                pstmt.setInt(1, FIXTURE_LIMIT);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String title = rs.getString(1);
+                        titleRows.add(title);
+                        for (String word : title.split("\\s+")) {
+                            if (word.length() >= 4 && words.size() < FIXTURE_LIMIT) {
+                                words.add(word);
+                            }
+                        }
+                        String author = rs.getString(2);
+                        if (author != null && !author.isBlank() && authors.size() < FIXTURE_LIMIT) {
+                            authors.add(author.split("[,;]")[0].trim());
+                        }
+                    }
+                }
+            }
+        }
+
+        if (userRows.isEmpty() || titleRows.isEmpty()) {
+            throw new SQLException("Il database non contiene utenti o libri");
+        }
+        users = userRows.toArray(new String[0][]);
+        titles = titleRows.toArray(new String[0]);
+        titleWords = words.isEmpty() ? titles : words.toArray(new String[0]);
+        authorNames = authors.isEmpty() ? titleWords : authors.toArray(new String[0]);
+        TitleResolver.getInstance().refresh();
+        popularity = new DatasetGenerator.Popularity(titles.length, SyntheticCatalog.ZIPF_EXPONENT, seed);
+
+        System.out.printf("Utenti: %d, libri: %d, parole: %d, autori: %d, client: %d%n",
+                users.length, titles.length, titleWords.length, authorNames.length, clients);
+    }
+
+    /**
+     * Esegue la prova e stampa i risultati.
+     *
+     * @param warmupSeconds Durata del riscaldamento
+     * @param durationSeconds Durata della misura
+     * @param reportSeconds Intervallo dei riepiloghi intermedi
+     * @throws InterruptedException se il thread viene interrotto durante l'attesa
+     */
+    public void run(int warmupSeconds, int durationSeconds, int reportSeconds) throws InterruptedException {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < clients; i++) {
+            int client = i;
+            executor.submit(() -> runClient(client));
+        }
+
+        try {
+            long start = System.nanoTime();
+            sleepUntil(start, warmupSeconds, reportSeconds, "riscaldamento");
+            for (Stats s : stats.values()) {
+                s.reset();
+            }
+
+            long measureStart = System.nanoTime();
+            sleepUntil(measureStart, durationSeconds, reportSeconds, "misura");
+            long elapsed = System.nanoTime() - measureStart;
+
+            printSummary(elapsed);
+        } finally {
+            stopped = true;
+            executor.shutdown();
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Attende la fine di una fase, stampando i riepiloghi intermedi.
+     */
+    private void sleepUntil(long start, int seconds, int reportSeconds, String phase) throws InterruptedException {
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long interval = TimeUnit.SECONDS.toNanos(Math.max(1, reportSeconds));
+        long nextReport = start + interval;
+        long lastReport = start;
+
+        while (true) {
+            long now = System.nanoTime();
+            if (now >= end) {
+                return;
+            }
+            long wait = Math.min(end, nextReport) - now;
+            TimeUnit.NANOSECONDS.sleep(wait);
+
+            now = System.nanoTime();
+            if (now >= nextReport) {
+                printInterval(phase, TimeUnit.NANOSECONDS.toSeconds(now - start), now - lastReport);
+                lastReport = now;
+                nextReport += interval;
+            }
+        }
+    }
+
+    /**
+     * Ciclo di un client virtuale: sessioni complete finché la prova non termina.
+     * Ogni client usa un sottoinsieme distinto degli utenti, così due client non
+     * accedono mai con lo stesso utente nello stesso momento.
+     */
+    private void runClient(int client) {
+        SplittableRandom random = new SplittableRandom(seed * 31 + client);
+        int session = 0;
+        while (!stopped) {
+            int index = (int) ((client + (long) session * clients) % users.length);
+            runSession(random, users[index][0], users[index][1]);
+            session++;
+        }
+    }
+
+    /**
+     * Esegue una sessione: accesso, azioni casuali, uscita.
+     */
+    private void runSession(SplittableRandom random, String userId, String password) {
+        String clientId = "user_" + userId + "_" + System.currentTimeMillis();
+        if (!measure(Operation.LOGIN, () -> login(userId, password))) {
+            think(random);
+            return;
+        }
+        // Come in LoginController, un errore nella registrazione non interrompe la sessione
+        measure(Operation.CONNECT, () -> dbManager.updateClientConnection(clientId, true));
+
+        int actions = MIN_ACTIONS + random.nextInt(MAX_ACTIONS - MIN_ACTIONS + 1);
+        for (int i = 0; i < actions && !stopped; i++) {
+            think(random);
+            Operation operation = pickOperation(random);
+            measure(operation, () -> perform(operation, random, userId));
+        }
+
+        measure(Operation.LOGOUT, () -> dbManager.updateClientConnection(clientId, false));
+    }
+
+    /**
+     * Esegue un'azione della sessione.
+     */
+    private void perform(Operation operation, SplittableRandom random, String userId) throws SQLException {
+        switch (operation) {
+            case SEARCH_TITLE:
+                BookService.queryPage(BookQuery.byTitle(pick(random, titleWords)), null, PAGE_SIZE, null);
+                break;
+            case SEARCH_AUTHOR:
+                BookService.queryPage(BookQuery.byAuthor(pick(random, authorNames)), null, PAGE_SIZE, null);
+                break;
+            case BOOK_PAGE:
+                BookService.getBookPage(popularTitle(random));
+                break;
+            case RATE:
+                rate(random, userId);
+                break;
+            case LIBRARY:
+                updateLibrary(random, userId);
+                break;
+            case RECOMMEND:
+                recommend(random, userId);
+                break;
+            default:
+                throw new IllegalArgumentException("Operazione non prevista: " + operation);
+        }
+    }
+
+    /**
+     * Accesso come in {@link LoginController}: controllo delle sessioni attive e verifica
+     * delle credenziali. La registrazione del client viene misurata a parte.
+     */
+    private void login(String userId, String password) throws SQLException {
+        try (Connection conn = dbManager.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT 1 FROM active_clients WHERE client_id LIKE ?")) {
+                pstmt.setString(1, "%" + userId + "%");
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                }
+            }
+
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT * FROM users WHERE user_id = ? AND password = ?")) {
+                pstmt.setString(1, userId);
+                pstmt.setString(2, password);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Credenziali non valide per " + userId);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Valutazione come in RateBookController: lettura della valutazione esistente e
+     * salvataggio della nuova.
+     */
+    private void rate(SplittableRandom random, String userId) throws SQLException {
+        String title = popularTitle(random);
+        RatingService.findRating(userId, title);
+
+        int[] ratings = new int[5];
+        String[] comments = new String[5];
+        for (int i = 0; i < ratings.length; i++) {
+            ratings[i] = 1 + random.nextInt(5);
+            comments[i] = "";
+        }
+        RatingService.saveRating(userId, title, new BookRating(ratings, comments, ""));
+    }
+
+    /**
+     * Aggiunta di libri a una libreria dell'utente, creandola se non ne ha.
+     */
+    private void updateLibrary(SplittableRandom random, String userId) throws SQLException {
+        List<String> libraries = LibraryService.getLibraries(userId);
+        String name;
+        if (libraries.isEmpty()) {
+            name = "Libreria " + userId;
+            LibraryService.createLibrary(userId, name);
+        } else {
+            name = libraries.get(random.nextInt(libraries.size()));
+        }
+
+        Set<String> books = new LinkedHashSet<>(LibraryService.getLibraryBooks(userId, name));
+        int added = 1 + random.nextInt(MAX_SELECTION);
+        for (int i = 0; i < added; i++) {
+            books.add(popularTitle(random));
+        }
+        LibraryService.saveLibraryBooks(userId, name, books);
+    }
+
+    /**
+     * Consiglio di libri a partire da un libro, come nella schermata dei consigli.
+     */
+    private void recommend(SplittableRandom random, String userId) throws SQLException {
+        String source = popularTitle(random);
+        RecommendationService.getRecommendations(userId, source);
+
+        Set<String> recommended = new LinkedHashSet<>();
+        int count = 1 + random.nextInt(MAX_SELECTION);
+        while (recommended.size() < count && recommended.size() < titles.length - 1) {
+            String title = popularTitle(random);
+            if (!title.equals(source)) {
+                recommended.add(title);
+            }
+        }
+        RecommendationService.saveRecommendations(userId, source, recommended);
+    }
+
+    /**
+     * Esegue un'operazione registrandone la latenza o l'errore.
+     *
+     * @return true se l'operazione è terminata senza errori
+     */
+    private boolean measure(Operation operation, Action action) {
+        Stats s = stats.get(operation);
+        long start = System.nanoTime();
+        try {
+            action.run();
+            s.recorder.recordValue(Math.max(1, (System.nanoTime() - start) / 1000));
+            return true;
+        } catch (Exception e) {
+            // Gli errori vengono solo contati: il client prosegue con la sessione
+            s.errors.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Sceglie la prossima azione secondo i pesi delle operazioni.
+     */
+    private Operation pickOperation(SplittableRandom random) {
+        int r = random.nextInt(totalWeight);
+        for (Operation operation : Operation.values()) {
+            r -= operation.weight;
+            if (r < 0) {
+                return operation;
+            }
+        }
+        return Operation.SEARCH_TITLE;
+    }
+
+    /**
+     * Attende il tempo di riflessione, con distribuzione esponenziale.
+     */
+    private void think(SplittableRandom random) {
+        if (thinkMillis <= 0) {
+            return;
+        }
+        long nanos = (long) (-Math.log(1 - random.nextDouble()) * thinkMillis * 1_000_000);
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        }
+    }
+
+    private String popularTitle(SplittableRandom random) {
+        return titles[popularity.sample(random)];
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Stampa throughput e latenze delle operazioni eseguite nell'ultimo intervallo.
+     */
+    private void printInterval(String phase, long seconds, long elapsedNanos) {
+        long count = 0;
+        long errors = 0;
+        StringBuilder latencies = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            Stats s = stats.get(operation);
+            Histogram interval = s.sample();
+            count += interval.getTotalCount();
+            errors += s.intervalErrors();
+            if (interval.getTotalCount() > 0) {
+                latencies.append(String.format(Locale.ROOT, " %s=%.1f",
+                        operation.name().toLowerCase(Locale.ROOT),
+                        interval.getValueAtPercentile(99) / 1000.0));
+            }
+        }
+        System.out.printf(Locale.ROOT, "[%s %3ds] %8.1f op/s, %d errori, p99 ms:%s%n",
+                phase, seconds, count * 1e9 / elapsedNanos, errors, latencies);
+    }
+
+    /**
+     * Stampa la tabella finale con i risultati della misura.
+     */
+    private void printSummary(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Risultati su %.1f s con %d client (latenze in ms)%n", seconds, clients);
+        System.out.printf(Locale.ROOT, "%-16s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+                "operazione", "conteggio", "errori", "op/s", "p50", "p90", "p99", "p99.9", "max");
+
+        Histogram all = new Histogram(3);
+        long allErrors = 0;
+        for (Operation operation : Operation.values()) {
+            Stats s = stats.get(operation);
+            s.sample();
+            long errors = s.errors.sum();
+            printRow(operation.label, s.total, errors, seconds);
+            all.add(s.total);
+            allErrors += errors;
+        }
+        printRow("totale", all, allErrors, seconds);
+        System.out.printf("Cache: pagine dal database %s, pagine dal server %s, titoli condivisi tra i client,"
+                        + " indice di ricerca %s%n",
+                BookPageCache.getInstance().isEnabled() ? "attiva" : "disattivata",
+                BookPageCache.getClientInstance().isEnabled() ? "attiva" : "disattivata",
+                BookSearchIndex.getInstance().isReady() ? "attivo" : "non avviato");
+    }
+
+    private static void printRow(String label, Histogram histogram, long errors, double seconds) {
+        System.out.printf(Locale.ROOT, "%-16s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                label, histogram.getTotalCount(), errors, histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    /**
+     * Un'operazione del client che può fallire con un errore di database.
+     */
+    @FunctionalInterface
+    private interface Action {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Misure di un'operazione. I client registrano le latenze (in microsecondi) nel
+     * {@link Recorder}; il thread principale ne raccoglie periodicamente gli intervalli e li
+     * somma nell'istogramma complessivo.
+     */
+    private static final class Stats {
+        private final Recorder recorder = new Recorder(3);
+        private final LongAdder errors = new LongAdder();
+        private Histogram total = new Histogram(3);
+        private Histogram interval;
+        private long reportedErrors;
+
+        /**
+         * Raccoglie le latenze registrate dall'ultima chiamata.
+         *
+         * @return Le latenze dell'intervallo
+         */
+        Histogram sample() {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+            return interval;
+        }
+
+        /**
+         * @return Gli errori dall'ultima chiamata
+         */
+        long intervalErrors() {
+            long sum = errors.sum();
+            long delta = sum - reportedErrors;
+            reportedErrors = sum;
+            return delta;
+        }
+
+        /**
+         * Scarta le misure raccolte fino a questo momento.
+         */
+        void reset() {
+            recorder.reset();
+            errors.reset();
+            reportedErrors = 0;
+            total = new Histogram(3);
+        }
+    }
+}
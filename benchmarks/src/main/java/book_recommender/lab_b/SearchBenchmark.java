@@ -0,0 +1,125 @@
+package book_recommender.lab_b;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark delle ricerche del catalogo e della classifica dei libri più votati.
+ *
+ * <p>Le ricerche per titolo e per autore usano le parole e i cognomi con cui
+ * {@link DatasetGenerator} compone titoli e autori, a rotazione, quindi ogni ricerca trova
+ * una frazione costante del catalogo. Le ricerche passano dal database: l'indice in memoria
+ * {@link BookSearchIndex} viene misurato a parte.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    /**
+     * Numero di libri del catalogo.
+     */
+    @Param({"10000", "100000", "1000000"})
+    public int books;
+
+    /** Posizione della prossima parola cercata */
+    private int next = 0;
+
+    /**
+     * Apre il catalogo, creandolo alla prima esecuzione.
+     */
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        new SyntheticCatalog(books).open();
+    }
+
+    /**
+     * Chiude le connessioni al database del catalogo.
+     */
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        BookSearchIndex.getInstance().stop();
+        DatabaseManager.getInstance().closeConnection();
+    }
+
+    private String nextWord() {
+        next++;
+        return DatasetGenerator.TITLE_WORDS[next % DatasetGenerator.TITLE_WORDS.length];
+    }
+
+    private String nextLastName() {
+        next++;
+        return DatasetGenerator.LAST_NAMES[next % DatasetGenerator.LAST_NAMES.length];
+    }
+
+    @Benchmark
+    public List<Book> searchByTitle() {
+        return BookService.searchBooksByTitle(nextWord());
+    }
+
+    @Benchmark
+    public List<Book> searchByAuthor() {
+        return BookService.searchBooksByAuthor(nextLastName());
+    }
+
+    @Benchmark
+    public List<Book> searchByAuthorAndYear() {
+        return BookService.searchBooksByAuthorAndYear(nextLastName(), 1950 + next % 74);
+    }
+
+    /**
+     * Prima pagina di una ricerca per titolo, come la mostra la schermata dei risultati.
+     */
+    @Benchmark
+    public SearchPage searchFirstPage() {
+        return BookService.searchBooksPage(BookQuery.byTitle(nextWord()), null, 50);
+    }
+
+    /**
+     * Classifica letta dal database a ogni chiamata.
+     */
+    @Benchmark
+    public List<Book> topRatedUncached() {
+        TopRatedCache.getInstance().invalidate();
+        return BookService.getTopRatedBooks(10);
+    }
+
+    /**
+     * Classifica servita da {@link TopRatedCache}.
+     */
+    @Benchmark
+    public List<Book> topRatedCached() {
+        return BookService.getTopRatedBooks(10);
+    }
+
+    /**
+     * Indice in memoria, costruito prima delle misure sul catalogo già aperto.
+     */
+    @State(Scope.Benchmark)
+    public static class IndexState {
+        @Setup(Level.Trial)
+        public void build(SearchBenchmark catalog) throws Exception {
+            BookSearchIndex index = BookSearchIndex.getInstance();
+            index.start();
+            while (!index.isReady()) {
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    /**
+     * Ricerca per titolo sull'indice in memoria.
+     */
+    @Benchmark
+    public List<Book> searchByTitleInMemory(IndexState index) {
+        return BookSearchIndex.getInstance().searchByTitle(nextWord());
+    }
+}
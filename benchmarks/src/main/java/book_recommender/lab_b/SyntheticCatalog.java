@@ -0,0 +1,150 @@
+package book_recommender.lab_b;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Catalogo sintetico su cui vengono eseguiti i benchmark.
+ *
+ * <p>Per una dimensione data (numero di libri) i cinque file CSV importati dal server vengono
+ * generati da {@link DatasetGenerator}, con popolarità dei libri e attività degli utenti
+ * distribuite secondo Zipf. Il contenuto dipende solo dalla dimensione e dal seme, quindi due
+ * esecuzioni producono esattamente gli stessi dati. I file vengono poi importati con
+ * {@link BulkImporter} in un database H2 su file.</p>
+ *
+ * <p>File e database vengono creati una sola volta nella cartella
+ * {@code bookrecommender.bench.dir} (predefinita {@code target/catalog}) e riutilizzati
+ * dalle esecuzioni successive, anche dai processi separati avviati da JMH per ogni benchmark.</p>
+ *
+ * <p>Proporzioni rispetto al numero di libri:</p>
+ * <ul>
+ *   <li>utenti: un decimo dei libri (almeno 100);</li>
+ *   <li>valutazioni: due per libro.</li>
+ * </ul>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public final class SyntheticCatalog {
+
+    /**
+     * Seme del generatore: cambiandolo si ottiene un altro catalogo della stessa dimensione.
+     */
+    public static final long SEED = 20240501L;
+
+    /**
+     * Esponente della distribuzione di Zipf della popolarità dei libri.
+     */
+    public static final double ZIPF_EXPONENT = 1.0;
+
+    /** Generatore dei file */
+    private final DatasetGenerator generator;
+    /** Cartella dei file e del database */
+    private final Path directory;
+
+    /**
+     * Crea il catalogo della dimensione indicata. I file non vengono generati finché non
+     * servono.
+     *
+     * @param books Numero di libri
+     */
+    public SyntheticCatalog(int books) {
+        this.generator = new DatasetGenerator(books, Math.max(100, books / 10), 2L * books, ZIPF_EXPONENT, SEED);
+        this.directory = Paths.get(System.getProperty("bookrecommender.bench.dir", "target/catalog"))
+                .resolve(books + "-" + SEED);
+    }
+
+    /**
+     * @return Il numero di libri
+     */
+    public int getBookCount() {
+        return generator.getBookCount();
+    }
+
+    /**
+     * @return Il numero di utenti
+     */
+    public int getUserCount() {
+        return generator.getUserCount();
+    }
+
+    /**
+     * Restituisce il titolo del libro in una posizione del catalogo (da 0).
+     *
+     * @param index Posizione del libro
+     * @return Il titolo
+     */
+    public String title(int index) {
+        return generator.title(index);
+    }
+
+    /**
+     * Restituisce il file CSV di un tipo di dati, generandolo se non esiste.
+     *
+     * @param dataset Il tipo di dati
+     * @return Il file
+     * @throws IOException se non è possibile scrivere il file
+     */
+    public synchronized File file(BulkImporter.Dataset dataset) throws IOException {
+        File file = directory.resolve(DatasetGenerator.FILE_NAMES.get(dataset)).toFile();
+        return file.exists() ? file : generator.generate(dataset, directory.toFile());
+    }
+
+    /**
+     * Apre il database H2 del catalogo, creandolo e importando i file se non esiste, e lo
+     * imposta come database di {@link DatabaseManager}.
+     *
+     * @return Il gestore del database
+     * @throws SQLException se si verifica un errore durante l'importazione
+     * @throws IOException se non è possibile scrivere i file
+     */
+    public DatabaseManager open() throws SQLException, IOException {
+        DatabaseManager manager = DatabaseManager.createRemoteInstance(jdbcUrl("catalog"), "sa", "");
+        Path ready = directory.resolve("catalog.ready");
+        if (!Files.exists(ready)) {
+            try (Connection conn = manager.getConnection()) {
+                load(conn);
+            }
+            Files.createFile(ready);
+        }
+        return manager;
+    }
+
+    /**
+     * Restituisce l'URL JDBC di un database H2 su file nella cartella del catalogo.
+     *
+     * @param name Nome del database
+     * @return L'URL
+     */
+    public String jdbcUrl(String name) {
+        return "jdbc:h2:file:" + directory.toAbsolutePath().resolve(name) + ";MODE=PostgreSQL";
+    }
+
+    /**
+     * Crea le tabelle e importa tutti i file nel database della connessione, nell'ordine
+     * richiesto dalle dipendenze tra i file.
+     *
+     * @param conn Connessione al database
+     * @throws SQLException se si verifica un errore durante l'importazione
+     * @throws IOException se non è possibile scrivere i file
+     */
+    public void load(Connection conn) throws SQLException, IOException {
+        DatabaseSchema.recreate(conn);
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            BulkImporter importer = new BulkImporter(conn);
+            for (BulkImporter.Dataset dataset : BulkImporter.Dataset.values()) {
+                importer.importFile(dataset, file(dataset));
+                conn.commit();
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -2,7 +2,7 @@ package book_recommender.lab_b;
 
 import java.io.*;
 import java.net.URL;
-import java.sql.*;
+import java.sql.SQLException;
 import java.util.*;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -44,10 +44,10 @@ public class AddBooksToLibraryController implements Initializable {
     @FXML private Button clearAllButton;
     @FXML private Button saveButton;
 
-    // Contenitori per i risultati della ricerca
-    @FXML private VBox titleResultsContainer;
-    @FXML private VBox authorResultsContainer;
-    @FXML private VBox authorYearResultsContainer;
+    // Liste virtualizzate per i risultati della ricerca
+    @FXML private ListView<Book> titleResultsList;
+    @FXML private ListView<Book> authorResultsList;
+    @FXML private ListView<Book> authorYearResultsList;
 
     // Lista dei libri selezionati
     @FXML private ListView<String> selectedBooksListView;
@@ -56,22 +56,19 @@ public class AddBooksToLibraryController implements Initializable {
     private String userId;
     private String libraryName;
     private Set<String> selectedBooks = new HashSet<>();
-    private List<Book> searchResults = new ArrayList<>();
 
-    private DatabaseManager dbManager;
+    // Risultati paginati delle tre schede di ricerca
+    private PagedBookList titleResults;
+    private PagedBookList authorResults;
+    private PagedBookList authorYearResults;
 
 
     /**
      * Metodo chiamato durante l'inizializzazione del controller.
-     * Configura l'interfaccia utente, inizializza il database manager e imposta gli handler per gli eventi.
+     * Configura l'interfaccia utente e imposta gli handler per gli eventi.
      */
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        try {
-            dbManager = DatabaseManager.getInstance();
-        } catch (SQLException e) {
-        }
-
         // Nascondi l'etichetta di errore all'avvio
         errorLabel.setVisible(false);
 
@@ -81,6 +78,11 @@ public class AddBooksToLibraryController implements Initializable {
         // Configura la ListView con i libri selezionati
         setupSelectedBooksListView();
 
+        // Collega le liste dei risultati alle ricerche paginate
+        titleResults = new PagedBookList(titleResultsList, view -> new BookResultCell());
+        authorResults = new PagedBookList(authorResultsList, view -> new BookResultCell());
+        authorYearResults = new PagedBookList(authorYearResultsList, view -> new BookResultCell());
+
         // Il bottone saveButton è sempre attivo
         saveButton.setDisable(false);
 
@@ -268,22 +270,8 @@ public class AddBooksToLibraryController implements Initializable {
      * Aggiorna la lista dei libri selezionati con quelli già presenti nella libreria.
      */
     private void loadExistingBooks() {
-        try (Connection conn = dbManager.getConnection()) {
-            String sql = "SELECT b.title FROM books b " +
-                    "JOIN library_books lb ON b.id = lb.book_id " +
-                    "JOIN libraries l ON lb.library_id = l.id " +
-                    "WHERE l.user_id = ? AND l.library_name = ?";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, userId);
-                pstmt.setString(2, libraryName);
-                ResultSet rs = pstmt.executeQuery();
-
-                while (rs.next()) {
-                    selectedBooks.add(rs.getString("title"));
-                }
-            }
-
+        try {
+            selectedBooks.addAll(LibraryService.getLibraryBooks(userId, libraryName));
             updateSelectedBooksList();
         } catch (SQLException e) {
             errorLabel.setText("Errore nel caricamento dei libri esistenti: " + e.getMessage());
@@ -304,8 +292,7 @@ public class AddBooksToLibraryController implements Initializable {
             return;
         }
 
-        searchResults = BookService.searchBooksByTitle(title);
-        updateSearchResultsContainer(titleResultsContainer, searchResults);
+        titleResults.search(BookQuery.byTitle(title));
     }
 
     /**
@@ -321,8 +308,7 @@ public class AddBooksToLibraryController implements Initializable {
             return;
         }
 
-        searchResults = BookService.searchBooksByAuthor(author);
-        updateSearchResultsContainer(authorResultsContainer, searchResults);
+        authorResults.search(BookQuery.byAuthor(author));
     }
 
     /**
@@ -341,8 +327,7 @@ public class AddBooksToLibraryController implements Initializable {
 
         try {
             int year = Integer.parseInt(yearText);
-            searchResults = BookService.searchBooksByAuthorAndYear(author, year);
-            updateSearchResultsContainer(authorYearResultsContainer, searchResults);
+            authorYearResults.search(BookQuery.byAuthorAndYear(author, year));
         } catch (NumberFormatException e) {
             errorLabel.setText("Errore: L'anno deve essere un numero.");
             errorLabel.setVisible(true);
@@ -350,106 +335,103 @@ public class AddBooksToLibraryController implements Initializable {
     }
 
     /**
-     * Aggiorna il container dei risultati di ricerca con i libri trovati.
-     * Mostra un messaggio se non ci sono risultati, altrimenti crea un box per ogni libro.
+     * Cella della lista dei risultati che rappresenta un libro.
+     * Include informazioni sul libro e un pulsante per aggiungerlo/rimuoverlo dalla selezione.
+     * I nodi vengono creati una sola volta e riutilizzati durante lo scorrimento della lista.
      */
-    private void updateSearchResultsContainer(VBox container, List<Book> books) {
-        container.getChildren().clear();
-
-        if (books.isEmpty()) {
-            Label noResultsLabel = new Label("Nessun libro trovato.");
-            noResultsLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #777777; -fx-padding: 20px;");
-            container.getChildren().add(noResultsLabel);
-            return;
+    private class BookResultCell extends ListCell<Book> {
+        private final HBox bookBox = new HBox();
+        private final Label titleLabel = new Label();
+        private final Label authorLabel = new Label();
+        private final Label detailsLabel = new Label();
+        private final Button actionButton = new Button();
+
+        BookResultCell() {
+            bookBox.setAlignment(Pos.CENTER_LEFT);
+            bookBox.setSpacing(10);
+            bookBox.setPadding(new Insets(10));
+            bookBox.setStyle("-fx-background-color: white; -fx-border-color: #EEEEEE; -fx-border-radius: 5px;");
+
+            // Informazioni del libro in un contenitore
+            VBox infoBox = new VBox(5);
+            infoBox.setAlignment(Pos.CENTER_LEFT);
+            HBox.setHgrow(infoBox, Priority.ALWAYS);
+
+            // Titolo del libro più grande e in evidenza
+            titleLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #333333;");
+            titleLabel.setWrapText(true);
+            titleLabel.setMaxWidth(480); // Imposta una larghezza massima per evitare troncamenti
+
+            // Autore del libro
+            authorLabel.setStyle("-fx-font-size: 14px;");
+            authorLabel.setWrapText(true);
+
+            // Dettagli del libro su una riga
+            detailsLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #777777;");
+            detailsLabel.setWrapText(true);
+
+            // Aggiungi le etichette al contenitore delle informazioni
+            infoBox.getChildren().addAll(titleLabel, authorLabel, detailsLabel);
+
+            // CONFIGURAZIONE FISSA DEL PULSANTE - Garantisce sempre le stesse dimensioni
+            actionButton.setPrefHeight(40.0);
+            actionButton.setPrefWidth(100.0);
+            actionButton.setMinHeight(40.0);
+            actionButton.setMinWidth(100.0);
+            actionButton.setMaxHeight(40.0);   // Fissa l'altezza massima
+            actionButton.setMaxWidth(100.0);   // Fissa la larghezza massima
+
+            // Impedisce al pulsante di adattarsi al contenuto
+            HBox.setHgrow(actionButton, Priority.NEVER);
+
+            // Aggiungi l'effetto ombra
+            DropShadow shadow = new DropShadow();
+            shadow.setColor(Color.web("#00000080"));
+            shadow.setHeight(4.0);
+            shadow.setRadius(1.5);
+            shadow.setWidth(4.0);
+            actionButton.setEffect(shadow);
+
+            // Imposta l'azione per il pulsante sul libro attualmente mostrato dalla cella
+            actionButton.setOnAction(e -> {
+                Book book = getItem();
+                if (book != null) {
+                    toggleBookSelection(book.getTitle());
+                }
+            });
+
+            // Crea un contenitore per il pulsante per garantire posizionamento e dimensioni fisse
+            HBox buttonContainer = new HBox();
+            buttonContainer.setAlignment(Pos.CENTER);
+            buttonContainer.setPrefWidth(100);   // Larghezza fissa per il contenitore
+            buttonContainer.setMinWidth(100);    // Larghezza minima fissa
+            buttonContainer.setMaxWidth(100);    // Larghezza massima fissa
+            buttonContainer.getChildren().add(actionButton);
+
+            // Aggiungi gli elementi al box
+            bookBox.getChildren().addAll(infoBox, buttonContainer);
+            setPadding(new Insets(0, 0, 10, 0));
+            setStyle("-fx-background-color: transparent;");
         }
 
-        for (Book book : books) {
-            HBox bookBox = createBookResultBox(book);
-            container.getChildren().add(bookBox);
-        }
-    }
+        @Override
+        protected void updateItem(Book book, boolean empty) {
+            super.updateItem(book, empty);
 
-    /**
-     * Crea un componente grafico che rappresenta un libro nei risultati di ricerca.
-     * Include informazioni sul libro e un pulsante per aggiungerlo/rimuoverlo dalla selezione.
-     */
-    private HBox createBookResultBox(Book book) {
-        HBox bookBox = new HBox();
-        bookBox.setAlignment(Pos.CENTER_LEFT);
-        bookBox.setSpacing(10);
-        bookBox.setPadding(new Insets(10));
-        bookBox.setStyle("-fx-background-color: white; -fx-border-color: #EEEEEE; -fx-border-radius: 5px;");
-
-        // Informazioni del libro in un contenitore
-        VBox infoBox = new VBox(5);
-        infoBox.setAlignment(Pos.CENTER_LEFT);
-        HBox.setHgrow(infoBox, Priority.ALWAYS);
-
-        // Titolo del libro più grande e in evidenza
-        Label titleLabel = new Label(book.getTitle());
-        titleLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #333333;");
-        titleLabel.setWrapText(true);
-        titleLabel.setMaxWidth(480); // Imposta una larghezza massima per evitare troncamenti
-
-        // Autore del libro
-        Label authorLabel = new Label("Autore: " + book.getAuthors());
-        authorLabel.setStyle("-fx-font-size: 14px;");
-        authorLabel.setWrapText(true);
-
-        // Dettagli del libro su una riga
-        Label detailsLabel = new Label(" Autore: " + book.getAuthors() + " | Anno: " + book.getPublishYear());
-        detailsLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #777777;");
-        detailsLabel.setWrapText(true);
-
-        // Aggiungi le etichette al contenitore delle informazioni
-        infoBox.getChildren().addAll(titleLabel, authorLabel, detailsLabel);
-
-        // Creazione del pulsante con le stesse proprietà di consigli.fxml
-        Button actionButton = new Button();
-
-        // CONFIGURAZIONE FISSA DEL PULSANTE - Garantisce sempre le stesse dimensioni
-        actionButton.setPrefHeight(40.0);
-        actionButton.setPrefWidth(100.0);
-        actionButton.setMinHeight(40.0);
-        actionButton.setMinWidth(100.0);
-        actionButton.setMaxHeight(40.0);   // Fissa l'altezza massima
-        actionButton.setMaxWidth(100.0);   // Fissa la larghezza massima
-
-        // Impedisce al pulsante di adattarsi al contenuto
-        HBox.setHgrow(actionButton, Priority.NEVER);
-
-        // Aggiungi l'effetto ombra
-        DropShadow shadow = new DropShadow();
-        shadow.setColor(Color.web("#00000080"));
-        shadow.setHeight(4.0);
-        shadow.setRadius(1.5);
-        shadow.setWidth(4.0);
-        actionButton.setEffect(shadow);
-
-        // Controlla se il libro è già selezionato
-        boolean isSelected = selectedBooks.contains(book.getTitle());
-
-        if (isSelected) {
-            // Il libro è già nella lista dei selezionati
-            actionButton.setText("Rimuovi");
-            actionButton.setStyle(
-                    "-fx-background-color: red; " +
-                            "-fx-text-fill: white; " +
-                            "-fx-font-size: 14px; " +
-                            "-fx-font-weight: bold; " +
-                            "-fx-background-radius: 15; " +
-                            "-fx-padding: 10px 15px; " +
-                            "-fx-cursor: hand; " +
-                            "-fx-min-width: 100px; " +   // Garantisce una larghezza minima
-                            "-fx-min-height: 40px; " +   // Garantisce un'altezza minima
-                            "-fx-max-width: 100px; " +   // Limita la larghezza massima
-                            "-fx-max-height: 40px;"      // Limita l'altezza massima
-            );
-        } else {
-            // Il libro non è ancora selezionato
-            actionButton.setText("Aggiungi");
+            if (empty || book == null) {
+                setGraphic(null);
+                return;
+            }
+
+            titleLabel.setText(book.getTitle());
+            authorLabel.setText("Autore: " + book.getAuthors());
+            detailsLabel.setText(" Autore: " + book.getAuthors() + " | Anno: " + book.getPublishYear());
+
+            // Il pulsante riflette lo stato di selezione del libro
+            boolean isSelected = selectedBooks.contains(book.getTitle());
+            actionButton.setText(isSelected ? "Rimuovi" : "Aggiungi");
             actionButton.setStyle(
-                    "-fx-background-color: #75B965; " +
+                    "-fx-background-color: " + (isSelected ? "red" : "#75B965") + "; " +
                             "-fx-text-fill: white; " +
                             "-fx-font-size: 14px; " +
                             "-fx-font-weight: bold; " +
@@ -461,67 +443,27 @@ public class AddBooksToLibraryController implements Initializable {
                             "-fx-max-width: 100px; " +   // Limita la larghezza massima
                             "-fx-max-height: 40px;"      // Limita l'altezza massima
             );
-        }
-
-        // Crea un contenitore per il pulsante per garantire posizionamento e dimensioni fisse
-        HBox buttonContainer = new HBox();
-        buttonContainer.setAlignment(Pos.CENTER);
-        buttonContainer.setPrefWidth(100);   // Larghezza fissa per il contenitore
-        buttonContainer.setMinWidth(100);    // Larghezza minima fissa
-        buttonContainer.setMaxWidth(100);    // Larghezza massima fissa
-        buttonContainer.getChildren().add(actionButton);
-
-        // Imposta l'azione per il pulsante
-        actionButton.setOnAction(e -> toggleBookSelection(book.getTitle(), actionButton));
 
-        // Aggiungi gli elementi al box
-        bookBox.getChildren().addAll(infoBox, buttonContainer);
-        return bookBox;
+            setGraphic(bookBox);
+        }
     }
 
     /**
      * Alterna lo stato di selezione di un libro.
      * Se il libro è già selezionato lo rimuove, altrimenti lo aggiunge alla selezione.
-     * Aggiorna l'aspetto del pulsante in base allo stato corrente.
+     * Le celle visibili vengono ridisegnate per aggiornare l'aspetto dei pulsanti.
      */
-    private void toggleBookSelection(String bookTitle, Button button) {
+    private void toggleBookSelection(String bookTitle) {
         if (selectedBooks.contains(bookTitle)) {
             selectedBooks.remove(bookTitle);
-            button.setText("Aggiungi");
-            button.setStyle(
-                    "-fx-background-color: #75B965; " +
-                            "-fx-text-fill: white; " +
-                            "-fx-font-size: 14px; " +
-                            "-fx-font-weight: bold; " +
-                            "-fx-background-radius: 15; " +
-                            "-fx-padding: 10px 15px; " +
-                            "-fx-cursor: hand; " +
-                            "-fx-min-width: 100px; " +
-                            "-fx-min-height: 40px; " +
-                            "-fx-max-width: 100px; " +
-                            "-fx-max-height: 40px;"
-            );
         } else {
             selectedBooks.add(bookTitle);
-            button.setText("Rimuovi");
-            button.setStyle(
-                    "-fx-background-color: red; " +
-                            "-fx-text-fill: white; " +
-                            "-fx-font-size: 14px; " +
-                            "-fx-font-weight: bold; " +
-                            "-fx-background-radius: 15; " +
-                            "-fx-padding: 10px 15px; " +
-                            "-fx-cursor: hand; " +
-                            "-fx-min-width: 100px; " +
-                            "-fx-min-height: 40px; " +
-                            "-fx-max-width: 100px; " +
-                            "-fx-max-height: 40px;"
-            );
         }
 
         updateSelectedBooksList();
         updateSelectedBooksCount();
         updateClearAllButtonState();
+        updateSearchResults();
         errorLabel.setVisible(false);
     }
 
@@ -546,120 +488,27 @@ public class AddBooksToLibraryController implements Initializable {
     /**
      * Aggiorna l'interfaccia dei risultati di ricerca.
      * Si assicura che i libri selezionati siano correttamente visualizzati come tali
-     * nei risultati di ricerca.
+     * nei risultati di ricerca, ridisegnando le sole celle visibili.
      */
     private void updateSearchResults() {
-        if (!searchResults.isEmpty()) {
-            if (!titleResultsContainer.getChildren().isEmpty()) {
-                updateSearchResultsContainer(titleResultsContainer, searchResults);
-            } else if (!authorResultsContainer.getChildren().isEmpty()) {
-                updateSearchResultsContainer(authorResultsContainer, searchResults);
-            } else if (!authorYearResultsContainer.getChildren().isEmpty()) {
-                updateSearchResultsContainer(authorYearResultsContainer, searchResults);
-            }
-        }
+        titleResults.refresh();
+        authorResults.refresh();
+        authorYearResults.refresh();
     }
 
     /**
-     * Salva la libreria nel database.
-     * Crea la libreria se non esiste, altrimenti aggiorna i libri contenuti.
-     * Utilizza una transazione per garantire l'integrità dei dati.
+     * Salva la libreria nel database tramite {@link LibraryService}.
+     * Crea la libreria se non esiste, altrimenti sostituisce i libri contenuti.
      */
     private void saveLibraryToDatabase() {
-        try (Connection conn = dbManager.getConnection()) {
-            conn.setAutoCommit(false);
-
-            try {
-                // First, get or create the library
-                int libraryId = getOrCreateLibrary(conn, userId, libraryName);
-
-                // Clear existing books from the library
-                clearLibraryBooks(conn, libraryId);
-
-                // Add selected books to the library
-                addBooksToLibrary(conn, libraryId, selectedBooks);
-
-                conn.commit();
-            } catch (SQLException e) {
-                conn.rollback();
-                throw e;
-            }
+        try {
+            LibraryService.saveLibraryBooks(userId, libraryName, selectedBooks);
         } catch (SQLException e) {
             errorLabel.setText("Errore nel salvataggio della libreria: " + e.getMessage());
             errorLabel.setVisible(true);
         }
     }
 
-    /**
-     * Ottiene l'ID di una libreria esistente o ne crea una nuova.
-     * Cerca prima una libreria con il nome e ID utente specificati.
-     * Se non esiste, ne crea una nuova e restituisce il suo ID.
-     */
-    private int getOrCreateLibrary(Connection conn, String userId, String libraryName) throws SQLException {
-        // Check if a library exists
-        String selectSql = "SELECT id FROM libraries WHERE user_id = ? AND library_name = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(selectSql)) {
-            pstmt.setString(1, userId);
-            pstmt.setString(2, libraryName);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                return rs.getInt("id");
-            }
-        }
-
-        // Create a new library
-        String insertSql = "INSERT INTO libraries (user_id, library_name) VALUES (?, ?) RETURNING id";
-        try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
-            pstmt.setString(1, userId);
-            pstmt.setString(2, libraryName);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                return rs.getInt("id");
-            }
-            throw new SQLException("Failed to create library");
-        }
-    }
-
-    /**
-     * Rimuove tutti i libri esistenti da una libreria.
-     * Utilizzato prima di aggiungere i nuovi libri selezionati.
-     */
-    private void clearLibraryBooks(Connection conn, int libraryId) throws SQLException {
-        String sql = "DELETE FROM library_books WHERE library_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, libraryId);
-            pstmt.executeUpdate();
-        }
-    }
-
-    /**
-     * Aggiunge i libri selezionati alla libreria.
-     * Per ogni titolo di libro selezionato, cerca l'ID del libro nel database
-     * e lo associa alla libreria.
-     */
-    private void addBooksToLibrary(Connection conn, int libraryId, Set<String> bookTitles) throws SQLException {
-        String findBookSql = "SELECT id FROM books WHERE title = ?";
-        String insertSql = "INSERT INTO library_books (library_id, book_id) VALUES (?, ?)";
-
-        try (PreparedStatement findBookStmt = conn.prepareStatement(findBookSql);
-             PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-
-            for (String bookTitle : bookTitles) {
-                findBookStmt.setString(1, bookTitle);
-                ResultSet rs = findBookStmt.executeQuery();
-
-                if (rs.next()) {
-                    int bookId = rs.getInt("id");
-                    insertStmt.setInt(1, libraryId);
-                    insertStmt.setInt(2, bookId);
-                    insertStmt.executeUpdate();
-                }
-            }
-        }
-    }
-
     /**
      * Gestisce l'evento di annullamento dell'operazione.
      * Naviga al menu utente senza salvare le modifiche.
@@ -19,7 +19,7 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.net.URL;
-import java.sql.*;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -133,50 +133,6 @@ public class BookDetailsController implements Initializable {
         }
     }
 
-    /**
-     * Classe interna per rappresentare un commento generale sul libro.
-     * Contiene l'ID dell'utente e il testo del commento.
-     */
-    private static class Comment {
-        /** ID dell'utente che ha lasciato il commento */
-        public String userId;
-        /** Testo del commento */
-        public String text;
-
-        /**
-         * Costruttore per un commento generale.
-         *
-         * @param userId ID dell'utente che ha scritto il commento
-         * @param text Testo del commento
-         */
-        public Comment(String userId, String text) {
-            this.userId = userId;
-            this.text = text;
-        }
-    }
-
-    /**
-     * Classe interna per rappresentare un libro consigliato.
-     * Contiene l'ID dell'utente che ha fatto la raccomandazione e il titolo del libro consigliato.
-     */
-    private static class RecommendedBook {
-        /** ID dell'utente che ha consigliato il libro */
-        public String userId;
-        /** Titolo del libro consigliato */
-        public String bookTitle;
-
-        /**
-         * Costruttore per un libro consigliato.
-         *
-         * @param userId ID dell'utente che ha consigliato il libro
-         * @param bookTitle Titolo del libro consigliato
-         */
-        public RecommendedBook(String userId, String bookTitle) {
-            this.userId = userId;
-            this.bookTitle = bookTitle;
-        }
-    }
-
     /** Liste per memorizzare le recensioni per ogni caratteristica del libro */
     private final List<Review> styleReviews = new ArrayList<>();
     private final List<Review> contentReviews = new ArrayList<>();
@@ -187,8 +143,8 @@ public class BookDetailsController implements Initializable {
     /** Dati del libro corrente */
     private Book currentBook;
 
-    /** ID del libro corrente nel database */
-    private int currentBookId;
+    /** Dati della pagina del libro corrente, null se il libro non è nel database */
+    private BookPage currentPage;
 
     /** Mappa per memorizzare le valutazioni del libro per ciascuna categoria */
     private final Map<String, Double> ratings = new HashMap<>();
@@ -196,9 +152,6 @@ public class BookDetailsController implements Initializable {
     /** Numero di utenti che hanno valutato il libro */
     private int numRaters = 0;
 
-    /** Manager per la connessione al database */
-    private DatabaseManager dbManager;
-
     /**
      * Inizializza il controller. Questo metodo viene chiamato automaticamente dopo che
      * il file FXML è stato caricato.
@@ -208,12 +161,6 @@ public class BookDetailsController implements Initializable {
      */
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        try {
-            dbManager = DatabaseManager.getInstance();
-        } catch (SQLException e) {
-            // Silenziosamente ignorato - il database potrebbe non essere disponibile
-        }
-
         // Inizializza i container delle recensioni con spaziatura
         styleReviewsBox.setSpacing(10);
         contentReviewsBox.setSpacing(10);
@@ -224,18 +171,26 @@ public class BookDetailsController implements Initializable {
 
     /**
      * Imposta i dati del libro da visualizzare e carica tutte le informazioni correlate.
-     * Cerca il libro nel database e, se trovato, carica le valutazioni e le recensioni.
+     * Tutti i dati della pagina ({@link BookPage}) vengono letti con una sola richiesta al
+     * server dei libri se il client è collegato, altrimenti con una sola query al database.
      * Se il libro non viene trovato, utilizza un libro di esempio con dati predefiniti.
      *
      * @param bookTitle Il titolo del libro da visualizzare
      */
     public void setBookData(String bookTitle) {
-        // Cerca il libro nel database
-        this.currentBook = findBookByTitle(bookTitle);
+        // Carica la pagina del libro
+        try {
+            this.currentPage = BookService.getBookPage(bookTitle);
+        } catch (SQLException e) {
+            // Gestione errore silenziosa
+            this.currentPage = null;
+        }
 
-        if (currentBook != null) {
-            // Carica le valutazioni e le recensioni del libro
-            loadRatingsAndReviews(currentBookId);
+        if (currentPage != null) {
+            this.currentBook = currentPage.getBook();
+
+            // Organizza le valutazioni e le recensioni del libro
+            loadRatingsAndReviews(currentPage);
 
             // Popola l'interfaccia con i dati del libro
             updateUI();
@@ -290,53 +245,19 @@ public class BookDetailsController implements Initializable {
     }
 
     /**
-     * Cerca un libro nel database in base al titolo.
-     * Se trovato, memorizza l'ID del libro e restituisce un oggetto Book con i dettagli.
+     * Calcola le medie delle valutazioni dalle statistiche della pagina e organizza per
+     * categoria le recensioni, cioè le valutazioni che contengono almeno un commento.
      *
-     * @param title Il titolo del libro da cercare
-     * @return Un oggetto Book se trovato, altrimenti null
+     * @param page La pagina del libro di cui mostrare valutazioni e recensioni
      */
-    private Book findBookByTitle(String title) {
-        try (Connection conn = dbManager.getConnection()) {
-            String sql = "SELECT id, title, authors, category, publisher, publish_year FROM books WHERE title = ?";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, title);
-                ResultSet rs = pstmt.executeQuery();
-
-                if (rs.next()) {
-                    this.currentBookId = rs.getInt("id");
-                    return new Book(
-                            rs.getString("title"),
-                            rs.getString("authors"),
-                            rs.getString("category"),
-                            rs.getString("publisher"),
-                            rs.getInt("publish_year")
-                    );
-                }
-            }
-        } catch (SQLException e) {
-            // Gestione errore silenziosa
+    private void loadRatingsAndReviews(BookPage page) {
+        int count = page.getRatingCount();
+        if (count == 0) {
+            // Se non ci sono valutazioni, imposta tutto a 0
+            setupExampleRatings();
+            return;
         }
 
-        return null;
-    }
-
-    /**
-     * Carica dal database le valutazioni e le recensioni associate al libro specificato.
-     * Calcola la media delle valutazioni e organizza le recensioni per categoria.
-     *
-     * @param bookId L'ID del libro di cui caricare valutazioni e recensioni
-     */
-    private void loadRatingsAndReviews(int bookId) {
-        // Inizializza le valutazioni con valori predefiniti
-        ratings.put("style", 0.0);
-        ratings.put("content", 0.0);
-        ratings.put("pleasantness", 0.0);
-        ratings.put("originality", 0.0);
-        ratings.put("edition", 0.0);
-        ratings.put("total", 0.0);
-
         // Pulisci le liste di recensioni
         styleReviews.clear();
         contentReviews.clear();
@@ -344,109 +265,64 @@ public class BookDetailsController implements Initializable {
         originalityReviews.clear();
         editionReviews.clear();
 
-        try (Connection conn = dbManager.getConnection()) {
-            // Query per ottenere tutte le valutazioni per questo libro
-            String sql = "SELECT user_id, style_rating, content_rating, pleasantness_rating, " +
-                    "originality_rating, edition_rating, general_comment, style_comment, " +
-                    "content_comment, pleasantness_comment, originality_comment, edition_comment " +
-                    "FROM book_ratings WHERE book_id = ?";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setInt(1, bookId);
-                ResultSet rs = pstmt.executeQuery();
-
-                int count = 0;
-                double styleSum = 0, contentSum = 0, pleasantnessSum = 0, originalitySum = 0, editionSum = 0;
-                int colorIndex = 0;
-
-                while (rs.next()) {
-                    String userId = rs.getString("user_id");
-                    int style = rs.getInt("style_rating");
-                    int content = rs.getInt("content_rating");
-                    int pleasantness = rs.getInt("pleasantness_rating");
-                    int originality = rs.getInt("originality_rating");
-                    int edition = rs.getInt("edition_rating");
-
-                    // Assegna un colore all'utente se non ne ha già uno
-                    if (!userColors.containsKey(userId)) {
-                        userColors.put(userId, colorPalette[colorIndex % colorPalette.length]);
-                        colorIndex++;
-                    }
+        int[] sums = page.getRatingSums();
+        double styleSum = sums[0];
+        double contentSum = sums[1];
+        double pleasantnessSum = sums[2];
+        double originalitySum = sums[3];
+        double editionSum = sums[4];
 
-                    // Somma le valutazioni per il calcolo della media
-                    styleSum += style;
-                    contentSum += content;
-                    pleasantnessSum += pleasantness;
-                    originalitySum += originality;
-                    editionSum += edition;
-                    count++;
-
-                    // Aggiungi recensioni specifiche se disponibili
-                    String generalComment = rs.getString("general_comment");
-                    String styleComment = rs.getString("style_comment");
-                    String contentComment = rs.getString("content_comment");
-                    String pleasantnessComment = rs.getString("pleasantness_comment");
-                    String originalityComment = rs.getString("originality_comment");
-                    String editionComment = rs.getString("edition_comment");
-
-                    // Aggiungi recensioni per lo stile
-                    if (styleComment != null && !styleComment.isEmpty()) {
-                        styleReviews.add(new Review(userId, style, styleComment));
-                    } else if (generalComment != null && !generalComment.isEmpty()) {
-                        styleReviews.add(new Review(userId, style, generalComment));
-                    }
+        ratings.put("style", Math.round(styleSum / count * 10) / 10.0);
+        ratings.put("content", Math.round(contentSum / count * 10) / 10.0);
+        ratings.put("pleasantness", Math.round(pleasantnessSum / count * 10) / 10.0);
+        ratings.put("originality", Math.round(originalitySum / count * 10) / 10.0);
+        ratings.put("edition", Math.round(editionSum / count * 10) / 10.0);
 
-                    // Aggiungi recensioni per il contenuto
-                    if (contentComment != null && !contentComment.isEmpty()) {
-                        contentReviews.add(new Review(userId, content, contentComment));
-                    } else if (generalComment != null && !generalComment.isEmpty()) {
-                        contentReviews.add(new Review(userId, content, generalComment));
-                    }
+        // Calcola la media totale
+        double total = (styleSum + contentSum + pleasantnessSum + originalitySum + editionSum) / (5 * count);
+        ratings.put("total", Math.round(total * 10) / 10.0);
 
-                    // Aggiungi recensioni per la gradevolezza
-                    if (pleasantnessComment != null && !pleasantnessComment.isEmpty()) {
-                        pleasantnessReviews.add(new Review(userId, pleasantness, pleasantnessComment));
-                    } else if (generalComment != null && !generalComment.isEmpty()) {
-                        pleasantnessReviews.add(new Review(userId, pleasantness, generalComment));
-                    }
+        // Aggiorna il numero di valutatori
+        numRaters = count;
 
-                    // Aggiungi recensioni per l'originalità
-                    if (originalityComment != null && !originalityComment.isEmpty()) {
-                        originalityReviews.add(new Review(userId, originality, originalityComment));
-                    } else if (generalComment != null && !generalComment.isEmpty()) {
-                        originalityReviews.add(new Review(userId, originality, generalComment));
-                    }
+        int colorIndex = 0;
 
-                    // Aggiungi recensioni per l'edizione
-                    if (editionComment != null && !editionComment.isEmpty()) {
-                        editionReviews.add(new Review(userId, edition, editionComment));
-                    } else if (generalComment != null && !generalComment.isEmpty()) {
-                        editionReviews.add(new Review(userId, edition, generalComment));
-                    }
-                }
+        for (BookPage.Review review : page.getReviews()) {
+            String userId = review.getUserId();
+            int[] values = review.getRating().getRatings();
+            String[] comments = review.getRating().getComments();
+            String generalComment = review.getRating().getGeneralComment();
 
-                // Se ci sono valutazioni, calcola la media
-                if (count > 0) {
-                    ratings.put("style", Math.round(styleSum / count * 10) / 10.0);
-                    ratings.put("content", Math.round(contentSum / count * 10) / 10.0);
-                    ratings.put("pleasantness", Math.round(pleasantnessSum / count * 10) / 10.0);
-                    ratings.put("originality", Math.round(originalitySum / count * 10) / 10.0);
-                    ratings.put("edition", Math.round(editionSum / count * 10) / 10.0);
+            // Assegna un colore all'utente se non ne ha già uno
+            if (!userColors.containsKey(userId)) {
+                userColors.put(userId, colorPalette[colorIndex % colorPalette.length]);
+                colorIndex++;
+            }
 
-                    // Calcola la media totale
-                    double total = (styleSum + contentSum + pleasantnessSum + originalitySum + editionSum) / (5 * count);
-                    ratings.put("total", Math.round(total * 10) / 10.0);
+            // Aggiungi a ogni caratteristica il commento specifico o, in sua assenza, quello generale
+            addReview(styleReviews, userId, values[0], comments[0], generalComment);
+            addReview(contentReviews, userId, values[1], comments[1], generalComment);
+            addReview(pleasantnessReviews, userId, values[2], comments[2], generalComment);
+            addReview(originalityReviews, userId, values[3], comments[3], generalComment);
+            addReview(editionReviews, userId, values[4], comments[4], generalComment);
+        }
+    }
 
-                    // Aggiorna il numero di valutatori
-                    numRaters = count;
-                } else {
-                    // Se non ci sono valutazioni, imposta tutto a 0
-                    setupExampleRatings();
-                }
-            }
-        } catch (SQLException e) {
-            // In caso di errore, imposta valutazioni di esempio
-            setupExampleRatings();
+    /**
+     * Aggiunge una recensione alla lista di una caratteristica, usando il commento specifico
+     * se presente oppure quello generale. Se entrambi mancano la recensione non viene aggiunta.
+     *
+     * @param reviews La lista delle recensioni della caratteristica
+     * @param userId L'utente che ha scritto la recensione
+     * @param rating Il voto assegnato alla caratteristica
+     * @param comment Il commento sulla caratteristica
+     * @param generalComment Il commento generale
+     */
+    private void addReview(List<Review> reviews, String userId, int rating, String comment, String generalComment) {
+        if (comment != null && !comment.isEmpty()) {
+            reviews.add(new Review(userId, rating, comment));
+        } else if (generalComment != null && !generalComment.isEmpty()) {
+            reviews.add(new Review(userId, rating, generalComment));
         }
     }
 
@@ -662,14 +538,14 @@ public class BookDetailsController implements Initializable {
 
         // Aggiungi i commenti degli utenti
         if (numRaters > 0) {
-            // Recupera i commenti generali dal database
-            List<Comment> userComments = getUserComments(currentBookId);
+            // I commenti generali sono già nella pagina, insieme al voto medio di chi li ha scritti
+            List<BookPage.Comment> userComments = currentPage.getComments();
 
             if (!userComments.isEmpty()) {
                 // Aggiungi ogni commento colorato al container
-                for (Comment comment : userComments) {
-                    // Ottieni la valutazione media dell'utente per questo libro
-                    double userRating = getUserRatingForBook(comment.userId, currentBookId);
+                for (BookPage.Comment comment : userComments) {
+                    // Valutazione media dell'utente per questo libro
+                    double userRating = comment.getUserRating();
 
                     // Crea un box per ogni commento
                     VBox commentBox = new VBox(5);
@@ -677,14 +553,14 @@ public class BookDetailsController implements Initializable {
                     commentBox.setStyle("-fx-background-color: #f8f8f8; -fx-border-color: #e0e0e0; -fx-border-radius: 5px;");
 
                     // Usa il colore assegnato all'utente
-                    String userColor = userColors.getOrDefault(comment.userId, "#333333");
+                    String userColor = userColors.getOrDefault(comment.getUserId(), "#333333");
 
                     // Crea un HBox per contenere l'ID utente e le stelle
                     HBox userHeader = new HBox(10);
                     userHeader.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
 
                     // Crea etichetta per l'utente
-                    Label userLabel = new Label(comment.userId);
+                    Label userLabel = new Label(comment.getUserId());
                     userLabel.setStyle("-fx-font-weight: bold; -fx-text-fill: " + userColor + ";");
                     userHeader.getChildren().add(userLabel);
 
@@ -696,7 +572,7 @@ public class BookDetailsController implements Initializable {
                     }
 
                     // Crea etichetta per il commento - mostra sempre il commento completo
-                    Label textLabel = new Label(comment.text);
+                    Label textLabel = new Label(comment.getText());
                     textLabel.setWrapText(true);
                     textLabel.setStyle("-fx-font-style: italic;");
 
@@ -793,72 +669,13 @@ public class BookDetailsController implements Initializable {
         addReviewsToContainer(editionReviews, editionReviewsBox);
     }
 
-    /**
-     * Calcola e restituisce la valutazione media assegnata da un utente specifico a un libro.
-     * Interroga il database per ottenere il valore di "average_rating" registrato
-     * per la combinazione utente-libro specificata.
-     *
-     * @param userId L'identificativo dell'utente di cui si vuole conoscere la valutazione
-     * @param bookId L'identificativo del libro valutato
-     * @return La valutazione media dell'utente per il libro, o 0.0 se non trovata
-     */
-    private double getUserRatingForBook(String userId, int bookId) {
-        try (Connection conn = dbManager.getConnection()) {
-            String sql = "SELECT average_rating FROM book_ratings WHERE user_id = ? AND book_id = ?";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, userId);
-                pstmt.setInt(2, bookId);
-                ResultSet rs = pstmt.executeQuery();
-
-                if (rs.next()) {
-                    return rs.getDouble("average_rating");
-                }
-            }
-        } catch (SQLException e) {
-            // Gestione errore
-        }
-        return 0.0; // Valore predefinito se non trovato
-    }
-
-    /**
-     * Recupera dal database tutti i commenti generali lasciati dagli utenti per un libro specifico.
-     * Considera solo i commenti non vuoti e non nulli per il libro specificato.
-     *
-     * @param bookId L'identificativo del libro di cui recuperare i commenti
-     * @return Una lista di oggetti Comment contenenti l'ID utente e il testo del commento
-     */
-    private List<Comment> getUserComments(int bookId) {
-        List<Comment> comments = new ArrayList<>();
-
-        try (Connection conn = dbManager.getConnection()) {
-            String sql = "SELECT user_id, general_comment FROM book_ratings WHERE book_id = ? AND general_comment IS NOT NULL AND general_comment != ''";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setInt(1, bookId);
-                ResultSet rs = pstmt.executeQuery();
-
-                while (rs.next()) {
-                    String userId = rs.getString("user_id");
-                    String generalComment = rs.getString("general_comment");
-                    comments.add(new Comment(userId, generalComment));
-                }
-            }
-        } catch (SQLException e) {
-            // Gestione silenziosa dell'errore
-        }
-
-        return comments;
-    }
-
     /**
      * Genera e visualizza i libri consigliati per il libro corrente.
      * Il metodo cerca prima consigli personalizzati inseriti dagli utenti nel database.
-     * Se non ne trova, genera automaticamente consigli basati sulla categoria del libro attuale,
-     * mostrando altri libri della stessa categoria.
+     * Se non ne trova, mostra i libri simili proposti automaticamente (vedi {@link #findSimilarBooks()}).
      */
     private void generateRecommendedBooks() {
-        // Prima cerca se esistono consigli personalizzati dal database
+        // Prima mostra i consigli personalizzati, se esistono
         boolean foundCustomRecommendations = findCustomRecommendations();
 
         // Se non sono stati trovati consigli personalizzati, genera consigli basati sulla categoria
@@ -867,39 +684,21 @@ public class BookDetailsController implements Initializable {
         }
     }
     /**
-     * Cerca nel database consigli personalizzati inseriti dagli utenti per il libro corrente.
+     * Mostra i consigli personalizzati inseriti dagli utenti per il libro corrente.
      * Per ogni consiglio trovato, crea un elemento visivo che mostra l'utente che ha fatto
      * la raccomandazione, il titolo del libro consigliato, e un pulsante per visualizzare i dettagli.
      * I titoli lunghi vengono troncati per mantenere una visualizzazione coerente.
      *
-     * <p>Interroga il database per trovare le raccomandazioni associate al libro corrente
-     * e le visualizza nell'interfaccia utente. Per ogni libro consigliato, vengono mostrati
-     * il titolo (troncato se necessario), l'autore (se disponibile) e un pulsante "Visualizza"
+     * <p>Le raccomandazioni associate al libro corrente sono già nella pagina del libro
+     * ({@link BookPage}). Per ogni libro consigliato, vengono mostrati
+     * il titolo (troncato se necessario), l'autore e un pulsante "Visualizza"
      * per navigare ai dettagli completi del libro.</p>
      *
      * @return true se sono stati trovati consigli personalizzati, false altrimenti
      */
     private boolean findCustomRecommendations() {
-        List<RecommendedBook> customRecommendations = new ArrayList<>();
-
-        try (Connection conn = dbManager.getConnection()) {
-            String sql = "SELECT r.user_id, b.title FROM book_recommendations r " +
-                    "JOIN books b ON r.recommended_book_id = b.id " +
-                    "WHERE r.source_book_id = ?";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setInt(1, currentBookId);
-                ResultSet rs = pstmt.executeQuery();
-
-                while (rs.next()) {
-                    String userId = rs.getString("user_id");
-                    String recommendedBookTitle = rs.getString("title");
-                    customRecommendations.add(new RecommendedBook(userId, recommendedBookTitle));
-                }
-            }
-        } catch (SQLException e) {
-            // Gestione silenziosa dell'errore
-        }
+        List<BookPage.Recommendation> customRecommendations =
+                currentPage != null ? currentPage.getRecommendations() : List.of();
 
         // Se ci sono consigli personalizzati, crea box visivi per ognuno
         if (!customRecommendations.isEmpty()) {
@@ -919,7 +718,7 @@ public class BookDetailsController implements Initializable {
                 }
             }
 
-            for (RecommendedBook recommendation : customRecommendations) {
+            for (BookPage.Recommendation recommendation : customRecommendations) {
                 // Crea un box per ogni consiglio, simile alle recensioni
                 VBox recommendationBox = new VBox(5);
                 recommendationBox.setPadding(new Insets(10));
@@ -928,12 +727,12 @@ public class BookDetailsController implements Initializable {
                 // Controlla se l'utente ha già un colore assegnato,
                 // altrimenti assegna un nuovo colore dalla palette
                 String userColor;
-                if (!userColors.containsKey(recommendation.userId)) {
+                if (!userColors.containsKey(recommendation.getUserId())) {
                     userColor = colorPalette[nextColorIndex % colorPalette.length];
-                    userColors.put(recommendation.userId, userColor);
+                    userColors.put(recommendation.getUserId(), userColor);
                     nextColorIndex++;
                 } else {
-                    userColor = userColors.get(recommendation.userId);
+                    userColor = userColors.get(recommendation.getUserId());
                 }
 
                 // Crea un HBox per informazioni e bottone
@@ -947,15 +746,15 @@ public class BookDetailsController implements Initializable {
                 HBox.setHgrow(infoBox, javafx.scene.layout.Priority.ALWAYS);
 
                 // Aggiungi prefisso "Consigliato da:" all'ID utente
-                Label userLabel = new Label(recommendation.userId);
+                Label userLabel = new Label(recommendation.getUserId());
                 userLabel.setStyle("-fx-font-weight: bold; -fx-text-fill: " + userColor + ";");
 
-                // Cerca il libro nel database per ottenere l'autore
-                Book recommendedBook = findBookByTitle(recommendation.bookTitle);
+                // I dati del libro consigliato, compreso l'autore, sono già nella pagina
+                Book recommendedBook = recommendation.getBook();
 
                 // Tronca il titolo se necessario
-                String displayTitle = recommendation.bookTitle;
-                String originalTitle = recommendation.bookTitle;
+                String displayTitle = recommendedBook.getTitle();
+                String originalTitle = recommendedBook.getTitle();
                 if (displayTitle.length() > 60) {
                     displayTitle = displayTitle.substring(0, 57) + "...";
                 }
@@ -966,14 +765,10 @@ public class BookDetailsController implements Initializable {
                 bookLabel.setWrapText(true);
                 bookLabel.setUserData(originalTitle); // Salva il titolo originale come metadato
 
-                // Aggiungi l'autore se il libro è stato trovato
-                if (recommendedBook != null) {
-                    Label authorLabel = new Label("Autore: " + recommendedBook.getAuthors());
-                    authorLabel.setWrapText(true);
-                    infoBox.getChildren().addAll(userLabel, bookLabel, authorLabel);
-                } else {
-                    infoBox.getChildren().addAll(userLabel, bookLabel);
-                }
+                // Aggiungi l'autore del libro consigliato
+                Label authorLabel = new Label("Autore: " + recommendedBook.getAuthors());
+                authorLabel.setWrapText(true);
+                infoBox.getChildren().addAll(userLabel, bookLabel, authorLabel);
 
                 // Aggiungi bottone "Visualizza" simile a quello in homepage
                 Button viewButton = new Button("Visualizza");
@@ -1013,13 +808,14 @@ public class BookDetailsController implements Initializable {
     }
 
     /**
-     * Cerca nel database libri simili al libro corrente basandosi sulla categoria.
+     * Mostra i libri simili al libro corrente, cioè valutati in modo simile dagli stessi utenti
+     * ({@link ItemSimilarityIndex}) o, in mancanza di valutazioni, della stessa categoria.
      * Se trovati, crea elementi visivi per mostrarli come consigli automatici,
      * ciascuno con un pulsante "Visualizza" per accedere ai dettagli del libro.
      * I titoli lunghi vengono troncati per garantire una visualizzazione uniforme.
      *
-     * <p>Esegue una query sul database per trovare altri libri della stessa categoria
-     * del libro corrente, escludendo il libro stesso. Per ogni libro trovato, viene
+     * <p>I libri simili sono letti insieme alla pagina del libro quando non ci sono consigli
+     * degli utenti. Per ogni libro, viene
      * creato un elemento grafico contenente il titolo troncato, l'autore e un pulsante
      * di dimensione fissa che permette all'utente di navigare direttamente ai dettagli
      * completi del libro.</p>
@@ -1027,38 +823,14 @@ public class BookDetailsController implements Initializable {
      * <p>Se non vengono trovati libri simili, viene visualizzato un messaggio informativo.</p>
      */
     private void findSimilarBooks() {
-        List<Book> similarBooks = new ArrayList<>();
-
-        try (Connection conn = dbManager.getConnection()) {
-            String sql = "SELECT title, authors, category, publisher, publish_year FROM books " +
-                    "WHERE category = ? AND id != ? LIMIT 3";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, currentBook.getCategory());
-                pstmt.setInt(2, currentBookId);
-                ResultSet rs = pstmt.executeQuery();
-
-                while (rs.next()) {
-                    Book book = new Book(
-                            rs.getString("title"),
-                            rs.getString("authors"),
-                            rs.getString("category"),
-                            rs.getString("publisher"),
-                            rs.getInt("publish_year")
-                    );
-                    similarBooks.add(book);
-                }
-            }
-        } catch (SQLException e) {
-            // Gestione silenziosa dell'errore
-        }
+        List<Book> similarBooks = currentPage != null ? currentPage.getSimilarBooks() : List.of();
 
         // Se ci sono libri simili, mostrali
         if (!similarBooks.isEmpty()) {
             VBox similarBooksContainer = new VBox(10);
             similarBooksContainer.setPadding(new Insets(10));
 
-            Label headerLabel = new Label("Libri consigliati automaticamente secondo la categoria:");
+            Label headerLabel = new Label("Libri simili consigliati automaticamente:");
             headerLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
             similarBooksContainer.getChildren().add(headerLabel);
 
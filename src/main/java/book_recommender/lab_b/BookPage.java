@@ -0,0 +1,297 @@
+package book_recommender.lab_b;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contiene tutti i dati mostrati nella pagina di dettaglio di un libro: i dati del libro,
+ * le statistiche delle valutazioni, le recensioni, i commenti generali con il voto medio
+ * di chi li ha scritti, i libri consigliati dagli utenti e, in loro assenza, alcuni libri
+ * della stessa categoria.
+ *
+ * <p>La pagina viene caricata dal database con un'unica query ({@link #load(Connection, int)})
+ * oppure ricevuta dal server dei libri in un'unica risposta.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class BookPage {
+
+    /**
+     * Numero massimo di libri della stessa categoria proposti quando non ci sono consigli.
+     */
+    static final int SIMILAR_BOOKS = 3;
+
+    /**
+     * Query della pagina di dettaglio. Le righe dei diversi tipi hanno le stesse colonne:
+     * {@code v1..v6} contengono i voti o le statistiche, {@code c1..c6} i commenti.
+     * Ogni parametro è l'id del libro: le CTE non si riferiscono l'una all'altra, così
+     * ciascuna può essere pianificata in modo indipendente.
+     */
+    private static final String PAGE_SQL =
+            "WITH page_book AS (" +
+            "  SELECT id, title, authors, category, publisher, publish_year FROM books WHERE id = ?), " +
+            "recommended AS (" +
+            "  SELECT r.user_id, b.id, b.title, b.authors, b.category, b.publisher, b.publish_year " +
+            "  FROM book_recommendations r JOIN books b ON r.recommended_book_id = b.id " +
+            "  WHERE r.source_book_id = ?), " +
+            "same_category AS (" +
+            "  SELECT id, title, authors, category, publisher, publish_year FROM books " +
+            "  WHERE category = (SELECT category FROM books WHERE id = ?) AND id <> ? " +
+            "  AND NOT EXISTS (SELECT 1 FROM book_recommendations WHERE source_book_id = ?) " +
+            "  LIMIT " + SIMILAR_BOOKS + ") " +
+            "SELECT 'B' AS kind, CAST(NULL AS VARCHAR(8)) AS user_id, " +
+            "  id, title, authors, category, publisher, publish_year, " +
+            "  CAST(NULL AS INTEGER) AS v1, CAST(NULL AS INTEGER) AS v2, CAST(NULL AS INTEGER) AS v3, " +
+            "  CAST(NULL AS INTEGER) AS v4, CAST(NULL AS INTEGER) AS v5, CAST(NULL AS INTEGER) AS v6, " +
+            "  CAST(NULL AS TEXT) AS c1, CAST(NULL AS TEXT) AS c2, CAST(NULL AS TEXT) AS c3, " +
+            "  CAST(NULL AS TEXT) AS c4, CAST(NULL AS TEXT) AS c5, CAST(NULL AS TEXT) AS c6, " +
+            "  CAST(NULL AS DOUBLE PRECISION) AS average_rating " +
+            "FROM page_book " +
+            "UNION ALL " +
+            "SELECT 'S', NULL, NULL, NULL, NULL, NULL, NULL, NULL, " +
+            "  s.rating_count, s.style_sum, s.content_sum, s.pleasantness_sum, s.originality_sum, s.edition_sum, " +
+            "  NULL, NULL, NULL, NULL, NULL, NULL, NULL " +
+            "FROM book_rating_stats s JOIN page_book p ON s.book_id = p.id " +
+            "UNION ALL " +
+            // Solo le valutazioni con almeno un commento diventano recensioni
+            "SELECT 'R', r.user_id, NULL, NULL, NULL, NULL, NULL, NULL, " +
+            "  r.style_rating, r.content_rating, r.pleasantness_rating, r.originality_rating, r.edition_rating, NULL, " +
+            "  r.style_comment, r.content_comment, r.pleasantness_comment, r.originality_comment, " +
+            "  r.edition_comment, r.general_comment, r.average_rating " +
+            "FROM book_ratings r JOIN page_book p ON r.book_id = p.id " +
+            "WHERE r.general_comment <> '' OR r.style_comment <> '' OR r.content_comment <> '' " +
+            "  OR r.pleasantness_comment <> '' OR r.originality_comment <> '' OR r.edition_comment <> '' " +
+            "UNION ALL " +
+            "SELECT 'M', user_id, id, title, authors, category, publisher, publish_year, " +
+            "  NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL " +
+            "FROM recommended " +
+            "UNION ALL " +
+            "SELECT 'L', NULL, id, title, authors, category, publisher, publish_year, " +
+            "  NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL " +
+            "FROM same_category";
+
+    /**
+     * Numero di parametri di {@link #PAGE_SQL}.
+     */
+    private static final int PAGE_SQL_PARAMETERS = 5;
+
+    private final Book book;
+    private final int ratingCount;
+    private final int[] ratingSums;
+    private final List<Review> reviews;
+    private final List<Comment> comments;
+    private final List<Recommendation> recommendations;
+    private final List<Book> similarBooks;
+
+    /**
+     * Crea una pagina di dettaglio.
+     *
+     * @param book Il libro, con il suo id
+     * @param ratingCount Numero di utenti che hanno valutato il libro
+     * @param ratingSums Somma dei voti di ciascuna caratteristica
+     * @param reviews Le valutazioni che contengono almeno un commento
+     * @param comments I commenti generali
+     * @param recommendations I libri consigliati dagli utenti
+     * @param similarBooks I libri della stessa categoria, se non ci sono consigli
+     */
+    public BookPage(Book book, int ratingCount, int[] ratingSums, List<Review> reviews, List<Comment> comments,
+                    List<Recommendation> recommendations, List<Book> similarBooks) {
+        this.book = book;
+        this.ratingCount = ratingCount;
+        this.ratingSums = ratingSums;
+        this.reviews = reviews;
+        this.comments = comments;
+        this.recommendations = recommendations;
+        this.similarBooks = similarBooks;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public int getRatingCount() {
+        return ratingCount;
+    }
+
+    public int[] getRatingSums() {
+        return ratingSums;
+    }
+
+    public List<Review> getReviews() {
+        return reviews;
+    }
+
+    public List<Comment> getComments() {
+        return comments;
+    }
+
+    public List<Recommendation> getRecommendations() {
+        return recommendations;
+    }
+
+    public List<Book> getSimilarBooks() {
+        return similarBooks;
+    }
+
+    /**
+     * Restituisce una copia della pagina con altri libri simili.
+     *
+     * @param similarBooks I libri simili
+     * @return La nuova pagina
+     */
+    public BookPage withSimilarBooks(List<Book> similarBooks) {
+        return new BookPage(book, ratingCount, ratingSums, reviews, comments, recommendations, similarBooks);
+    }
+
+    /**
+     * Carica dal database la pagina di dettaglio del libro con il titolo indicato.
+     * L'id del libro viene ricavato dal titolo tramite {@link TitleResolver}.
+     *
+     * @param conn Connessione al database
+     * @param title Il titolo del libro
+     * @return La pagina del libro, oppure null se nessun libro ha quel titolo
+     * @throws SQLException se si verifica un errore di accesso al database
+     * @see #load(Connection, int)
+     */
+    public static BookPage load(Connection conn, String title) throws SQLException {
+        Integer bookId = TitleResolver.getInstance().resolve(title);
+        return bookId != null ? load(conn, bookId) : null;
+    }
+
+    /**
+     * Carica dal database la pagina di dettaglio di un libro con un'unica query ({@link #PAGE_SQL}).
+     * Ogni riga del risultato è contrassegnata dalla colonna {@code kind}: i dati del libro (B),
+     * le statistiche delle valutazioni (S), le valutazioni con almeno un commento (R), i libri
+     * consigliati (M) e, in loro assenza, quelli della stessa categoria (L). Dalle valutazioni
+     * si ricavano sia le recensioni sia i commenti generali con il voto medio del loro autore,
+     * senza una query per ogni commento.
+     *
+     * @param conn Connessione al database
+     * @param bookId L'id del libro
+     * @return La pagina del libro, oppure null se il libro non esiste
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public static BookPage load(Connection conn, int bookId) throws SQLException {
+        Book book = null;
+        int ratingCount = 0;
+        int[] ratingSums = new int[RatingStats.DIMENSIONS];
+        List<Review> reviews = new ArrayList<>();
+        List<Comment> comments = new ArrayList<>();
+        List<Recommendation> recommendations = new ArrayList<>();
+        List<Book> similarBooks = new ArrayList<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(PAGE_SQL)) {
+            for (int i = 1; i <= PAGE_SQL_PARAMETERS; i++) {
+                pstmt.setInt(i, bookId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    switch (rs.getString("kind")) {
+                        case "B" -> book = BookService.mapBook(rs);
+                        case "S" -> {
+                            ratingCount = rs.getInt("v1");
+                            for (int i = 0; i < RatingStats.DIMENSIONS; i++) {
+                                ratingSums[i] = rs.getInt("v" + (2 + i));
+                            }
+                        }
+                        case "R" -> {
+                            String userId = rs.getString("user_id");
+                            int[] ratings = new int[RatingStats.DIMENSIONS];
+                            String[] dimensionComments = new String[RatingStats.DIMENSIONS];
+                            for (int i = 0; i < RatingStats.DIMENSIONS; i++) {
+                                ratings[i] = rs.getInt("v" + (1 + i));
+                                dimensionComments[i] = rs.getString("c" + (1 + i));
+                            }
+                            String generalComment = rs.getString("c6");
+                            reviews.add(new Review(userId, new BookRating(ratings, dimensionComments, generalComment)));
+                            if (generalComment != null && !generalComment.isEmpty()) {
+                                comments.add(new Comment(userId, generalComment, rs.getDouble("average_rating")));
+                            }
+                        }
+                        case "M" -> recommendations.add(new Recommendation(rs.getString("user_id"), BookService.mapBook(rs)));
+                        case "L" -> similarBooks.add(BookService.mapBook(rs));
+                        default -> {
+                            // Nessun altro tipo di riga
+                        }
+                    }
+                }
+            }
+        }
+
+        if (book == null) {
+            return null;
+        }
+        return new BookPage(book, ratingCount, ratingSums, reviews, comments, recommendations, similarBooks);
+    }
+
+    /**
+     * Valutazione di un utente che contiene almeno un commento.
+     */
+    public static class Review {
+        private final String userId;
+        private final BookRating rating;
+
+        public Review(String userId, BookRating rating) {
+            this.userId = userId;
+            this.rating = rating;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public BookRating getRating() {
+            return rating;
+        }
+    }
+
+    /**
+     * Commento generale di un utente, con la media dei voti che ha assegnato al libro.
+     */
+    public static class Comment {
+        private final String userId;
+        private final String text;
+        private final double userRating;
+
+        public Comment(String userId, String text, double userRating) {
+            this.userId = userId;
+            this.text = text;
+            this.userRating = userRating;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public double getUserRating() {
+            return userRating;
+        }
+    }
+
+    /**
+     * Libro consigliato da un utente.
+     */
+    public static class Recommendation {
+        private final String userId;
+        private final Book book;
+
+        public Recommendation(String userId, Book book) {
+            this.userId = userId;
+            this.book = book;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public Book getBook() {
+            return book;
+        }
+    }
+}
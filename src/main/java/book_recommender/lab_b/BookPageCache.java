@@ -0,0 +1,485 @@
+package book_recommender.lab_b;
+
+import java.util.*;
+
+/**
+ * Mantiene in memoria le pagine di dettaglio dei libri aperti più spesso ({@link BookPage}),
+ * indicizzate per id del libro, così che la loro visualizzazione non richieda una query.
+ *
+ * <p>Esistono due istanze: {@link #getInstance()} contiene le pagine lette dal database e
+ * {@link #getClientInstance()}, facoltativa e più piccola, quelle ricevute dal server.
+ * Le pagine sono condivise tra i chiamanti e non vanno modificate. La prima è attiva solo nel
+ * processo del server dei libri ({@link #enableDatabaseCache()}), che riceve tutte le modifiche
+ * e può quindi invalidare le pagine; un client che lavora direttamente sul database non vede
+ * le modifiche degli altri utenti e legge sempre le pagine dal database.</p>
+ *
+ * <p>La cache contiene al più {@code capacity} pagine, scelte con la politica W-TinyLFU:</p>
+ * <ul>
+ *   <li>una pagina nuova entra in una piccola <i>finestra</i> LRU (l'1% della capacità), che
+ *   accoglie i libri aperti più volte a breve distanza;</li>
+ *   <li>la pagina che esce dalla finestra entra nell'area <i>principale</i> LRU solo se il suo
+ *   libro è stato richiesto più spesso di quello che ne uscirebbe al suo posto. Le frequenze
+ *   sono stimate da un piccolo sketch count-min, dimezzato periodicamente perché conti le
+ *   richieste recenti. Così una scansione di libri aperti una sola volta non scaccia quelli più
+ *   popolari.</li>
+ * </ul>
+ *
+ * <p>La pagina di un libro viene invalidata appena vengono salvate le sue valutazioni
+ * ({@link RatingService}) o i consigli che partono da esso ({@link RecommendationService}).
+ * Una lettura dal database iniziata prima dell'invalidazione non viene memorizzata, perché
+ * potrebbe contenere i dati precedenti (vedi {@link #stamp()}). Le pagine scadono comunque dopo
+ * {@code ttlSeconds} secondi, a copertura delle modifiche eseguite da altri processi.</p>
+ *
+ * <p>Configurazione tramite proprietà di sistema:</p>
+ * <ul>
+ *   <li>{@code bookrecommender.bookPageCache.capacity} - pagine lette dal database (predefinito 1000 sul server, 0 altrove; 0 disattiva)</li>
+ *   <li>{@code bookrecommender.bookPageCache.ttlSeconds} - durata massima di una pagina (predefinito 300)</li>
+ *   <li>{@code bookrecommender.bookPageCache.clientCapacity} - pagine ricevute dal server (predefinito 0, disattivata)</li>
+ *   <li>{@code bookrecommender.bookPageCache.clientTtlSeconds} - durata massima di una pagina ricevuta (predefinito 30)</li>
+ * </ul>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class BookPageCache {
+
+    /**
+     * Numero predefinito di pagine lette dal database nel processo del server.
+     */
+    private static final int DEFAULT_CAPACITY = 1000;
+
+    /**
+     * Durata predefinita di una pagina letta dal database in secondi.
+     */
+    private static final long DEFAULT_TTL_SECONDS = 300;
+
+    /**
+     * Numero predefinito di pagine ricevute dal server: la cache del client è disattivata.
+     */
+    private static final int DEFAULT_CLIENT_CAPACITY = 0;
+
+    /**
+     * Durata predefinita di una pagina ricevuta dal server in secondi. È breve perché il client
+     * non viene informato delle modifiche degli altri utenti.
+     */
+    private static final long DEFAULT_CLIENT_TTL_SECONDS = 30;
+
+    /**
+     * Percentuale della capacità riservata alla finestra.
+     */
+    private static final int WINDOW_PERCENT = 1;
+
+    /**
+     * Numero di posizioni che registrano l'ultima invalidazione dei libri (vedi {@link #put}).
+     */
+    private static final int INVALIDATION_SLOTS = 1024;
+
+    /**
+     * Istanza Singleton per le pagine lette dal database.
+     */
+    private static BookPageCache instance;
+
+    /**
+     * Istanza Singleton per le pagine ricevute dal server.
+     */
+    private static BookPageCache clientInstance;
+
+    /**
+     * Flag che indica se la cache delle pagine lette dal database è attiva in questo processo.
+     */
+    private static boolean databaseCacheEnabled = false;
+
+    /** Numero massimo di pagine */
+    private final int capacity;
+    /** Numero massimo di pagine nella finestra */
+    private final int windowCapacity;
+    /** Numero massimo di pagine nell'area principale */
+    private final int mainCapacity;
+    /** Durata di una pagina in millisecondi */
+    private final long ttlMillis;
+
+    /** Pagine entrate di recente, dalla meno recente */
+    private final LinkedHashMap<Integer, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    /** Pagine ammesse dalla finestra, dalla meno recente */
+    private final LinkedHashMap<Integer, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+    /** Id dei libri in cache per titolo */
+    private final Map<String, Integer> titles = new HashMap<>();
+    /** Frequenza stimata delle richieste di ciascun libro */
+    private final FrequencySketch sketch;
+
+    /** Contatore incrementato a ogni invalidazione */
+    private long generation = 0;
+    /** Valore di {@link #generation} all'ultima invalidazione dei libri di ciascuna posizione */
+    private final long[] invalidatedAt = new long[INVALIDATION_SLOTS];
+    /** Valore di {@link #generation} all'ultima invalidazione di tutte le pagine */
+    private long allInvalidatedAt = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    /**
+     * Costruttore privato per impedire l'istanziazione diretta (pattern Singleton).
+     *
+     * @param capacity Numero massimo di pagine, 0 per disattivare la cache
+     * @param ttlSeconds Durata massima di una pagina in secondi
+     */
+    private BookPageCache(int capacity, long ttlSeconds) {
+        this.capacity = Math.max(0, capacity);
+        this.windowCapacity = Math.max(1, this.capacity * WINDOW_PERCENT / 100);
+        this.mainCapacity = Math.max(0, this.capacity - windowCapacity);
+        this.ttlMillis = ttlSeconds * 1000;
+        this.sketch = new FrequencySketch(this.capacity);
+    }
+
+    /**
+     * Ottiene l'istanza singleton per le pagine lette dal database.
+     *
+     * @return l'istanza singleton
+     */
+    public static synchronized BookPageCache getInstance() {
+        if (instance == null) {
+            instance = new BookPageCache(
+                    Integer.getInteger("bookrecommender.bookPageCache.capacity",
+                            databaseCacheEnabled ? DEFAULT_CAPACITY : 0),
+                    Long.getLong("bookrecommender.bookPageCache.ttlSeconds", DEFAULT_TTL_SECONDS));
+        }
+        return instance;
+    }
+
+    /**
+     * Attiva la cache delle pagine lette dal database. Va chiamato solo dal processo del server
+     * dei libri, prima di servire le richieste: la cache esistente, vuota perché disattivata,
+     * viene sostituita da una con la capacità configurata.
+     */
+    public static synchronized void enableDatabaseCache() {
+        if (!databaseCacheEnabled) {
+            databaseCacheEnabled = true;
+            instance = null;
+        }
+    }
+
+    /**
+     * Ottiene l'istanza singleton per le pagine ricevute dal server dei libri.
+     *
+     * @return l'istanza singleton
+     */
+    public static synchronized BookPageCache getClientInstance() {
+        if (clientInstance == null) {
+            clientInstance = new BookPageCache(
+                    Integer.getInteger("bookrecommender.bookPageCache.clientCapacity", DEFAULT_CLIENT_CAPACITY),
+                    Long.getLong("bookrecommender.bookPageCache.clientTtlSeconds", DEFAULT_CLIENT_TTL_SECONDS));
+        }
+        return clientInstance;
+    }
+
+    /**
+     * @return true se la cache può contenere pagine
+     */
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * Restituisce la pagina di un libro, se presente e non scaduta.
+     *
+     * @param bookId L'id del libro
+     * @return La pagina, oppure null se va letta
+     */
+    public synchronized BookPage get(int bookId) {
+        if (capacity == 0) {
+            return null;
+        }
+        sketch.increment(bookId);
+        Entry entry = find(bookId);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.page;
+    }
+
+    /**
+     * Restituisce la pagina del libro con il titolo indicato, se presente e non scaduta.
+     *
+     * @param title Il titolo del libro
+     * @return La pagina, oppure null se va letta
+     */
+    public synchronized BookPage get(String title) {
+        if (capacity == 0) {
+            return null;
+        }
+        Integer bookId = titles.get(title);
+        if (bookId == null) {
+            misses++;
+            return null;
+        }
+        return get(bookId);
+    }
+
+    /**
+     * Restituisce il valore da passare a {@link #put} per la pagina che si sta per leggere.
+     *
+     * @return Il numero di invalidazioni avvenute finora
+     */
+    public synchronized long stamp() {
+        return generation;
+    }
+
+    /**
+     * Memorizza una pagina appena letta. La pagina viene scartata se il suo libro è stato
+     * invalidato dopo {@code stamp}, perché la lettura potrebbe precedere la modifica.
+     *
+     * @param page La pagina
+     * @param stamp Il valore di {@link #stamp()} ottenuto prima della lettura
+     */
+    public synchronized void put(BookPage page, long stamp) {
+        if (capacity == 0 || page == null) {
+            return;
+        }
+        int bookId = page.getBook().getId();
+        if (invalidatedAt[slot(bookId)] > stamp || allInvalidatedAt > stamp) {
+            return;
+        }
+
+        Entry entry = new Entry(page, System.currentTimeMillis() + ttlMillis);
+        titles.put(page.getBook().getTitle(), bookId);
+        if (main.containsKey(bookId)) {
+            main.put(bookId, entry);
+            return;
+        }
+        window.put(bookId, entry);
+        if (window.size() <= windowCapacity) {
+            return;
+        }
+
+        // La pagina meno recente della finestra passa all'area principale se ha spazio
+        // o se il suo libro è più richiesto di quello che dovrebbe uscire
+        Map.Entry<Integer, Entry> candidate = removeEldest(window);
+        if (main.size() < mainCapacity) {
+            main.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        if (main.isEmpty()) {
+            evicted(candidate.getValue());
+            return;
+        }
+        Map.Entry<Integer, Entry> victim = main.entrySet().iterator().next();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+            main.remove(victim.getKey());
+            main.put(candidate.getKey(), candidate.getValue());
+            evicted(victim.getValue());
+        } else {
+            evicted(candidate.getValue());
+        }
+    }
+
+    /**
+     * Scarta la pagina di un libro dopo una modifica delle sue valutazioni o dei suoi consigli.
+     *
+     * @param bookId L'id del libro
+     */
+    public synchronized void invalidate(int bookId) {
+        generation++;
+        invalidatedAt[slot(bookId)] = generation;
+        if (remove(bookId)) {
+            invalidations++;
+        }
+    }
+
+    /**
+     * Scarta la pagina del libro con il titolo indicato.
+     *
+     * @param title Il titolo del libro
+     */
+    public synchronized void invalidate(String title) {
+        Integer bookId = titles.get(title);
+        if (bookId != null) {
+            invalidate(bookId);
+        } else {
+            // Il libro non è in cache: basta scartare le letture in corso
+            generation++;
+            allInvalidatedAt = generation;
+        }
+    }
+
+    /**
+     * Scarta tutte le pagine, ad esempio dopo un'importazione o l'eliminazione delle tabelle.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        allInvalidatedAt = generation;
+        invalidations += window.size() + main.size();
+        window.clear();
+        main.clear();
+        titles.clear();
+    }
+
+    /**
+     * @return Il numero di pagine in cache
+     */
+    public synchronized int size() {
+        return window.size() + main.size();
+    }
+
+    /**
+     * @return Il numero di richieste servite dalla cache
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return Il numero di richieste per cui la pagina è stata letta
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return Il numero di pagine uscite per fare posto ad altre
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return Il numero di pagine scartate perché modificate
+     */
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    /**
+     * Cerca la pagina di un libro, scartandola se è scaduta.
+     */
+    private Entry find(int bookId) {
+        Entry entry = window.get(bookId);
+        if (entry == null) {
+            entry = main.get(bookId);
+        }
+        if (entry != null && System.currentTimeMillis() >= entry.expiresAt) {
+            remove(bookId);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Rimuove la pagina di un libro.
+     *
+     * @return true se la pagina era presente
+     */
+    private boolean remove(int bookId) {
+        Entry entry = window.remove(bookId);
+        if (entry == null) {
+            entry = main.remove(bookId);
+        }
+        if (entry == null) {
+            return false;
+        }
+        titles.remove(entry.page.getBook().getTitle(), bookId);
+        return true;
+    }
+
+    /**
+     * Registra l'uscita di una pagina per mancanza di spazio.
+     */
+    private void evicted(Entry entry) {
+        Book book = entry.page.getBook();
+        titles.remove(book.getTitle(), book.getId());
+        evictions++;
+    }
+
+    /**
+     * Rimuove e restituisce la pagina meno recente.
+     */
+    private static Map.Entry<Integer, Entry> removeEldest(LinkedHashMap<Integer, Entry> pages) {
+        Iterator<Map.Entry<Integer, Entry>> iterator = pages.entrySet().iterator();
+        Map.Entry<Integer, Entry> eldest = iterator.next();
+        Map.Entry<Integer, Entry> removed = Map.entry(eldest.getKey(), eldest.getValue());
+        iterator.remove();
+        return removed;
+    }
+
+    /**
+     * Posizione che registra l'ultima invalidazione di un libro.
+     */
+    private static int slot(int bookId) {
+        return Math.floorMod(bookId * 0x9E3779B9, INVALIDATION_SLOTS);
+    }
+
+    /**
+     * Pagina in cache.
+     */
+    private static class Entry {
+        private final BookPage page;
+        /** Istante oltre il quale la pagina va riletta */
+        private final long expiresAt;
+
+        Entry(BookPage page, long expiresAt) {
+            this.page = page;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Stima della frequenza delle richieste di ciascun libro (sketch count-min): ogni libro
+     * incrementa un contatore in ciascuna riga e la stima è il minimo dei suoi contatori.
+     * Quando il numero di richieste registrate raggiunge dieci volte la capacità della cache
+     * tutti i contatori vengono dimezzati, così le frequenze passate perdono peso.
+     */
+    private static class FrequencySketch {
+        /** Numero di righe */
+        private static final int DEPTH = 4;
+        /** Valore massimo di un contatore */
+        private static final int MAX_COUNT = 15;
+        /** Moltiplicatori che distribuiscono gli id in modo diverso in ogni riga */
+        private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+        private final int[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions = 0;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1);
+            this.counters = new int[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = Math.max(1, capacity) * 10;
+        }
+
+        void increment(int bookId) {
+            for (int i = 0; i < DEPTH; i++) {
+                int[] row = counters[i];
+                int index = index(bookId, i);
+                if (row[index] < MAX_COUNT) {
+                    row[index]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                for (int[] row : counters) {
+                    for (int j = 0; j < row.length; j++) {
+                        row[j] >>>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int bookId) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, counters[i][index(bookId, i)]);
+            }
+            return frequency;
+        }
+
+        private int index(int bookId, int row) {
+            int hash = bookId * SEEDS[row];
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package book_recommender.lab_b;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Definisce il protocollo binario con cui i client dialogano con il server dei libri.
+ *
+ * <p>Ogni messaggio è un frame composto da una lunghezza di 4 byte seguita dal corpo:</p>
+ * <ul>
+ *   <li>richiesta: id della richiesta (int), codice dell'operazione (byte), parametri;</li>
+ *   <li>risposta: id della richiesta a cui risponde (int), esito (byte), risultato oppure
+ *   messaggio di errore.</li>
+ * </ul>
+ *
+ * <p>Ogni operazione corrisponde ai dati di una schermata del client, così una schermata
+ * viene caricata con un solo scambio di messaggi invece di più query JDBC. Gli interi sono
+ * big-endian, le stringhe sono codificate in UTF-8 precedute dalla lunghezza in byte
+ * (-1 per null) e le liste sono precedute dal numero di elementi.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class BookProtocol {
+
+    /**
+     * Versione del protocollo, restituita dall'operazione {@link #PING}.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Dimensione massima del corpo di un frame; i frame più grandi chiudono la connessione.
+     */
+    public static final int MAX_FRAME_LENGTH = Integer.getInteger("bookrecommender.server.maxFrameBytes", 16 * 1024 * 1024);
+
+    /** Byte minimi di una stringa serializzata (solo la lunghezza) */
+    private static final int STRING_MIN_BYTES = Integer.BYTES;
+    /** Byte minimi di un libro serializzato: id, quattro stringhe e anno */
+    private static final int BOOK_MIN_BYTES = 2 * Integer.BYTES + 4 * STRING_MIN_BYTES;
+
+    /** Verifica la connessione e la versione del protocollo */
+    public static final byte PING = 0;
+    /** Pagina di risultati di una ricerca */
+    public static final byte SEARCH_PAGE = 1;
+    /** Pagina di dettaglio di un libro */
+    public static final byte BOOK_PAGE = 2;
+    /** Valutazione espressa da un utente per un libro */
+    public static final byte GET_RATING = 3;
+    /** Salvataggio della valutazione di un utente */
+    public static final byte SAVE_RATING = 4;
+    /** Nomi delle librerie di un utente */
+    public static final byte GET_LIBRARIES = 5;
+    /** Titoli dei libri contenuti in una libreria */
+    public static final byte GET_LIBRARY_BOOKS = 6;
+    /** Creazione di una libreria vuota */
+    public static final byte CREATE_LIBRARY = 7;
+    /** Sostituzione dei libri di una libreria */
+    public static final byte SAVE_LIBRARY_BOOKS = 8;
+    /** Titoli consigliati da un utente per un libro */
+    public static final byte GET_RECOMMENDATIONS = 9;
+    /** Sostituzione dei libri consigliati da un utente per un libro */
+    public static final byte SAVE_RECOMMENDATIONS = 10;
+
+    /** Esito di una richiesta eseguita correttamente */
+    public static final byte STATUS_OK = 0;
+    /** Esito di una richiesta fallita; il corpo contiene il messaggio di errore */
+    public static final byte STATUS_ERROR = 1;
+
+    /**
+     * Costruttore privato: la classe contiene solo costanti e metodi statici.
+     */
+    private BookProtocol() {
+    }
+
+    /**
+     * Legge un frame e ne restituisce il corpo.
+     *
+     * @param in Flusso da cui leggere
+     * @return Il corpo del frame
+     * @throws EOFException se il flusso termina prima dell'inizio del frame
+     * @throws IOException se la lunghezza non è valida o il flusso termina a metà frame
+     */
+    public static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        checkFrameLength(length);
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return body;
+    }
+
+    /**
+     * Scrive un frame con il corpo indicato. Il flusso non viene svuotato.
+     *
+     * @param out Flusso su cui scrivere
+     * @param body Il corpo del frame
+     * @throws IOException se si verifica un errore di scrittura
+     */
+    public static void writeFrame(DataOutputStream out, byte[] body) throws IOException {
+        checkFrameLength(body.length);
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    /**
+     * Verifica che la lunghezza dichiarata di un frame sia accettabile.
+     *
+     * @param length La lunghezza del corpo
+     * @throws IOException se la lunghezza è inferiore a quella minima o supera {@link #MAX_FRAME_LENGTH}
+     */
+    public static void checkFrameLength(int length) throws IOException {
+        if (length < 5 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Lunghezza del frame non valida: " + length);
+        }
+    }
+
+    /**
+     * Crea il corpo di una risposta di errore.
+     *
+     * @param requestId L'id della richiesta fallita
+     * @param message Il messaggio di errore
+     * @return Il corpo della risposta
+     */
+    public static byte[] errorResponse(int requestId, String message) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(requestId);
+            out.writeByte(STATUS_ERROR);
+            writeString(out, message == null ? "Errore del server" : message);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Impossibile su un flusso in memoria
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Scrive una stringa: lunghezza in byte seguita dai byte UTF-8, oppure -1 per null.
+     *
+     * @param out Flusso su cui scrivere
+     * @param value La stringa, che può essere null
+     * @throws IOException se si verifica un errore di scrittura
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Legge una stringa scritta da {@link #writeString}.
+     *
+     * @param in Flusso da cui leggere
+     * @return La stringa, oppure null
+     * @throws IOException se la lunghezza non è valida o il flusso termina prima della fine
+     */
+    public static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > remaining(in)) {
+            throw new IOException("Lunghezza della stringa non valida: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Scrive una lista di stringhe.
+     *
+     * @param out Flusso su cui scrivere
+     * @param values Le stringhe
+     * @throws IOException se si verifica un errore di scrittura
+     */
+    public static void writeStrings(DataOutput out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    /**
+     * Legge una lista di stringhe scritta da {@link #writeStrings}.
+     *
+     * @param in Flusso da cui leggere
+     * @return Le stringhe
+     * @throws IOException se i dati non sono validi o il flusso termina prima della fine
+     */
+    public static List<String> readStrings(DataInput in) throws IOException {
+        int count = readCount(in, STRING_MIN_BYTES);
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    /**
+     * Scrive un libro.
+     *
+     * @param out Flusso su cui scrivere
+     * @param book Il libro
+     * @throws IOException se si verifica un errore di scrittura
+     */
+    public static void writeBook(DataOutput out, Book book) throws IOException {
+        out.writeInt(book.getId());
+        writeString(out, book.getTitle());
+        writeString(out, book.getAuthors());
+        writeString(out, book.getCategory());
+        writeString(out, book.getPublisher());
+        out.writeInt(book.getPublishYear());
+    }
+
+    /**
+     * Legge un libro scritto da {@link #writeBook}.
+     *
+     * @param in Flusso da cui leggere
+     * @return Il libro
+     * @throws IOException se i dati non sono validi o il flusso termina prima della fine
+     */
+    public static Book readBook(DataInput in) throws IOException {
+        return new Book(in.readInt(), readString(in), readString(in), readString(in), readString(in), in.readInt());
+    }
+
+    /**
+     * Scrive una lista di libri.
+     *
+     * @param out Flusso su cui scrivere
+     * @param books I libri
+     * @throws IOException se si verifica un errore di scrittura
+     */
+    public static void writeBooks(DataOutput out, List<Book> books) throws IOException {
+        out.writeInt(books.size());
+        for (Book book : books) {
+            writeBook(out, book);
+        }
+    }
+
+    /**
+     * Legge una lista di libri scritta da {@link #writeBooks}.
+     *
+     * @param in Flusso da cui leggere
+     * @return I libri
+     * @throws IOException se i dati non sono validi o il flusso termina prima della fine
+     */
+    public static List<Book> readBooks(DataInput in) throws IOException {
+        int count = readCount(in, BOOK_MIN_BYTES);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            books.add(readBook(in));
+        }
+        return books;
+    }
+
+    /**
+     * Scrive i criteri di una ricerca.
+     *
+     * @param out Flusso su cui scrivere
+     * @param query I criteri della ricerca
+     * @throws IOException se si verifica un errore di scrittura
+     */
+    public static void writeQuery(DataOutput out, BookQuery query) throws IOException {
+        out.writeByte(query.getMode().ordinal());
+        writeString(out, query.getTerm());
+        out.writeInt(query.getYear());
+    }
+
+    /**
+     * Legge i criteri di una ricerca scritti da {@link #writeQuery}.
+     *
+     * @param in Flusso da cui leggere
+     * @return I criteri della ricerca
+     * @throws IOException se la modalità non è valida o il flusso termina prima della fine
+     */
+    public static BookQuery readQuery(DataInput in) throws IOException {
+        int mode = in.readUnsignedByte();
+        String term = readString(in);
+        int year = in.readInt();
+        return switch (mode) {
+            case 0 -> BookQuery.byTitle(term);
+            case 1 -> BookQuery.byAuthor(term);
+            case 2 -> BookQuery.byAuthorAndYear(term, year);
+            default -> throw new IOException("Modalità di ricerca sconosciuta: " + mode);
+        };
+    }
+
+    /**
+     * Scrive un cursore di paginazione, che può essere null.
+     *
+     * @param out Flusso su cui scrivere
+     * @param cursor Il cursore, oppure null per la prima pagina
+     * @throws IOException se si verifica un errore di scrittura
+     */
+    public static void writeCursor(DataOutput out, SearchCursor cursor) throws IOException {
+        out.writeBoolean(cursor != null);
+        if (cursor != null) {
+            writeString(out, cursor.getTitle());
+            out.writeInt(cursor.getId());
+        }
+    }
+
+    /**
+     * Legge un cursore scritto da {@link #writeCursor}.
+     *
+     * @param in Flusso da cui leggere
+     * @return Il cursore, oppure null
+     * @throws IOException se i dati non sono validi o il flusso termina prima della fine
+     */
+    public static SearchCursor readCursor(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new SearchCursor(readString(in), in.readInt());
+    }
+
+    /**
+     * Scrive una pagina di risultati di ricerca.
+     *
+     * @param out Flusso su cui scrivere
+     * @param page La pagina di risultati
+     * @throws IOException se si verifica un errore di scrittura
+     */
+    public static void writeSearchPage(DataOutput out, SearchPage page) throws IOException {
+        writeBooks(out, page.getBooks());
+        writeCursor(out, page.getNextCursor());
+    }
+
+    /**
+     * Legge una pagina di risultati scritta da {@link #writeSearchPage}.
+     *
+     * @param in Flusso da cui leggere
+     * @return La pagina di risultati
+     * @throws IOException se i dati non sono validi o il flusso termina prima della fine
+     */
+    public static SearchPage readSearchPage(DataInput in) throws IOException {
+        return new SearchPage(readBooks(in), readCursor(in));
+    }
+
+    /**
+     * Scrive una valutazione, che può essere null.
+     *
+     * @param out Flusso su cui scrivere
+     * @param rating La valutazione, oppure null
+     * @throws IOException se si verifica un errore di scrittura
+     */
+    public static void writeRating(DataOutput out, BookRating rating) throws IOException {
+        out.writeBoolean(rating != null);
+        if (rating == null) {
+            return;
+        }
+        for (int value : rating.getRatings()) {
+            out.writeByte(value);
+        }
+        for (String comment : rating.getComments()) {
+            writeString(out, comment);
+        }
+        writeString(out, rating.getGeneralComment());
+    }
+
+    /**
+     * Legge una valutazione scritta da {@link #writeRating}.
+     *
+     * @param in Flusso da cui leggere
+     * @return La valutazione, oppure null
+     * @throws IOException se i dati non sono validi o il flusso termina prima della fine
+     */
+    public static BookRating readRating(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int[] ratings = new int[RatingStats.DIMENSIONS];
+        for (int i = 0; i < ratings.length; i++) {
+            ratings[i] = in.readUnsignedByte();
+        }
+        String[] comments = new String[RatingStats.DIMENSIONS];
+        for (int i = 0; i < comments.length; i++) {
+            comments[i] = readString(in);
+        }
+        return new BookRating(ratings, comments, readString(in));
+    }
+
+    /**
+     * Scrive la pagina di dettaglio di un libro, che può essere null se il libro non esiste.
+     *
+     * @param out Flusso su cui scrivere
+     * @param page La pagina del libro, oppure null
+     * @throws IOException se si verifica un errore di scrittura
+     */
+    public static void writeBookPage(DataOutput out, BookPage page) throws IOException {
+        out.writeBoolean(page != null);
+        if (page == null) {
+            return;
+        }
+        writeBook(out, page.getBook());
+        out.writeInt(page.getRatingCount());
+        for (int sum : page.getRatingSums()) {
+            out.writeInt(sum);
+        }
+
+        out.writeInt(page.getReviews().size());
+        for (BookPage.Review review : page.getReviews()) {
+            writeString(out, review.getUserId());
+            writeRating(out, review.getRating());
+        }
+
+        out.writeInt(page.getComments().size());
+        for (BookPage.Comment comment : page.getComments()) {
+            writeString(out, comment.getUserId());
+            writeString(out, comment.getText());
+            out.writeDouble(comment.getUserRating());
+        }
+
+        out.writeInt(page.getRecommendations().size());
+        for (BookPage.Recommendation recommendation : page.getRecommendations()) {
+            writeString(out, recommendation.getUserId());
+            writeBook(out, recommendation.getBook());
+        }
+
+        writeBooks(out, page.getSimilarBooks());
+    }
+
+    /**
+     * Legge la pagina di dettaglio scritta da {@link #writeBookPage}.
+     *
+     * @param in Flusso da cui leggere
+     * @return La pagina del libro, oppure null
+     * @throws IOException se i dati non sono validi o il flusso termina prima della fine
+     */
+    public static BookPage readBookPage(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        Book book = readBook(in);
+        int ratingCount = in.readInt();
+        int[] sums = new int[RatingStats.DIMENSIONS];
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = in.readInt();
+        }
+
+        int count = readCount(in, STRING_MIN_BYTES + 1);
+        List<BookPage.Review> reviews = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            reviews.add(new BookPage.Review(readString(in), readRating(in)));
+        }
+
+        count = readCount(in, 2 * STRING_MIN_BYTES + Double.BYTES);
+        List<BookPage.Comment> comments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            comments.add(new BookPage.Comment(readString(in), readString(in), in.readDouble()));
+        }
+
+        count = readCount(in, STRING_MIN_BYTES + BOOK_MIN_BYTES);
+        List<BookPage.Recommendation> recommendations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            recommendations.add(new BookPage.Recommendation(readString(in), readBook(in)));
+        }
+
+        return new BookPage(book, ratingCount, sums, reviews, comments, recommendations, readBooks(in));
+    }
+
+    /**
+     * Legge il numero di elementi di una lista, rifiutando valori negativi o più grandi di
+     * quanti elementi possono stare nei byte rimasti del frame. Il conteggio arriva dall'altro
+     * capo della connessione, quindi le liste non vengono dimensionate in anticipo su di esso.
+     *
+     * @param in Flusso da cui leggere
+     * @param minBytes Dimensione minima di un elemento serializzato
+     * @return Il numero di elementi
+     * @throws IOException se il numero non è valido
+     */
+    private static int readCount(DataInput in, int minBytes) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > remaining(in) / minBytes) {
+            throw new IOException("Numero di elementi non valido: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Restituisce i byte ancora da leggere. I frame vengono sempre decodificati da un array
+     * già in memoria, quindi {@link InputStream#available()} è esatto; per gli altri flussi si
+     * usa il limite di {@link #MAX_FRAME_LENGTH}.
+     *
+     * @param in Flusso da cui leggere
+     * @return Il numero di byte ancora da leggere
+     * @throws IOException se si verifica un errore di lettura
+     */
+    private static int remaining(DataInput in) throws IOException {
+        if (in instanceof InputStream stream) {
+            return stream.available();
+        }
+        return MAX_FRAME_LENGTH;
+    }
+}
@@ -0,0 +1,122 @@
+package book_recommender.lab_b;
+
+/**
+ * Criteri di una ricerca di libri: il tipo di ricerca, il testo cercato e,
+ * per la ricerca per autore e anno, l'anno di pubblicazione.
+ *
+ * <p>Viene utilizzata dalle ricerche paginate e in streaming di {@link BookService},
+ * che devono ripetere la stessa ricerca più volte (una per pagina).</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class BookQuery {
+
+    /**
+     * Tipologie di ricerca supportate.
+     */
+    public enum Mode {
+        /** Ricerca parziale sul titolo */
+        TITLE,
+        /** Ricerca parziale sugli autori */
+        AUTHOR,
+        /** Ricerca parziale sugli autori con anno di pubblicazione esatto */
+        AUTHOR_YEAR
+    }
+
+    /** Tipo di ricerca */
+    private final Mode mode;
+    /** Testo cercato */
+    private final String term;
+    /** Anno di pubblicazione (usato solo per {@link Mode#AUTHOR_YEAR}) */
+    private final int year;
+
+    /**
+     * Costruttore privato: le istanze si ottengono con i metodi statici di creazione.
+     *
+     * @param mode Tipo di ricerca
+     * @param term Testo cercato
+     * @param year Anno di pubblicazione
+     */
+    private BookQuery(Mode mode, String term, int year) {
+        this.mode = mode;
+        this.term = term == null ? "" : term;
+        this.year = year;
+    }
+
+    /**
+     * Crea una ricerca per titolo.
+     *
+     * @param title Titolo o parte del titolo da cercare
+     * @return La ricerca
+     */
+    public static BookQuery byTitle(String title) {
+        return new BookQuery(Mode.TITLE, title, 0);
+    }
+
+    /**
+     * Crea una ricerca per autore.
+     *
+     * @param author Nome o parte del nome dell'autore da cercare
+     * @return La ricerca
+     */
+    public static BookQuery byAuthor(String author) {
+        return new BookQuery(Mode.AUTHOR, author, 0);
+    }
+
+    /**
+     * Crea una ricerca per autore e anno di pubblicazione.
+     *
+     * @param author Nome o parte del nome dell'autore da cercare
+     * @param year Anno esatto di pubblicazione
+     * @return La ricerca
+     */
+    public static BookQuery byAuthorAndYear(String author, int year) {
+        return new BookQuery(Mode.AUTHOR_YEAR, author, year);
+    }
+
+    /**
+     * @return il tipo di ricerca
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return il testo cercato
+     */
+    public String getTerm() {
+        return term;
+    }
+
+    /**
+     * @return l'anno di pubblicazione (significativo solo per {@link Mode#AUTHOR_YEAR})
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Verifica se due ricerche hanno gli stessi criteri, ad esempio per riutilizzarne i risultati.
+     *
+     * @param obj Oggetto da confrontare con questa ricerca
+     * @return true se le ricerche sono uguali, false altrimenti
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        BookQuery other = (BookQuery) obj;
+        return mode == other.mode && year == other.year && term.equals(other.term);
+    }
+
+    /**
+     * Genera un codice hash coerente con il metodo equals().
+     *
+     * @return Valore hash calcolato
+     */
+    @Override
+    public int hashCode() {
+        return 31 * (31 * mode.hashCode() + term.hashCode()) + year;
+    }
+}
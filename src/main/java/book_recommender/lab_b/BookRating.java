@@ -0,0 +1,49 @@
+package book_recommender.lab_b;
+
+/**
+ * Valutazione di un libro espressa da un utente: un voto da 1 a 5 e un commento per ciascuna
+ * caratteristica (stile, contenuto, gradevolezza, originalità, edizione) e un commento finale.
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class BookRating {
+
+    private final int[] ratings;
+    private final String[] comments;
+    private final String generalComment;
+
+    /**
+     * Crea una valutazione.
+     *
+     * @param ratings I voti delle cinque caratteristiche, nell'ordine di {@link RatingStats}
+     * @param comments I commenti delle cinque caratteristiche, nello stesso ordine
+     * @param generalComment Il commento finale
+     */
+    public BookRating(int[] ratings, String[] comments, String generalComment) {
+        this.ratings = ratings;
+        this.comments = comments;
+        this.generalComment = generalComment;
+    }
+
+    /**
+     * @return I voti delle cinque caratteristiche
+     */
+    public int[] getRatings() {
+        return ratings;
+    }
+
+    /**
+     * @return I commenti delle cinque caratteristiche (possono essere null o vuoti)
+     */
+    public String[] getComments() {
+        return comments;
+    }
+
+    /**
+     * @return Il commento finale (può essere null o vuoto)
+     */
+    public String getGeneralComment() {
+        return generalComment;
+    }
+}
@@ -0,0 +1,120 @@
+package book_recommender.lab_b;
+
+import java.io.*;
+import java.sql.SQLException;
+
+/**
+ * Esegue sul server le richieste del protocollo {@link BookProtocol}.
+ *
+ * <p>Ogni richiesta viene decodificata, eseguita direttamente sul database tramite i servizi
+ * di accesso ai dati e trasformata nel corpo della risposta. Gli errori di database e le
+ * richieste malformate producono una risposta di errore, così la connessione resta utilizzabile.
+ * La classe non conosce il trasporto: riceve e restituisce il corpo dei frame.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class BookRequestHandler {
+
+    /**
+     * Dimensione massima di una pagina di risultati richiesta da un client.
+     */
+    private static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private BookRequestHandler() {
+    }
+
+    /**
+     * Esegue una richiesta.
+     *
+     * @param request Il corpo del frame di richiesta
+     * @return Il corpo del frame di risposta
+     */
+    public static byte[] handle(byte[] request) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(request));
+        int requestId = 0;
+        try {
+            requestId = in.readInt();
+            byte operation = in.readByte();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(requestId);
+            out.writeByte(BookProtocol.STATUS_OK);
+            execute(operation, in, out);
+            return bytes.toByteArray();
+        } catch (SQLException e) {
+            return BookProtocol.errorResponse(requestId, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            return BookProtocol.errorResponse(requestId, "Richiesta non valida: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Legge i parametri dell'operazione, la esegue e scrive il risultato.
+     *
+     * @param operation Il codice dell'operazione
+     * @param in Flusso posizionato sui parametri
+     * @param out Flusso su cui scrivere il risultato
+     * @throws IOException se la richiesta è malformata
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    private static void execute(byte operation, DataInputStream in, DataOutputStream out) throws IOException, SQLException {
+        switch (operation) {
+            case BookProtocol.PING -> out.writeInt(BookProtocol.VERSION);
+            case BookProtocol.SEARCH_PAGE -> {
+                BookQuery query = BookProtocol.readQuery(in);
+                SearchCursor after = BookProtocol.readCursor(in);
+                int pageSize = Math.max(1, Math.min(in.readInt(), MAX_PAGE_SIZE));
+                BookProtocol.writeSearchPage(out, BookService.queryPage(query, after, pageSize, null));
+            }
+            case BookProtocol.BOOK_PAGE ->
+                    BookProtocol.writeBookPage(out, BookService.queryBookPage(BookProtocol.readString(in)));
+            case BookProtocol.GET_RATING -> {
+                String userId = BookProtocol.readString(in);
+                String title = BookProtocol.readString(in);
+                BookProtocol.writeRating(out, RatingService.queryRating(userId, title));
+            }
+            case BookProtocol.SAVE_RATING -> {
+                String userId = BookProtocol.readString(in);
+                String title = BookProtocol.readString(in);
+                BookRating rating = BookProtocol.readRating(in);
+                if (rating == null) {
+                    throw new IOException("Valutazione mancante");
+                }
+                RatingService.storeRating(userId, title, rating);
+            }
+            case BookProtocol.GET_LIBRARIES ->
+                    BookProtocol.writeStrings(out, LibraryService.queryLibraries(BookProtocol.readString(in)));
+            case BookProtocol.GET_LIBRARY_BOOKS -> {
+                String userId = BookProtocol.readString(in);
+                String libraryName = BookProtocol.readString(in);
+                BookProtocol.writeStrings(out, LibraryService.queryLibraryBooks(userId, libraryName));
+            }
+            case BookProtocol.CREATE_LIBRARY -> {
+                String userId = BookProtocol.readString(in);
+                String libraryName = BookProtocol.readString(in);
+                out.writeBoolean(LibraryService.insertLibrary(userId, libraryName));
+            }
+            case BookProtocol.SAVE_LIBRARY_BOOKS -> {
+                String userId = BookProtocol.readString(in);
+                String libraryName = BookProtocol.readString(in);
+                LibraryService.storeLibraryBooks(userId, libraryName, BookProtocol.readStrings(in));
+            }
+            case BookProtocol.GET_RECOMMENDATIONS -> {
+                String userId = BookProtocol.readString(in);
+                String sourceTitle = BookProtocol.readString(in);
+                BookProtocol.writeStrings(out, RecommendationService.queryRecommendations(userId, sourceTitle));
+            }
+            case BookProtocol.SAVE_RECOMMENDATIONS -> {
+                String userId = BookProtocol.readString(in);
+                String sourceTitle = BookProtocol.readString(in);
+                RecommendationService.storeRecommendations(userId, sourceTitle, BookProtocol.readStrings(in));
+            }
+            default -> throw new IOException("Operazione sconosciuta: " + operation);
+        }
+    }
+}
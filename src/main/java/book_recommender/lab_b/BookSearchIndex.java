@@ -0,0 +1,571 @@
+package book_recommender.lab_b;
+
+import java.sql.*;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Indice invertito in memoria per la ricerca dei libri per titolo e per autore.
+ *
+ * <p>Il catalogo viene letto una sola volta dalla tabella books all'avvio del client.
+ * Titoli e autori vengono portati in minuscolo e suddivisi in trigrammi (sequenze di tre
+ * caratteri consecutivi), ciascuno associato a una lista di posting: un array ordinato con le
+ * posizioni dei libri che lo contengono. Una ricerca non interroga più il database ma
+ * interseca le liste di posting dei trigrammi del testo cercato e verifica i candidati.</p>
+ *
+ * <p>Le ricerche hanno la stessa semantica della query SQL {@code LOWER(campo) LIKE '%testo%'}
+ * usata finché l'indice non è pronto e dal server dei libri: un libro corrisponde se il campo,
+ * in minuscolo, contiene il testo cercato, in minuscolo, in qualsiasi posizione (ad esempio
+ * "arry" trova "Harry"). Il risultato di una ricerca non cambia quindi quando l'indice diventa
+ * pronto. I testi più corti di tre caratteri non hanno trigrammi e vengono verificati su tutti
+ * i libri.</p>
+ *
+ * <p>L'indice è immutabile: i nuovi libri vengono letti periodicamente in base all'id più alto
+ * già indicizzato e integrati in un nuovo snapshot, che sostituisce atomicamente il precedente.
+ * Le ricerche in corso continuano a lavorare sullo snapshot che avevano letto.</p>
+ *
+ * <p>Finché l'indice non è stato costruito {@link #isReady()} restituisce false e
+ * {@link BookService} continua a usare le query SQL.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class BookSearchIndex {
+
+    /**
+     * Intervallo predefinito, in secondi, tra due aggiornamenti incrementali dell'indice.
+     * Può essere modificato con la proprietà di sistema {@code bookrecommender.index.refreshSeconds}.
+     */
+    private static final long DEFAULT_REFRESH_SECONDS = 60;
+
+    /**
+     * Pattern dei segni diacritici rimossi dopo la decomposizione Unicode.
+     */
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    /**
+     * Numero di ricerche ordinate per titolo conservate per ogni snapshot
+     * (vedi {@link #searchSorted(BookQuery)}).
+     */
+    private static final int SORTED_RESULTS_CACHE = 32;
+
+    /**
+     * Ordinamento dei risultati paginati e in streaming letti dall'indice: per titolo,
+     * confrontato carattere per carattere, e a parità di titolo per id. Non coincide con la
+     * collation usata dal database per {@code ORDER BY title, id}, perciò una ricerca paginata
+     * resta sulla fonte da cui ha letto la prima pagina (vedi {@link SearchCursor.Source}).
+     */
+    static final Comparator<Book> TITLE_ID_ORDER =
+            Comparator.comparing(Book::getTitle).thenComparingInt(Book::getId);
+
+    /**
+     * Array vuoto restituito quando un trigramma non ha corrispondenze.
+     */
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * Istanza Singleton dell'indice.
+     */
+    private static BookSearchIndex instance;
+
+    /**
+     * Snapshot corrente dell'indice, null finché la prima costruzione non è terminata.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Scheduler che esegue la costruzione iniziale e gli aggiornamenti periodici.
+     */
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Costruttore privato per impedire l'istanziazione diretta (pattern Singleton).
+     */
+    private BookSearchIndex() {
+    }
+
+    /**
+     * Ottiene l'istanza singleton dell'indice.
+     *
+     * @return l'istanza singleton
+     */
+    public static synchronized BookSearchIndex getInstance() {
+        if (instance == null) {
+            instance = new BookSearchIndex();
+        }
+        return instance;
+    }
+
+    /**
+     * Avvia in background la costruzione dell'indice e il suo aggiornamento periodico.
+     * Le chiamate successive alla prima non hanno effetto.
+     */
+    public synchronized void start() {
+        if (refresher != null) {
+            return;
+        }
+
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "book-search-index");
+            t.setDaemon(true);
+            return t;
+        });
+
+        long period = Long.getLong("bookrecommender.index.refreshSeconds", DEFAULT_REFRESH_SECONDS);
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (SQLException e) {
+                // Gestione silenziosa dell'errore - si riproverà al prossimo aggiornamento,
+                // nel frattempo le ricerche usano il database
+            }
+        }, 0, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Ferma l'aggiornamento periodico e libera l'indice.
+     * Le ricerche successive torneranno a usare il database.
+     */
+    public synchronized void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+        snapshot = null;
+    }
+
+    /**
+     * Indica se l'indice è stato costruito e può servire le ricerche.
+     *
+     * @return true se l'indice è pronto
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * Restituisce il numero di libri indicizzati.
+     *
+     * @return il numero di libri presenti nell'indice
+     */
+    public int size() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.books.length;
+    }
+
+    /**
+     * Legge dal database i libri con id superiore all'ultimo indicizzato e li aggiunge all'indice.
+     * Alla prima chiamata viene letto l'intero catalogo.
+     *
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public void refresh() throws SQLException {
+        Snapshot current = snapshot;
+        int watermark = current == null ? 0 : current.maxId;
+
+        List<Book> added = new ArrayList<>();
+        String sql = "SELECT id, title, authors, category, publisher, publish_year FROM books WHERE id > ? ORDER BY id";
+
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, watermark);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    added.add(BookService.mapBook(rs));
+                }
+            }
+        }
+
+        if (current == null || !added.isEmpty()) {
+            snapshot = Snapshot.extend(current, added);
+        }
+    }
+
+    /**
+     * Cerca i libri il cui titolo contiene il testo indicato, senza distinguere le maiuscole.
+     *
+     * @param text Testo cercato dall'utente
+     * @return Lista dei libri trovati, ordinati per rilevanza
+     */
+    public List<Book> searchByTitle(String text) {
+        Snapshot current = snapshot;
+        return current == null ? new ArrayList<>() : current.search(text, true, null);
+    }
+
+    /**
+     * Cerca i libri il cui elenco di autori contiene il testo indicato, senza distinguere le maiuscole.
+     *
+     * @param text Nome o parte del nome dell'autore
+     * @return Lista dei libri trovati, ordinati per rilevanza
+     */
+    public List<Book> searchByAuthor(String text) {
+        Snapshot current = snapshot;
+        return current == null ? new ArrayList<>() : current.search(text, false, null);
+    }
+
+    /**
+     * Cerca i libri di un autore pubblicati in un determinato anno.
+     *
+     * @param text Nome o parte del nome dell'autore
+     * @param year Anno esatto di pubblicazione
+     * @return Lista dei libri trovati, ordinati per rilevanza
+     */
+    public List<Book> searchByAuthorAndYear(String text, int year) {
+        Snapshot current = snapshot;
+        return current == null ? new ArrayList<>() : current.search(text, false, year);
+    }
+
+    /**
+     * Restituisce i risultati di una ricerca ordinati secondo {@link #TITLE_ID_ORDER}.
+     * Le ricerche più recenti vengono conservate insieme allo snapshot da cui sono state
+     * calcolate, così le pagine successive alla prima non ripetono né la ricerca né
+     * l'ordinamento; un nuovo snapshot riparte senza risultati conservati.
+     *
+     * @param query Criteri di ricerca
+     * @return Lista non modificabile dei libri trovati
+     */
+    public List<Book> searchSorted(BookQuery query) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return List.of();
+        }
+
+        synchronized (current.sortedResults) {
+            List<Book> cached = current.sortedResults.get(query);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        List<Book> results = switch (query.getMode()) {
+            case TITLE -> current.search(query.getTerm(), true, null);
+            case AUTHOR -> current.search(query.getTerm(), false, null);
+            case AUTHOR_YEAR -> current.search(query.getTerm(), false, query.getYear());
+        };
+        results.sort(TITLE_ID_ORDER);
+        List<Book> sorted = Collections.unmodifiableList(results);
+
+        synchronized (current.sortedResults) {
+            current.sortedResults.put(query, sorted);
+        }
+        return sorted;
+    }
+
+    /**
+     * Porta un testo in minuscolo come {@code LOWER} nelle query SQL di ricerca.
+     *
+     * @param text Testo da convertire
+     * @return Il testo in minuscolo
+     */
+    static String lower(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Riduce un testo a una forma senza accenti e in minuscolo, usata da {@link TitleResolver}
+     * per confrontare i titoli ignorando gli accenti.
+     *
+     * @param text Testo da normalizzare
+     * @return Il testo normalizzato
+     */
+    static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Stato immutabile dell'indice in un certo istante. L'unica parte modificabile è la cache
+     * delle ricerche ordinate, che dipende solo dai dati dello snapshot.
+     */
+    private static class Snapshot {
+        /** Libri indicizzati, in ordine di id crescente; la posizione è il riferimento usato nei posting */
+        final Book[] books;
+        /** Titoli in minuscolo, usati per verificare i candidati e ordinare per rilevanza */
+        final String[] lowerTitles;
+        /** Autori in minuscolo, usati per verificare i candidati e ordinare per rilevanza */
+        final String[] lowerAuthors;
+        /** Id più alto indicizzato, usato per gli aggiornamenti incrementali */
+        final int maxId;
+        /** Dizionario ordinato dei trigrammi dei titoli */
+        final String[] titleTrigrams;
+        /** Posting dei trigrammi dei titoli, allineati a titleTrigrams */
+        final int[][] titlePostings;
+        /** Dizionario ordinato dei trigrammi degli autori */
+        final String[] authorTrigrams;
+        /** Posting dei trigrammi degli autori, allineati a authorTrigrams */
+        final int[][] authorPostings;
+        /** Ricerche ordinate per titolo usate più di recente, accessibili sincronizzando sulla mappa */
+        final Map<BookQuery, List<Book>> sortedResults = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BookQuery, List<Book>> eldest) {
+                return size() > SORTED_RESULTS_CACHE;
+            }
+        };
+
+        Snapshot(Book[] books, String[] lowerTitles, String[] lowerAuthors, int maxId,
+                 String[] titleTrigrams, int[][] titlePostings, String[] authorTrigrams, int[][] authorPostings) {
+            this.books = books;
+            this.lowerTitles = lowerTitles;
+            this.lowerAuthors = lowerAuthors;
+            this.maxId = maxId;
+            this.titleTrigrams = titleTrigrams;
+            this.titlePostings = titlePostings;
+            this.authorTrigrams = authorTrigrams;
+            this.authorPostings = authorPostings;
+        }
+
+        /**
+         * Crea un nuovo snapshot aggiungendo dei libri a quello esistente.
+         * I nuovi libri hanno id maggiori di quelli già presenti, quindi le loro posizioni
+         * vengono accodate ai posting esistenti mantenendoli ordinati.
+         *
+         * @param base Snapshot di partenza (null per costruire l'indice da zero)
+         * @param added Libri da aggiungere, in ordine di id crescente
+         * @return Il nuovo snapshot
+         */
+        static Snapshot extend(Snapshot base, List<Book> added) {
+            int offset = base == null ? 0 : base.books.length;
+            int total = offset + added.size();
+
+            Book[] books = base == null ? new Book[total] : Arrays.copyOf(base.books, total);
+            String[] lowerTitles = base == null ? new String[total] : Arrays.copyOf(base.lowerTitles, total);
+            String[] lowerAuthors = base == null ? new String[total] : Arrays.copyOf(base.lowerAuthors, total);
+            int maxId = base == null ? 0 : base.maxId;
+
+            Map<String, IntList> newTitlePostings = new HashMap<>();
+            Map<String, IntList> newAuthorPostings = new HashMap<>();
+
+            for (int i = 0; i < added.size(); i++) {
+                Book book = added.get(i);
+                int doc = offset + i;
+                books[doc] = book;
+                lowerTitles[doc] = lower(book.getTitle());
+                lowerAuthors[doc] = lower(book.getAuthors());
+                maxId = Math.max(maxId, book.getId());
+
+                addTrigrams(newTitlePostings, lowerTitles[doc], doc);
+                addTrigrams(newAuthorPostings, lowerAuthors[doc], doc);
+            }
+
+            TreeMap<String, int[]> titles = merge(base == null ? null : base.titleTrigrams,
+                    base == null ? null : base.titlePostings, newTitlePostings);
+            TreeMap<String, int[]> authors = merge(base == null ? null : base.authorTrigrams,
+                    base == null ? null : base.authorPostings, newAuthorPostings);
+
+            return new Snapshot(books, lowerTitles, lowerAuthors, maxId,
+                    titles.keySet().toArray(new String[0]), titles.values().toArray(new int[0][]),
+                    authors.keySet().toArray(new String[0]), authors.values().toArray(new int[0][]));
+        }
+
+        /**
+         * Registra un libro nei posting di tutti i trigrammi di un testo.
+         * Un trigramma ripetuto nello stesso testo viene registrato una sola volta.
+         *
+         * @param postings Posting dei nuovi libri per trigramma
+         * @param text Testo in minuscolo
+         * @param doc Posizione del libro
+         */
+        private static void addTrigrams(Map<String, IntList> postings, String text, int doc) {
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                IntList docs = postings.computeIfAbsent(text.substring(i, i + 3), k -> new IntList());
+                if (docs.size == 0 || docs.values[docs.size - 1] != doc) {
+                    docs.add(doc);
+                }
+            }
+        }
+
+        /**
+         * Unisce un dizionario esistente con i posting dei nuovi libri.
+         * I posting dei trigrammi non toccati dai nuovi libri vengono condivisi, non copiati.
+         *
+         * @param terms Dizionario esistente (può essere null)
+         * @param postings Posting esistenti (può essere null)
+         * @param additions Posting dei nuovi libri per trigramma
+         * @return Il dizionario unito, ordinato per trigramma
+         */
+        private static TreeMap<String, int[]> merge(String[] terms, int[][] postings, Map<String, IntList> additions) {
+            TreeMap<String, int[]> merged = new TreeMap<>();
+
+            if (terms != null) {
+                for (int i = 0; i < terms.length; i++) {
+                    merged.put(terms[i], postings[i]);
+                }
+            }
+
+            for (Map.Entry<String, IntList> entry : additions.entrySet()) {
+                int[] existing = merged.getOrDefault(entry.getKey(), EMPTY);
+                int[] extra = entry.getValue().toArray();
+                int[] combined = Arrays.copyOf(existing, existing.length + extra.length);
+                System.arraycopy(extra, 0, combined, existing.length, extra.length);
+                merged.put(entry.getKey(), combined);
+            }
+
+            return merged;
+        }
+
+        /**
+         * Esegue una ricerca sul campo indicato.
+         *
+         * @param text Testo cercato
+         * @param byTitle true per cercare nei titoli, false negli autori
+         * @param year Anno di pubblicazione richiesto (null per non filtrare)
+         * @return Lista dei libri trovati, ordinati per rilevanza
+         */
+        List<Book> search(String text, boolean byTitle, Integer year) {
+            String needle = lower(text);
+            List<Book> results = new ArrayList<>();
+
+            String[] trigrams = byTitle ? titleTrigrams : authorTrigrams;
+            int[][] postings = byTitle ? titlePostings : authorPostings;
+            String[] fields = byTitle ? lowerTitles : lowerAuthors;
+
+            // Interseca i posting di tutti i trigrammi del testo cercato; senza trigrammi
+            // (testo più corto di tre caratteri) i candidati sono tutti i libri
+            int[] candidates = null;
+            for (int i = 0; i + 3 <= needle.length(); i++) {
+                int[] docs = trigramPostings(trigrams, postings, needle.substring(i, i + 3));
+                candidates = candidates == null ? docs : intersect(candidates, docs);
+                if (candidates.length == 0) {
+                    return results;
+                }
+            }
+            int count = candidates == null ? books.length : candidates.length;
+
+            // Verifica i candidati, che contengono tutti i trigrammi ma non necessariamente
+            // il testo intero, e calcola un punteggio di rilevanza per quelli trovati
+            long[] ranked = new long[count];
+            int found = 0;
+            for (int i = 0; i < count; i++) {
+                int doc = candidates == null ? i : candidates[i];
+                if (!fields[doc].contains(needle) || (year != null && books[doc].getPublishYear() != year)) {
+                    continue;
+                }
+                int score = score(fields[doc], needle);
+                // Punteggio più alto prima, a parità di punteggio il testo più corto e poi l'id più
+                // basso. La chiave occupa i 32 bit alti e la posizione del libro, che è un indice
+                // di array e quindi non negativa, i 32 bit bassi: le due parti non si sovrappongono
+                int key = ((1000 - score) << 16) | Math.min(fields[doc].length(), 0xFFFF);
+                ranked[found++] = ((long) key << 32) | doc;
+            }
+
+            Arrays.sort(ranked, 0, found);
+            for (int i = 0; i < found; i++) {
+                results.add(books[(int) ranked[i]]);
+            }
+            return results;
+        }
+
+        /**
+         * Calcola il punteggio di rilevanza di un testo che contiene quello cercato: il testo che
+         * coincide con la ricerca o inizia con essa riceve il punteggio più alto, poi quello in cui
+         * la ricerca compare come parola intera.
+         *
+         * @param field Testo in minuscolo del libro
+         * @param needle Ricerca in minuscolo
+         * @return Il punteggio (più alto è più rilevante)
+         */
+        private static int score(String field, String needle) {
+            if (field.equals(needle)) {
+                return 10;
+            }
+            if (field.startsWith(needle)) {
+                return 5;
+            }
+            return containsWord(field, needle) ? 2 : 0;
+        }
+
+        /**
+         * Verifica se un testo contiene la parola indicata per intero,
+         * cioè non seguita o preceduta da altre lettere o cifre.
+         *
+         * @param folded Testo in minuscolo
+         * @param word Parola cercata
+         * @return true se la parola compare per intero nel testo
+         */
+        private static boolean containsWord(String folded, String word) {
+            int from = 0;
+            int at;
+            while ((at = folded.indexOf(word, from)) >= 0) {
+                int end = at + word.length();
+                boolean startsWord = at == 0 || !Character.isLetterOrDigit(folded.charAt(at - 1));
+                boolean endsWord = end == folded.length() || !Character.isLetterOrDigit(folded.charAt(end));
+                if (startsWord && endsWord) {
+                    return true;
+                }
+                from = at + 1;
+            }
+            return false;
+        }
+
+        /**
+         * Restituisce i posting di un trigramma.
+         *
+         * @param trigrams Dizionario ordinato dei trigrammi
+         * @param postings Posting allineati al dizionario
+         * @param trigram Trigramma cercato
+         * @return Posizioni ordinate dei libri che contengono il trigramma
+         */
+        private static int[] trigramPostings(String[] trigrams, int[][] postings, String trigram) {
+            int at = Arrays.binarySearch(trigrams, trigram);
+            return at < 0 ? EMPTY : postings[at];
+        }
+
+        /**
+         * Intersezione di due array ordinati.
+         */
+        private static int[] intersect(int[] a, int[] b) {
+            int[] out = new int[Math.min(a.length, b.length)];
+            int i = 0, j = 0, n = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    out[n++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return n == out.length ? out : Arrays.copyOf(out, n);
+        }
+    }
+
+    /**
+     * Lista di interi a crescita dinamica, usata durante la costruzione dei posting
+     * per evitare il boxing di {@code List<Integer>}.
+     */
+    private static class IntList {
+        /** Elementi della lista */
+        private int[] values = new int[4];
+        /** Numero di elementi presenti */
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -14,7 +14,7 @@ import javafx.scene.input.KeyEvent;
 import javafx.stage.Stage;
 
 import java.io.IOException;
-import java.sql.*;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -36,19 +36,6 @@ public class BookSelectionController {
     private String libraryName;
     private final List<String> books = new ArrayList<>();
     private String operationType;
-    private DatabaseManager dbManager;
-
-    /**
-     * Costruttore del controller.
-     * Inizializza la connessione al database manager.
-     */
-    public BookSelectionController() {
-        try {
-            dbManager = DatabaseManager.getInstance();
-        } catch (SQLException e) {
-            // Gestione silenziosa dell'errore - la connessione sarà tentata di nuovo in seguito
-        }
-    }
 
     /**
      * Metodo di inizializzazione chiamato automaticamente dopo che l'FXML è stato caricato.
@@ -122,7 +109,7 @@ public class BookSelectionController {
     }
 
     /**
-     * Carica i libri dell'utente dalla libreria specificata utilizzando una query SQL.
+     * Carica i titoli dei libri contenuti nella libreria specificata.
      * Aggiorna la ListView con i titoli dei libri trovati.
      *
      * @param userId ID dell'utente
@@ -132,22 +119,8 @@ public class BookSelectionController {
         books.clear();
         booksListView.getItems().clear();
 
-        String sql = "SELECT b.title FROM books b " +
-                "JOIN library_books lb ON b.id = lb.book_id " +
-                "JOIN libraries l ON lb.library_id = l.id " +
-                "WHERE l.user_id = ? AND l.library_name = ?";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, userId);
-            pstmt.setString(2, libraryName);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                String bookTitle = rs.getString("title");
-                books.add(bookTitle);
-            }
+        try {
+            books.addAll(LibraryService.getLibraryBooks(userId, libraryName));
 
             if (!books.isEmpty()) {
                 booksListView.getItems().addAll(books);
@@ -0,0 +1,103 @@
+package book_recommender.lab_b;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * Server dei libri: accetta le connessioni dei client sulla porta del server e risponde
+ * alle richieste del protocollo {@link BookProtocol} tramite {@link BookRequestHandler}.
+ *
+ * <p>Sono disponibili due modalità, scelte con la proprietà di sistema
+ * {@code bookrecommender.server.mode}:</p>
+ * <ul>
+ *     <li>{@code threads} (predefinita): un thread virtuale per ogni connessione
+ *         ({@link ThreadedBookServer});</li>
+ *     <li>{@code nio}: un unico thread che gestisce tutte le connessioni con un selettore e
+ *         un piccolo gruppo di thread per le operazioni sul database ({@link NioBookServer}).</li>
+ * </ul>
+ *
+ * <p>Entrambe le modalità applicano gli stessi limiti, configurabili tramite proprietà di sistema:</p>
+ * <ul>
+ *     <li>{@code bookrecommender.server.maxConnections}: numero massimo di client collegati
+ *         contemporaneamente; le connessioni in eccesso vengono chiuse subito (predefinito 10000);</li>
+ *     <li>{@code bookrecommender.server.idleTimeoutMillis}: tempo massimo di attesa di una nuova
+ *         richiesta, 0 per nessun limite (predefinito 0);</li>
+ *     <li>{@code bookrecommender.server.readTimeoutMillis}: tempo massimo per ricevere un frame
+ *         già iniziato (predefinito 30000);</li>
+ *     <li>{@code bookrecommender.server.writeTimeoutMillis}: tempo massimo per inviare una risposta
+ *         a un client che non legge (predefinito 30000);</li>
+ *     <li>{@code bookrecommender.server.drainTimeoutMillis}: tempo concesso alle richieste in corso
+ *         per terminare allo spegnimento (predefinito 10000).</li>
+ * </ul>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public abstract class BookServer implements Closeable {
+
+    static final String MODE = System.getProperty("bookrecommender.server.mode", "threads");
+    static final int MAX_CONNECTIONS = Integer.getInteger("bookrecommender.server.maxConnections", 10000);
+    static final int IDLE_TIMEOUT_MILLIS = Integer.getInteger("bookrecommender.server.idleTimeoutMillis", 0);
+    static final int READ_TIMEOUT_MILLIS = Integer.getInteger("bookrecommender.server.readTimeoutMillis", 30000);
+    static final long WRITE_TIMEOUT_MILLIS = Long.getLong("bookrecommender.server.writeTimeoutMillis", 30000L);
+    static final long DRAIN_TIMEOUT_MILLIS = Long.getLong("bookrecommender.server.drainTimeoutMillis", 10000L);
+
+    /**
+     * Numero massimo di connessioni in attesa di essere accettate.
+     */
+    private static final int BACKLOG = 50;
+
+    /**
+     * Collega il server alla porta indicata su tutte le interfacce di rete, nella modalità
+     * scelta da {@code bookrecommender.server.mode}. Il server va poi avviato con {@link #start()}.
+     *
+     * @param port La porta del server
+     * @return Il server, non ancora avviato
+     * @throws IOException se la porta non è disponibile
+     */
+    public static BookServer open(int port) throws IOException {
+        if ("nio".equalsIgnoreCase(MODE)) {
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            try {
+                channel.bind(new InetSocketAddress(InetAddress.getByName("0.0.0.0"), port), BACKLOG);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            return new NioBookServer(channel);
+        }
+        return new ThreadedBookServer(new ServerSocket(port, BACKLOG, InetAddress.getByName("0.0.0.0")));
+    }
+
+    /**
+     * Avvia i thread che accettano le connessioni e rispondono alle richieste.
+     */
+    public abstract void start();
+
+    /**
+     * @return La porta su cui il server accetta le connessioni
+     */
+    public abstract int getPort();
+
+    /**
+     * @return Il numero di client attualmente collegati
+     */
+    public abstract int getConnectionCount();
+
+    /**
+     * @return Il numero di connessioni rifiutate perché era stato raggiunto il limite
+     */
+    public abstract long getRejectedConnectionCount();
+
+    /**
+     * Spegne il server in modo ordinato: smette di accettare connessioni, chiude quelle in
+     * attesa di una richiesta e lascia terminare quelle che ne stanno eseguendo una, entro
+     * il tempo massimo di {@code drainTimeoutMillis}. Allo scadere chiude anche queste.
+     */
+    @Override
+    public abstract void close();
+}
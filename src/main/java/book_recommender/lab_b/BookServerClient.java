@@ -0,0 +1,707 @@
+package book_recommender.lab_b;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Connessione del client al server dei libri tramite il protocollo {@link BookProtocol}.
+ *
+ * <p>Quando la connessione è attiva i servizi di accesso ai dati ({@link BookService},
+ * {@link RatingService}, {@link LibraryService}, {@link RecommendationService}) inoltrano
+ * le richieste al server, che risponde con tutti i dati di una schermata in un unico messaggio.
+ * Se una richiesta fallisce o non riceve risposta in tempo, il servizio la esegue direttamente
+ * sul database.</p>
+ *
+ * <p>Più thread possono avere una richiesta in corso contemporaneamente sulla stessa
+ * connessione: ogni richiesta ha un id e un thread dedicato legge le risposte e completa
+ * la richiesta corrispondente, in qualunque ordine arrivino.</p>
+ *
+ * <p>Una richiesta che scade fallisce da sola: la connessione resta aperta e la risposta, se
+ * arriva in ritardo, viene scartata. Solo un errore di comunicazione chiude la connessione; in
+ * quel caso i servizi usano il database mentre la connessione viene riaperta in background,
+ * con attese crescenti tra un tentativo e l'altro (da 1 secondo fino a
+ * {@code bookrecommender.server.reconnectMaxSeconds}, predefinito 60).</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public final class BookServerClient implements Closeable {
+
+    /**
+     * Tempo massimo di attesa per la connessione e per ogni risposta, in millisecondi.
+     */
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("bookrecommender.server.timeoutMillis", 30000);
+
+    /**
+     * Attesa iniziale, in millisecondi, prima di riaprire una connessione interrotta.
+     */
+    private static final long RECONNECT_MIN_MILLIS = 1000;
+
+    /**
+     * Attesa massima, in millisecondi, tra due tentativi di riaprire la connessione.
+     */
+    private static final long RECONNECT_MAX_MILLIS =
+            Long.getLong("bookrecommender.server.reconnectMaxSeconds", 60) * 1000;
+
+    /**
+     * Connessione attualmente in uso dai servizi, oppure null.
+     */
+    private static volatile BookServerClient active;
+
+    /** Indirizzo del server indicato a {@link #connect}, null dopo {@link #disconnect()} */
+    private static String serverHost;
+    /** Porta del server indicata a {@link #connect} */
+    private static int serverPort;
+    /** Incrementato a ogni connect e disconnect, per fermare i tentativi di riconnessione superati */
+    private static long generation = 0;
+    /** True mentre un thread sta cercando di riaprire la connessione */
+    private static boolean reconnecting = false;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    /**
+     * Richieste inviate in attesa di risposta, per id.
+     */
+    private final Map<Integer, Pending<?>> pending = new ConcurrentHashMap<>();
+    /**
+     * Serializza la scrittura delle richieste. Un lock invece di un metodo synchronized
+     * evita di bloccare il thread portante quando il chiamante è un thread virtuale.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private int nextRequestId = 1;
+    private volatile boolean closed = false;
+
+    /**
+     * Apre la connessione e verifica che il server usi la stessa versione del protocollo.
+     *
+     * @param host L'indirizzo del server
+     * @param port La porta del server
+     * @throws IOException se il server non è raggiungibile o usa un'altra versione del protocollo
+     */
+    public BookServerClient(String host, int port) throws IOException {
+        socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+
+        // Le risposte vengono lette da un thread dedicato: la connessione può restare
+        // inattiva a lungo, quindi il tempo massimo di attesa si applica alle singole richieste
+        Thread.ofVirtual().name("book-server-reader").start(this::readResponses);
+
+        try {
+            int version = execute(Call.ping());
+            if (version != BookProtocol.VERSION) {
+                throw new IOException("Versione del protocollo non supportata: " + version);
+            }
+        } catch (IOException | SQLException e) {
+            close();
+            throw e instanceof IOException io ? io : new IOException(e);
+        }
+    }
+
+    /**
+     * Apre la connessione al server e la rende disponibile ai servizi, chiudendo
+     * quella precedente. Se in seguito la connessione si interrompe, viene riaperta
+     * in background verso lo stesso server.
+     *
+     * @param host L'indirizzo del server
+     * @param port La porta del server
+     * @throws IOException se il server non è raggiungibile
+     */
+    public static synchronized void connect(String host, int port) throws IOException {
+        BookServerClient client = new BookServerClient(host, port);
+        disconnect();
+        serverHost = host;
+        serverPort = port;
+        active = client;
+    }
+
+    /**
+     * Chiude la connessione in uso dai servizi, se presente, e interrompe i tentativi
+     * di riconnessione.
+     */
+    public static synchronized void disconnect() {
+        serverHost = null;
+        generation++;
+        BookServerClient client = active;
+        active = null;
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    /**
+     * Restituisce la connessione in uso dai servizi.
+     *
+     * @return La connessione, oppure null se il client interroga direttamente il database
+     */
+    public static BookServerClient active() {
+        return active;
+    }
+
+    /**
+     * Chiude la connessione e fa fallire le richieste ancora in attesa di risposta.
+     * Se era quella in uso dai servizi, le richieste successive vengono eseguite
+     * direttamente sul database.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        release(this);
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Gestione silenziosa dell'errore - la connessione è comunque inutilizzabile
+        }
+        for (Integer requestId : pending.keySet()) {
+            Pending<?> request = pending.remove(requestId);
+            if (request != null) {
+                request.future.completeExceptionally(new IOException("Connessione al server dei libri chiusa"));
+            }
+        }
+    }
+
+    /**
+     * Smette di usare la connessione indicata, se è quella in uso dai servizi.
+     *
+     * @param client La connessione chiusa
+     * @return true se era la connessione in uso dai servizi
+     */
+    private static synchronized boolean release(BookServerClient client) {
+        if (active != client) {
+            return false;
+        }
+        active = null;
+        return true;
+    }
+
+    /**
+     * Chiude la connessione dopo un errore di comunicazione e, se era quella in uso dai
+     * servizi, avvia i tentativi di riaprirla.
+     */
+    private void connectionLost() {
+        boolean wasActive = active == this;
+        close();
+        if (wasActive) {
+            scheduleReconnect();
+        }
+    }
+
+    /**
+     * Avvia in background i tentativi di riaprire la connessione, se non ce ne sono già in corso.
+     */
+    private static synchronized void scheduleReconnect() {
+        if (serverHost == null || active != null || reconnecting) {
+            return;
+        }
+        reconnecting = true;
+        long startGeneration = generation;
+        String host = serverHost;
+        int port = serverPort;
+        Thread.ofVirtual().name("book-server-reconnect").start(() -> reconnect(startGeneration, host, port));
+    }
+
+    /**
+     * Eseguito dal thread di riconnessione: riprova ad aprire la connessione con attese
+     * crescenti, finché ci riesce o finché la connessione non viene aperta o chiusa altrove.
+     *
+     * @param startGeneration Valore di {@link #generation} all'avvio dei tentativi
+     * @param host L'indirizzo del server
+     * @param port La porta del server
+     */
+    private static void reconnect(long startGeneration, String host, int port) {
+        long delay = RECONNECT_MIN_MILLIS;
+        try {
+            while (true) {
+                Thread.sleep(delay);
+                synchronized (BookServerClient.class) {
+                    if (generation != startGeneration || active != null) {
+                        return;
+                    }
+                }
+                BookServerClient client;
+                try {
+                    client = new BookServerClient(host, port);
+                } catch (IOException e) {
+                    // Server ancora non raggiungibile: si riprova più tardi
+                    delay = Math.min(delay * 2, RECONNECT_MAX_MILLIS);
+                    continue;
+                }
+                synchronized (BookServerClient.class) {
+                    if (generation == startGeneration && active == null) {
+                        active = client;
+                        return;
+                    }
+                }
+                client.close();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (BookServerClient.class) {
+                reconnecting = false;
+            }
+        }
+    }
+
+    /**
+     * Legge una pagina di risultati di ricerca.
+     *
+     * @param query I criteri della ricerca
+     * @param after Cursore dell'ultimo libro della pagina precedente, null per la prima pagina
+     * @param pageSize Numero massimo di libri della pagina
+     * @return La pagina di risultati
+     * @throws IOException se la comunicazione fallisce o la risposta non arriva in tempo
+     * @throws SQLException se il server non è riuscito a eseguire la richiesta
+     */
+    public SearchPage searchPage(BookQuery query, SearchCursor after, int pageSize) throws IOException, SQLException {
+        return execute(Call.searchPage(query, after, pageSize));
+    }
+
+    /**
+     * Legge la pagina di dettaglio di un libro.
+     *
+     * @param title Il titolo del libro
+     * @return La pagina, oppure null se il libro non esiste
+     * @throws IOException se la comunicazione fallisce o la risposta non arriva in tempo
+     * @throws SQLException se il server non è riuscito a eseguire la richiesta
+     */
+    public BookPage getBookPage(String title) throws IOException, SQLException {
+        return execute(Call.bookPage(title));
+    }
+
+    /**
+     * Legge la valutazione espressa da un utente per un libro.
+     *
+     * @param userId L'utente
+     * @param title Il titolo del libro
+     * @return La valutazione, oppure null se l'utente non ha valutato il libro
+     * @throws IOException se la comunicazione fallisce o la risposta non arriva in tempo
+     * @throws SQLException se il server non è riuscito a eseguire la richiesta
+     */
+    public BookRating getRating(String userId, String title) throws IOException, SQLException {
+        return execute(Call.rating(userId, title));
+    }
+
+    /**
+     * Salva la valutazione di un utente per un libro.
+     *
+     * @param userId L'utente
+     * @param title Il titolo del libro
+     * @param rating La valutazione
+     * @throws IOException se la comunicazione fallisce o la risposta non arriva in tempo
+     * @throws SQLException se il server non è riuscito a eseguire la richiesta
+     */
+    public void saveRating(String userId, String title, BookRating rating) throws IOException, SQLException {
+        execute(Call.saveRating(userId, title, rating));
+    }
+
+    /**
+     * Legge i nomi delle librerie di un utente.
+     *
+     * @param userId L'utente
+     * @return I nomi delle librerie
+     * @throws IOException se la comunicazione fallisce o la risposta non arriva in tempo
+     * @throws SQLException se il server non è riuscito a eseguire la richiesta
+     */
+    public List<String> getLibraries(String userId) throws IOException, SQLException {
+        return execute(Call.libraries(userId));
+    }
+
+    /**
+     * Legge i titoli dei libri contenuti in una libreria.
+     *
+     * @param userId L'utente proprietario della libreria
+     * @param libraryName Il nome della libreria
+     * @return I titoli dei libri
+     * @throws IOException se la comunicazione fallisce o la risposta non arriva in tempo
+     * @throws SQLException se il server non è riuscito a eseguire la richiesta
+     */
+    public List<String> getLibraryBooks(String userId, String libraryName) throws IOException, SQLException {
+        return execute(Call.libraryBooks(userId, libraryName));
+    }
+
+    /**
+     * Crea una libreria vuota.
+     *
+     * @param userId L'utente proprietario della libreria
+     * @param libraryName Il nome della libreria
+     * @return true se la libreria è stata creata, false se esisteva già
+     * @throws IOException se la comunicazione fallisce o la risposta non arriva in tempo
+     * @throws SQLException se il server non è riuscito a eseguire la richiesta
+     */
+    public boolean createLibrary(String userId, String libraryName) throws IOException, SQLException {
+        return execute(Call.createLibrary(userId, libraryName));
+    }
+
+    /**
+     * Sostituisce i libri di una libreria, creandola se non esiste.
+     *
+     * @param userId L'utente proprietario della libreria
+     * @param libraryName Il nome della libreria
+     * @param titles I titoli dei libri
+     * @throws IOException se la comunicazione fallisce o la risposta non arriva in tempo
+     * @throws SQLException se il server non è riuscito a eseguire la richiesta
+     */
+    public void saveLibraryBooks(String userId, String libraryName, Collection<String> titles) throws IOException, SQLException {
+        execute(Call.saveLibraryBooks(userId, libraryName, titles));
+    }
+
+    /**
+     * Legge i titoli consigliati da un utente per un libro.
+     *
+     * @param userId L'utente
+     * @param sourceTitle Il titolo del libro di partenza
+     * @return I titoli consigliati
+     * @throws IOException se la comunicazione fallisce o la risposta non arriva in tempo
+     * @throws SQLException se il server non è riuscito a eseguire la richiesta
+     */
+    public List<String> getRecommendations(String userId, String sourceTitle) throws IOException, SQLException {
+        return execute(Call.recommendations(userId, sourceTitle));
+    }
+
+    /**
+     * Sostituisce i libri consigliati da un utente per un libro.
+     *
+     * @param userId L'utente
+     * @param sourceTitle Il titolo del libro di partenza
+     * @param titles I titoli consigliati
+     * @throws IOException se la comunicazione fallisce o la risposta non arriva in tempo
+     * @throws SQLException se il server non è riuscito a eseguire la richiesta
+     */
+    public void saveRecommendations(String userId, String sourceTitle, Collection<String> titles) throws IOException, SQLException {
+        execute(Call.saveRecommendations(userId, sourceTitle, titles));
+    }
+
+    /**
+     * Invia una richiesta e ne attende la risposta.
+     *
+     * @param call La richiesta
+     * @param <T> Il tipo del risultato
+     * @return Il risultato della richiesta
+     * @throws IOException se la comunicazione fallisce o scade il tempo di attesa; solo nel
+     *                     primo caso la connessione viene chiusa
+     * @throws SQLException se il server non è riuscito a eseguire la richiesta
+     */
+    private <T> T execute(Call<T> call) throws IOException, SQLException {
+        CompletableFuture<T> future = send(call);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Attesa della risposta del server dei libri interrotta", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sql) {
+                throw sql;
+            }
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof TimeoutException) {
+                throw new IOException("Il server dei libri non ha risposto entro " + TIMEOUT_MILLIS + " ms", cause);
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Invia una richiesta al server.
+     *
+     * <p>Il future restituito viene completato dal thread che legge le risposte. Fallisce con
+     * una {@link SQLException} se il server non è riuscito a eseguire la richiesta, con una
+     * {@link IOException} se la connessione si interrompe e con una {@link TimeoutException}
+     * se la risposta non arriva entro il tempo massimo; in quest'ultimo caso la connessione
+     * resta aperta e la risposta in ritardo viene scartata.</p>
+     *
+     * @param call La richiesta
+     * @param <T> Il tipo del risultato
+     * @return Il future del risultato
+     * @throws IOException se la connessione è chiusa o la scrittura fallisce
+     */
+    private <T> CompletableFuture<T> send(Call<T> call) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream request = new DataOutputStream(bytes);
+
+        Pending<T> entry = new Pending<>(call);
+        int requestId;
+        writeLock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Connessione al server dei libri chiusa");
+            }
+            requestId = nextRequestId++;
+            request.writeInt(requestId);
+            request.writeByte(call.operation);
+            call.params.write(request);
+
+            pending.put(requestId, entry);
+            BookProtocol.writeFrame(out, bytes.toByteArray());
+            out.flush();
+        } catch (IOException e) {
+            if (!closed) {
+                connectionLost();
+            }
+            throw e;
+        } finally {
+            writeLock.unlock();
+        }
+
+        entry.future.orTimeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+            if (error instanceof TimeoutException) {
+                // Fallisce solo questa richiesta: la risposta, se arriva, verrà ignorata
+                pending.remove(requestId);
+            }
+        });
+        return entry.future;
+    }
+
+    /**
+     * Eseguito dal thread di lettura: legge le risposte e completa le richieste corrispondenti,
+     * in qualunque ordine arrivino, finché la connessione resta aperta.
+     */
+    private void readResponses() {
+        try {
+            while (true) {
+                DataInputStream response = new DataInputStream(new ByteArrayInputStream(BookProtocol.readFrame(in)));
+                Pending<?> request = pending.remove(response.readInt());
+                if (request == null) {
+                    // Risposta a una richiesta già scaduta
+                    continue;
+                }
+                if (response.readByte() != BookProtocol.STATUS_OK) {
+                    request.future.completeExceptionally(new SQLException(BookProtocol.readString(response)));
+                } else {
+                    try {
+                        request.complete(response);
+                    } catch (IOException e) {
+                        // Risposta malformata: la connessione non è più affidabile
+                        request.future.completeExceptionally(e);
+                        throw e;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Connessione chiusa dal server o dal client
+        } finally {
+            if (!closed) {
+                connectionLost();
+            }
+        }
+    }
+
+    /**
+     * Una richiesta inviata e il future che ne riceve il risultato.
+     */
+    private static final class Pending<T> {
+        final Call<T> call;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Pending(Call<T> call) {
+            this.call = call;
+        }
+
+        void complete(DataInputStream response) throws IOException {
+            future.complete(call.result.read(response));
+        }
+    }
+
+    /**
+     * Una richiesta del protocollo: l'operazione, i suoi parametri e il modo di leggerne il risultato.
+     *
+     * @param <T> Il tipo del risultato
+     */
+    private static final class Call<T> {
+        private final byte operation;
+        private final ParameterWriter params;
+        private final ResultReader<T> result;
+
+        private Call(byte operation, ParameterWriter params, ResultReader<T> result) {
+            this.operation = operation;
+            this.params = params;
+            this.result = result;
+        }
+
+        /**
+         * Verifica la versione del protocollo usata dal server.
+         *
+         * @return La richiesta
+         */
+        static Call<Integer> ping() {
+            return new Call<>(BookProtocol.PING, params -> { }, DataInput::readInt);
+        }
+
+        /**
+         * Legge una pagina di risultati di ricerca.
+         *
+         * @param query I criteri della ricerca
+         * @param after Cursore dell'ultimo libro della pagina precedente, null per la prima pagina
+         * @param pageSize Numero massimo di libri della pagina
+         * @return La richiesta
+         */
+        static Call<SearchPage> searchPage(BookQuery query, SearchCursor after, int pageSize) {
+            return new Call<>(BookProtocol.SEARCH_PAGE, params -> {
+                BookProtocol.writeQuery(params, query);
+                BookProtocol.writeCursor(params, after);
+                params.writeInt(pageSize);
+            }, BookProtocol::readSearchPage);
+        }
+
+        /**
+         * Legge la pagina di dettaglio di un libro, null se il libro non esiste.
+         *
+         * @param title Il titolo del libro
+         * @return La richiesta
+         */
+        static Call<BookPage> bookPage(String title) {
+            return new Call<>(BookProtocol.BOOK_PAGE, params -> BookProtocol.writeString(params, title),
+                    BookProtocol::readBookPage);
+        }
+
+        /**
+         * Legge la valutazione di un utente per un libro, null se non esiste.
+         *
+         * @param userId L'utente
+         * @param title Il titolo del libro
+         * @return La richiesta
+         */
+        static Call<BookRating> rating(String userId, String title) {
+            return new Call<>(BookProtocol.GET_RATING, params -> {
+                BookProtocol.writeString(params, userId);
+                BookProtocol.writeString(params, title);
+            }, BookProtocol::readRating);
+        }
+
+        /**
+         * Salva la valutazione di un utente per un libro.
+         *
+         * @param userId L'utente
+         * @param title Il titolo del libro
+         * @param rating La valutazione
+         * @return La richiesta
+         */
+        static Call<Void> saveRating(String userId, String title, BookRating rating) {
+            return new Call<>(BookProtocol.SAVE_RATING, params -> {
+                BookProtocol.writeString(params, userId);
+                BookProtocol.writeString(params, title);
+                BookProtocol.writeRating(params, rating);
+            }, response -> null);
+        }
+
+        /**
+         * Legge i nomi delle librerie di un utente.
+         *
+         * @param userId L'utente
+         * @return La richiesta
+         */
+        static Call<List<String>> libraries(String userId) {
+            return new Call<>(BookProtocol.GET_LIBRARIES, params -> BookProtocol.writeString(params, userId),
+                    BookProtocol::readStrings);
+        }
+
+        /**
+         * Legge i titoli dei libri contenuti in una libreria.
+         *
+         * @param userId L'utente
+         * @param libraryName Il nome della libreria
+         * @return La richiesta
+         */
+        static Call<List<String>> libraryBooks(String userId, String libraryName) {
+            return new Call<>(BookProtocol.GET_LIBRARY_BOOKS, params -> {
+                BookProtocol.writeString(params, userId);
+                BookProtocol.writeString(params, libraryName);
+            }, BookProtocol::readStrings);
+        }
+
+        /**
+         * Crea una libreria vuota; il risultato è false se esisteva già.
+         *
+         * @param userId L'utente
+         * @param libraryName Il nome della libreria
+         * @return La richiesta
+         */
+        static Call<Boolean> createLibrary(String userId, String libraryName) {
+            return new Call<>(BookProtocol.CREATE_LIBRARY, params -> {
+                BookProtocol.writeString(params, userId);
+                BookProtocol.writeString(params, libraryName);
+            }, DataInput::readBoolean);
+        }
+
+        /**
+         * Sostituisce i libri di una libreria, creandola se non esiste.
+         *
+         * @param userId L'utente
+         * @param libraryName Il nome della libreria
+         * @param titles I titoli dei libri
+         * @return La richiesta
+         */
+        static Call<Void> saveLibraryBooks(String userId, String libraryName, Collection<String> titles) {
+            return new Call<>(BookProtocol.SAVE_LIBRARY_BOOKS, params -> {
+                BookProtocol.writeString(params, userId);
+                BookProtocol.writeString(params, libraryName);
+                BookProtocol.writeStrings(params, titles);
+            }, response -> null);
+        }
+
+        /**
+         * Legge i titoli consigliati da un utente per un libro.
+         *
+         * @param userId L'utente
+         * @param sourceTitle Il titolo del libro di partenza
+         * @return La richiesta
+         */
+        static Call<List<String>> recommendations(String userId, String sourceTitle) {
+            return new Call<>(BookProtocol.GET_RECOMMENDATIONS, params -> {
+                BookProtocol.writeString(params, userId);
+                BookProtocol.writeString(params, sourceTitle);
+            }, BookProtocol::readStrings);
+        }
+
+        /**
+         * Sostituisce i libri consigliati da un utente per un libro.
+         *
+         * @param userId L'utente
+         * @param sourceTitle Il titolo del libro di partenza
+         * @param titles I titoli dei libri
+         * @return La richiesta
+         */
+        static Call<Void> saveRecommendations(String userId, String sourceTitle, Collection<String> titles) {
+            return new Call<>(BookProtocol.SAVE_RECOMMENDATIONS, params -> {
+                BookProtocol.writeString(params, userId);
+                BookProtocol.writeString(params, sourceTitle);
+                BookProtocol.writeStrings(params, titles);
+            }, response -> null);
+        }
+    }
+
+    /**
+     * Scrive i parametri di una richiesta.
+     */
+    @FunctionalInterface
+    private interface ParameterWriter {
+        void write(DataOutputStream params) throws IOException;
+    }
+
+    /**
+     * Legge il risultato di una richiesta dal corpo della risposta.
+     */
+    @FunctionalInterface
+    private interface ResultReader<T> {
+        T read(DataInputStream response) throws IOException;
+    }
+}
@@ -1,17 +1,79 @@
 package book_recommender.lab_b;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 //eeeeeeeeeeeeeeegfggggg
 /**
  * Classe di servizio per le operazioni di ricerca e recupero dei libri dal database.
  * Fornisce metodi statici per effettuare diverse tipologie di ricerca sui libri.
  * Utilizza il DatabaseManager per gestire le connessioni al database.
+ *
+ * <p>Ogni ricerca è disponibile sia in forma sincrona, che restituisce direttamente la lista
+ * dei risultati, sia in forma asincrona (metodi con suffisso {@code Async}), che restituisce un
+ * {@link CompletableFuture} eseguito su thread virtuali. Le versioni asincrone vanno usate
+ * dai controller JavaFX per non bloccare l'interfaccia durante la query; il future restituito
+ * può essere annullato, interrompendo anche la query sul database.</p>
+ *
+ * <p>Quando il {@link BookSearchIndex} in memoria è pronto, le ricerche per titolo e per autore
+ * vengono servite dall'indice senza interrogare il database; le query SQL restano come
+ * alternativa finché l'indice non è stato costruito.</p>
+ *
+ * <p>Per le ricerche che possono restituire molti risultati sono disponibili una versione
+ * paginata ({@link #searchBooksPage(BookQuery, SearchCursor, int)}), che legge una pagina alla
+ * volta ordinando per titolo e id, e una versione in streaming
+ * ({@link #streamBooks(BookQuery, Consumer)}), che consegna i libri al chiamante man mano che
+ * vengono letti dal database senza accumularli in memoria.</p>
  */
 public class BookService {
     private static DatabaseManager dbManager;
 
+    /**
+     * Colonne selezionate da tutte le query che restituiscono libri.
+     */
+    private static final String BOOK_COLUMNS = "id, title, authors, category, publisher, publish_year";
+
+    /**
+     * Condizione di ricerca per titolo. L'espressione {@code LOWER(title)} coincide con quella
+     * dell'indice a trigrammi creato da {@link SearchIndexes}, che può così essere utilizzato.
+     */
+    private static final String TITLE_FILTER = "LOWER(title) LIKE ? ESCAPE '\\'";
+
+    /**
+     * Condizione di ricerca per autore, servita dall'indice a trigrammi su {@code LOWER(authors)}.
+     */
+    private static final String AUTHOR_FILTER = "LOWER(authors) LIKE ? ESCAPE '\\'";
+
+    /**
+     * Query di ricerca per titolo.
+     */
+    static final String TITLE_SEARCH_SQL = "SELECT " + BOOK_COLUMNS + " FROM books WHERE " + TITLE_FILTER;
+
+    /**
+     * Query di ricerca per autore.
+     */
+    static final String AUTHOR_SEARCH_SQL = "SELECT " + BOOK_COLUMNS + " FROM books WHERE " + AUTHOR_FILTER;
+
+    /**
+     * Numero di righe richieste al database per ogni lettura durante lo streaming dei risultati.
+     * Può essere modificato con la proprietà di sistema {@code bookrecommender.search.fetchSize}.
+     */
+    private static final int STREAM_FETCH_SIZE = Integer.getInteger("bookrecommender.search.fetchSize", 200);
+
+    /**
+     * Imposta i parametri di uno statement prima dell'esecuzione.
+     */
+    @FunctionalInterface
+    private interface ParameterBinder {
+        void bind(PreparedStatement pstmt) throws SQLException;
+    }
+
     /**
      * Blocco statico di inizializzazione.
      * Ottiene l'istanza singleton del DatabaseManager all'avvio della classe.
@@ -33,33 +95,13 @@ public class BookService {
      * @return Lista di oggetti Book che corrispondono al criterio di ricerca
      */
     public static List<Book> searchBooksByTitle(String title) {
-        List<Book> books = new ArrayList<>();
-        String sql = "SELECT id, title, authors, category, publisher, publish_year FROM books WHERE LOWER(title) LIKE ?";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            // Aggiunge i caratteri jolly % per cercare la stringa in qualsiasi posizione
-            pstmt.setString(1, "%" + title.toLowerCase() + "%");
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                Book book = new Book(
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getString("authors"),
-                        rs.getString("category"),
-                        rs.getString("publisher"),
-                        rs.getInt("publish_year")
-                );
-                books.add(book);
-            }
+        try {
+            return queryBooksByTitle(title, null);
         } catch (SQLException e) {
             // Gestione silenziosa degli errori di database
             // In un contesto di produzione, sarebbe meglio loggare questi errori
+            return new ArrayList<>();
         }
-
-        return books;
     }
 
     /**
@@ -70,32 +112,12 @@ public class BookService {
      * @return Lista di oggetti Book che corrispondono al criterio di ricerca
      */
     public static List<Book> searchBooksByAuthor(String author) {
-        List<Book> books = new ArrayList<>();
-        String sql = "SELECT id, title, authors, category, publisher, publish_year FROM books WHERE LOWER(authors) LIKE ?";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            // Aggiunge i caratteri jolly % per cercare la stringa in qualsiasi posizione
-            pstmt.setString(1, "%" + author.toLowerCase() + "%");
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                Book book = new Book(
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getString("authors"),
-                        rs.getString("category"),
-                        rs.getString("publisher"),
-                        rs.getInt("publish_year")
-                );
-                books.add(book);
-            }
+        try {
+            return queryBooksByAuthor(author, null);
         } catch (SQLException e) {
             // Gestione silenziosa degli errori di database
+            return new ArrayList<>();
         }
-
-        return books;
     }
 
     /**
@@ -107,76 +129,591 @@ public class BookService {
      * @return Lista di oggetti Book che corrispondono ai criteri di ricerca
      */
     public static List<Book> searchBooksByAuthorAndYear(String author, int year) {
-        List<Book> books = new ArrayList<>();
-        String sql = "SELECT id, title, authors, category, publisher, publish_year FROM books WHERE LOWER(authors) LIKE ? AND publish_year = ?";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, "%" + author.toLowerCase() + "%");
-            pstmt.setInt(2, year);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                Book book = new Book(
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getString("authors"),
-                        rs.getString("category"),
-                        rs.getString("publisher"),
-                        rs.getInt("publish_year")
-                );
-                books.add(book);
-            }
+        try {
+            return queryBooksByAuthorAndYear(author, year, null);
         } catch (SQLException e) {
             // Gestione silenziosa degli errori di database
+            return new ArrayList<>();
         }
-
-        return books;
     }
 
     /**
      * Recupera i libri con le valutazioni più alte dal database.
-     * Calcola la media di tutte le categorie di valutazione (stile, contenuto, gradevolezza,
-     * originalità ed edizione) per determinare il rating complessivo di ogni libro.
+     * Il rating complessivo di ogni libro è la media di tutte le categorie di valutazione
+     * (stile, contenuto, gradevolezza, originalità ed edizione), letta dalle statistiche per
+     * libro mantenute da {@link RatingStats}; la classifica è servita da {@link TopRatedCache}.
      *
      * @param limit Numero massimo di libri da recuperare
      * @return Lista di oggetti Book ordinati per valutazione media decrescente
      */
     public static List<Book> getTopRatedBooks(int limit) {
+        try {
+            return TopRatedCache.getInstance().getTopRated(limit);
+        } catch (SQLException e) {
+            // Gestione silenziosa degli errori di database
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Versione asincrona di {@link #searchBooksByTitle(String)}.
+     * Gli eventuali errori di database completano il future in modo eccezionale.
+     *
+     * @param title Titolo o parte del titolo da cercare
+     * @return Future annullabile con la lista dei libri trovati
+     */
+    public static CompletableFuture<List<Book>> searchBooksByTitleAsync(String title) {
+        return QueryFuture.supply(handle -> queryBooksByTitle(title, handle));
+    }
+
+    /**
+     * Versione asincrona di {@link #searchBooksByAuthor(String)}.
+     * Gli eventuali errori di database completano il future in modo eccezionale.
+     *
+     * @param author Nome o parte del nome dell'autore da cercare
+     * @return Future annullabile con la lista dei libri trovati
+     */
+    public static CompletableFuture<List<Book>> searchBooksByAuthorAsync(String author) {
+        return QueryFuture.supply(handle -> queryBooksByAuthor(author, handle));
+    }
+
+    /**
+     * Versione asincrona di {@link #searchBooksByAuthorAndYear(String, int)}.
+     * Gli eventuali errori di database completano il future in modo eccezionale.
+     *
+     * @param author Nome o parte del nome dell'autore da cercare
+     * @param year Anno esatto di pubblicazione
+     * @return Future annullabile con la lista dei libri trovati
+     */
+    public static CompletableFuture<List<Book>> searchBooksByAuthorAndYearAsync(String author, int year) {
+        return QueryFuture.supply(handle -> queryBooksByAuthorAndYear(author, year, handle));
+    }
+
+    /**
+     * Versione asincrona di {@link #getTopRatedBooks(int)}.
+     * Gli eventuali errori di database completano il future in modo eccezionale.
+     *
+     * @param limit Numero massimo di libri da recuperare
+     * @return Future annullabile con la lista dei libri ordinati per valutazione media decrescente
+     */
+    public static CompletableFuture<List<Book>> getTopRatedBooksAsync(int limit) {
+        // Nello stato stabile la classifica è già in memoria e non serve alcun thread
+        List<Book> cached = TopRatedCache.getInstance().getIfFresh(limit);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return QueryFuture.supply(handle -> TopRatedCache.getInstance().getTopRated(limit));
+    }
+
+    /**
+     * Restituisce una pagina dei risultati di una ricerca, ordinati per titolo e id.
+     * Per leggere la prima pagina si passa un cursore null; per le successive si usa
+     * il cursore restituito dalla pagina precedente, che le fa leggere dalla stessa fonte
+     * della prima (indice in memoria o database, vedi {@link SearchCursor}).
+     *
+     * @param query Criteri di ricerca
+     * @param after Cursore da cui iniziare (null per la prima pagina)
+     * @param pageSize Numero massimo di libri nella pagina
+     * @return La pagina di risultati (vuota in caso di errore)
+     */
+    public static SearchPage searchBooksPage(BookQuery query, SearchCursor after, int pageSize) {
+        try {
+            return readPage(query, after, pageSize, null);
+        } catch (SQLException e) {
+            // Gestione silenziosa degli errori di database
+            return new SearchPage(new ArrayList<>(), null);
+        }
+    }
+
+    /**
+     * Versione asincrona di {@link #searchBooksPage(BookQuery, SearchCursor, int)}.
+     * Gli eventuali errori di database completano il future in modo eccezionale.
+     *
+     * @param query Criteri di ricerca
+     * @param after Cursore da cui iniziare (null per la prima pagina)
+     * @param pageSize Numero massimo di libri nella pagina
+     * @return Future annullabile con la pagina di risultati
+     */
+    public static CompletableFuture<SearchPage> searchBooksPageAsync(BookQuery query, SearchCursor after, int pageSize) {
+        return QueryFuture.supply(handle -> readPage(query, after, pageSize, handle));
+    }
+
+    /**
+     * Esegue una ricerca consegnando i libri al chiamante man mano che vengono letti,
+     * in ordine di titolo e id. Il database restituisce le righe a blocchi di dimensione
+     * fissa, quindi la memoria utilizzata non dipende dal numero di risultati.
+     * Il consumer viene invocato sul thread che esegue la ricerca.
+     *
+     * @param query Criteri di ricerca
+     * @param sink Consumer che riceve i libri trovati
+     * @return Il numero di libri consegnati
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public static int streamBooks(BookQuery query, Consumer<Book> sink) throws SQLException {
+        return queryStream(query, sink, null);
+    }
+
+    /**
+     * Versione asincrona di {@link #streamBooks(BookQuery, Consumer)}.
+     * Annullando il future la lettura si interrompe e il consumer non riceve altri libri.
+     *
+     * @param query Criteri di ricerca
+     * @param sink Consumer che riceve i libri trovati, invocato su un thread in background
+     * @return Future annullabile con il numero di libri consegnati
+     */
+    public static CompletableFuture<Integer> streamBooksAsync(BookQuery query, Consumer<Book> sink) {
+        return QueryFuture.supply(handle -> queryStream(query, sink, handle));
+    }
+
+    /**
+     * Esegue la ricerca per titolo.
+     *
+     * @param title Titolo o parte del titolo da cercare
+     * @param handle Future a cui registrare lo statement per l'annullamento (può essere null)
+     * @return Lista dei libri trovati
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    private static List<Book> queryBooksByTitle(String title, QueryFuture<?> handle) throws SQLException {
+        BookSearchIndex index = BookSearchIndex.getInstance();
+        if (index.isReady()) {
+            return index.searchByTitle(title);
+        }
+
+        // Aggiunge i caratteri jolly % per cercare la stringa in qualsiasi posizione
+        return queryBooks(TITLE_SEARCH_SQL, pstmt -> pstmt.setString(1, containsPattern(title)), handle);
+    }
+
+    /**
+     * Esegue la ricerca per autore.
+     *
+     * @param author Nome o parte del nome dell'autore da cercare
+     * @param handle Future a cui registrare lo statement per l'annullamento (può essere null)
+     * @return Lista dei libri trovati
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    private static List<Book> queryBooksByAuthor(String author, QueryFuture<?> handle) throws SQLException {
+        BookSearchIndex index = BookSearchIndex.getInstance();
+        if (index.isReady()) {
+            return index.searchByAuthor(author);
+        }
+
+        // Aggiunge i caratteri jolly % per cercare la stringa in qualsiasi posizione
+        return queryBooks(AUTHOR_SEARCH_SQL, pstmt -> pstmt.setString(1, containsPattern(author)), handle);
+    }
+
+    /**
+     * Esegue la ricerca per autore e anno di pubblicazione.
+     *
+     * @param author Nome o parte del nome dell'autore da cercare
+     * @param year Anno esatto di pubblicazione
+     * @param handle Future a cui registrare lo statement per l'annullamento (può essere null)
+     * @return Lista dei libri trovati
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    private static List<Book> queryBooksByAuthorAndYear(String author, int year, QueryFuture<?> handle) throws SQLException {
+        BookSearchIndex index = BookSearchIndex.getInstance();
+        if (index.isReady()) {
+            return index.searchByAuthorAndYear(author, year);
+        }
+
+        String sql = AUTHOR_SEARCH_SQL + " AND publish_year = ?";
+
+        return queryBooks(sql, pstmt -> {
+            pstmt.setString(1, containsPattern(author));
+            pstmt.setInt(2, year);
+        }, handle);
+    }
+
+    /**
+     * Restituisce la pagina di dettaglio del libro con il titolo indicato, ricevuta dal server
+     * dei libri se il client è collegato, altrimenti letta dal database con un'unica query
+     * ({@link BookPage#load(Connection, int)}). Le pagine ricevute dal server vengono
+     * conservate nella cache del client, se attiva ({@link BookPageCache#getClientInstance()}).
+     *
+     * @param title Il titolo del libro
+     * @return La pagina del libro, oppure null se nessun libro ha quel titolo
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public static BookPage getBookPage(String title) throws SQLException {
+        BookPageCache cache = BookPageCache.getClientInstance();
+        BookPage cached = cache.get(title);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = cache.stamp();
+        BookServerClient server = BookServerClient.active();
+        if (server != null) {
+            try {
+                BookPage page = server.getBookPage(title);
+                cache.put(page, stamp);
+                return page;
+            } catch (IOException e) {
+                // Server non raggiungibile o in ritardo: la richiesta viene eseguita sul database
+            }
+        }
+        BookPage page = queryBookPage(title);
+        cache.put(page, stamp);
+        return page;
+    }
+
+    /**
+     * Legge la pagina di dettaglio di un libro da {@link BookPageCache} (attiva solo sul server
+     * dei libri) o, se non presente, dal database. I libri simili vengono presi da
+     * {@link ItemSimilarityIndex} e {@link RecommendationGraph}, se pronti.
+     *
+     * @param title Il titolo del libro
+     * @return La pagina del libro, oppure null se nessun libro ha quel titolo
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    static BookPage queryBookPage(String title) throws SQLException {
+        Integer bookId = TitleResolver.getInstance().resolve(title);
+        if (bookId == null) {
+            return null;
+        }
+
+        BookPageCache cache = BookPageCache.getInstance();
+        BookPage cached = cache.get(bookId);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (dbManager == null) {
+            dbManager = DatabaseManager.getInstance();
+        }
+        long stamp = cache.stamp();
+        BookPage page;
+        try (Connection conn = dbManager.getConnection()) {
+            page = BookPage.load(conn, bookId);
+
+            // Senza consigli degli utenti si propongono i libri simili secondo le valutazioni,
+            // completati con quelli vicini nel grafo dei consigli; se nessuno dei due ne conosce
+            // restano quelli della stessa categoria
+            if (page != null && page.getRecommendations().isEmpty()) {
+                List<Book> similar = ItemSimilarityIndex.getInstance().getSimilarBooks(bookId, BookPage.SIMILAR_BOOKS);
+                similar = similar == null ? new ArrayList<>() : new ArrayList<>(similar);
+                if (similar.size() < BookPage.SIMILAR_BOOKS) {
+                    int[] related = RecommendationGraph.getInstance()
+                            .getPersonalizedPageRank(bookId, BookPage.SIMILAR_BOOKS * 2);
+                    for (Book book : queryBooksById(conn, related)) {
+                        if (similar.size() < BookPage.SIMILAR_BOOKS
+                                && similar.stream().noneMatch(b -> b.getId() == book.getId())) {
+                            similar.add(book);
+                        }
+                    }
+                }
+                if (!similar.isEmpty()) {
+                    page = page.withSimilarBooks(similar);
+                }
+            }
+        }
+        cache.put(page, stamp);
+        return page;
+    }
+
+    /**
+     * Legge una pagina di risultati. Se la ricerca usa il database (l'indice in memoria non era
+     * pronto alla prima pagina) e il client è collegato al server dei libri, la pagina viene
+     * richiesta al server.
+     *
+     * @param query Criteri di ricerca
+     * @param after Cursore da cui iniziare (null per la prima pagina)
+     * @param pageSize Numero massimo di libri nella pagina
+     * @param handle Future a cui registrare lo statement per l'annullamento (può essere null)
+     * @return La pagina di risultati
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    private static SearchPage readPage(BookQuery query, SearchCursor after, int pageSize, QueryFuture<?> handle) throws SQLException {
+        BookServerClient server = BookServerClient.active();
+        if (server != null && sourceOf(after) == SearchCursor.Source.DATABASE) {
+            try {
+                return server.searchPage(query, after, pageSize);
+            } catch (IOException e) {
+                // Server non raggiungibile o in ritardo: la richiesta viene eseguita sul database
+            }
+        }
+        return queryPage(query, after, pageSize, handle);
+    }
+
+    /**
+     * Legge una pagina di risultati dalla fonte indicata dal cursore: l'indice in memoria o il
+     * database. Viene richiesto un libro in più della dimensione della pagina per sapere se
+     * esistono pagine successive.
+     *
+     * @param query Criteri di ricerca
+     * @param after Cursore da cui iniziare (null per la prima pagina)
+     * @param pageSize Numero massimo di libri nella pagina
+     * @param handle Future a cui registrare lo statement per l'annullamento (può essere null)
+     * @return La pagina di risultati
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    static SearchPage queryPage(BookQuery query, SearchCursor after, int pageSize, QueryFuture<?> handle) throws SQLException {
+        SearchCursor.Source source = sourceOf(after);
+        List<Book> rows;
+
+        if (source == SearchCursor.Source.INDEX) {
+            List<Book> results = BookSearchIndex.getInstance().searchSorted(query);
+            int start = after == null ? 0 : firstAfter(results, after);
+            rows = results.subList(start, Math.min(results.size(), start + pageSize + 1));
+        } else {
+            StringBuilder sql = new StringBuilder("SELECT ").append(BOOK_COLUMNS)
+                    .append(" FROM books WHERE ").append(filterSql(query));
+            if (after != null) {
+                // Confronto tra coppie: il database può proseguire dall'indice su (title, id)
+                sql.append(" AND (title, id) > (?, ?)");
+            }
+            sql.append(" ORDER BY title, id LIMIT ?");
+
+            rows = queryBooks(sql.toString(), pstmt -> {
+                int next = bindFilter(pstmt, query);
+                if (after != null) {
+                    pstmt.setString(next++, after.getTitle());
+                    pstmt.setInt(next++, after.getId());
+                }
+                pstmt.setInt(next, pageSize + 1);
+            }, handle);
+        }
+
+        if (rows.size() > pageSize) {
+            List<Book> page = new ArrayList<>(rows.subList(0, pageSize));
+            return new SearchPage(page, SearchCursor.after(page.get(page.size() - 1), source));
+        }
+        return new SearchPage(new ArrayList<>(rows), null);
+    }
+
+    /**
+     * Restituisce la fonte da cui leggere una pagina: quella della prima pagina per le pagine
+     * successive, altrimenti l'indice in memoria se pronto. Se l'indice è stato fermato durante
+     * lo scorrimento si prosegue sul database.
+     *
+     * @param after Cursore da cui iniziare (null per la prima pagina)
+     * @return La fonte della pagina
+     */
+    private static SearchCursor.Source sourceOf(SearchCursor after) {
+        boolean indexReady = BookSearchIndex.getInstance().isReady();
+        if (after == null) {
+            return indexReady ? SearchCursor.Source.INDEX : SearchCursor.Source.DATABASE;
+        }
+        return after.getSource() == SearchCursor.Source.INDEX && indexReady
+                ? SearchCursor.Source.INDEX : SearchCursor.Source.DATABASE;
+    }
+
+    /**
+     * Cerca con una ricerca binaria la posizione del primo libro che segue il cursore.
+     *
+     * @param sorted Libri ordinati secondo {@link BookSearchIndex#TITLE_ID_ORDER}
+     * @param after Cursore sull'indice
+     * @return La posizione del primo libro successivo (la dimensione della lista se non ce ne sono)
+     */
+    private static int firstAfter(List<Book> sorted, SearchCursor after) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (after.precedes(sorted.get(mid))) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Legge tutti i risultati di una ricerca consegnandoli uno alla volta al consumer.
+     * Su PostgreSQL la lettura a blocchi ({@code setFetchSize}) richiede che l'auto-commit
+     * sia disattivato, altrimenti il driver carica in memoria l'intero risultato.
+     *
+     * @param query Criteri di ricerca
+     * @param sink Consumer che riceve i libri trovati
+     * @param handle Future a cui registrare lo statement per l'annullamento (può essere null)
+     * @return Il numero di libri consegnati
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    private static int queryStream(BookQuery query, Consumer<Book> sink, QueryFuture<?> handle) throws SQLException {
+        int count = 0;
+
+        BookSearchIndex index = BookSearchIndex.getInstance();
+        if (index.isReady()) {
+            for (Book book : index.searchSorted(query)) {
+                if (handle != null && handle.isCancelled()) {
+                    break;
+                }
+                sink.accept(book);
+                count++;
+            }
+            return count;
+        }
+
+        if (dbManager == null) {
+            dbManager = DatabaseManager.getInstance();
+        }
+
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books WHERE " + filterSql(query) + " ORDER BY title, id";
+
+        try (Connection conn = dbManager.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                if (handle != null) {
+                    handle.register(pstmt);
+                }
+                pstmt.setFetchSize(STREAM_FETCH_SIZE);
+                bindFilter(pstmt, query);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (handle != null && handle.isCancelled()) {
+                            break;
+                        }
+                        sink.accept(mapBook(rs));
+                        count++;
+                    }
+                }
+            } finally {
+                // Sola lettura: chiude la transazione aperta per la lettura a blocchi
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Restituisce la condizione WHERE corrispondente ai criteri di ricerca.
+     *
+     * @param query Criteri di ricerca
+     * @return La condizione SQL, con i parametri da impostare con {@link #bindFilter}
+     */
+    private static String filterSql(BookQuery query) {
+        return switch (query.getMode()) {
+            case TITLE -> TITLE_FILTER;
+            case AUTHOR -> AUTHOR_FILTER;
+            case AUTHOR_YEAR -> AUTHOR_FILTER + " AND publish_year = ?";
+        };
+    }
+
+    /**
+     * Imposta i parametri della condizione restituita da {@link #filterSql(BookQuery)}.
+     *
+     * @param pstmt Statement da configurare
+     * @param query Criteri di ricerca
+     * @return L'indice del primo parametro successivo alla condizione
+     * @throws SQLException se si verifica un errore nell'impostazione dei parametri
+     */
+    private static int bindFilter(PreparedStatement pstmt, BookQuery query) throws SQLException {
+        pstmt.setString(1, containsPattern(query.getTerm()));
+        if (query.getMode() == BookQuery.Mode.AUTHOR_YEAR) {
+            pstmt.setInt(2, query.getYear());
+            return 3;
+        }
+        return 2;
+    }
+
+    /**
+     * Esegue una query che restituisce libri e ne converte il risultato.
+     * La connessione viene presa dal pool e restituita al termine.
+     *
+     * @param sql Query SQL da eseguire
+     * @param binder Imposta i parametri della query
+     * @param handle Future a cui registrare lo statement per l'annullamento (può essere null)
+     * @return Lista dei libri restituiti dalla query
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    private static List<Book> queryBooks(String sql, ParameterBinder binder, QueryFuture<?> handle) throws SQLException {
+        if (dbManager == null) {
+            dbManager = DatabaseManager.getInstance();
+        }
+
         List<Book> books = new ArrayList<>();
-        String sql = "SELECT b.id, b.title, b.authors, b.category, b.publisher, b.publish_year, " +
-                "AVG((br.style_rating + br.content_rating + br.pleasantness_rating + " +
-                "br.originality_rating + br.edition_rating) / 5.0) as avg_rating " +
-                "FROM books b " +
-                "JOIN book_ratings br ON b.id = br.book_id " +
-                "GROUP BY b.id, b.title, b.authors, b.category, b.publisher, b.publish_year " +
-                "HAVING AVG((br.style_rating + br.content_rating + br.pleasantness_rating + " +
-                "br.originality_rating + br.edition_rating) / 5.0) > 0 " +
-                "ORDER BY avg_rating DESC " +
-                "LIMIT ?";
 
         try (Connection conn = dbManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setInt(1, limit);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                Book book = new Book(
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getString("authors"),
-                        rs.getString("category"),
-                        rs.getString("publisher"),
-                        rs.getInt("publish_year")
-                );
-                books.add(book);
+            if (handle != null) {
+                handle.register(pstmt);
+            }
+            binder.bind(pstmt);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    books.add(mapBook(rs));
+                }
             }
-        } catch (SQLException e) {
-            // Gestione silenziosa degli errori di database
         }
 
         return books;
     }
-}
\ No newline at end of file
+
+    /**
+     * Costruisce il pattern LIKE per una ricerca parziale case-insensitive.
+     * I caratteri jolly digitati dall'utente ({@code %} e {@code _}) vengono resi letterali,
+     * altrimenti un singolo "%" trasformerebbe la ricerca in una scansione di tutto il catalogo.
+     *
+     * @param term Testo cercato dall'utente
+     * @return Il pattern da passare alla query
+     */
+    static String containsPattern(String term) {
+        String escaped = term.toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    /**
+     * Legge i libri con gli id indicati, nello stesso ordine.
+     *
+     * @param conn Connessione da usare
+     * @param ids Gli id dei libri
+     * @return I libri trovati
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    private static List<Book> queryBooksById(Connection conn, int[] ids) throws SQLException {
+        List<Book> books = new ArrayList<>();
+        if (ids.length == 0) {
+            return books;
+        }
+
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books WHERE id IN (" +
+                String.join(", ", Collections.nCopies(ids.length, "?")) + ")";
+        Map<Integer, Book> byId = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < ids.length; i++) {
+                pstmt.setInt(i + 1, ids[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Book book = mapBook(rs);
+                    byId.put(book.getId(), book);
+                }
+            }
+        }
+        for (int id : ids) {
+            Book book = byId.get(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Crea un oggetto Book a partire dalla riga corrente del ResultSet.
+     *
+     * @param rs ResultSet posizionato sulla riga da leggere
+     * @return Il libro corrispondente alla riga
+     * @throws SQLException se si verifica un errore di lettura
+     */
+    static Book mapBook(ResultSet rs) throws SQLException {
+        return new Book(
+                rs.getInt("id"),
+                rs.getString("title"),
+                rs.getString("authors"),
+                rs.getString("category"),
+                rs.getString("publisher"),
+                rs.getInt("publish_year")
+        );
+    }
+}
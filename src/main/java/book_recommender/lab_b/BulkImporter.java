@@ -0,0 +1,760 @@
+package book_recommender.lab_b;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Importa nel database i file CSV scaricati all'avvio del server.
+ *
+ * <p>Ogni file viene letto una sola volta e caricato in una tabella temporanea di appoggio
+ * (staging): su PostgreSQL con il protocollo COPY tramite {@code CopyManager}, sugli altri
+ * database (ad esempio H2) con insert raggruppati in batch JDBC. Le chiavi esterne (utenti,
+ * titoli dei libri, librerie) vengono poi risolte con poche istruzioni
+ * {@code INSERT ... SELECT} e {@code UPDATE} che lavorano sull'intera tabella di appoggio,
+ * invece di una serie di query e di un insert per ogni riga del file.</p>
+ *
+ * <p>I titoli citati da librerie, valutazioni e consigli vengono cercati prima per
+ * corrispondenza esatta e poi per corrispondenza parziale senza distinzione tra maiuscole e
+ * minuscole; i titoli che restano senza corrispondenza vengono inseriti come nuovi libri con
+ * autore, categoria ed editore "Unknown", come avveniva nell'importazione riga per riga.</p>
+ *
+ * <p>Le operazioni vengono eseguite sulla connessione ricevuta, senza commit: la gestione
+ * della transazione resta al chiamante. Le fasi di caricamento e di unione sono esposte
+ * separatamente per {@link ImportPipeline}, che carica i file in parallelo.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class BulkImporter {
+
+    /**
+     * Numero di righe inviate in un singolo batch JDBC quando COPY non è disponibile.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Dimensione (in caratteri) del buffer accumulato prima di inviarlo al flusso COPY.
+     */
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Lunghezze massime delle colonne della tabella users e libraries: le righe che le
+     * superano verrebbero rifiutate dal database e vengono scartate già in lettura.
+     */
+    private static final int MAX_USER_ID_LENGTH = 8;
+    private static final int MAX_FULL_NAME_LENGTH = 100;
+    private static final int MAX_FISCAL_CODE_LENGTH = 16;
+    private static final int MAX_EMAIL_LENGTH = 100;
+    private static final int MAX_PASSWORD_LENGTH = 100;
+    private static final int MAX_LIBRARY_NAME_LENGTH = 100;
+
+    /**
+     * I file importati all'avvio, con la tabella di appoggio, la conversione delle righe
+     * del file e le istruzioni che uniscono i dati caricati alle tabelle definitive.
+     */
+    public enum Dataset {
+
+        /**
+         * Libri (titolo, autori, categoria, editore, anno).
+         * A parità di titolo e autori viene mantenuta la prima riga del file.
+         */
+        BOOKS("stage_books",
+                "title VARCHAR, authors VARCHAR, category VARCHAR, publisher VARCHAR, publish_year INTEGER",
+                "title", "authors", "category", "publisher", "publish_year") {
+            @Override
+            LineParser parser(String header) {
+                return (row, sink) -> {
+                    if (row.fieldCount() < 5) {
+                        return;
+                    }
+
+                    String title = row.field(0);
+                    String authors = row.field(1);
+                    if (title.isEmpty() || authors.isEmpty()) {
+                        return;
+                    }
+
+                    sink.accept(title, authors, row.field(2), row.field(3), parseYear(row.field(4)));
+                };
+            }
+
+            @Override
+            void merge(BulkImporter importer) throws SQLException {
+                importer.execute("INSERT INTO books (title, authors, category, publisher, publish_year) " +
+                        "SELECT s.title, s.authors, s.category, s.publisher, s.publish_year FROM stage_books s " +
+                        "WHERE s.row_no IN (SELECT MIN(row_no) FROM stage_books GROUP BY title, authors) " +
+                        "AND NOT EXISTS (SELECT 1 FROM books b WHERE b.title = s.title AND b.authors = s.authors) " +
+                        "ORDER BY s.row_no");
+            }
+        },
+
+        /**
+         * Utenti registrati. Se lo stesso utente compare più volte, o esiste già nel
+         * database, vengono mantenuti i dati dell'ultima riga del file.
+         */
+        USERS("stage_users",
+                "user_id VARCHAR, full_name VARCHAR, fiscal_code VARCHAR, email VARCHAR, password VARCHAR",
+                "user_id", "full_name", "fiscal_code", "email", "password") {
+            @Override
+            LineParser parser(String header) {
+                return (row, sink) -> {
+                    if (row.fieldCount() < 5) {
+                        return;
+                    }
+
+                    String fullName = row.field(0);
+                    String fiscalCode = row.field(1);
+                    String email = row.field(2);
+                    String userId = row.field(3);
+                    String password = row.field(4);
+
+                    if (userId.isEmpty() || fullName.isEmpty()
+                            || userId.length() > MAX_USER_ID_LENGTH
+                            || fullName.length() > MAX_FULL_NAME_LENGTH
+                            || fiscalCode.length() > MAX_FISCAL_CODE_LENGTH
+                            || email.length() > MAX_EMAIL_LENGTH
+                            || password.length() > MAX_PASSWORD_LENGTH) {
+                        return;
+                    }
+
+                    sink.accept(userId, fullName, fiscalCode, email, password);
+                };
+            }
+
+            @Override
+            void merge(BulkImporter importer) throws SQLException {
+                // Per ogni utente resta solo l'ultima riga del file
+                importer.execute("DELETE FROM stage_users " +
+                        "WHERE row_no NOT IN (SELECT MAX(row_no) FROM stage_users GROUP BY user_id)");
+
+                importer.execute("UPDATE users SET (full_name, fiscal_code, email, password) = " +
+                        "(SELECT s.full_name, s.fiscal_code, s.email, s.password FROM stage_users s " +
+                        "WHERE s.user_id = users.user_id) " +
+                        "WHERE user_id IN (SELECT user_id FROM stage_users)");
+
+                importer.execute("INSERT INTO users (user_id, full_name, fiscal_code, email, password) " +
+                        "SELECT s.user_id, s.full_name, s.fiscal_code, s.email, s.password FROM stage_users s " +
+                        "WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.user_id = s.user_id) " +
+                        "ORDER BY s.row_no");
+            }
+        },
+
+        /**
+         * Librerie degli utenti: ogni riga contiene l'utente, il nome della libreria e i titoli
+         * dei libri. Gli utenti non registrati vengono creati con dati provvisori.
+         */
+        LIBRARIES("stage_libraries",
+                "user_id VARCHAR, library_name VARCHAR, book_title VARCHAR, book_id INTEGER",
+                "user_id", "library_name", "book_title") {
+            @Override
+            LineParser parser(String header) {
+                return (row, sink) -> {
+                    if (row.fieldCount() < 2) {
+                        return;
+                    }
+
+                    String userId = row.field(0);
+                    String libraryName = row.field(1);
+                    if (userId.isEmpty() || libraryName.isEmpty()
+                            || userId.length() > MAX_USER_ID_LENGTH
+                            || libraryName.length() > MAX_LIBRARY_NAME_LENGTH) {
+                        return;
+                    }
+
+                    // Una riga di appoggio per ogni libro; una riga senza titolo per le librerie vuote
+                    boolean hasBooks = false;
+                    for (int i = 2; i < row.fieldCount(); i++) {
+                        String bookTitle = row.field(i);
+                        if (!bookTitle.isEmpty()) {
+                            sink.accept(userId, libraryName, bookTitle);
+                            hasBooks = true;
+                        }
+                    }
+                    if (!hasBooks) {
+                        sink.accept(userId, libraryName, null);
+                    }
+                };
+            }
+
+            @Override
+            void merge(BulkImporter importer) throws SQLException {
+                importer.createMissingUsers(stagingTable);
+                importer.resolveTitles(stagingTable, "book_title", "book_id");
+
+                importer.execute("INSERT INTO libraries (user_id, library_name) " +
+                        "SELECT s.user_id, s.library_name FROM stage_libraries s " +
+                        "WHERE NOT EXISTS (SELECT 1 FROM libraries l " +
+                        "WHERE l.user_id = s.user_id AND l.library_name = s.library_name) " +
+                        "GROUP BY s.user_id, s.library_name ORDER BY MIN(s.row_no)");
+
+                importer.execute("INSERT INTO library_books (library_id, book_id) " +
+                        "SELECT DISTINCT l.id, s.book_id FROM stage_libraries s " +
+                        "JOIN libraries l ON l.user_id = s.user_id AND l.library_name = s.library_name " +
+                        "WHERE s.book_id IS NOT NULL " +
+                        "AND NOT EXISTS (SELECT 1 FROM library_books lb " +
+                        "WHERE lb.library_id = l.id AND lb.book_id = s.book_id)");
+            }
+        },
+
+        /**
+         * Valutazioni dei libri. Il file può iniziare con una colonna "id" numerica, riconosciuta
+         * dall'intestazione. I voti mancanti o non validi valgono 3 e vengono riportati
+         * nell'intervallo 1-5; per ogni coppia utente/libro resta la prima valutazione.
+         * Dopo l'unione vengono ricalcolate le statistiche per libro ({@link RatingStats}).
+         */
+        RATINGS("stage_ratings",
+                "user_id VARCHAR, book_title VARCHAR, book_id INTEGER, " +
+                        "style_rating INTEGER, content_rating INTEGER, pleasantness_rating INTEGER, " +
+                        "originality_rating INTEGER, edition_rating INTEGER, average_rating DOUBLE PRECISION, " +
+                        "general_comment VARCHAR, style_comment VARCHAR, content_comment VARCHAR, " +
+                        "pleasantness_comment VARCHAR, originality_comment VARCHAR, edition_comment VARCHAR",
+                "user_id", "book_title", "style_rating", "content_rating", "pleasantness_rating",
+                "originality_rating", "edition_rating", "average_rating", "general_comment",
+                "style_comment", "content_comment", "pleasantness_comment", "originality_comment",
+                "edition_comment") {
+            @Override
+            LineParser parser(String header) {
+                // Il formato con id numerico ha una colonna in più all'inizio
+                boolean isNumericIdFormat = header != null && header.contains("\"id\"");
+                int userIndex = isNumericIdFormat ? 1 : 0;
+                int ratingIndex = userIndex + 2;
+                int commentIndex = ratingIndex + 6;
+
+                return (row, sink) -> {
+                    if (row.fieldCount() < ratingIndex + 5) {
+                        return;
+                    }
+
+                    String userId = row.field(userIndex);
+                    String bookTitle = row.field(userIndex + 1);
+                    if (userId.isEmpty() || bookTitle.isEmpty() || userId.length() > MAX_USER_ID_LENGTH) {
+                        return;
+                    }
+
+                    Object[] values = new Object[14];
+                    values[0] = userId;
+                    values[1] = bookTitle;
+
+                    int sum = 0;
+                    for (int i = 0; i < 5; i++) {
+                        int rating = parseRating(row, ratingIndex + i);
+                        values[2 + i] = rating;
+                        sum += rating;
+                    }
+                    // Media arrotondata a una cifra decimale
+                    values[7] = Math.round(sum / 5.0 * 10) / 10.0;
+
+                    for (int i = 0; i < 6; i++) {
+                        String comment = row.fieldCount() > commentIndex + i ? row.field(commentIndex + i) : "";
+                        values[8 + i] = comment.isEmpty() ? null : comment;
+                    }
+
+                    sink.accept(values);
+                };
+            }
+
+            @Override
+            void merge(BulkImporter importer) throws SQLException {
+                importer.createMissingUsers(stagingTable);
+                importer.resolveTitles(stagingTable, "book_title", "book_id");
+
+                importer.execute("INSERT INTO book_ratings (user_id, book_id, style_rating, content_rating, " +
+                        "pleasantness_rating, originality_rating, edition_rating, average_rating, " +
+                        "general_comment, style_comment, content_comment, pleasantness_comment, " +
+                        "originality_comment, edition_comment) " +
+                        "SELECT s.user_id, s.book_id, s.style_rating, s.content_rating, s.pleasantness_rating, " +
+                        "s.originality_rating, s.edition_rating, s.average_rating, s.general_comment, " +
+                        "s.style_comment, s.content_comment, s.pleasantness_comment, s.originality_comment, " +
+                        "s.edition_comment FROM stage_ratings s " +
+                        "WHERE s.row_no IN (SELECT MIN(row_no) FROM stage_ratings GROUP BY user_id, book_id) " +
+                        "AND NOT EXISTS (SELECT 1 FROM book_ratings r " +
+                        "WHERE r.user_id = s.user_id AND r.book_id = s.book_id) " +
+                        "ORDER BY s.row_no");
+
+                // Le statistiche per libro non sono aggiornate riga per riga durante l'importazione
+                RatingStats.rebuild(importer.conn);
+            }
+        },
+
+        /**
+         * Consigli di lettura: ogni riga contiene l'utente, il titolo del libro di partenza e
+         * i titoli dei libri consigliati. Le righe di utenti non registrati vengono ignorate.
+         */
+        RECOMMENDATIONS("stage_recommendations",
+                "user_id VARCHAR, source_title VARCHAR, source_id INTEGER, " +
+                        "recommended_title VARCHAR, recommended_id INTEGER",
+                "user_id", "source_title", "recommended_title") {
+            @Override
+            LineParser parser(String header) {
+                return (row, sink) -> {
+                    if (row.fieldCount() < 3) {
+                        return;
+                    }
+
+                    String userId = row.field(0);
+                    String sourceTitle = row.field(1);
+                    if (userId.isEmpty() || sourceTitle.isEmpty()) {
+                        return;
+                    }
+
+                    // Una riga di appoggio per ogni libro consigliato
+                    for (int i = 2; i < row.fieldCount(); i++) {
+                        String recommendedTitle = row.field(i);
+                        if (!recommendedTitle.isEmpty()) {
+                            sink.accept(userId, sourceTitle, recommendedTitle);
+                        }
+                    }
+                };
+            }
+
+            @Override
+            void merge(BulkImporter importer) throws SQLException {
+                // I consigli di utenti non registrati non vengono importati
+                importer.execute("DELETE FROM stage_recommendations " +
+                        "WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.user_id = stage_recommendations.user_id)");
+
+                importer.resolveTitles(stagingTable, "source_title", "source_id");
+                importer.resolveTitles(stagingTable, "recommended_title", "recommended_id");
+
+                importer.execute("INSERT INTO book_recommendations (user_id, source_book_id, recommended_book_id) " +
+                        "SELECT DISTINCT s.user_id, s.source_id, s.recommended_id FROM stage_recommendations s " +
+                        "WHERE NOT EXISTS (SELECT 1 FROM book_recommendations r " +
+                        "WHERE r.user_id = s.user_id AND r.source_book_id = s.source_id " +
+                        "AND r.recommended_book_id = s.recommended_id)");
+            }
+        };
+
+        /** Tabella temporanea di appoggio */
+        final String stagingTable;
+        /** Definizione delle colonne della tabella di appoggio, esclusa row_no */
+        final String columnDefinitions;
+        /** Colonne valorizzate durante il caricamento, esclusa row_no */
+        final String[] stagedColumns;
+
+        Dataset(String stagingTable, String columnDefinitions, String... stagedColumns) {
+            this.stagingTable = stagingTable;
+            this.columnDefinitions = columnDefinitions;
+            this.stagedColumns = stagedColumns;
+        }
+
+        /**
+         * Restituisce il nome del file usato nei messaggi di avanzamento.
+         *
+         * @return Il nome del file
+         */
+        public String getLabel() {
+            return name().toLowerCase(Locale.ROOT).replace('_', ' ');
+        }
+
+        /**
+         * Restituisce i file che devono essere uniti alle tabelle definitive prima di questo.
+         * Librerie, valutazioni e consigli fanno riferimento a libri e utenti; inoltre possono
+         * creare gli stessi libri e utenti provvisori, quindi vengono uniti uno alla volta.
+         *
+         * @return I file da cui dipende questo file
+         */
+        public Set<Dataset> dependencies() {
+            return switch (this) {
+                case BOOKS, USERS -> EnumSet.noneOf(Dataset.class);
+                case LIBRARIES -> EnumSet.of(BOOKS, USERS);
+                case RATINGS -> EnumSet.of(BOOKS, USERS, LIBRARIES);
+                case RECOMMENDATIONS -> EnumSet.of(BOOKS, USERS, LIBRARIES, RATINGS);
+            };
+        }
+
+        /**
+         * Crea il convertitore delle righe del file in righe della tabella di appoggio.
+         *
+         * @param header La riga di intestazione del file (può essere null)
+         * @return Il convertitore delle righe
+         */
+        abstract LineParser parser(String header);
+
+        /**
+         * Unisce i dati della tabella di appoggio alle tabelle definitive.
+         *
+         * @param importer L'importatore collegato alla connessione che contiene la tabella di appoggio
+         * @throws SQLException se si verifica un errore durante l'unione
+         */
+        abstract void merge(BulkImporter importer) throws SQLException;
+    }
+
+    /**
+     * Converte i campi di una riga del file in zero o più righe della tabella di appoggio.
+     */
+    @FunctionalInterface
+    interface LineParser {
+        /**
+         * @param row Il lettore posizionato sulla riga del file
+         * @param sink Destinazione delle righe da caricare
+         * @throws SQLException se si verifica un errore durante la scrittura delle righe
+         */
+        void parse(CsvReader row, RowSink sink) throws SQLException;
+    }
+
+    /**
+     * Destinazione delle righe convertite: il canale di caricamento o un lotto in memoria.
+     */
+    @FunctionalInterface
+    interface RowSink {
+        /**
+         * @param values I valori delle colonne, nell'ordine di {@code Dataset.stagedColumns}
+         * @throws SQLException se si verifica un errore durante la scrittura
+         */
+        void accept(Object... values) throws SQLException;
+    }
+
+    /** Connessione su cui vengono eseguite tutte le operazioni */
+    private final Connection conn;
+    /** true se il database è PostgreSQL e si può usare COPY */
+    private final boolean postgres;
+
+    /**
+     * Crea un importatore che lavora sulla connessione indicata.
+     *
+     * @param conn Connessione al database
+     * @throws SQLException se non è possibile leggere i metadati della connessione
+     */
+    public BulkImporter(Connection conn) throws SQLException {
+        this.conn = conn;
+        this.postgres = SearchIndexes.isPostgreSQL(conn);
+    }
+
+    /**
+     * Importa un file: lo carica nella tabella di appoggio e unisce i dati alle tabelle definitive.
+     *
+     * @param dataset Il tipo di file da importare
+     * @param file Il file CSV
+     * @return Il numero di righe caricate nella tabella di appoggio
+     * @throws SQLException se si verifica un errore durante l'importazione
+     * @throws IOException se si verifica un errore durante la lettura del file
+     */
+    public int importFile(Dataset dataset, File file) throws SQLException, IOException {
+        createStagingTable(dataset);
+
+        try {
+            int rows;
+            try (StagingWriter writer = openStagingWriter(dataset);
+                 CsvReader reader = new CsvReader(file)) {
+
+                LineParser parser = dataset.parser(reader.next() ? reader.line() : null);
+                RowSink sink = writer::addRow;
+                while (reader.next()) {
+                    parser.parse(reader, sink);
+                }
+                rows = writer.finish();
+            }
+
+            merge(dataset);
+            return rows;
+        } finally {
+            dropStagingTable(dataset);
+        }
+    }
+
+    /**
+     * Unisce i dati caricati nella tabella di appoggio alle tabelle definitive.
+     *
+     * @param dataset Il tipo di file caricato
+     * @throws SQLException se si verifica un errore durante l'unione
+     */
+    void merge(Dataset dataset) throws SQLException {
+        analyze(dataset.stagingTable);
+        dataset.merge(this);
+    }
+
+    /**
+     * Crea con dati provvisori gli utenti citati nella tabella di appoggio ma non ancora
+     * registrati, come faceva l'importazione riga per riga di librerie e valutazioni.
+     *
+     * @param stagingTable Tabella di appoggio con una colonna user_id
+     * @throws SQLException se si verifica un errore durante l'inserimento
+     */
+    private void createMissingUsers(String stagingTable) throws SQLException {
+        execute("INSERT INTO users (user_id, full_name, fiscal_code, email, password) " +
+                "SELECT DISTINCT s.user_id, s.user_id, 'UNKNOWN', s.user_id || '@example.com', 'password' " +
+                "FROM " + stagingTable + " s " +
+                "WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.user_id = s.user_id)");
+    }
+
+    /**
+     * Associa a ogni titolo della tabella di appoggio l'id del libro corrispondente.
+     * Il titolo viene cercato prima per corrispondenza esatta, poi come sottostringa senza
+     * distinzione tra maiuscole e minuscole; i titoli ancora senza corrispondenza vengono
+     * inseriti nella tabella books con dati sconosciuti.
+     *
+     * @param stagingTable Tabella di appoggio
+     * @param titleColumn Colonna con il titolo del libro
+     * @param idColumn Colonna in cui scrivere l'id del libro
+     * @throws SQLException se si verifica un errore durante la risoluzione
+     */
+    private void resolveTitles(String stagingTable, String titleColumn, String idColumn) throws SQLException {
+        String unresolved = " WHERE " + idColumn + " IS NULL AND " + titleColumn + " IS NOT NULL";
+        String exactMatch = "UPDATE " + stagingTable + " SET " + idColumn + " = " +
+                "(SELECT MIN(b.id) FROM books b WHERE b.title = " + stagingTable + "." + titleColumn + ")" +
+                unresolved;
+
+        execute(exactMatch);
+
+        // Corrispondenza parziale: i caratteri speciali di LIKE nel titolo vengono protetti
+        String pattern = "'%' || REPLACE(REPLACE(REPLACE(LOWER(" + stagingTable + "." + titleColumn + "), " +
+                "'\\', '\\\\'), '%', '\\%'), '_', '\\_') || '%'";
+        execute("UPDATE " + stagingTable + " SET " + idColumn + " = " +
+                "(SELECT MIN(b.id) FROM books b WHERE LOWER(b.title) LIKE " + pattern + " ESCAPE '\\')" +
+                unresolved);
+
+        execute("INSERT INTO books (title, authors, category, publisher) " +
+                "SELECT s." + titleColumn + ", 'Unknown', 'Unknown', 'Unknown' FROM " + stagingTable + " s" +
+                " WHERE s." + idColumn + " IS NULL AND s." + titleColumn + " IS NOT NULL " +
+                "GROUP BY s." + titleColumn + " ORDER BY MIN(s.row_no)");
+
+        execute(exactMatch);
+    }
+
+    /**
+     * Crea la tabella temporanea di appoggio di un file. Alle colonne del file viene aggiunta
+     * la colonna row_no con la posizione della riga.
+     *
+     * @param dataset Il tipo di file
+     * @throws SQLException se si verifica un errore durante la creazione
+     */
+    void createStagingTable(Dataset dataset) throws SQLException {
+        dropStagingTable(dataset);
+        execute("CREATE TEMPORARY TABLE " + dataset.stagingTable +
+                " (row_no INTEGER, " + dataset.columnDefinitions + ")");
+    }
+
+    /**
+     * Elimina la tabella di appoggio di un file, se esiste.
+     *
+     * @param dataset Il tipo di file
+     * @throws SQLException se si verifica un errore durante l'eliminazione
+     */
+    void dropStagingTable(Dataset dataset) throws SQLException {
+        execute("DROP TABLE IF EXISTS " + dataset.stagingTable);
+    }
+
+    /**
+     * Aggiorna le statistiche di una tabella di appoggio. PostgreSQL non analizza
+     * automaticamente le tabelle temporanee, e senza statistiche il planner stima male
+     * le join che seguono il caricamento.
+     *
+     * @param name Nome della tabella
+     * @throws SQLException se si verifica un errore durante l'analisi
+     */
+    private void analyze(String name) throws SQLException {
+        if (postgres) {
+            execute("ANALYZE " + name);
+        }
+    }
+
+    /**
+     * Esegue un'istruzione SQL senza parametri.
+     *
+     * @param sql L'istruzione da eseguire
+     * @return Il numero di righe modificate
+     * @throws SQLException se si verifica un errore durante l'esecuzione
+     */
+    private int execute(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            return stmt.executeUpdate(sql);
+        }
+    }
+
+    /**
+     * Apre il canale di scrittura verso la tabella di appoggio di un file: COPY su PostgreSQL,
+     * batch JDBC sugli altri database.
+     *
+     * @param dataset Il tipo di file
+     * @return Il canale di scrittura
+     * @throws SQLException se non è possibile avviare il caricamento
+     */
+    StagingWriter openStagingWriter(Dataset dataset) throws SQLException {
+        String columnList = "row_no, " + String.join(", ", dataset.stagedColumns);
+        if (postgres) {
+            CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn("COPY " + dataset.stagingTable + " (" + columnList + ") FROM STDIN");
+            return new CopyStagingWriter(copyIn);
+        }
+
+        String placeholders = "?" + ", ?".repeat(dataset.stagedColumns.length);
+        return new BatchStagingWriter(conn.prepareStatement(
+                "INSERT INTO " + dataset.stagingTable + " (" + columnList + ") VALUES (" + placeholders + ")"));
+    }
+
+    /**
+     * Converte l'anno di pubblicazione, che nel file può comparire come numero decimale.
+     *
+     * @param value Il valore letto dal file
+     * @return L'anno, oppure null se il valore non è numerico
+     */
+    private static Integer parseYear(String value) {
+        try {
+            return (int) Float.parseFloat(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Converte un voto, riportandolo nell'intervallo 1-5. I voti mancanti o non numerici valgono 3.
+     *
+     * @param row La riga letta dal file
+     * @param index La posizione del campo con il voto
+     * @return Il voto
+     */
+    private static int parseRating(CsvReader row, int index) {
+        return Math.max(1, Math.min(5, row.intField(index, 3)));
+    }
+
+    /**
+     * Canale di scrittura delle righe in una tabella di appoggio.
+     * Il numero di riga (row_no) viene assegnato automaticamente.
+     */
+    abstract static class StagingWriter implements AutoCloseable {
+        /** Numero di righe scritte */
+        protected int rowCount = 0;
+
+        /**
+         * Aggiunge una riga alla tabella di appoggio.
+         *
+         * @param values I valori delle colonne, nell'ordine di {@code Dataset.stagedColumns}
+         * @throws SQLException se si verifica un errore durante la scrittura
+         */
+        abstract void addRow(Object... values) throws SQLException;
+
+        /**
+         * Completa il caricamento delle righe ancora in sospeso.
+         *
+         * @return Il numero di righe scritte
+         * @throws SQLException se si verifica un errore durante il caricamento
+         */
+        abstract int finish() throws SQLException;
+
+        @Override
+        public abstract void close() throws SQLException;
+    }
+
+    /**
+     * Caricamento tramite COPY di PostgreSQL, in formato testo: una riga per record con i
+     * valori separati da tabulazioni e {@code \N} per i valori null.
+     */
+    private static class CopyStagingWriter extends StagingWriter {
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+
+        CopyStagingWriter(CopyIn copyIn) {
+            this.copyIn = copyIn;
+        }
+
+        @Override
+        void addRow(Object... values) throws SQLException {
+            buffer.append(++rowCount);
+            for (Object value : values) {
+                buffer.append('\t');
+                if (value == null) {
+                    buffer.append("\\N");
+                } else {
+                    appendEscaped(value.toString());
+                }
+            }
+            buffer.append('\n');
+
+            if (buffer.length() >= COPY_BUFFER_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Aggiunge un valore al buffer proteggendo i caratteri speciali del formato testo di COPY.
+         */
+        private void appendEscaped(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> buffer.append("\\\\");
+                    case '\t' -> buffer.append("\\t");
+                    case '\n' -> buffer.append("\\n");
+                    case '\r' -> buffer.append("\\r");
+                    default -> buffer.append(c);
+                }
+            }
+        }
+
+        /**
+         * Invia il contenuto del buffer al server.
+         */
+        private void flush() throws SQLException {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+
+        @Override
+        int finish() throws SQLException {
+            flush();
+            copyIn.endCopy();
+            return rowCount;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            // Se il caricamento non è stato completato la COPY viene annullata
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * Caricamento tramite insert raggruppati in batch JDBC, per i database senza COPY.
+     */
+    private static class BatchStagingWriter extends StagingWriter {
+        private final PreparedStatement pstmt;
+        private int pending = 0;
+
+        BatchStagingWriter(PreparedStatement pstmt) {
+            this.pstmt = pstmt;
+        }
+
+        @Override
+        void addRow(Object... values) throws SQLException {
+            pstmt.setInt(1, ++rowCount);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    pstmt.setNull(i + 2, Types.NULL);
+                } else {
+                    pstmt.setObject(i + 2, values[i]);
+                }
+            }
+            pstmt.addBatch();
+
+            if (++pending >= BATCH_SIZE) {
+                pstmt.executeBatch();
+                pending = 0;
+            }
+        }
+
+        @Override
+        int finish() throws SQLException {
+            if (pending > 0) {
+                pstmt.executeBatch();
+                pending = 0;
+            }
+            return rowCount;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            pstmt.close();
+        }
+    }
+}
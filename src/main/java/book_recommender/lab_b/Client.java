@@ -56,6 +56,12 @@ public class Client extends Application {
     /** Password predefinita per la connessione al database */
     private String dbPassword = "CPuc#@r-zbKY"; // Credenziali fisse
 
+    // Parametri di connessione al server dei libri (facoltativi)
+    /** Host del server dei libri */
+    private String bookServerHost;
+    /** Porta del server dei libri, 0 se il client usa solo il database */
+    private int bookServerPort = 0;
+
     /** Flag che indica se utilizzare ngrok per la connessione remota (sempre true) */
     private boolean useNgrok = true;
 
@@ -120,6 +126,24 @@ public class Client extends Application {
 
                         // Registra la connessione del client nella tabella active_clients
                         registerClientConnection(true);
+
+                        // Costruisce in background l'indice di ricerca del catalogo
+                        BookSearchIndex.getInstance().start();
+
+                        // Carica in background la mappa titolo → id usata dai salvataggi
+                        TitleResolver.getInstance().start();
+
+                        // Ascolta le modifiche delle valutazioni per aggiornare la classifica in memoria
+                        TopRatedCache.getInstance().start();
+
+                        // Collega il client al server dei libri, se indicato
+                        if (bookServerPort > 0) {
+                            try {
+                                BookServerClient.connect(bookServerHost, bookServerPort);
+                            } catch (IOException e) {
+                                // Server dei libri non raggiungibile: le schermate interrogano il database
+                            }
+                        }
                         return true;
                     } catch (Exception e) {
                         // In caso di errore, restituisce false
@@ -245,11 +269,16 @@ public class Client extends Application {
         TextField portField = new TextField();
         portField.setPromptText("Porta ngrok");
 
+        TextField bookServerField = new TextField();
+        bookServerField.setPromptText("host:porta (facoltativo)");
+
         // Aggiunge i campi alla griglia
         grid.add(new Label("Host ngrok:"), 0, 0);
         grid.add(hostField, 1, 0);
         grid.add(new Label("Porta ngrok:"), 0, 1);
         grid.add(portField, 1, 1);
+        grid.add(new Label("Server libri:"), 0, 2);
+        grid.add(bookServerField, 1, 2);
 
         // Imposta la griglia come contenuto del dialog
         dialog.getDialogPane().setContent(grid);
@@ -279,6 +308,24 @@ public class Client extends Application {
                 return false;
             }
 
+            // Il server dei libri può essere indicato come "host:porta" o solo come porta sullo stesso host
+            String bookServer = bookServerField.getText().trim();
+            bookServerPort = 0;
+            if (!bookServer.isEmpty()) {
+                int separator = bookServer.lastIndexOf(':');
+                bookServerHost = separator > 0 ? bookServer.substring(0, separator) : host;
+                try {
+                    bookServerPort = Integer.parseInt(bookServer.substring(separator + 1));
+                } catch (NumberFormatException e) {
+                    showConnectionParametersError();
+                    return false;
+                }
+                if (bookServerPort <= 0 || bookServerPort > 65535) {
+                    showConnectionParametersError();
+                    return false;
+                }
+            }
+
             // Costruisce l'URL di connessione JDBC
             dbUrl = "jdbc:postgresql://" + host + ":" + port + "/book_recommender";
 
@@ -402,6 +449,12 @@ public class Client extends Application {
                 registerClientConnection(false);
             }
 
+            // Ferma l'aggiornamento dell'indice di ricerca
+            BookSearchIndex.getInstance().stop();
+            TitleResolver.getInstance().stop();
+            TopRatedCache.getInstance().stop();
+            BookServerClient.disconnect();
+
             // Chiude la connessione socket se esistente
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
@@ -425,8 +478,13 @@ public class Client extends Application {
                     // Verifica la connessione al database
                     if (dbManager != null) {
                         try {
-                            Connection conn = dbManager.getConnection();
-                            // Se la connessione fallisce, lancerà un'eccezione SQLException
+                            // Se la connessione fallisce, lancerà un'eccezione SQLException;
+                            // la connessione presa in prestito viene subito restituita al pool
+                            try (Connection conn = dbManager.getConnection()) {
+                                if (!conn.isValid(2)) {
+                                    throw new SQLException("Connessione al server non valida");
+                                }
+                            }
                         } catch (SQLException e) {
                             // Connessione persa, segnala la disconnessione
                             Platform.runLater(() -> {
@@ -0,0 +1,656 @@
+package book_recommender.lab_b;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool di connessioni JDBC limitato e auto-validante utilizzato dal {@link DatabaseManager}.
+ *
+ * <p>Il pool mantiene un numero minimo di connessioni fisiche sempre aperte e ne crea di nuove
+ * su richiesta fino al limite massimo configurato. Le connessioni consegnate ai chiamanti sono
+ * dei proxy: invocare {@code close()} su di esse non chiude la connessione fisica ma la
+ * restituisce al pool, dopo averne ripristinato lo stato (auto-commit, read-only, statement
+ * lasciati aperti).</p>
+ *
+ * <p>Un thread di manutenzione in background si occupa di:</p>
+ * <ul>
+ *     <li>chiudere le connessioni inattive da più di {@code idleTimeoutMillis} (rispettando il minimo);</li>
+ *     <li>ritirare le connessioni che hanno superato la durata massima {@code maxLifetimeMillis};</li>
+ *     <li>segnalare le connessioni prese in prestito e non restituite entro
+ *         {@code leakDetectionThresholdMillis}, con un unico messaggio su {@code System.err} che
+ *         riporta durata, soglia, statement aperti e stack catturato al momento del prestito.</li>
+ * </ul>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+    /**
+     * Prefisso delle proprietà di sistema utilizzate per configurare il pool.
+     */
+    private static final String PROPERTY_PREFIX = "bookrecommender.pool.";
+
+    /**
+     * Intervallo minimo di inattività oltre il quale una connessione viene validata prima del prestito.
+     * Le connessioni restituite da pochissimo tempo sono considerate ancora valide.
+     */
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+
+    /**
+     * Timeout in secondi utilizzato per la validazione delle connessioni con {@link Connection#isValid(int)}.
+     */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    /**
+     * Intervallo in millisecondi tra due esecuzioni del thread di manutenzione.
+     */
+    private static final long HOUSEKEEPING_PERIOD_MILLIS = 30_000;
+
+    /** URL JDBC del database */
+    private final String url;
+    /** Nome utente per l'autenticazione */
+    private final String user;
+    /** Password per l'autenticazione */
+    private final String password;
+
+    /** Numero minimo di connessioni fisiche mantenute aperte */
+    private final int minSize;
+    /** Numero massimo di connessioni fisiche (in prestito + inattive) */
+    private final int maxSize;
+    /** Tempo massimo di attesa per ottenere una connessione */
+    private final long connectionTimeoutMillis;
+    /** Tempo di inattività oltre il quale una connessione in eccesso viene chiusa */
+    private final long idleTimeoutMillis;
+    /** Durata massima di una connessione fisica */
+    private final long maxLifetimeMillis;
+    /** Soglia oltre la quale un prestito non restituito viene segnalato come leak (0 = disattivato) */
+    private final long leakDetectionThresholdMillis;
+
+    /** Connessioni fisiche inattive, gestite in ordine LIFO per riutilizzare quelle più "calde" */
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    /** Tutte le connessioni fisiche aperte, inattive o in prestito */
+    private final Set<PooledConnection> all = ConcurrentHashMap.newKeySet();
+    /** Prestiti attualmente aperti, usati per il rilevamento dei leak */
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    /** Permessi che limitano il numero di connessioni contemporaneamente in prestito */
+    private final Semaphore permits;
+    /** Scheduler del thread di manutenzione */
+    private final ScheduledExecutorService housekeeper;
+
+    /** Flag che indica se il pool è stato chiuso */
+    private volatile boolean closed = false;
+
+    /**
+     * Crea un nuovo pool di connessioni e apre subito il numero minimo di connessioni.
+     *
+     * @param url URL JDBC del database
+     * @param user nome utente per l'autenticazione
+     * @param password password per l'autenticazione
+     * @param minSize numero minimo di connessioni mantenute aperte
+     * @param maxSize numero massimo di connessioni
+     * @param connectionTimeoutMillis tempo massimo di attesa per ottenere una connessione
+     * @param idleTimeoutMillis tempo di inattività oltre il quale le connessioni in eccesso vengono chiuse
+     * @param maxLifetimeMillis durata massima di una connessione fisica
+     * @param leakDetectionThresholdMillis soglia di segnalazione dei leak (0 per disattivare)
+     * @throws SQLException se non è possibile aprire le connessioni iniziali
+     */
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize,
+                          long connectionTimeoutMillis, long idleTimeoutMillis,
+                          long maxLifetimeMillis, long leakDetectionThresholdMillis) throws SQLException {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Dimensioni del pool non valide: min=" + minSize + ", max=" + maxSize);
+        }
+
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        // Apre subito le connessioni minime: un errore qui indica credenziali o URL errati
+        try {
+            fillToMinimum();
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleAtFixedRate(this::housekeep,
+                HOUSEKEEPING_PERIOD_MILLIS, HOUSEKEEPING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Crea un pool leggendo la configurazione dalle proprietà di sistema con prefisso
+     * {@code bookrecommender.pool.} (minSize, maxSize, connectionTimeoutMs, idleTimeoutMs,
+     * maxLifetimeMs, leakDetectionMs). Le proprietà mancanti assumono valori predefiniti.
+     *
+     * @param url URL JDBC del database
+     * @param user nome utente per l'autenticazione
+     * @param password password per l'autenticazione
+     * @return il pool configurato
+     * @throws SQLException se non è possibile aprire le connessioni iniziali
+     */
+    public static ConnectionPool fromSystemProperties(String url, String user, String password) throws SQLException {
+        return new ConnectionPool(url, user, password,
+                Integer.getInteger(PROPERTY_PREFIX + "minSize", 2),
+                Integer.getInteger(PROPERTY_PREFIX + "maxSize", 10),
+                Long.getLong(PROPERTY_PREFIX + "connectionTimeoutMs", 30_000L),
+                Long.getLong(PROPERTY_PREFIX + "idleTimeoutMs", 600_000L),
+                Long.getLong(PROPERTY_PREFIX + "maxLifetimeMs", 1_800_000L),
+                Long.getLong(PROPERTY_PREFIX + "leakDetectionMs", 60_000L));
+    }
+
+    /**
+     * Prende in prestito una connessione dal pool.
+     * La connessione restituita deve essere chiusa (preferibilmente con try-with-resources)
+     * per essere resa di nuovo disponibile agli altri chiamanti.
+     *
+     * @return un proxy della connessione fisica
+     * @throws SQLException se il pool è chiuso, se scade il timeout di attesa o se non è possibile aprire una connessione
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Il pool di connessioni è chiuso");
+        }
+
+        try {
+            if (!permits.tryAcquire(connectionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timeout in attesa di una connessione dal pool dopo "
+                        + connectionTimeoutMillis + " ms (attive: " + getActiveConnections() + ", massimo: " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrotto in attesa di una connessione dal pool", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdleOrCreate();
+            pooled.lastBorrowed = System.currentTimeMillis();
+            Lease lease = new Lease(pooled, leakDetectionThresholdMillis > 0
+                    ? new Exception("Connessione presa in prestito qui")
+                    : null);
+            leases.add(lease);
+            return lease.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Restituisce una connessione inattiva valida oppure ne apre una nuova.
+     * Le connessioni scadute o non più valide vengono chiuse e scartate.
+     *
+     * @return una connessione fisica pronta all'uso
+     * @throws SQLException se non è possibile aprire una nuova connessione
+     */
+    private PooledConnection takeIdleOrCreate() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            long now = System.currentTimeMillis();
+            if (now - pooled.created >= maxLifetimeMillis) {
+                destroy(pooled);
+                continue;
+            }
+            if (now - pooled.lastReturned > VALIDATION_BYPASS_MILLIS && !isValid(pooled)) {
+                destroy(pooled);
+                continue;
+            }
+            return pooled;
+        }
+        return createPhysical();
+    }
+
+    /**
+     * Verifica che una connessione fisica sia ancora utilizzabile.
+     *
+     * @param pooled la connessione da validare
+     * @return true se la connessione risponde correttamente, false altrimenti
+     */
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Apre una nuova connessione fisica e la registra nel pool.
+     *
+     * @return la nuova connessione
+     * @throws SQLException se si verifica un errore di connessione
+     */
+    private PooledConnection createPhysical() throws SQLException {
+        PooledConnection pooled = new PooledConnection(DriverManager.getConnection(url, user, password));
+        all.add(pooled);
+        return pooled;
+    }
+
+    /**
+     * Chiude una connessione fisica e la rimuove dal pool.
+     *
+     * @param pooled la connessione da chiudere
+     */
+    private void destroy(PooledConnection pooled) {
+        all.remove(pooled);
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // Ignora errori durante la chiusura
+        }
+    }
+
+    /**
+     * Apre nuove connessioni inattive finché non viene raggiunto il numero minimo.
+     *
+     * @throws SQLException se non è possibile aprire una connessione
+     */
+    private void fillToMinimum() throws SQLException {
+        while (!closed && all.size() < minSize) {
+            PooledConnection pooled = createPhysical();
+            pooled.lastReturned = System.currentTimeMillis();
+            idle.offerLast(pooled);
+        }
+    }
+
+    /**
+     * Restituisce al pool una connessione presa in prestito, ripristinandone lo stato.
+     * Se il ripristino fallisce, o se la connessione ha superato la durata massima,
+     * la connessione fisica viene chiusa invece di essere riutilizzata.
+     *
+     * @param lease il prestito da chiudere
+     */
+    private void release(Lease lease) {
+        leases.remove(lease);
+        PooledConnection pooled = lease.pooled;
+
+        try {
+            boolean reusable = !closed
+                    && System.currentTimeMillis() - pooled.created < maxLifetimeMillis
+                    && resetState(lease);
+
+            if (reusable) {
+                pooled.lastReturned = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            } else {
+                destroy(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Ripristina lo stato di una connessione prima di reinserirla nel pool:
+     * chiude gli statement lasciati aperti, annulla le transazioni in corso e
+     * riporta auto-commit e read-only ai valori predefiniti.
+     *
+     * @param lease il prestito di cui ripristinare la connessione
+     * @return true se la connessione può essere riutilizzata, false altrimenti
+     */
+    private boolean resetState(Lease lease) {
+        Connection physical = lease.pooled.physical;
+        try {
+            for (Statement statement : lease.takeOpenStatements()) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // Ignora errori di chiusura degli statement dimenticati aperti
+                }
+            }
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (physical.isReadOnly()) {
+                physical.setReadOnly(false);
+            }
+            physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Attività periodica di manutenzione: chiude le connessioni inattive in eccesso o scadute,
+     * ripristina il numero minimo di connessioni e segnala i prestiti sospetti di leak.
+     */
+    private void housekeep() {
+        if (closed) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        // Rimuove le connessioni inattive scadute o in eccesso rispetto al minimo
+        for (PooledConnection pooled : idle) {
+            boolean expired = now - pooled.created >= maxLifetimeMillis;
+            boolean idleTooLong = now - pooled.lastReturned >= idleTimeoutMillis && all.size() > minSize;
+            if ((expired || idleTooLong) && idle.remove(pooled)) {
+                destroy(pooled);
+            }
+        }
+
+        // Riporta il pool al numero minimo di connessioni
+        try {
+            fillToMinimum();
+        } catch (SQLException e) {
+            // Il database potrebbe essere temporaneamente irraggiungibile: si riproverà al prossimo giro
+        }
+
+        // Segnala i prestiti non restituiti oltre la soglia configurata
+        if (leakDetectionThresholdMillis > 0) {
+            for (Lease lease : leases) {
+                if (!lease.leakReported && now - lease.pooled.lastBorrowed >= leakDetectionThresholdMillis) {
+                    lease.leakReported = true;
+                    System.err.println(leakReport(lease, now));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compone la segnalazione di un prestito non restituito in un unico messaggio, con la
+     * durata del prestito, la soglia e il punto del codice in cui la connessione è stata presa.
+     *
+     * @param lease il prestito segnalato
+     * @param now istante corrente in millisecondi
+     * @return il messaggio da stampare
+     */
+    private String leakReport(Lease lease, long now) {
+        StringBuilder report = new StringBuilder("Possibile leak di connessione: prestito aperto da ")
+                .append(now - lease.pooled.lastBorrowed).append(" ms (soglia ")
+                .append(leakDetectionThresholdMillis).append(" ms), statement aperti: ")
+                .append(lease.openStatementCount()).append(", preso in prestito in:");
+        for (StackTraceElement frame : lease.borrowStack.getStackTrace()) {
+            report.append(System.lineSeparator()).append("\tat ").append(frame);
+        }
+        return report.toString();
+    }
+
+    /**
+     * Apre una connessione fisica con le stesse credenziali del pool ma esterna ad esso,
+     * per gli usi di lunga durata (ad esempio LISTEN) che altrimenti occuperebbero un posto
+     * del pool e verrebbero segnalati come leak. Il chiamante deve chiuderla.
+     *
+     * @return una nuova connessione fisica
+     * @throws SQLException se il pool è chiuso o se si verifica un errore di connessione
+     */
+    public Connection openDedicatedConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Il pool di connessioni è chiuso");
+        }
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    /**
+     * Restituisce il numero di connessioni attualmente in prestito.
+     *
+     * @return il numero di connessioni attive
+     */
+    public int getActiveConnections() {
+        return leases.size();
+    }
+
+    /**
+     * Restituisce il numero di connessioni fisiche inattive disponibili nel pool.
+     *
+     * @return il numero di connessioni inattive
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * Restituisce il numero totale di connessioni fisiche aperte.
+     *
+     * @return il numero totale di connessioni
+     */
+    public int getTotalConnections() {
+        return all.size();
+    }
+
+    /**
+     * Restituisce il numero massimo di connessioni del pool.
+     *
+     * @return la dimensione massima del pool
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Restituisce il numero di thread in attesa di una connessione.
+     *
+     * @return il numero di chiamanti in coda
+     */
+    public int getPendingRequests() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Chiude il pool e tutte le connessioni fisiche inattive.
+     * Le connessioni ancora in prestito vengono chiuse quando i chiamanti le restituiscono.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+        }
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * Connessione fisica gestita dal pool, con i relativi istanti di creazione e utilizzo.
+     */
+    private static class PooledConnection {
+        /** Connessione JDBC reale */
+        final Connection physical;
+        /** Istante di creazione della connessione */
+        final long created = System.currentTimeMillis();
+        /** Istante dell'ultimo prestito */
+        volatile long lastBorrowed;
+        /** Istante dell'ultima restituzione al pool */
+        volatile long lastReturned;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+    }
+
+    /**
+     * Singolo prestito di una connessione. Ogni prestito ha un proprio proxy, in modo che
+     * un riferimento trattenuto dopo la restituzione non possa più utilizzare la connessione fisica.
+     */
+    private class Lease implements InvocationHandler {
+        /** Connessione fisica prestata */
+        final PooledConnection pooled;
+        /** Stack catturato al momento del prestito per il rilevamento dei leak (può essere null) */
+        final Exception borrowStack;
+        /**
+         * Statement creati durante il prestito e non ancora chiusi, chiusi automaticamente
+         * alla restituzione. Uno statement esce dall'insieme quando il chiamante lo chiude.
+         */
+        private final Set<Statement> statements = Collections.newSetFromMap(new IdentityHashMap<>());
+        /** Proxy consegnato al chiamante */
+        final Connection proxy;
+        /** Flag che indica se il prestito è già stato chiuso */
+        boolean returned = false;
+        /** Flag che evita segnalazioni di leak ripetute per lo stesso prestito */
+        volatile boolean leakReported = false;
+
+        Lease(PooledConnection pooled, Exception borrowStack) {
+            this.pooled = pooled;
+            this.borrowStack = borrowStack;
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            switch (name) {
+                case "close":
+                    boolean first;
+                    synchronized (this) {
+                        first = !returned;
+                        returned = true;
+                    }
+                    // La restituzione esegue operazioni JDBC: avviene fuori dal monitor per non
+                    // bloccare il thread portante quando il chiamante è un thread virtuale
+                    if (first) {
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    synchronized (this) {
+                        return returned || pooled.physical.isClosed();
+                    }
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    return pooled.physical.unwrap((Class<?>) args[0]);
+                default:
+                    break;
+            }
+
+            synchronized (this) {
+                if (returned) {
+                    throw new SQLException("Connessione già restituita al pool");
+                }
+            }
+
+            try {
+                Object result = method.invoke(pooled.physical, args);
+                if (result instanceof Statement statement) {
+                    synchronized (this) {
+                        statements.add(statement);
+                    }
+                    return Proxy.newProxyInstance(method.getReturnType().getClassLoader(),
+                            new Class<?>[]{method.getReturnType()}, new StatementHandler(this, statement));
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * @return il numero di statement del prestito non ancora chiusi
+         */
+        synchronized int openStatementCount() {
+            return statements.size();
+        }
+
+        /**
+         * Restituisce e dimentica gli statement non ancora chiusi, per chiuderli alla restituzione.
+         *
+         * @return gli statement ancora aperti
+         */
+        synchronized List<Statement> takeOpenStatements() {
+            List<Statement> open = new ArrayList<>(statements);
+            statements.clear();
+            return open;
+        }
+
+        /**
+         * Rimuove uno statement chiuso dal chiamante.
+         *
+         * @param statement lo statement chiuso
+         */
+        synchronized void statementClosed(Statement statement) {
+            statements.remove(statement);
+        }
+    }
+
+    /**
+     * Proxy di uno statement creato durante un prestito: alla chiusura lo rimuove dagli
+     * statement aperti del prestito, così le connessioni a lunga vita (ad esempio durante
+     * l'importazione) non accumulano riferimenti a statement già chiusi.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+        /** Prestito che ha creato lo statement */
+        private final Lease lease;
+        /** Statement del driver */
+        private final Statement target;
+
+        StatementHandler(Lease lease, Statement target) {
+            this.lease = lease;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    lease.statementClosed(target);
+                    break;
+                case "getConnection":
+                    return lease.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -13,7 +13,7 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.net.URL;
-import java.sql.*;
+import java.sql.SQLException;
 import java.util.ResourceBundle;
 
 /**
@@ -28,22 +28,15 @@ public class CreateLibraryController implements Initializable {
     @FXML private Label errorLabel;
 
     private String userId;
-    private DatabaseManager dbManager;
 
     /**
-     * Inizializza il controller recuperando l'istanza del DatabaseManager
-     * e impostando lo stato iniziale dell'interfaccia utente.
+     * Inizializza il controller impostando lo stato iniziale dell'interfaccia utente.
      *
      * @param location URL della risorsa FXML
      * @param resources ResourceBundle per localizzare l'oggetto root
      */
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        try {
-            dbManager = DatabaseManager.getInstance();
-        } catch (SQLException e) {
-            // Gestione silenziosa dell'errore - verrà gestito in altri metodi
-        }
         // Nasconde l'etichetta di errore all'avvio
         errorLabel.setVisible(false);
     }
@@ -77,66 +70,21 @@ public class CreateLibraryController implements Initializable {
             return;
         }
 
-        // Verifica se la libreria esiste già per questo utente
-        if (checkLibraryExists(libraryName)) {
-            errorLabel.setText("Una libreria con questo nome esiste già.");
-            errorLabel.setVisible(true);
-            return;
-        }
-
-        // Crea la libreria nel database e naviga alla prossima schermata
-        if (createLibrary(libraryName)) {
-            navigateToAddBooks(event, libraryName);
-        } else {
-            errorLabel.setText("Errore nella creazione della libreria.");
-            errorLabel.setVisible(true);
-        }
-    }
-
-    /**
-     * Verifica se una libreria con lo stesso nome esiste già per l'utente corrente.
-     * Questo evita duplicazioni di nomi di libreria per lo stesso utente.
-     *
-     * @param libraryName Nome della libreria da verificare
-     * @return true se la libreria esiste già, false altrimenti
-     */
-    private boolean checkLibraryExists(String libraryName) {
-        try (Connection conn = dbManager.getConnection()) {
-            String sql = "SELECT id FROM libraries WHERE user_id = ? AND library_name = ?";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, userId);
-                pstmt.setString(2, libraryName);
-                ResultSet rs = pstmt.executeQuery();
-
-                return rs.next(); // Ritorna true se esiste già una libreria con questo nome
+        // Crea la libreria, a meno che l'utente non ne abbia già una con questo nome
+        try {
+            if (!LibraryService.createLibrary(userId, libraryName)) {
+                errorLabel.setText("Una libreria con questo nome esiste già.");
+                errorLabel.setVisible(true);
+                return;
             }
         } catch (SQLException e) {
-            // In caso di errore di database, per sicurezza assumiamo che la libreria esista
-            return true;
+            errorLabel.setText("Errore nella creazione della libreria.");
+            errorLabel.setVisible(true);
+            return;
         }
-    }
 
-    /**
-     * Crea una nuova libreria nel database per l'utente corrente.
-     *
-     * @param libraryName Nome della nuova libreria
-     * @return true se l'operazione è andata a buon fine, false altrimenti
-     */
-    private boolean createLibrary(String libraryName) {
-        try (Connection conn = dbManager.getConnection()) {
-            String sql = "INSERT INTO libraries (user_id, library_name) VALUES (?, ?)";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, userId);
-                pstmt.setString(2, libraryName);
-                pstmt.executeUpdate();
-                return true;
-            }
-        } catch (SQLException e) {
-            // Fallimento dell'operazione di inserimento
-            return false;
-        }
+        // Naviga alla prossima schermata
+        navigateToAddBooks(event, libraryName);
     }
 
     /**
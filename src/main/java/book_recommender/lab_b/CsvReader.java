@@ -0,0 +1,518 @@
+package book_recommender.lab_b;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Legge i file CSV importati all'avvio del server una riga alla volta.
+ *
+ * <p>Il file viene mappato in memoria e copiato a blocchi in un buffer riutilizzato per
+ * tutte le righe; le righe vengono analizzate direttamente sui byte, senza convertirle in
+ * stringhe. Ogni campo è una porzione del buffer: solo i campi con virgolette vengono copiati,
+ * già privati delle virgolette, in un secondo buffer anch'esso riutilizzato. Solo i campi
+ * richiesti vengono convertiti in stringhe. Il separatore, tabulazione o virgola, viene
+ * scelto una sola volta esaminando le prime righe del file.</p>
+ *
+ * <p>Le regole sono quelle con cui il server ha sempre letto questi file:</p>
+ * <ul>
+ *   <li>una riga termina con {@code \n}, {@code \r} o {@code \r\n}, anche dentro le virgolette;</li>
+ *   <li>con la virgola come separatore le virgolette racchiudono i campi e {@code ""} vale
+ *   come virgoletta; con la tabulazione le virgolette fanno parte del valore;</li>
+ *   <li>gli spazi all'inizio e alla fine dei campi vengono rimossi e il valore "null"
+ *   diventa un campo vuoto;</li>
+ *   <li>le righe vuote o di soli spazi non hanno campi.</li>
+ * </ul>
+ *
+ * <p>Il testo è letto come UTF-8. La mappatura viene rilasciata dalla JVM quando il lettore
+ * non è più raggiungibile, non alla chiusura.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class CsvReader implements AutoCloseable {
+
+    /**
+     * Dimensione massima della porzione di file mappata in memoria alla volta.
+     */
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * Dimensione iniziale del buffer delle righe; cresce se una riga non ci sta.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Byte esaminati all'inizio del file per scegliere il separatore.
+     */
+    private static final int SAMPLE_SIZE = 64 * 1024;
+
+    /** Lettura di otto byte alla volta dal buffer; il primo byte è il meno significativo */
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    /** Byte cercati, ripetuti in tutte le posizioni di una parola */
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long RETURNS = 0x0D0D0D0D0D0D0D0DL;
+    private static final long TABS = 0x0909090909090909L;
+    private static final long COMMAS = 0x2C2C2C2C2C2C2C2CL;
+    private static final long QUOTES = 0x2222222222222222L;
+
+    /** Canale del file */
+    private final FileChannel channel;
+    /** Dimensione del file in byte */
+    private final long fileSize;
+    /** Separatore dei campi, tabulazione o virgola */
+    private final byte delimiter;
+
+    /** Porzione del file mappata in memoria */
+    private MappedByteBuffer window;
+    /** Posizione nel file del primo byte della porzione mappata */
+    private long windowStart = 0;
+
+    /** Blocco del file su cui vengono analizzate le righe */
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    /** Posizione nel file del primo byte del buffer */
+    private long bufferStart = 0;
+    /** Numero di byte validi nel buffer */
+    private int bufferLimit = 0;
+    /** Inizio della riga successiva nel buffer */
+    private int bufferPosition = 0;
+
+    /** Contenuto dei campi con virgolette della riga corrente, senza virgolette */
+    private byte[] data = new byte[1024];
+    /** Byte usati in data */
+    private int dataLength = 0;
+    /** Inizio di ogni campo nel buffer o in data */
+    private int[] fieldStarts = new int[16];
+    /** Fine (esclusa) di ogni campo nel buffer o in data */
+    private int[] fieldEnds = new int[16];
+    /** true per i campi copiati in data */
+    private boolean[] fieldCopied = new boolean[16];
+    /** Numero di campi della riga corrente */
+    private int fieldCount = 0;
+    /** true finché la riga corrente contiene solo spazi */
+    private boolean blank = true;
+    /** Inizio della riga corrente nel buffer */
+    private int rowStart = 0;
+    /** Fine della riga corrente (escluso il terminatore) nel buffer */
+    private int rowEnd = 0;
+
+    /**
+     * Apre il file e sceglie il separatore.
+     *
+     * @param file Il file CSV
+     * @throws IOException se il file non può essere aperto o mappato
+     */
+    public CsvReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            this.fileSize = channel.size();
+            fill();
+            this.delimiter = detectDelimiter();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Passa alla riga successiva.
+     *
+     * @return true se è stata letta una riga, false alla fine del file
+     * @throws IOException se la mappatura del file fallisce
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (bufferPosition == bufferLimit && bufferStart + bufferLimit == fileSize) {
+                fieldCount = 0;
+                return false;
+            }
+
+            int nextRow = parseRow(bufferPosition);
+            if (nextRow >= 0) {
+                bufferPosition = nextRow;
+                return true;
+            }
+
+            // La riga prosegue oltre il buffer: si legge il blocco successivo e la si analizza di nuovo
+            fill();
+        }
+    }
+
+    /**
+     * Restituisce il numero di campi della riga corrente.
+     *
+     * @return Il numero di campi, 0 per le righe vuote
+     */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Restituisce un campo della riga corrente.
+     *
+     * @param index La posizione del campo
+     * @return Il valore del campo, senza spazi iniziali e finali
+     */
+    public String field(int index) {
+        checkIndex(index);
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        return start == end ? "" : new String(fieldCopied[index] ? data : buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Restituisce un campo della riga corrente convertito in intero, senza creare stringhe.
+     * Sono accettati solo un segno facoltativo seguito da cifre.
+     *
+     * @param index La posizione del campo
+     * @param defaultValue Il valore restituito se il campo è vuoto, non numerico o fuori intervallo
+     * @return Il valore del campo
+     */
+    public int intField(int index, int defaultValue) {
+        checkIndex(index);
+        byte[] source = fieldCopied[index] ? data : buffer;
+        int i = fieldStarts[index];
+        int end = fieldEnds[index];
+        if (i == end) {
+            return defaultValue;
+        }
+
+        boolean negative = source[i] == '-';
+        if (negative || source[i] == '+') {
+            i++;
+            if (i == end) {
+                return defaultValue;
+            }
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = source[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return defaultValue;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return defaultValue;
+            }
+        }
+
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? defaultValue : (int) value;
+    }
+
+    /**
+     * Restituisce il testo originale della riga corrente, ad esempio per esaminare l'intestazione.
+     *
+     * @return La riga senza il terminatore
+     */
+    public String line() {
+        return new String(buffer, rowStart, rowEnd - rowStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Restituisce il numero di byte del file già letti.
+     *
+     * @return La posizione nel file dell'inizio della riga successiva
+     */
+    public long position() {
+        return bufferStart + bufferPosition;
+    }
+
+    /**
+     * Restituisce il separatore scelto per il file.
+     *
+     * @return '\t' oppure ','
+     */
+    public char delimiter() {
+        return (char) delimiter;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Analizza la riga che inizia alla posizione indicata del buffer e ne registra i campi.
+     *
+     * @param start Inizio della riga nel buffer
+     * @return Inizio della riga successiva, oppure -1 se la riga non termina nel buffer
+     */
+    private int parseRow(int start) {
+        byte[] buf = buffer;
+        int limit = bufferLimit;
+        boolean lastBlock = bufferStart + limit == fileSize;
+        boolean quoting = delimiter == ',';
+
+        fieldCount = 0;
+        dataLength = 0;
+        blank = true;
+
+        int i = start;
+        while (true) {
+            // Un campo alla volta: resta una porzione del buffer finché non compaiono virgolette
+            int fieldStart = i;
+            int copyStart = -1;
+            boolean inQuotes = false;
+
+            while (true) {
+                // Salta i byte ordinari fino al prossimo separatore, virgoletta o fine riga
+                int special = nextSpecial(buf, i, limit, quoting);
+                if (copyStart >= 0) {
+                    appendRange(buf, i, special);
+                }
+                i = special;
+
+                if (i == limit) {
+                    if (!lastBlock) {
+                        return -1;
+                    }
+                    // Ultima riga del file senza terminatore
+                    endField(fieldStart, i, copyStart);
+                    return endRow(start, i, i, quoting);
+                }
+
+                byte b = buf[i];
+                if (b == '\n' || b == '\r') {
+                    int end = i++;
+                    if (b == '\r') {
+                        if (i == limit && !lastBlock) {
+                            return -1;
+                        }
+                        if (i < limit && buf[i] == '\n') {
+                            i++;
+                        }
+                    }
+                    endField(fieldStart, end, copyStart);
+                    return endRow(start, end, i, quoting);
+                }
+
+                if (b == delimiter) {
+                    if (!inQuotes) {
+                        endField(fieldStart, i, copyStart);
+                        i++;
+                        break;
+                    }
+                    // Separatore tra virgolette: fa parte del valore
+                    appendRange(buf, i, i + 1);
+                    i++;
+                    continue;
+                }
+
+                // Virgoletta
+                if (copyStart < 0) {
+                    // Prima virgoletta del campo: si copia quanto letto finora
+                    copyStart = dataLength;
+                    appendRange(buf, fieldStart, i);
+                }
+                if (inQuotes && i + 1 == limit && !lastBlock) {
+                    return -1;
+                }
+                if (inQuotes && i + 1 < limit && buf[i + 1] == '"') {
+                    // Virgoletta raddoppiata dentro un campo tra virgolette
+                    appendRange(buf, i, i + 1);
+                    i += 2;
+                } else {
+                    inQuotes = !inQuotes;
+                    i++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cerca il primo fine riga, separatore o (se il separatore è la virgola) virgoletta a
+     * partire dalla posizione indicata, esaminando otto byte alla volta.
+     *
+     * @return La posizione trovata, oppure limit se non ce ne sono
+     */
+    private int nextSpecial(byte[] buf, int i, int limit, boolean quoting) {
+        long delimiters = delimiter == ',' ? COMMAS : TABS;
+        while (i + Long.BYTES <= limit) {
+            long word = (long) LONGS.get(buf, i);
+            long found = matches(word, NEWLINES) | matches(word, RETURNS) | matches(word, delimiters);
+            if (quoting) {
+                found |= matches(word, QUOTES);
+            }
+            if (found != 0) {
+                // Il bit più basso corrisponde al primo byte trovato
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+            i += Long.BYTES;
+        }
+
+        for (; i < limit; i++) {
+            byte b = buf[i];
+            if (b == '\n' || b == '\r' || b == delimiter || (quoting && b == '"')) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Restituisce una parola con il bit più alto acceso nei byte di word uguali al byte
+     * ripetuto in pattern. Oltre al primo byte uguale possono risultare accesi anche byte
+     * successivi diversi, quindi è affidabile solo il bit più basso.
+     */
+    private static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        return (x - 0x0101010101010101L) & ~x & 0x8080808080808080L;
+    }
+
+    /**
+     * Aggiunge al contenuto dei campi copiati i byte del buffer compresi tra le posizioni indicate.
+     */
+    private void appendRange(byte[] source, int from, int to) {
+        int length = to - from;
+        if (length == 0) {
+            return;
+        }
+        if (dataLength + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + length));
+        }
+        System.arraycopy(source, from, data, dataLength, length);
+        dataLength += length;
+    }
+
+    /**
+     * Completa la riga corrente.
+     *
+     * @param start Inizio della riga nel buffer
+     * @param end Fine della riga, escluso il terminatore
+     * @param next Inizio della riga successiva
+     * @param quoting true se la virgola è il separatore
+     * @return Inizio della riga successiva
+     */
+    private int endRow(int start, int end, int next, boolean quoting) {
+        // Con la virgola una riga di soli spazi ha un solo campo senza virgolette;
+        // la tabulazione è essa stessa uno spazio
+        if (blank && (!quoting || (fieldCount == 1 && !fieldCopied[0]))) {
+            fieldCount = 0;
+        }
+        rowStart = start;
+        rowEnd = end;
+        return next;
+    }
+
+    /**
+     * Registra un campo, rimuovendo gli spazi iniziali e finali e trasformando "null" in un
+     * campo vuoto.
+     *
+     * @param start Inizio del campo nel buffer
+     * @param end Fine del campo nel buffer
+     * @param copyStart Inizio del campo in data se è stato copiato, altrimenti -1
+     */
+    private void endField(int start, int end, int copyStart) {
+        byte[] source = buffer;
+        boolean copied = copyStart >= 0;
+        if (copied) {
+            source = data;
+            start = copyStart;
+            end = dataLength;
+        }
+
+        while (start < end && (source[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (source[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        if (start < end) {
+            blank = false;
+        }
+        if (end - start == 4
+                && (source[start] | 0x20) == 'n' && (source[start + 1] | 0x20) == 'u'
+                && (source[start + 2] | 0x20) == 'l' && (source[start + 3] | 0x20) == 'l') {
+            end = start;
+        }
+
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+            fieldCopied = Arrays.copyOf(fieldCopied, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCopied[fieldCount] = copied;
+        fieldCount++;
+    }
+
+    /**
+     * Sposta la riga non ancora letta all'inizio del buffer e lo riempie con i byte successivi
+     * del file, mappando le porzioni del file man mano che servono.
+     */
+    private void fill() throws IOException {
+        int remaining = bufferLimit - bufferPosition;
+        if (bufferPosition == 0 && remaining == buffer.length) {
+            // La riga è più lunga del buffer
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        } else {
+            System.arraycopy(buffer, bufferPosition, buffer, 0, remaining);
+            bufferStart += bufferPosition;
+            bufferPosition = 0;
+            bufferLimit = remaining;
+        }
+
+        long offset = bufferStart + bufferLimit;
+        while (bufferLimit < buffer.length && offset < fileSize) {
+            if (window == null || offset >= windowStart + window.limit()) {
+                windowStart = offset;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, fileSize - offset));
+            }
+            int length = (int) Math.min(buffer.length - bufferLimit, windowStart + window.limit() - offset);
+            window.get((int) (offset - windowStart), buffer, bufferLimit, length);
+            bufferLimit += length;
+            offset += length;
+        }
+    }
+
+    /**
+     * Sceglie la tabulazione come separatore se almeno metà delle righe non vuote all'inizio
+     * del file la contengono, altrimenti la virgola.
+     */
+    private byte detectDelimiter() {
+        int limit = Math.min(SAMPLE_SIZE, bufferLimit);
+        int lines = 0;
+        int tabLines = 0;
+        boolean blankLine = true;
+        boolean hasTab = false;
+
+        for (int i = 0; i <= limit; i++) {
+            byte b = i < limit ? buffer[i] : (byte) '\n';
+            if (b == '\n' || b == '\r') {
+                if (!blankLine) {
+                    lines++;
+                    if (hasTab) {
+                        tabLines++;
+                    }
+                }
+                blankLine = true;
+                hasTab = false;
+            } else {
+                if (b == '\t') {
+                    hasTab = true;
+                }
+                if ((b & 0xFF) > ' ') {
+                    blankLine = false;
+                }
+            }
+        }
+
+        return lines > 0 && tabLines * 2 >= lines ? (byte) '\t' : (byte) ',';
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Campo " + index + " non presente: la riga ha " + fieldCount + " campi");
+        }
+    }
+}
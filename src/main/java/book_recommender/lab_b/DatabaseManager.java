@@ -1,6 +1,7 @@
 package book_recommender.lab_b;
 
 import java.sql.*;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -63,9 +64,11 @@ public class DatabaseManager {
     private static DatabaseManager instance;
 
     /**
-     * Connessione attiva al database.
+     * Pool di connessioni al database.
+     * Ogni chiamata a {@link #getConnection()} prende in prestito una connessione
+     * che viene restituita al pool quando il chiamante la chiude.
      */
-    private Connection connection;
+    private ConnectionPool pool;
 
     /**
      * Costruttore privato per impedire l'istanziazione diretta (pattern Singleton).
@@ -91,13 +94,16 @@ public class DatabaseManager {
             // Per le connessioni remote, ci affidiamo ai valori DB_URL, DB_USER e DB_PASSWORD
             // che sono stati impostati esternamente prima di chiamare questo costruttore
             try {
-                connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+                pool = ConnectionPool.fromSystemProperties(DB_URL, DB_USER, DB_PASSWORD);
             } catch (SQLException e) {
                 throw new SQLException("Impossibile connettersi al database remoto: " + e.getMessage(), e);
             }
         } else {
             // Per connessioni locali, prova diverse combinazioni host
             initializeLocalConnection();
+
+            // L'URL è stato individuato: crea il pool sulle credenziali dell'applicazione
+            pool = ConnectionPool.fromSystemProperties(DB_URL, DB_USER, DB_PASSWORD);
         }
     }
 
@@ -118,7 +124,7 @@ public class DatabaseManager {
             String currentUrl = "jdbc:postgresql://" + host + ":" + DEFAULT_PORT + "/" + DEFAULT_DB_NAME;
             try {
                 // Prova a connettersi direttamente al database
-                connection = DriverManager.getConnection(currentUrl, DB_USER, DB_PASSWORD);
+                DriverManager.getConnection(currentUrl, DB_USER, DB_PASSWORD).close();
 
                 // Connessione riuscita, aggiorna l'URL del database
                 DB_URL = currentUrl;
@@ -184,7 +190,7 @@ public class DatabaseManager {
 
                         // Ora prova a connetterti al database con il nostro utente
                         try {
-                            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+                            DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD).close();
                             return; // Connessione riuscita, esci dal metodo
                         } catch (SQLException connError) {
                             // Se non riusciamo a connetterci con le nuove credenziali, passa all'host successivo
@@ -307,8 +313,20 @@ public class DatabaseManager {
      * @throws SQLException se si verifica un errore del database
      */
     public void updateClientConnection(String clientId, boolean isConnecting) throws SQLException {
-        Connection conn = getConnection();
+        try (Connection conn = getConnection()) {
+            updateClientConnection(conn, clientId, isConnecting);
+        }
+    }
 
+    /**
+     * Aggiorna il conteggio dei client connessi utilizzando una connessione già aperta.
+     *
+     * @param conn La connessione da utilizzare
+     * @param clientId Un identificatore univoco per il client
+     * @param isConnecting true se un client si sta connettendo, false se si sta disconnettendo
+     * @throws SQLException se si verifica un errore del database
+     */
+    private void updateClientConnection(Connection conn, String clientId, boolean isConnecting) throws SQLException {
         // Assicurati che la tabella active_clients esista
         try (Statement stmt = conn.createStatement()) {
             stmt.execute(
@@ -344,27 +362,28 @@ public class DatabaseManager {
      * @throws SQLException se si verifica un errore del database
      */
     public int getConnectedClientCount() throws SQLException {
-        Connection conn = getConnection();
         int count = 0;
 
-        // Controlla se la tabella esiste
-        try {
-            try (Statement stmt = conn.createStatement()) {
-                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM active_clients WHERE client_id NOT LIKE 'user_%';");
-                if (rs.next()) {
-                    count = rs.getInt(1);
-                    return count;
+        try (Connection conn = getConnection()) {
+            // Controlla se la tabella esiste
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM active_clients WHERE client_id NOT LIKE 'user_%';");
+                    if (rs.next()) {
+                        count = rs.getInt(1);
+                        return count;
+                    }
+                }
+            } catch (SQLException e) {
+                // La tabella potrebbe non esistere ancora
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(
+                            "CREATE TABLE IF NOT EXISTS active_clients (" +
+                                    "    client_id VARCHAR(50) PRIMARY KEY," +
+                                    "    connect_time TIMESTAMP NOT NULL" +
+                                    ")"
+                    );
                 }
-            }
-        } catch (SQLException e) {
-            // La tabella potrebbe non esistere ancora
-            try (Statement stmt = conn.createStatement()) {
-                stmt.execute(
-                        "CREATE TABLE IF NOT EXISTS active_clients (" +
-                                "    client_id VARCHAR(50) PRIMARY KEY," +
-                                "    connect_time TIMESTAMP NOT NULL" +
-                                ")"
-                );
             }
         }
 
@@ -386,31 +405,49 @@ public class DatabaseManager {
     }
 
     /**
-     * Ottiene una connessione al database.
-     * Se la connessione è chiusa, ne crea una nuova.
+     * Ottiene una connessione al database prendendola in prestito dal pool.
+     * La connessione deve essere chiusa dal chiamante (preferibilmente con
+     * try-with-resources) per restituirla al pool. Le query eseguite sulla connessione
+     * vengono registrate in {@link QueryMetrics}.
      *
      * @return una connessione al database
      * @throws SQLException se si verifica un errore di accesso al database
      */
     public Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        if (pool == null) {
+            throw new SQLException("Il pool di connessioni non è inizializzato");
         }
-        return connection;
+        return QueryMetrics.getInstance().instrument(pool.getConnection());
+    }
+
+    /**
+     * Restituisce le metriche delle query eseguite sulle connessioni di questo processo,
+     * ordinate per tempo totale di esecuzione decrescente.
+     *
+     * @return le metriche di ogni modello di query
+     */
+    public List<QueryMetrics.StatementSnapshot> getQueryMetrics() {
+        return QueryMetrics.getInstance().snapshot();
     }
 
     /**
-     * Chiude la connessione al database.
+     * Restituisce il pool di connessioni utilizzato da questa istanza,
+     * ad esempio per consultarne le statistiche.
+     *
+     * @return il pool di connessioni
+     */
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Chiude il pool di connessioni al database.
      * Questo metodo dovrebbe essere chiamato quando l'applicazione termina
      * per rilasciare le risorse del database.
      */
     public void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-            } catch (SQLException e) {
-                // Ignora errori durante la chiusura
-            }
+        if (pool != null) {
+            pool.close();
         }
     }
 
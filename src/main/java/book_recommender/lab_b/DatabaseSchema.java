@@ -0,0 +1,148 @@
+package book_recommender.lab_b;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Struttura del database: tabelle, vincoli e indici usati dal server.
+ *
+ * <p>Le istruzioni sono comuni a PostgreSQL e H2, tranne gli indici a trigrammi creati da
+ * {@link SearchIndexes} solo dove sono disponibili.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class DatabaseSchema {
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private DatabaseSchema() {
+    }
+
+    /**
+     * Elimina le tabelle esistenti e crea da zero tabelle e indici.
+     *
+     * @param conn Connessione al database
+     * @throws SQLException se si verifica un errore durante la creazione
+     */
+    public static void recreate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // Drop existing tables if any (in reverse order to handle foreign keys)
+            String[] dropStatements = {
+                    "DROP TABLE IF EXISTS book_recommendations CASCADE",
+                    "DROP TABLE IF EXISTS book_rating_stats CASCADE",
+                    "DROP TABLE IF EXISTS book_ratings CASCADE",
+                    "DROP TABLE IF EXISTS library_books CASCADE",
+                    "DROP TABLE IF EXISTS libraries CASCADE",
+                    "DROP TABLE IF EXISTS books CASCADE",
+                    "DROP TABLE IF EXISTS users CASCADE",
+                    "DROP TABLE IF EXISTS active_clients CASCADE"
+            };
+
+            for (String sql : dropStatements) {
+                stmt.execute(sql);
+            }
+
+            // Create tables in proper order
+            String[] createTableStatements = {
+                    // Users table
+                    "CREATE TABLE IF NOT EXISTS users (" +
+                            "user_id VARCHAR(8) PRIMARY KEY UNIQUE," +
+                            "full_name VARCHAR(100) NOT NULL," +
+                            "fiscal_code VARCHAR(16) NOT NULL," +
+                            "email VARCHAR(100) NOT NULL," +
+                            "password VARCHAR(100) NOT NULL" +
+                            ")",
+
+                    // Books table
+                    "CREATE TABLE IF NOT EXISTS books (" +
+                            "id SERIAL PRIMARY KEY," +
+                            "title TEXT NOT NULL," +
+                            "authors TEXT NOT NULL," +
+                            "category TEXT," +
+                            "publisher TEXT," +
+                            "publish_year INTEGER," +
+                            "UNIQUE(title, authors)" +
+                            ")",
+
+                    // Libraries table
+                    "CREATE TABLE IF NOT EXISTS libraries (" +
+                            "id SERIAL PRIMARY KEY," +
+                            "user_id VARCHAR(8) REFERENCES users(user_id) ON DELETE CASCADE," +
+                            "library_name VARCHAR(100) NOT NULL," +
+                            "UNIQUE(user_id, library_name)" +
+                            ")",
+
+                    // Library_Books table (many-to-many relationship)
+                    "CREATE TABLE IF NOT EXISTS library_books (" +
+                            "library_id INTEGER REFERENCES libraries(id) ON DELETE CASCADE," +
+                            "book_id INTEGER REFERENCES books(id) ON DELETE CASCADE," +
+                            "PRIMARY KEY (library_id, book_id)" +
+                            ")",
+
+                    // Book_Ratings table
+                    "CREATE TABLE IF NOT EXISTS book_ratings (" +
+                            "id SERIAL PRIMARY KEY," +
+                            "user_id VARCHAR(8) REFERENCES users(user_id) ON DELETE CASCADE," +
+                            "book_id INTEGER REFERENCES books(id) ON DELETE CASCADE," +
+                            "style_rating INTEGER CHECK (style_rating >= 1 AND style_rating <= 5)," +
+                            "content_rating INTEGER CHECK (content_rating >= 1 AND content_rating <= 5)," +
+                            "pleasantness_rating INTEGER CHECK (pleasantness_rating >= 1 AND pleasantness_rating <= 5)," +
+                            "originality_rating INTEGER CHECK (originality_rating >= 1 AND originality_rating <= 5)," +
+                            "edition_rating INTEGER CHECK (edition_rating >= 1 AND edition_rating <= 5)," +
+                            "average_rating FLOAT," +
+                            "general_comment TEXT," +         // Commento generale
+                            "style_comment TEXT," +           // Commento sullo stile
+                            "content_comment TEXT," +         // Commento sul contenuto
+                            "pleasantness_comment TEXT," +    // Commento sulla gradevolezza
+                            "originality_comment TEXT," +     // Commento sull'originalità
+                            "edition_comment TEXT," +         // Commento sull'edizione
+                            "UNIQUE(user_id, book_id)" +
+                            ")",
+
+                    // Per-book rating aggregates, kept current on every rating write
+                    RatingStats.CREATE_TABLE,
+
+                    // Book_Recommendations table
+                    "CREATE TABLE IF NOT EXISTS book_recommendations (" +
+                            "id SERIAL PRIMARY KEY," +
+                            "user_id VARCHAR(8) REFERENCES users(user_id) ON DELETE CASCADE," +
+                            "source_book_id INTEGER REFERENCES books(id) ON DELETE CASCADE," +
+                            "recommended_book_id INTEGER REFERENCES books(id) ON DELETE CASCADE," +
+                            "UNIQUE(user_id, source_book_id, recommended_book_id)" +
+                            ")",
+
+                    // Active_Clients table
+                    "CREATE TABLE IF NOT EXISTS active_clients (" +
+                            "client_id VARCHAR(50) PRIMARY KEY," +
+                            "connect_time TIMESTAMP NOT NULL" +
+                            ")"
+            };
+
+            for (String sql : createTableStatements) {
+                stmt.execute(sql);
+            }
+
+            // Create indexes for better performance
+            String[] indexStatements = {
+                    "CREATE INDEX IF NOT EXISTS idx_books_title ON books(title)",
+                    "CREATE INDEX IF NOT EXISTS idx_books_authors ON books(authors)",
+                    "CREATE INDEX IF NOT EXISTS idx_books_title_id ON books(title, id)",
+                    "CREATE INDEX IF NOT EXISTS idx_book_ratings_user_id ON book_ratings(user_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_book_ratings_book_id ON book_ratings(book_id)",
+                    RatingStats.CREATE_INDEX,
+                    "CREATE INDEX IF NOT EXISTS idx_library_books_book_id ON library_books(book_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_library_books_library_id ON library_books(library_id)"
+            };
+
+            for (String sql : indexStatements) {
+                stmt.execute(sql);
+            }
+
+            // Trigram indexes for the partial (LIKE '%term%') title/author searches
+            SearchIndexes.createSearchIndexes(conn);
+        }
+    }
+}
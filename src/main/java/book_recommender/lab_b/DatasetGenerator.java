@@ -0,0 +1,458 @@
+package book_recommender.lab_b;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Genera file CSV sintetici da importare al posto di quelli scaricati, per le prove di carico
+ * senza rete e con dimensioni a scelta.
+ *
+ * <p>Vengono scritti i cinque file letti dall'importazione, con gli stessi nomi e nello stesso
+ * formato accettato da {@link BulkImporter}: {@code Data.csv} (libri),
+ * {@code UtentiRegistrati.csv}, {@code Librerie.dati.csv}, {@code ValutazioniLibri.csv} e
+ * {@code ConsigliLibri.csv}. Il contenuto dipende solo dai parametri e dal seme: la stessa
+ * configurazione produce sempre gli stessi file.</p>
+ *
+ * <p>La popolarità dei libri e l'attività degli utenti seguono una distribuzione di Zipf:
+ * il libro (o l'utente) al posto k della classifica compare con probabilità proporzionale a
+ * 1/k<sup>s</sup>. Con {@code s = 0} la distribuzione è uniforme; valori intorno a 1 riproducono
+ * la coda lunga tipica dei cataloghi reali. La classifica è mescolata rispetto agli id, quindi
+ * i libri più popolari sono sparsi nel catalogo. Ogni libro ha una qualità attorno a cui si
+ * distribuiscono i suoi voti, così la classifica dei libri più votati è stabile.</p>
+ *
+ * <p>Le proporzioni non configurabili derivano dal numero di utenti e di valutazioni: una
+ * libreria per utente con in media cinque libri e una riga di consigli ogni dieci
+ * valutazioni. Le valutazioni ripetute per la stessa coppia utente/libro vengono scartate
+ * dall'importazione, che mantiene la prima.</p>
+ *
+ * <p>Configurazione tramite proprietà di sistema ({@link #fromSystemProperties()}):</p>
+ * <ul>
+ *   <li>{@code bookrecommender.syntheticData.books} - numero di libri (predefinito 10000)</li>
+ *   <li>{@code bookrecommender.syntheticData.users} - numero di utenti (predefinito 1000)</li>
+ *   <li>{@code bookrecommender.syntheticData.ratings} - numero di valutazioni (predefinito 50000)</li>
+ *   <li>{@code bookrecommender.syntheticData.zipf} - esponente s della distribuzione di Zipf (predefinito 1.0)</li>
+ *   <li>{@code bookrecommender.syntheticData.seed} - seme del generatore (predefinito 1)</li>
+ * </ul>
+ *
+ * <p>Uso da riga di comando:
+ * {@code java -cp server.jar book_recommender.lab_b.DatasetGenerator <cartella>}, con gli
+ * stessi parametri passati come proprietà di sistema.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class DatasetGenerator {
+
+    /**
+     * Nomi dei file generati, gli stessi dei file scaricati dal server.
+     */
+    public static final Map<BulkImporter.Dataset, String> FILE_NAMES = new EnumMap<>(Map.of(
+            BulkImporter.Dataset.BOOKS, "Data.csv",
+            BulkImporter.Dataset.USERS, "UtentiRegistrati.csv",
+            BulkImporter.Dataset.LIBRARIES, "Librerie.dati.csv",
+            BulkImporter.Dataset.RATINGS, "ValutazioniLibri.csv",
+            BulkImporter.Dataset.RECOMMENDATIONS, "ConsigliLibri.csv"));
+
+    /**
+     * Numero massimo di utenti: gli id hanno al più 8 caratteri.
+     */
+    public static final int MAX_USERS = 9_999_999;
+
+    /** Parole usate per comporre i titoli */
+    static final String[] TITLE_WORDS = {
+            "amore", "guerra", "pace", "notte", "giorno", "mare", "montagna", "città", "viaggio", "storia",
+            "segreto", "ombra", "luce", "fuoco", "vento", "cuore", "sogno", "tempo", "memoria", "silenzio",
+            "giardino", "casa", "strada", "fiume", "isola", "regno", "destino", "ritorno", "inverno", "estate",
+            "love", "war", "night", "river", "garden", "shadow", "kingdom", "journey", "secret", "winter"
+    };
+    /** Nomi e cognomi usati per comporre autori e utenti */
+    static final String[] FIRST_NAMES = {
+            "Anna", "Marco", "Giulia", "Luca", "Sara", "Paolo", "Elena", "Andrea", "Chiara", "Giorgio",
+            "Laura", "Matteo", "Francesca", "Davide", "Alessia", "Stefano", "Marta", "Simone", "Valeria", "Fabio"
+    };
+    static final String[] LAST_NAMES = {
+            "Rossi", "Bianchi", "Romano", "Colombo", "Ricci", "Marino", "Greco", "Bruno", "Gallo", "Conti",
+            "De Luca", "Mancini", "Costa", "Giordano", "Rizzo", "Lombardi", "Moretti", "Barbieri", "Fontana", "Santoro"
+    };
+    /** Categorie e editori dei libri */
+    static final String[] CATEGORIES = {
+            "Fiction", "History", "Science", "Biography", "Poetry", "Fantasy", "Mystery", "Romance",
+            "Philosophy", "Travel", "Cooking", "Art", "Children", "Religion", "Economics", "Politics"
+    };
+    static final String[] PUBLISHERS = {
+            "Mondadori", "Einaudi", "Feltrinelli", "Adelphi", "Bompiani", "Garzanti", "Rizzoli", "Laterza",
+            "Penguin", "HarperCollins", "Random House", "Sellerio"
+    };
+
+    /** Moltiplicatore usato per mescolare semi e posizioni (parte frazionaria della sezione aurea) */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final int books;
+    private final int users;
+    private final long ratings;
+    private final double zipfExponent;
+    private final long seed;
+
+    /**
+     * Crea un generatore con i parametri indicati.
+     *
+     * @param books Numero di libri
+     * @param users Numero di utenti (al massimo {@link #MAX_USERS})
+     * @param ratings Numero di valutazioni
+     * @param zipfExponent Esponente della distribuzione di Zipf (0 per una distribuzione uniforme)
+     * @param seed Seme del generatore
+     */
+    public DatasetGenerator(int books, int users, long ratings, double zipfExponent, long seed) {
+        if (books < 1 || users < 1 || users > MAX_USERS || ratings < 0 || zipfExponent < 0) {
+            throw new IllegalArgumentException("Invalid dataset size: books=" + books + ", users=" + users
+                    + ", ratings=" + ratings + ", zipf=" + zipfExponent);
+        }
+        this.books = books;
+        this.users = users;
+        this.ratings = ratings;
+        this.zipfExponent = zipfExponent;
+        this.seed = seed;
+    }
+
+    /**
+     * Crea un generatore configurato tramite le proprietà di sistema
+     * {@code bookrecommender.syntheticData.*}.
+     *
+     * @return Il generatore
+     */
+    public static DatasetGenerator fromSystemProperties() {
+        return new DatasetGenerator(
+                Integer.getInteger("bookrecommender.syntheticData.books", 10_000),
+                Integer.getInteger("bookrecommender.syntheticData.users", 1_000),
+                Long.getLong("bookrecommender.syntheticData.ratings", 50_000L),
+                Double.parseDouble(System.getProperty("bookrecommender.syntheticData.zipf", "1.0")),
+                Long.getLong("bookrecommender.syntheticData.seed", 1L));
+    }
+
+    /**
+     * Genera i file nella cartella indicata.
+     *
+     * @param args La cartella di destinazione
+     * @throws IOException se non è possibile scrivere i file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Uso: DatasetGenerator <cartella> (parametri tramite -Dbookrecommender.syntheticData.*)");
+            System.exit(2);
+        }
+        DatasetGenerator generator = fromSystemProperties();
+        long start = System.nanoTime();
+        generator.generate(new File(args[0]));
+        System.out.println("Generati " + generator.books + " libri, " + generator.users + " utenti e "
+                + generator.ratings + " valutazioni in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * @return Il numero di libri
+     */
+    public int getBookCount() {
+        return books;
+    }
+
+    /**
+     * @return Il numero di utenti
+     */
+    public int getUserCount() {
+        return users;
+    }
+
+    /**
+     * Scrive tutti i file nella cartella indicata, creandola se non esiste. Ogni file viene
+     * scritto con un nome provvisorio e rinominato al termine, quindi un file presente è
+     * sempre completo.
+     *
+     * @param directory La cartella di destinazione
+     * @throws IOException se non è possibile scrivere i file
+     */
+    public void generate(File directory) throws IOException {
+        for (BulkImporter.Dataset dataset : BulkImporter.Dataset.values()) {
+            generate(dataset, directory);
+        }
+    }
+
+    /**
+     * Scrive un file nella cartella indicata, creandola se non esiste.
+     *
+     * @param dataset Il tipo di dati
+     * @param directory La cartella di destinazione
+     * @return Il file scritto
+     * @throws IOException se non è possibile scrivere il file
+     */
+    public File generate(BulkImporter.Dataset dataset, File directory) throws IOException {
+        Files.createDirectories(directory.toPath());
+        File file = new File(directory, FILE_NAMES.get(dataset));
+        File partial = new File(directory, FILE_NAMES.get(dataset) + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(partial.toPath(), StandardCharsets.UTF_8)) {
+            write(dataset, out);
+        }
+        Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * Scrive il contenuto di un file.
+     *
+     * @param dataset Il tipo di dati
+     * @param out Destinazione del testo
+     * @throws IOException se non è possibile scrivere
+     */
+    public void write(BulkImporter.Dataset dataset, Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed * GOLDEN_GAMMA + dataset.ordinal());
+        Popularity bookPopularity = new Popularity(books, zipfExponent, seed);
+        Popularity userActivity = new Popularity(users, zipfExponent, seed + 1);
+
+        switch (dataset) {
+            case BOOKS -> {
+                out.write("Title,Authors,Category,Publisher,Publish Date (Year)\n");
+                for (int i = 0; i < books; i++) {
+                    row(out, title(i), author(i), CATEGORIES[random.nextInt(CATEGORIES.length)],
+                            PUBLISHERS[random.nextInt(PUBLISHERS.length)], String.valueOf(year(i)));
+                }
+            }
+            case USERS -> {
+                out.write("NomeCognome,CodiceFiscale,Email,UserID,Password\n");
+                for (int i = 0; i < users; i++) {
+                    String userId = userId(i);
+                    row(out, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                                    + LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+                            "FSCL" + padded(i, 12), userId + "@example.com", userId, "password" + i);
+                }
+            }
+            case LIBRARIES -> {
+                out.write("UserID,NomeLibreria,Libri\n");
+                for (int i = 0; i < users; i++) {
+                    String[] fields = new String[2 + random.nextInt(11)];
+                    fields[0] = userId(i);
+                    fields[1] = "Libreria " + (1 + random.nextInt(3));
+                    for (int j = 2; j < fields.length; j++) {
+                        fields[j] = title(bookPopularity.sample(random));
+                    }
+                    row(out, fields);
+                }
+            }
+            case RATINGS -> {
+                out.write("UserID,Titolo,Stile,Contenuto,Gradevolezza,Originalita,Edizione,Totale," +
+                        "Commento,CommentoStile,CommentoContenuto,CommentoGradevolezza,CommentoOriginalita,CommentoEdizione\n");
+                String[] fields = new String[14];
+                for (long i = 0; i < ratings; i++) {
+                    int book = bookPopularity.sample(random);
+                    fields[0] = userId(userActivity.sample(random));
+                    fields[1] = title(book);
+
+                    double quality = quality(book);
+                    int sum = 0;
+                    for (int j = 0; j < 5; j++) {
+                        int rating = (int) Math.max(1, Math.min(5, Math.round(quality + random.nextDouble(-1.5, 1.5))));
+                        fields[2 + j] = String.valueOf(rating);
+                        sum += rating;
+                    }
+                    fields[7] = String.valueOf(Math.round(sum / 5.0 * 10) / 10.0);
+
+                    // Un commento generale per una valutazione su cinque, uno per caratteristica più di rado
+                    fields[8] = random.nextInt(5) == 0 ? comment(random) : "";
+                    for (int j = 9; j < 14; j++) {
+                        fields[j] = random.nextInt(20) == 0 ? comment(random) : "";
+                    }
+                    row(out, fields);
+                }
+            }
+            case RECOMMENDATIONS -> {
+                out.write("UserID,Titolo,Consiglio1,Consiglio2,Consiglio3\n");
+                for (long i = 0; i < ratings / 10; i++) {
+                    String[] fields = new String[3 + random.nextInt(3)];
+                    fields[0] = userId(userActivity.sample(random));
+                    fields[1] = title(bookPopularity.sample(random));
+                    for (int j = 2; j < fields.length; j++) {
+                        fields[j] = title(bookPopularity.sample(random));
+                    }
+                    row(out, fields);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restituisce il titolo del libro in una posizione del catalogo (da 0).
+     * Ogni titolo è composto da parole di {@link #TITLE_WORDS} seguite dalla posizione, quindi
+     * è unico e contiene parole che le ricerche parziali trovano in molti altri libri.
+     *
+     * @param index Posizione del libro
+     * @return Il titolo
+     */
+    public String title(int index) {
+        SplittableRandom random = new SplittableRandom(seed ^ (index * GOLDEN_GAMMA));
+        int words = 1 + random.nextInt(3);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            String word = TITLE_WORDS[random.nextInt(TITLE_WORDS.length)];
+            title.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word).append(' ');
+        }
+        return title.append(index + 1).toString();
+    }
+
+    /**
+     * Restituisce l'autore di un libro. Gli autori sono un quinto dei libri, quindi ogni
+     * autore ha in media cinque libri.
+     *
+     * @param index Posizione del libro
+     * @return L'autore
+     */
+    public String author(int index) {
+        int author = Math.floorMod(index * 31 + 7, Math.max(1, books / 5));
+        int names = FIRST_NAMES.length * LAST_NAMES.length;
+        String name = FIRST_NAMES[author % FIRST_NAMES.length] + " " + LAST_NAMES[(author / FIRST_NAMES.length) % LAST_NAMES.length];
+        return author < names ? name : name + " " + (author / names);
+    }
+
+    /**
+     * Restituisce l'anno di pubblicazione di un libro, tra il 1950 e il 2023.
+     *
+     * @param index Posizione del libro
+     * @return L'anno
+     */
+    public int year(int index) {
+        return 1950 + Math.floorMod(index * 17, 74);
+    }
+
+    /**
+     * Restituisce l'id dell'utente in una posizione (da 0).
+     *
+     * @param index Posizione dell'utente
+     * @return L'id dell'utente, di 8 caratteri
+     */
+    public String userId(int index) {
+        return "u" + padded(index, 7);
+    }
+
+    /**
+     * Restituisce la qualità di un libro, tra 1.5 e 4.5: il voto attorno a cui si distribuiscono
+     * le sue valutazioni.
+     */
+    private double quality(int index) {
+        return 1.5 + 3 * new SplittableRandom(seed + index * GOLDEN_GAMMA).nextDouble();
+    }
+
+    private static String comment(SplittableRandom random) {
+        return "Commento su " + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)];
+    }
+
+    private static String padded(long value, int digits) {
+        String text = Long.toString(value);
+        return "0".repeat(Math.max(0, digits - text.length())) + text;
+    }
+
+    /**
+     * Scrive una riga con i campi separati da virgole e racchiusi tra virgolette.
+     */
+    private static void row(Writer out, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write('"');
+            out.write(fields[i].indexOf('"') < 0 ? fields[i] : fields[i].replace("\"", "\"\""));
+            out.write('"');
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Estrazione di posizioni da 0 a n - 1 secondo una distribuzione di Zipf, con la classifica
+     * mescolata rispetto alle posizioni.
+     *
+     * <p>Il posto in classifica viene estratto con il metodo di rejection-inversion di
+     * Hörmann e Derflinger, che richiede tempo costante e nessuna tabella, anche per milioni
+     * di elementi. Il posto k diventa la posizione {@code (k * step + offset) mod n}, con
+     * {@code step} primo con n, quindi posti diversi danno posizioni diverse.</p>
+     */
+    static final class Popularity {
+        private final int n;
+        private final double exponent;
+        private final long step;
+        private final long offset;
+        private final double hIntegralX1;
+        private final double hIntegralN;
+        private final double s;
+
+        Popularity(int n, double exponent, long seed) {
+            this.n = n;
+            this.exponent = exponent;
+
+            long candidate = Math.max(1, (long) (n * 0.6180339887)) | 1;
+            while (gcd(candidate, n) != 1) {
+                candidate += 2;
+            }
+            this.step = candidate % n == 0 ? 1 : candidate;
+            this.offset = Math.floorMod(seed * GOLDEN_GAMMA, n);
+
+            this.hIntegralX1 = hIntegral(1.5) - 1;
+            this.hIntegralN = hIntegral(n + 0.5);
+            this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+        }
+
+        /**
+         * @return Una posizione da 0 a n - 1
+         */
+        int sample(SplittableRandom random) {
+            return (int) (((rank(random) - 1) * step + offset) % n);
+        }
+
+        /**
+         * @return Un posto in classifica da 1 a n
+         */
+        private long rank(SplittableRandom random) {
+            if (exponent == 0) {
+                return 1 + random.nextInt(n);
+            }
+            while (true) {
+                double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                long k = Math.max(1, Math.min(n, (long) (x + 0.5)));
+                if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                    return k;
+                }
+            }
+        }
+
+        private double h(double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return helper2((1 - exponent) * logX) * logX;
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = Math.max(-1, x * (1 - exponent));
+            return Math.exp(helper1(t) * x);
+        }
+
+        /** log(1 + x) / x, stabile per x vicino a 0 */
+        private static double helper1(double x) {
+            return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+        }
+
+        /** (exp(x) - 1) / x, stabile per x vicino a 0 */
+        private static double helper2(double x) {
+            return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+        }
+
+        private static long gcd(long a, long b) {
+            return b == 0 ? a : gcd(b, a % b);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package book_recommender.lab_b;
 
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -11,6 +12,8 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.HBox;
@@ -21,8 +24,12 @@ import javafx.stage.Stage;
 import java.io.IOException;
 import java.net.URL;
 import java.sql.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Controller per la pagina principale (homepage) dell'applicazione Book Recommender.
@@ -67,18 +74,39 @@ public class HomepageController implements Initializable {
     /** Campo di testo per la ricerca per anno */
     @FXML private TextField yearSearchField;
 
-    /** Contenitore per la lista dei libri nella scheda titolo */
-    @FXML private VBox bookListContainer;
+    /** Intestazione della lista dei libri nella scheda titolo */
+    @FXML private Label bookListHeader;
 
-    /** Contenitore per la lista dei libri nella scheda autore */
-    @FXML private VBox authorBookListContainer;
+    /** Intestazione della lista dei libri nella scheda autore */
+    @FXML private Label authorBookListHeader;
 
-    /** Contenitore per la lista dei libri nella scheda autore e anno */
-    @FXML private VBox authorYearBookListContainer;
+    /** Intestazione della lista dei libri nella scheda autore e anno */
+    @FXML private Label authorYearBookListHeader;
+
+    /** Lista virtualizzata dei libri nella scheda titolo */
+    @FXML private ListView<Book> bookListView;
+
+    /** Lista virtualizzata dei libri nella scheda autore */
+    @FXML private ListView<Book> authorBookListView;
+
+    /** Lista virtualizzata dei libri nella scheda autore e anno */
+    @FXML private ListView<Book> authorYearBookListView;
+
+    /** Risultati paginati della scheda titolo */
+    private PagedBookList titleResults;
+
+    /** Risultati paginati della scheda autore */
+    private PagedBookList authorResults;
+
+    /** Risultati paginati della scheda autore e anno */
+    private PagedBookList authorYearResults;
 
     /** Gestore del database per le operazioni di accesso ai dati */
     private DatabaseManager dbManager;
 
+    /** Ultima query avviata dalla schermata: una nuova ricerca annulla quella ancora in corso */
+    private final LatestQuery<List<Book>> latestQuery = new LatestQuery<>();
+
     /**
      * Metodo chiamato automaticamente dopo che il file FXML è stato caricato.
      * Inizializza i componenti dell'interfaccia utente, configura gli handler
@@ -103,6 +131,11 @@ public class HomepageController implements Initializable {
         // Configura gli handler per l'evento keypress sui campi di ricerca
         setupEnterKeyHandlers();
 
+        // Collega le liste virtualizzate alle ricerche paginate
+        titleResults = new PagedBookList(bookListView, view -> new BookCardCell());
+        authorResults = new PagedBookList(authorBookListView, view -> new BookCardCell());
+        authorYearResults = new PagedBookList(authorYearBookListView, view -> new BookCardCell());
+
         // Carica i 3 libri più votati nella homepage
         loadTopRatedBooks();
     }
@@ -147,117 +180,100 @@ public class HomepageController implements Initializable {
     }
 
     /**
-     * Carica i libri con la valutazione media più alta nella homepage.
-     * Visualizza i tre libri con la media di valutazione più alta in tutte
-     * le schede di ricerca.
+     * Avvia una query in background e ne mostra il risultato sul JavaFX Application Thread.
+     * Se nel frattempo è stata avviata un'altra query, il risultato viene scartato.
      *
-     * <p>Se non ci sono libri con valutazione positiva, viene mostrato un
-     * messaggio appropriato.</p>
+     * @param query Il fornitore della query asincrona da eseguire
+     * @param onResult L'azione da eseguire con i libri trovati
      */
-    private void loadTopRatedBooks() {
-        try {
-            // Ottieni i libri con valutazione media più alta, limitando a 3
-            List<Book> topRatedBooks = BookService.getTopRatedBooks(3);
-
-            // Pulisci i contenitori
-            clearBookContainers();
-
-            // Aggiungi l'intestazione "Top 3 libri per valutazione" a tutti i contenitori
-            Label titleHeader = new Label("Top 3 libri per valutazione: ");
-            titleHeader.setStyle("-fx-font-family: 'Times New Roman'; -fx-font-size: 22px; -fx-font-weight: bold; -fx-text-fill: red; -fx-padding: 10px 0 15px 0;");
-
-            Label authorHeader = new Label("Top 3 libri per valutazione: ");
-            authorHeader.setStyle("-fx-font-family: 'Times New Roman'; -fx-font-size: 22px; -fx-font-weight: bold; -fx-text-fill: red; -fx-padding: 10px 0 15px 0;");
-
-            Label authorYearHeader = new Label("Top 3 libri per valutazione: ");
-            authorYearHeader.setStyle("-fx-font-family: 'Times New Roman'; -fx-font-size: 22px; -fx-font-weight: bold; -fx-text-fill: red; -fx-padding: 10px 0 15px 0;");
-
-            if (bookListContainer != null) {
-                bookListContainer.getChildren().add(titleHeader);
-            }
-
-            if (authorBookListContainer != null) {
-                authorBookListContainer.getChildren().add(authorHeader);
-            }
-
-            if (authorYearBookListContainer != null) {
-                authorYearBookListContainer.getChildren().add(authorYearHeader);
-            }
-
-            // Se non ci sono libri con valutazione positiva, mostra un messaggio
-            if (topRatedBooks.isEmpty()) {
-                Label noRatingsLabel = new Label("Nessun libro con valutazioni positive disponibili.");
-                noRatingsLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: #555555; -fx-padding: 20px;");
-
-                if (bookListContainer != null) {
-                    bookListContainer.getChildren().add(noRatingsLabel);
-                }
-
-                if (authorBookListContainer != null) {
-                    authorBookListContainer.getChildren().add(new Label("Nessun libro con valutazioni positive disponibili."));
-                }
-
-                if (authorYearBookListContainer != null) {
-                    authorYearBookListContainer.getChildren().add(new Label("Nessun libro con valutazioni positive disponibili."));
-                }
+    private void runQuery(Supplier<CompletableFuture<List<Book>>> query, Consumer<List<Book>> onResult) {
+        CompletableFuture<List<Book>> future = latestQuery.submit(query);
 
+        future.whenComplete((books, error) -> Platform.runLater(() -> {
+            // Ignora i risultati delle query annullate o superate da una ricerca più recente
+            if (future.isCancelled() || !latestQuery.isLatest(future)) {
                 return;
             }
+            onResult.accept(error == null ? books : new ArrayList<>());
+        }));
+    }
 
-            // Aggiungi i libri ai contenitori
-            for (Book book : topRatedBooks) {
-                if (bookListContainer != null) {
-                    addBookToContainer(book, bookListContainer);
-                }
-
-                if (authorBookListContainer != null) {
-                    addBookToContainer(book, authorBookListContainer);
-                }
-
-                if (authorYearBookListContainer != null) {
-                    addBookToContainer(book, authorYearBookListContainer);
-                }
-            }
-        } catch (Exception e) {
-            // Gestione dell'eccezione silenziosa
-        }
+    /**
+     * Carica i libri con la valutazione media più alta nella homepage.
+     * La query viene eseguita in background; al termine vengono visualizzati
+     * i tre libri con la media di valutazione più alta in tutte le schede di ricerca.
+     */
+    private void loadTopRatedBooks() {
+        // Ottieni i libri con valutazione media più alta, limitando a 3
+        runQuery(() -> BookService.getTopRatedBooksAsync(3), this::showTopRatedBooks);
     }
 
     /**
-     * Pulisce i contenitori dei libri, rimuovendo tutti gli elementi
-     * precedentemente visualizzati.
+     * Visualizza i libri con la valutazione media più alta in tutte le schede di ricerca.
+     *
+     * <p>Se non ci sono libri con valutazione positiva, viene mostrato un
+     * messaggio appropriato.</p>
+     *
+     * @param topRatedBooks I libri con la valutazione media più alta
      */
-    private void clearBookContainers() {
-        if (bookListContainer != null) {
-            bookListContainer.getChildren().clear();
-        }
+    private void showTopRatedBooks(List<Book> topRatedBooks) {
+        String header = "Top 3 libri per valutazione: ";
+        String emptyText = "Nessun libro con valutazioni positive disponibili.";
+
+        // Aggiungi l'intestazione "Top 3 libri per valutazione" e i libri a tutte le schede
+        setHeaders(header);
+        titleResults.showBooks(topRatedBooks, emptyText);
+        authorResults.showBooks(topRatedBooks, emptyText);
+        authorYearResults.showBooks(topRatedBooks, emptyText);
+    }
 
-        if (authorBookListContainer != null) {
-            authorBookListContainer.getChildren().clear();
-        }
+    /**
+     * Imposta il testo dell'intestazione delle liste in tutte le schede.
+     *
+     * @param text Il testo dell'intestazione
+     */
+    private void setHeaders(String text) {
+        if (bookListHeader != null) bookListHeader.setText(text);
+        if (authorBookListHeader != null) authorBookListHeader.setText(text);
+        if (authorYearBookListHeader != null) authorYearBookListHeader.setText(text);
+    }
 
-        if (authorYearBookListContainer != null) {
-            authorYearBookListContainer.getChildren().clear();
-        }
+    /**
+     * Annulla le ricerche e i caricamenti di pagina eventualmente in corso.
+     */
+    private void cancelPendingQueries() {
+        latestQuery.cancel();
+        titleResults.cancel();
+        authorResults.cancel();
+        authorYearResults.cancel();
     }
 
     /**
-     * Aggiunge un libro al contenitore specificato con tutte le informazioni.
-     * Crea un'interfaccia utente per visualizzare le informazioni del libro
-     * in forma di card con titolo, autore, categoria, editore, anno di pubblicazione
-     * e un pulsante per visualizzare i dettagli.
+     * Cella della lista che visualizza un libro in forma di card con titolo, autore,
+     * categoria, editore, anno di pubblicazione e un pulsante per visualizzare i dettagli.
      *
-     * @param book Il libro da aggiungere al contenitore
-     * @param container Il contenitore VBox dove aggiungere il libro
+     * <p>I nodi della card vengono creati una sola volta per cella; scorrendo la lista
+     * la cella viene riutilizzata per altri libri aggiornando soltanto il testo delle etichette.</p>
      */
-    private void addBookToContainer(Book book, VBox container) {
-        if (container == null) return;
-
-        try {
-            // Crea il contenitore principale del libro
-            VBox bookCard = new VBox(10);
+    private class BookCardCell extends ListCell<Book> {
+        /** Lunghezza massima del titolo visualizzato */
+        private static final int MAX_TITLE_LENGTH = 40;
+
+        /** Contenitore principale della card */
+        private final VBox bookCard = new VBox(10);
+        /** Titolo del libro */
+        private final Label titleLabel = new Label();
+        /** Autori del libro */
+        private final Label authorLabelValue = new Label();
+        /** Categoria del libro */
+        private final Label categoryLabelValue = new Label();
+        /** Editore del libro */
+        private final Label publisherLabelValue = new Label();
+        /** Anno di pubblicazione */
+        private final Label yearLabelValue = new Label();
+
+        BookCardCell() {
             bookCard.setStyle("-fx-background-color: white; -fx-border-color: #E0E0E0; -fx-border-radius: 5px; -fx-padding: 15px;");
-            bookCard.setPrefWidth(container.getWidth() - 30);
 
             // Crea un HBox principale che conterrà la colonna di informazioni e il pulsante
             HBox mainBox = new HBox();
@@ -268,62 +284,18 @@ public class HomepageController implements Initializable {
             VBox infoColumn = new VBox(10);
             HBox.setHgrow(infoColumn, Priority.ALWAYS);
 
-            // Formatta il titolo del libro
-            String originalTitle = book.getTitle();
-            String formattedTitle;
-
-            // Tronca il titolo se troppo lungo
-            int maxLength = 40;
-            if (originalTitle.length() > maxLength) {
-                formattedTitle = originalTitle.substring(0, maxLength) + "...";
-            } else {
-                formattedTitle = originalTitle;
-            }
-
             // Titolo del libro
-            Label titleLabel = new Label(formattedTitle);
             titleLabel.setStyle("-fx-font-size: 18px; -fx-font-weight: bold; -fx-text-fill: #4054B2;");
-            titleLabel.setUserData(originalTitle);
             titleLabel.setWrapText(true);
 
             // Informazioni sul libro
             VBox infoBox = new VBox(5);
             infoBox.setPadding(new Insets(10, 0, 0, 0));
-
-            // Autore
-            HBox authorBox = new HBox(5);
-            Label authorLabelTitle = new Label("Autore:");
-            authorLabelTitle.setStyle("-fx-font-weight: bold; -fx-text-fill: #555555;");
-            Label authorLabelValue = new Label(book.getAuthors());
-            authorLabelValue.setStyle("-fx-text-fill: #333333;");
-            authorBox.getChildren().addAll(authorLabelTitle, authorLabelValue);
-
-            // Categoria
-            HBox categoryBox = new HBox(5);
-            Label categoryLabelTitle = new Label("Categoria:");
-            categoryLabelTitle.setStyle("-fx-font-weight: bold; -fx-text-fill: #555555;");
-            Label categoryLabelValue = new Label(book.getCategory());
-            categoryLabelValue.setStyle("-fx-text-fill: #333333;");
-            categoryBox.getChildren().addAll(categoryLabelTitle, categoryLabelValue);
-
-            // Editore
-            HBox publisherBox = new HBox(5);
-            Label publisherLabelTitle = new Label("Editore:");
-            publisherLabelTitle.setStyle("-fx-font-weight: bold; -fx-text-fill: #555555;");
-            Label publisherLabelValue = new Label(book.getPublisher());
-            publisherLabelValue.setStyle("-fx-text-fill: #333333;");
-            publisherBox.getChildren().addAll(publisherLabelTitle, publisherLabelValue);
-
-            // Anno di pubblicazione
-            HBox yearBox = new HBox(5);
-            Label yearLabelTitle = new Label("Anno:");
-            yearLabelTitle.setStyle("-fx-font-weight: bold; -fx-text-fill: #555555;");
-            Label yearLabelValue = new Label(String.valueOf(book.getPublishYear()));
-            yearLabelValue.setStyle("-fx-text-fill: #333333;");
-            yearBox.getChildren().addAll(yearLabelTitle, yearLabelValue);
-
-            // Aggiungi tutte le informazioni al box delle info
-            infoBox.getChildren().addAll(authorBox, categoryBox, publisherBox, yearBox);
+            infoBox.getChildren().addAll(
+                    infoRow("Autore:", authorLabelValue),
+                    infoRow("Categoria:", categoryLabelValue),
+                    infoRow("Editore:", publisherLabelValue),
+                    infoRow("Anno:", yearLabelValue));
 
             // Aggiungi titolo e info alla colonna di sinistra
             infoColumn.getChildren().addAll(titleLabel, infoBox);
@@ -335,25 +307,62 @@ public class HomepageController implements Initializable {
             // Pulsante "Visualizza"
             Button viewButton = new Button("Visualizza");
             viewButton.setStyle("-fx-text-fill: white; -fx-background-color: #75B965; -fx-background-radius: 40px; -fx-padding: 8px 15px;");
-            viewButton.setOnAction(event -> visualizzalibro(event, originalTitle));
-
-            // Aggiungi il pulsante alla colonna di destra
+            viewButton.setOnAction(event -> {
+                Book book = getItem();
+                if (book != null) {
+                    visualizzalibro(event, book.getTitle());
+                }
+            });
             buttonColumn.getChildren().add(viewButton);
 
-            // Aggiungi le due colonne al box principale
+            // Aggiungi le due colonne al box principale e il box alla card
             mainBox.getChildren().addAll(infoColumn, buttonColumn);
-
-            // Aggiungi il box principale alla scheda del libro
             bookCard.getChildren().add(mainBox);
 
-            // Aggiungi la carta del libro al contenitore principale
-            container.getChildren().add(bookCard);
+            setPadding(new Insets(0, 0, 15, 0));
+            setStyle("-fx-background-color: white;");
+        }
+
+        /**
+         * Crea una riga di informazioni composta da un'etichetta e dal relativo valore.
+         *
+         * @param title Il nome dell'informazione
+         * @param value L'etichetta che conterrà il valore
+         * @return La riga di informazioni
+         */
+        private HBox infoRow(String title, Label value) {
+            HBox row = new HBox(5);
+            Label titleLabel = new Label(title);
+            titleLabel.setStyle("-fx-font-weight: bold; -fx-text-fill: #555555;");
+            value.setStyle("-fx-text-fill: #333333;");
+            row.getChildren().addAll(titleLabel, value);
+            return row;
+        }
+
+        @Override
+        protected void updateItem(Book book, boolean empty) {
+            super.updateItem(book, empty);
+
+            if (empty || book == null) {
+                setGraphic(null);
+                return;
+            }
+
+            // Tronca il titolo se troppo lungo
+            String originalTitle = book.getTitle();
+            titleLabel.setText(originalTitle.length() > MAX_TITLE_LENGTH
+                    ? originalTitle.substring(0, MAX_TITLE_LENGTH) + "..."
+                    : originalTitle);
+            titleLabel.setUserData(originalTitle);
+
+            authorLabelValue.setText(book.getAuthors());
+            categoryLabelValue.setText(book.getCategory());
+            publisherLabelValue.setText(book.getPublisher());
+            yearLabelValue.setText(String.valueOf(book.getPublishYear()));
 
-        } catch (Exception e) {
-            // In caso di errore, crea un elemento semplificato
-            Label errorLabel = new Label("Errore nel caricamento del libro: " + book.getTitle());
-            errorLabel.setStyle("-fx-text-fill: red;");
-            container.getChildren().add(errorLabel);
+            // La card occupa la larghezza della lista, al netto della barra di scorrimento
+            bookCard.setMaxWidth(Math.max(0, getListView().getWidth() - 40));
+            setGraphic(bookCard);
         }
     }
 
@@ -365,6 +374,8 @@ public class HomepageController implements Initializable {
      */
     @FXML
     public void entrainlogin(ActionEvent event) {
+        cancelPendingQueries();
+
         try {
             String fxmlFile = "/book_recommender/lab_b/login.fxml";
             FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlFile));
@@ -392,6 +403,8 @@ public class HomepageController implements Initializable {
      */
     @FXML
     public void entrainregistrazione(ActionEvent event) {
+        cancelPendingQueries();
+
         try {
             String fxmlFile = "/book_recommender/lab_b/registrazione.fxml";
             FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlFile));
@@ -469,6 +482,7 @@ public class HomepageController implements Initializable {
      * Gestisce la ricerca dei libri in base alla scheda attualmente visibile.
      * Esegue una ricerca diversa in base alla scheda selezionata (titolo, autore o autore e anno).
      * Se i campi di ricerca sono vuoti, vengono mostrati i libri più votati.
+     * La ricerca viene eseguita in background e annulla un'eventuale ricerca precedente ancora in corso.
      *
      * @param event L'evento che ha triggerato l'azione
      */
@@ -479,8 +493,7 @@ public class HomepageController implements Initializable {
             // Ricerca per titolo
             String searchTitle = titleSearchField.getText().trim();
             if (!searchTitle.isEmpty()) {
-                List<Book> results = BookService.searchBooksByTitle(searchTitle);
-                displaySearchResults(results, bookListContainer);
+                displaySearchResults(BookQuery.byTitle(searchTitle), titleResults, bookListHeader);
             } else {
                 loadTopRatedBooks();
             }
@@ -488,8 +501,7 @@ public class HomepageController implements Initializable {
             // Ricerca per autore
             String searchAuthor = authorSearchField.getText().trim();
             if (!searchAuthor.isEmpty()) {
-                List<Book> results = BookService.searchBooksByAuthor(searchAuthor);
-                displaySearchResults(results, authorBookListContainer);
+                displaySearchResults(BookQuery.byAuthor(searchAuthor), authorResults, authorBookListHeader);
             } else {
                 loadTopRatedBooks();
             }
@@ -501,8 +513,7 @@ public class HomepageController implements Initializable {
             if (!searchAuthor.isEmpty() && !yearString.isEmpty()) {
                 try {
                     int year = Integer.parseInt(yearString);
-                    List<Book> results = BookService.searchBooksByAuthorAndYear(searchAuthor, year);
-                    displaySearchResults(results, authorYearBookListContainer);
+                    displaySearchResults(BookQuery.byAuthorAndYear(searchAuthor, year), authorYearResults, authorYearBookListHeader);
                 } catch (NumberFormatException e) {
                     // Gestione dell'eccezione silenziosa
                 }
@@ -513,34 +524,23 @@ public class HomepageController implements Initializable {
     }
 
     /**
-     * Mostra i risultati della ricerca nel contenitore specificato.
-     * Se non ci sono risultati, mostra un messaggio appropriato.
+     * Avvia la ricerca e ne mostra i risultati nella lista specificata.
+     * I risultati vengono caricati una pagina alla volta man mano che l'utente scorre la lista;
+     * se non ci sono risultati, la lista mostra un messaggio appropriato.
      *
-     * @param books La lista dei libri da visualizzare
-     * @param container Il contenitore VBox dove visualizzare i risultati
+     * @param query I criteri di ricerca
+     * @param results La lista paginata in cui visualizzare i risultati
+     * @param header L'intestazione della lista
      */
-    private void displaySearchResults(List<Book> books, VBox container) {
-        if (container == null) return;
-
-        // Pulisci il contenitore
-        container.getChildren().clear();
-
-        if (books.isEmpty()) {
-            // Se non ci sono risultati, mostra un messaggio
-            Label noResultsLabel = new Label("Nessun libro trovato.");
-            noResultsLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: #555555; -fx-padding: 20px;");
-            container.getChildren().add(noResultsLabel);
-        } else {
-            // Se ci sono risultati, aggiungi l'intestazione "Risultati della ricerca"
-            Label searchResultsHeader = new Label("Risultati della ricerca: ");
-            searchResultsHeader.setStyle("-fx-font-family: 'Times New Roman'; -fx-font-size: 22px; -fx-font-weight: bold; -fx-text-fill: red; -fx-padding: 10px 0 15px 0;");
-            container.getChildren().add(searchResultsHeader);
-
-            // Aggiungi i libri al contenitore
-            for (Book book : books) {
-                addBookToContainer(book, container);
-            }
+    private void displaySearchResults(BookQuery query, PagedBookList results, Label header) {
+        // Un caricamento dei libri più votati ancora in corso non deve sovrascrivere la ricerca
+        latestQuery.cancel();
+
+        if (header != null) {
+            header.setText("Risultati della ricerca: ");
         }
+        results.setEmptyMessage("Nessun libro trovato.");
+        results.search(query);
     }
 
     /**
@@ -563,6 +563,9 @@ public class HomepageController implements Initializable {
      * @param bookTitle Il titolo del libro di cui visualizzare i dettagli
      */
     private void navigateToBookDetails(ActionEvent event, String bookTitle) {
+        // La schermata viene abbandonata: le query eventualmente in corso non servono più
+        cancelPendingQueries();
+
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/book_recommender/lab_b/stampadettaglinologin.fxml"));
             Parent root = loader.load();
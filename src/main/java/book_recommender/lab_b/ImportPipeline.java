@@ -0,0 +1,466 @@
+package book_recommender.lab_b;
+
+import book_recommender.lab_b.BulkImporter.Dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Importa in parallelo i file CSV scaricati all'avvio del server.
+ *
+ * <p>Per ogni file lavorano due thread collegati da una coda limitata:</p>
+ * <ul>
+ *   <li>il <b>lettore</b> legge e converte le righe del file e le accoda a lotti;</li>
+ *   <li>lo <b>scrittore</b>, con una propria connessione del pool, carica i lotti nella
+ *   tabella di appoggio tramite {@link BulkImporter} e poi unisce i dati alle tabelle
+ *   definitive.</li>
+ * </ul>
+ *
+ * <p>Quando la coda è piena il lettore si ferma finché lo scrittore non la svuota, quindi la
+ * memoria occupata non dipende dalla dimensione dei file. Il caricamento delle tabelle di
+ * appoggio avviene in parallelo per tutti i file; l'unione rispetta invece le dipendenze
+ * indicate da {@link Dataset#dependencies()}: libri e utenti prima di librerie,
+ * valutazioni e consigli. Ogni file viene unito e confermato in una propria transazione.</p>
+ *
+ * <p>Durante l'importazione l'avanzamento e la velocità di ogni file vengono comunicati
+ * a un {@link ProgressListener}.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class ImportPipeline {
+
+    /**
+     * Riceve l'avanzamento dell'importazione.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param fraction Frazione completata, tra 0 e 1
+         * @param message Descrizione dello stato di ogni file
+         */
+        void onProgress(double fraction, String message);
+    }
+
+    /**
+     * Numero di righe in ogni lotto passato dal lettore allo scrittore.
+     */
+    private static final int BATCH_ROWS = 1000;
+
+    /**
+     * Numero massimo di lotti in attesa nella coda di ogni file.
+     */
+    private static final int QUEUE_CAPACITY = 8;
+
+    /**
+     * Intervallo tra due aggiornamenti dell'avanzamento.
+     */
+    private static final long REPORT_INTERVAL_MS = 500;
+
+    /**
+     * Quota dell'avanzamento assegnata alla lettura dei file; il resto è per l'unione.
+     */
+    private static final double LOAD_WEIGHT = 0.8;
+
+    /**
+     * Tempo massimo di attesa per la chiusura delle attività dopo un errore.
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Lotto vuoto che segnala allo scrittore la fine del file.
+     */
+    private static final List<Object[]> END_OF_FILE = List.of();
+
+    /**
+     * Totali delle importazioni eseguite dall'avvio del processo, per tipo di file.
+     */
+    private static final Map<Dataset, Totals> TOTALS = new EnumMap<>(Dataset.class);
+
+    static {
+        for (Dataset dataset : Dataset.values()) {
+            TOTALS.put(dataset, new Totals());
+        }
+    }
+
+    /** Pool da cui ogni scrittore prende la propria connessione */
+    private final ConnectionPool pool;
+    /** File da importare, nell'ordine delle dipendenze */
+    private final Map<Dataset, File> files = new EnumMap<>(Dataset.class);
+
+    /**
+     * Crea una pipeline che usa le connessioni del pool indicato.
+     * Serve una connessione per ogni file da importare.
+     *
+     * @param pool Il pool di connessioni al database
+     */
+    public ImportPipeline(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Restituisce i totali delle importazioni di un tipo di file eseguite dall'avvio del
+     * processo. Le righe vengono contate mentre l'importazione procede, quindi il loro
+     * ritmo di crescita misura la velocità di importazione.
+     *
+     * @param dataset Il tipo di file
+     * @return I totali, aggiornati in tempo reale
+     */
+    public static Totals getTotals(Dataset dataset) {
+        return TOTALS.get(dataset);
+    }
+
+    /**
+     * Aggiunge un file da importare.
+     *
+     * @param dataset Il tipo di file
+     * @param file Il file CSV
+     * @return Questa pipeline, per concatenare le chiamate
+     */
+    public ImportPipeline addFile(Dataset dataset, File file) {
+        files.put(dataset, file);
+        return this;
+    }
+
+    /**
+     * Esegue l'importazione di tutti i file aggiunti e attende che sia completata.
+     * Al primo errore le altre attività vengono interrotte e l'errore viene rilanciato;
+     * i file già uniti restano confermati.
+     *
+     * @param listener Destinatario degli aggiornamenti sull'avanzamento
+     * @throws SQLException se si verifica un errore sul database
+     * @throws IOException se si verifica un errore durante la lettura di un file
+     */
+    public void run(ProgressListener listener) throws SQLException, IOException {
+        Map<Dataset, Stage> stages = new EnumMap<>(Dataset.class);
+        for (Map.Entry<Dataset, File> entry : files.entrySet()) {
+            stages.put(entry.getKey(), new Stage(entry.getKey(), entry.getValue()));
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        // Interrompe tutte le attività al primo errore
+        Runnable abort = () -> {
+            for (Stage stage : stages.values()) {
+                stage.merged.completeExceptionally(failure.get());
+            }
+            executor.shutdownNow();
+        };
+
+        try {
+            // Gli scrittori vengono avviati nell'ordine delle dipendenze, così libri e utenti
+            // ottengono per primi una connessione dal pool
+            for (Stage stage : stages.values()) {
+                executor.execute(() -> runTask(() -> write(stage, stages), failure, abort));
+                executor.execute(() -> runTask(() -> read(stage), failure, abort));
+            }
+
+            CompletableFuture<Void> all = CompletableFuture.allOf(stages.values().stream()
+                    .map(stage -> stage.merged)
+                    .toArray(CompletableFuture[]::new));
+
+            while (true) {
+                try {
+                    all.get(REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    report(stages, listener);
+                } catch (ExecutionException e) {
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure.compareAndSet(null, e);
+                    abort.run();
+                    break;
+                }
+            }
+        } finally {
+            // Attende che le attività interrotte restituiscano le connessioni al pool
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Throwable error = failure.get();
+        if (error instanceof SQLException sqlException) {
+            throw sqlException;
+        } else if (error instanceof IOException ioException) {
+            throw ioException;
+        } else if (error != null) {
+            throw new SQLException("Importazione interrotta", error);
+        }
+
+        report(stages, listener);
+    }
+
+    /**
+     * Legge il file di un'attività e accoda le righe convertite a lotti.
+     *
+     * @param stage L'attività da eseguire
+     */
+    private void read(Stage stage) throws IOException, SQLException, InterruptedException {
+        try (CsvReader reader = new CsvReader(stage.file)) {
+            BulkImporter.LineParser parser = stage.dataset.parser(reader.next() ? reader.line() : null);
+
+            List<Object[]> batch = new ArrayList<>(BATCH_ROWS);
+            BulkImporter.RowSink sink = batch::add;
+            while (reader.next()) {
+                stage.bytesRead.set(reader.position());
+                parser.parse(reader, sink);
+
+                if (batch.size() >= BATCH_ROWS) {
+                    // Attende se lo scrittore è indietro
+                    stage.queue.put(new ArrayList<>(batch));
+                    batch.clear();
+                }
+            }
+
+            stage.bytesRead.set(reader.position());
+            TOTALS.get(stage.dataset).bytes.add(reader.position());
+
+            if (!batch.isEmpty()) {
+                stage.queue.put(batch);
+            }
+            stage.queue.put(END_OF_FILE);
+        }
+    }
+
+    /**
+     * Carica i lotti di un'attività nella tabella di appoggio e, quando i file da cui dipende
+     * sono stati uniti, unisce i dati alle tabelle definitive.
+     *
+     * @param stage L'attività da eseguire
+     * @param stages Tutte le attività della pipeline
+     */
+    private void write(Stage stage, Map<Dataset, Stage> stages) throws SQLException, InterruptedException {
+        try (Connection conn = pool.getConnection()) {
+            boolean originalAutoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            BulkImporter importer = new BulkImporter(conn);
+            Totals totals = TOTALS.get(stage.dataset);
+
+            try {
+                importer.createStagingTable(stage.dataset);
+                stage.startNanos = System.nanoTime();
+
+                try (BulkImporter.StagingWriter writer = importer.openStagingWriter(stage.dataset)) {
+                    List<Object[]> batch;
+                    while ((batch = stage.queue.take()) != END_OF_FILE) {
+                        for (Object[] row : batch) {
+                            writer.addRow(row);
+                        }
+                        stage.rowsWritten.addAndGet(batch.size());
+                        totals.rows.add(batch.size());
+                    }
+                    writer.finish();
+                }
+                stage.loadedNanos = System.nanoTime();
+                totals.loadNanos.add(stage.loadedNanos - stage.startNanos);
+
+                // Attende l'unione dei file da cui dipende (quelli non importati sono ignorati)
+                for (Dataset dependency : stage.dataset.dependencies()) {
+                    Stage required = stages.get(dependency);
+                    if (required != null) {
+                        try {
+                            required.merged.get();
+                        } catch (ExecutionException e) {
+                            // L'errore è già stato registrato da chi lo ha causato
+                            return;
+                        }
+                    }
+                }
+
+                stage.merging = true;
+                long mergeStart = System.nanoTime();
+                importer.merge(stage.dataset);
+                conn.commit();
+                totals.mergeNanos.add(System.nanoTime() - mergeStart);
+                totals.files.increment();
+            } catch (SQLException | InterruptedException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                try {
+                    importer.dropStagingTable(stage.dataset);
+                    conn.commit();
+                    conn.setAutoCommit(originalAutoCommit);
+                } catch (SQLException e) {
+                    // Ignora errori durante il ripristino della connessione
+                }
+            }
+
+            stage.merged.complete(null);
+        }
+    }
+
+    /**
+     * Esegue un'attività registrando il primo errore e interrompendo le altre attività.
+     *
+     * @param task L'attività da eseguire
+     * @param failure Il primo errore registrato
+     * @param abort Azione che interrompe la pipeline
+     */
+    private static void runTask(StageTask task, AtomicReference<Throwable> failure, Runnable abort) {
+        try {
+            task.run();
+        } catch (InterruptedException e) {
+            // Interruzione causata da un errore in un'altra attività
+        } catch (Exception e) {
+            if (failure.compareAndSet(null, e)) {
+                abort.run();
+            }
+        }
+    }
+
+    /**
+     * Comunica l'avanzamento complessivo e lo stato di ogni file.
+     *
+     * @param stages Le attività della pipeline
+     * @param listener Destinatario dell'aggiornamento
+     */
+    private static void report(Map<Dataset, Stage> stages, ProgressListener listener) {
+        long totalBytes = 0;
+        long bytesRead = 0;
+        int merged = 0;
+        StringBuilder message = new StringBuilder("Importing data -");
+
+        for (Stage stage : stages.values()) {
+            totalBytes += stage.totalBytes;
+            bytesRead += Math.min(stage.bytesRead.get(), stage.totalBytes);
+            if (stage.merged.isDone()) {
+                merged++;
+            }
+            message.append(' ').append(stage.dataset.getLabel()).append(": ").append(stage.describe()).append(';');
+        }
+
+        double loaded = totalBytes == 0 ? 1.0 : (double) bytesRead / totalBytes;
+        double fraction = loaded * LOAD_WEIGHT + (1 - LOAD_WEIGHT) * merged / Math.max(1, stages.size());
+        message.setLength(message.length() - 1);
+        listener.onProgress(fraction, message.toString());
+    }
+
+    /**
+     * Un'attività della pipeline che può lanciare eccezioni controllate.
+     */
+    @FunctionalInterface
+    private interface StageTask {
+        void run() throws Exception;
+    }
+
+    /**
+     * Totali delle importazioni di un tipo di file, sommati su tutte le esecuzioni.
+     */
+    public static final class Totals {
+        /** Righe caricate nelle tabelle di appoggio */
+        private final LongAdder rows = new LongAdder();
+        /** Byte letti dai file */
+        private final LongAdder bytes = new LongAdder();
+        /** Tempo di caricamento nelle tabelle di appoggio */
+        private final LongAdder loadNanos = new LongAdder();
+        /** Tempo di unione alle tabelle definitive */
+        private final LongAdder mergeNanos = new LongAdder();
+        /** File importati e confermati */
+        private final LongAdder files = new LongAdder();
+
+        private Totals() {
+        }
+
+        /**
+         * @return Le righe caricate nelle tabelle di appoggio
+         */
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /**
+         * @return I byte letti dai file
+         */
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * @return Il tempo di caricamento nelle tabelle di appoggio, in nanosecondi
+         */
+        public long getLoadNanos() {
+            return loadNanos.sum();
+        }
+
+        /**
+         * @return Il tempo di unione alle tabelle definitive, in nanosecondi
+         */
+        public long getMergeNanos() {
+            return mergeNanos.sum();
+        }
+
+        /**
+         * @return Il numero di file importati e confermati
+         */
+        public long getFiles() {
+            return files.sum();
+        }
+    }
+
+    /**
+     * Stato dell'importazione di un singolo file.
+     */
+    private static final class Stage {
+        final Dataset dataset;
+        final File file;
+        final long totalBytes;
+        /** Lotti letti in attesa di essere caricati */
+        final BlockingQueue<List<Object[]>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        /** Byte del file già letti, per l'avanzamento */
+        final AtomicLong bytesRead = new AtomicLong();
+        /** Righe caricate nella tabella di appoggio */
+        final AtomicLong rowsWritten = new AtomicLong();
+        /** Completato quando i dati sono stati uniti alle tabelle definitive */
+        final CompletableFuture<Void> merged = new CompletableFuture<>();
+        volatile long startNanos;
+        volatile long loadedNanos;
+        volatile boolean merging;
+
+        Stage(Dataset dataset, File file) {
+            this.dataset = dataset;
+            this.file = file;
+            this.totalBytes = file.length();
+        }
+
+        /**
+         * Descrive lo stato del file: righe caricate e velocità, attesa o unione in corso.
+         */
+        String describe() {
+            long rows = rowsWritten.get();
+            if (merged.isDone() && !merged.isCompletedExceptionally()) {
+                return "done, " + rows + " rows";
+            }
+            if (merging) {
+                return "merging " + rows + " rows";
+            }
+            if (loadedNanos != 0) {
+                return "loaded " + rows + " rows, waiting";
+            }
+            if (startNanos == 0) {
+                return "starting";
+            }
+
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            long rowsPerSecond = seconds > 0 ? Math.round(rows / seconds) : 0;
+            return rows + " rows (" + rowsPerSecond + " rows/s)";
+        }
+    }
+}
@@ -0,0 +1,792 @@
+package book_recommender.lab_b;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indice in memoria dei libri simili, calcolato con il filtraggio collaborativo item-item
+ * sulle valutazioni e sui consigli degli utenti.
+ *
+ * <p>Due libri sono simili se gli stessi utenti li hanno valutati in modo simile o se gli
+ * utenti consigliano l'uno a chi ha letto l'altro. La similarità di due libri i e j è</p>
+ * <pre>
+ *   cos(i, j) * n / (n + SHRINKAGE)  +  RECOMMENDATION_WEIGHT * r / (r + 1)
+ * </pre>
+ * <p>dove cos è la similarità del coseno tra i voti medi dati ai due libri dagli utenti che li
+ * hanno valutati entrambi, n il numero di questi utenti (pochi utenti in comune danno una
+ * similarità meno affidabile) e r il numero di consigli tra i due libri, in entrambe le direzioni.</p>
+ *
+ * <p>Valutazioni e consigli sono mantenuti come liste di adiacenza su array di interi e float,
+ * indicizzate per id del libro e per utente. Per ogni libro vengono conservati i
+ * {@code neighbors} libri più simili, in uno snapshot immutabile che sostituisce atomicamente
+ * il precedente: {@link #getSimilarBooks(int, int)} è una lettura di array, senza query.</p>
+ *
+ * <p>L'indice viene aggiornato in background in modo incrementale: a ogni aggiornamento
+ * vengono lette le valutazioni e i consigli con id superiore all'ultimo letto, e rilette per
+ * intero le valutazioni e i consigli dei libri modificati dal server ({@link #markDirty(int)}).
+ * Vengono ricalcolate solo le righe dei libri interessati, cioè di quelli valutati o consigliati
+ * insieme ai libri modificati. Le modifiche eseguite da altri processi sono recepite alla
+ * ricostruzione completa, eseguita ogni {@code rebuildMinutes} minuti.</p>
+ *
+ * <p>Finché l'indice non è stato costruito {@link #isReady()} restituisce false e la pagina del
+ * libro propone i libri della stessa categoria.</p>
+ *
+ * <p>Configurazione tramite proprietà di sistema:</p>
+ * <ul>
+ *   <li>{@code bookrecommender.similarity.refreshSeconds} - intervallo tra due aggiornamenti (predefinito 60)</li>
+ *   <li>{@code bookrecommender.similarity.rebuildMinutes} - intervallo tra due ricostruzioni complete (predefinito 60)</li>
+ *   <li>{@code bookrecommender.similarity.neighbors} - libri simili conservati per libro (predefinito 20)</li>
+ * </ul>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class ItemSimilarityIndex {
+
+    /**
+     * Intervallo predefinito, in secondi, tra due aggiornamenti incrementali.
+     */
+    private static final long DEFAULT_REFRESH_SECONDS = 60;
+
+    /**
+     * Intervallo predefinito, in minuti, tra due ricostruzioni complete.
+     */
+    private static final long DEFAULT_REBUILD_MINUTES = 60;
+
+    /**
+     * Numero predefinito di libri simili conservati per libro.
+     */
+    private static final int DEFAULT_NEIGHBORS = 20;
+
+    /**
+     * Numero di utenti in comune per cui la similarità del coseno vale metà del suo valore.
+     */
+    private static final float SHRINKAGE = 10f;
+
+    /**
+     * Peso massimo dei consigli degli utenti nella similarità.
+     */
+    private static final float RECOMMENDATION_WEIGHT = 0.5f;
+
+    /**
+     * Voto medio di una valutazione, calcolato dai cinque voti.
+     */
+    private static final String SCORE =
+            "(style_rating + content_rating + pleasantness_rating + originality_rating + edition_rating) / 5.0";
+
+    /**
+     * Array vuoto dei libri che non hanno libri simili.
+     */
+    private static final int[] NO_BOOKS = new int[0];
+
+    /**
+     * Istanza Singleton dell'indice.
+     */
+    private static ItemSimilarityIndex instance;
+
+    /** Numero di libri simili conservati per libro */
+    private final int neighbors = Math.max(1, Integer.getInteger("bookrecommender.similarity.neighbors", DEFAULT_NEIGHBORS));
+    /** Intervallo tra due ricostruzioni complete in millisecondi */
+    private final long rebuildMillis =
+            Long.getLong("bookrecommender.similarity.rebuildMinutes", DEFAULT_REBUILD_MINUTES) * 60_000;
+
+    /**
+     * Snapshot corrente dell'indice, null finché la prima costruzione non è terminata.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Scheduler che esegue la costruzione iniziale e gli aggiornamenti periodici.
+     */
+    private ScheduledExecutorService refresher;
+
+    /** Libri modificati dopo l'ultimo aggiornamento */
+    private int[] dirtyBooks = new int[16];
+    /** Numero di elementi validi di {@link #dirtyBooks} */
+    private int dirtyCount = 0;
+
+    /** Impedisce due aggiornamenti contemporanei */
+    private final Object refreshLock = new Object();
+    /** Valutazioni e consigli in memoria, usati solo durante un aggiornamento */
+    private Model model;
+    /** Istante della prossima ricostruzione completa */
+    private long rebuildAt = 0;
+
+    /**
+     * Costruttore privato per impedire l'istanziazione diretta (pattern Singleton).
+     */
+    private ItemSimilarityIndex() {
+    }
+
+    /**
+     * Ottiene l'istanza singleton dell'indice.
+     *
+     * @return l'istanza singleton
+     */
+    public static synchronized ItemSimilarityIndex getInstance() {
+        if (instance == null) {
+            instance = new ItemSimilarityIndex();
+        }
+        return instance;
+    }
+
+    /**
+     * Avvia in background la costruzione dell'indice e il suo aggiornamento periodico.
+     * Le chiamate successive alla prima non hanno effetto.
+     */
+    public synchronized void start() {
+        if (refresher != null) {
+            return;
+        }
+
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "item-similarity-index");
+            t.setDaemon(true);
+            return t;
+        });
+
+        long period = Long.getLong("bookrecommender.similarity.refreshSeconds", DEFAULT_REFRESH_SECONDS);
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (SQLException e) {
+                // Gestione silenziosa dell'errore - al prossimo aggiornamento l'indice viene
+                // ricostruito, nel frattempo resta in uso lo snapshot precedente
+            }
+        }, 0, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Ferma l'aggiornamento periodico e libera l'indice.
+     */
+    public synchronized void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+        snapshot = null;
+        dirtyCount = 0;
+    }
+
+    /**
+     * Indica se l'indice è stato costruito e può proporre i libri simili.
+     *
+     * @return true se l'indice è pronto
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * Segnala che le valutazioni o i consigli di un libro sono cambiati. Le sue similarità
+     * vengono ricalcolate al prossimo aggiornamento.
+     *
+     * @param bookId L'id del libro
+     */
+    public synchronized void markDirty(int bookId) {
+        if (refresher == null) {
+            return;
+        }
+        if (dirtyCount == dirtyBooks.length) {
+            dirtyBooks = Arrays.copyOf(dirtyBooks, dirtyCount * 2);
+        }
+        dirtyBooks[dirtyCount++] = bookId;
+    }
+
+    /**
+     * Restituisce gli id dei libri più simili a un libro, dal più simile.
+     *
+     * @param bookId L'id del libro
+     * @return Gli id dei libri simili, vuoto se il libro non ne ha o l'indice non è pronto
+     */
+    public int[] getSimilarBookIds(int bookId) {
+        Snapshot current = snapshot;
+        if (current == null || bookId < 0 || bookId >= current.neighbors.length || current.neighbors[bookId] == null) {
+            return NO_BOOKS;
+        }
+        return current.neighbors[bookId].clone();
+    }
+
+    /**
+     * Restituisce i libri più simili a un libro, dal più simile.
+     *
+     * @param bookId L'id del libro
+     * @param limit Numero massimo di libri da restituire
+     * @return I libri simili, oppure null se l'indice non è pronto
+     */
+    public List<Book> getSimilarBooks(int bookId, int limit) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        if (bookId < 0 || bookId >= current.neighbors.length || current.neighbors[bookId] == null) {
+            return List.of();
+        }
+
+        int[] similar = current.neighbors[bookId];
+        List<Book> books = new ArrayList<>(Math.min(limit, similar.length));
+        for (int i = 0; i < similar.length && books.size() < limit; i++) {
+            books.add(current.books[similar[i]]);
+        }
+        return books;
+    }
+
+    /**
+     * Aggiorna l'indice con le valutazioni e i consigli modificati dall'ultimo aggiornamento,
+     * oppure lo ricostruisce da zero alla prima chiamata e allo scadere di {@code rebuildMinutes}.
+     *
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public void refresh() throws SQLException {
+        synchronized (refreshLock) {
+            refreshLocked();
+        }
+    }
+
+    /**
+     * Esegue {@link #refresh()} con il lock degli aggiornamenti.
+     */
+    private void refreshLocked() throws SQLException {
+        int[] dirty;
+        synchronized (this) {
+            dirty = Arrays.copyOf(dirtyBooks, dirtyCount);
+            dirtyCount = 0;
+        }
+
+        boolean rebuild = model == null || snapshot == null || System.currentTimeMillis() >= rebuildAt;
+        Model current = rebuild ? new Model() : model;
+        // Se l'aggiornamento fallisce a metà, il modello non è più coerente: si ricostruirà
+        model = null;
+
+        int[] affected;
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            current.loadBooks(conn);
+            if (rebuild) {
+                current.loadRatings(conn);
+                current.loadRecommendations(conn);
+                affected = current.ratedBooks();
+            } else {
+                // I libri modificati sono interessati insieme a quelli che erano loro simili
+                current.resetAffected();
+                current.markNeighbors(dirty);
+                current.markNeighbors(current.loadRatings(conn));
+                current.markNeighbors(current.loadRecommendations(conn));
+                current.reloadBooks(conn, dirty);
+                current.markNeighbors(dirty);
+                affected = current.affectedBooks();
+            }
+        }
+
+        Snapshot previous = rebuild ? null : snapshot;
+        int capacity = current.books.length;
+        int[][] rows = previous == null ? new int[capacity][] : Arrays.copyOf(previous.neighbors, capacity);
+        for (int bookId : affected) {
+            rows[bookId] = current.computeNeighbors(bookId, neighbors);
+        }
+
+        model = current;
+        if (rebuild) {
+            rebuildAt = System.currentTimeMillis() + rebuildMillis;
+        }
+        synchronized (this) {
+            if (refresher != null) {
+                snapshot = new Snapshot(rows, current.books.clone());
+            }
+        }
+    }
+
+    /**
+     * Vista immutabile dell'indice.
+     */
+    private static final class Snapshot {
+        /** Id dei libri simili per id del libro, null se il libro non ne ha */
+        private final int[][] neighbors;
+        /** Libri per id */
+        private final Book[] books;
+
+        Snapshot(int[][] neighbors, Book[] books) {
+            this.neighbors = neighbors;
+            this.books = books;
+        }
+    }
+
+    /**
+     * Valutazioni e consigli in memoria, come liste di adiacenza:
+     * per ogni utente i libri valutati, per ogni libro gli utenti che lo hanno valutato
+     * e i libri consigliati a partire da esso o che lo consigliano.
+     */
+    private static final class Model {
+        /** Indice denso degli utenti */
+        private final Map<String, Integer> users = new HashMap<>();
+        private int[][] userBooks = new int[16][];
+        private float[][] userScores = new float[16][];
+        private int[] userSizes = new int[16];
+
+        /** Libri per id */
+        private Book[] books = new Book[16];
+        private int[][] bookUsers = new int[16][];
+        private float[][] bookScores = new float[16][];
+        private int[] bookSizes = new int[16];
+        /** Somma dei quadrati dei voti di ciascun libro */
+        private double[] squaredNorms = new double[16];
+        /** Libri consigliati a partire da ciascun libro, uno per consiglio */
+        private int[][] recommendedFrom = new int[16][];
+        private int[] recommendedFromSizes = new int[16];
+        /** Libri che consigliano ciascun libro, uno per consiglio */
+        private int[][] recommendedBy = new int[16][];
+        private int[] recommendedBySizes = new int[16];
+
+        /** Id più alti già letti */
+        private int bookWatermark = 0;
+        private int ratingWatermark = 0;
+        private int recommendationWatermark = 0;
+
+        /** Libri da ricalcolare e loro numero */
+        private boolean[] affected = new boolean[16];
+        private int[] affectedList = new int[16];
+        private int affectedCount = 0;
+
+        /** Array di lavoro di {@link #computeNeighbors}, indicizzati per id del libro */
+        private float[] dots = new float[16];
+        private int[] coRatings = new int[16];
+        private int[] recommendations = new int[16];
+        private int[] touched = new int[16];
+
+        /**
+         * Legge i libri aggiunti al catalogo.
+         */
+        void loadBooks(Connection conn) throws SQLException {
+            String sql = "SELECT id, title, authors, category, publisher, publish_year FROM books WHERE id > ? ORDER BY id";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, bookWatermark);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Book book = BookService.mapBook(rs);
+                        ensureBookCapacity(book.getId());
+                        books[book.getId()] = book;
+                        bookWatermark = book.getId();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Legge le valutazioni aggiunte dall'ultimo aggiornamento.
+         *
+         * @return I libri valutati
+         */
+        int[] loadRatings(Connection conn) throws SQLException {
+            String sql = "SELECT id, user_id, book_id, " + SCORE + " AS score FROM book_ratings WHERE id > ? ORDER BY id";
+            IntList changed = new IntList();
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, ratingWatermark);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int bookId = rs.getInt("book_id");
+                        if (isKnownBook(bookId)) {
+                            addRating(user(rs.getString("user_id")), bookId, rs.getFloat("score"));
+                            changed.add(bookId);
+                        }
+                        ratingWatermark = rs.getInt("id");
+                    }
+                }
+            }
+            return changed.toArray();
+        }
+
+        /**
+         * Legge i consigli aggiunti dall'ultimo aggiornamento.
+         *
+         * @return I libri di partenza e i libri consigliati
+         */
+        int[] loadRecommendations(Connection conn) throws SQLException {
+            String sql = "SELECT id, source_book_id, recommended_book_id FROM book_recommendations WHERE id > ? ORDER BY id";
+            IntList changed = new IntList();
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, recommendationWatermark);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int source = rs.getInt("source_book_id");
+                        int target = rs.getInt("recommended_book_id");
+                        if (isKnownBook(source) && isKnownBook(target)) {
+                            addRecommendation(source, target);
+                            changed.add(source);
+                            changed.add(target);
+                        }
+                        recommendationWatermark = rs.getInt("id");
+                    }
+                }
+            }
+            return changed.toArray();
+        }
+
+        /**
+         * Rilegge per intero le valutazioni dei libri indicati e i consigli che partono da essi,
+         * fino agli id già letti: le righe successive arriveranno con il prossimo aggiornamento.
+         */
+        void reloadBooks(Connection conn, int[] bookIds) throws SQLException {
+            int[] known = Arrays.stream(bookIds).filter(this::isKnownBook).distinct().toArray();
+            if (known.length == 0) {
+                return;
+            }
+            String placeholders = String.join(", ", Collections.nCopies(known.length, "?"));
+
+            for (int bookId : known) {
+                clearRatings(bookId);
+                clearRecommendations(bookId);
+            }
+
+            String ratingSql = "SELECT user_id, book_id, " + SCORE + " AS score FROM book_ratings " +
+                    "WHERE book_id IN (" + placeholders + ") AND id <= ?";
+            try (PreparedStatement pstmt = conn.prepareStatement(ratingSql)) {
+                for (int i = 0; i < known.length; i++) {
+                    pstmt.setInt(i + 1, known[i]);
+                }
+                pstmt.setInt(known.length + 1, ratingWatermark);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        addRating(user(rs.getString("user_id")), rs.getInt("book_id"), rs.getFloat("score"));
+                    }
+                }
+            }
+
+            String recommendationSql = "SELECT source_book_id, recommended_book_id FROM book_recommendations " +
+                    "WHERE source_book_id IN (" + placeholders + ") AND id <= ?";
+            try (PreparedStatement pstmt = conn.prepareStatement(recommendationSql)) {
+                for (int i = 0; i < known.length; i++) {
+                    pstmt.setInt(i + 1, known[i]);
+                }
+                pstmt.setInt(known.length + 1, recommendationWatermark);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        int target = rs.getInt("recommended_book_id");
+                        if (isKnownBook(target)) {
+                            addRecommendation(rs.getInt("source_book_id"), target);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return Gli id dei libri che hanno valutazioni o consigli
+         */
+        int[] ratedBooks() {
+            IntList rated = new IntList();
+            for (int bookId = 0; bookId < books.length; bookId++) {
+                if (bookSizes[bookId] > 0 || recommendedFromSizes[bookId] > 0 || recommendedBySizes[bookId] > 0) {
+                    rated.add(bookId);
+                }
+            }
+            return rated.toArray();
+        }
+
+        /**
+         * Svuota l'insieme dei libri da ricalcolare.
+         */
+        void resetAffected() {
+            for (int i = 0; i < affectedCount; i++) {
+                affected[affectedList[i]] = false;
+            }
+            affectedCount = 0;
+        }
+
+        /**
+         * Aggiunge ai libri da ricalcolare i libri indicati e quelli valutati dagli stessi utenti
+         * o legati a essi da un consiglio.
+         */
+        void markNeighbors(int[] bookIds) {
+            for (int bookId : bookIds) {
+                if (!isKnownBook(bookId)) {
+                    continue;
+                }
+                markAffected(bookId);
+                for (int i = 0; i < bookSizes[bookId]; i++) {
+                    int user = bookUsers[bookId][i];
+                    for (int j = 0; j < userSizes[user]; j++) {
+                        markAffected(userBooks[user][j]);
+                    }
+                }
+                for (int i = 0; i < recommendedFromSizes[bookId]; i++) {
+                    markAffected(recommendedFrom[bookId][i]);
+                }
+                for (int i = 0; i < recommendedBySizes[bookId]; i++) {
+                    markAffected(recommendedBy[bookId][i]);
+                }
+            }
+        }
+
+        /**
+         * @return Gli id dei libri da ricalcolare
+         */
+        int[] affectedBooks() {
+            return Arrays.copyOf(affectedList, affectedCount);
+        }
+
+        /**
+         * Calcola i libri più simili a un libro.
+         *
+         * @param bookId L'id del libro
+         * @param limit Numero massimo di libri
+         * @return Gli id dei libri simili dal più simile, null se il libro non ne ha
+         */
+        int[] computeNeighbors(int bookId, int limit) {
+            ensureScratchCapacity();
+            int touchedCount = 0;
+
+            // Prodotti scalari con i libri valutati dagli stessi utenti
+            for (int i = 0; i < bookSizes[bookId]; i++) {
+                int user = bookUsers[bookId][i];
+                float score = bookScores[bookId][i];
+                int[] otherBooks = userBooks[user];
+                float[] otherScores = userScores[user];
+                for (int j = 0; j < userSizes[user]; j++) {
+                    int other = otherBooks[j];
+                    if (other == bookId) {
+                        continue;
+                    }
+                    if (coRatings[other] == 0 && recommendations[other] == 0) {
+                        touched[touchedCount++] = other;
+                    }
+                    dots[other] += score * otherScores[j];
+                    coRatings[other]++;
+                }
+            }
+
+            // Consigli in entrambe le direzioni
+            for (int pass = 0; pass < 2; pass++) {
+                int[] linked = pass == 0 ? recommendedFrom[bookId] : recommendedBy[bookId];
+                int size = pass == 0 ? recommendedFromSizes[bookId] : recommendedBySizes[bookId];
+                for (int i = 0; i < size; i++) {
+                    int other = linked[i];
+                    if (other == bookId) {
+                        continue;
+                    }
+                    if (coRatings[other] == 0 && recommendations[other] == 0) {
+                        touched[touchedCount++] = other;
+                    }
+                    recommendations[other]++;
+                }
+            }
+
+            // Selezione dei migliori, ordinati per similarità decrescente e poi per id
+            int[] bestIds = new int[limit];
+            float[] bestScores = new float[limit];
+            int bestCount = 0;
+            for (int t = 0; t < touchedCount; t++) {
+                int other = touched[t];
+                float similarity = similarity(bookId, other);
+                dots[other] = 0;
+                coRatings[other] = 0;
+                recommendations[other] = 0;
+
+                if (similarity <= 0 || books[other] == null) {
+                    continue;
+                }
+                if (bestCount == limit && !isBetter(similarity, other, bestScores[limit - 1], bestIds[limit - 1])) {
+                    continue;
+                }
+                int position = Math.min(bestCount, limit - 1);
+                while (position > 0 && isBetter(similarity, other, bestScores[position - 1], bestIds[position - 1])) {
+                    bestIds[position] = bestIds[position - 1];
+                    bestScores[position] = bestScores[position - 1];
+                    position--;
+                }
+                bestIds[position] = other;
+                bestScores[position] = similarity;
+                bestCount = Math.min(bestCount + 1, limit);
+            }
+
+            return bestCount == 0 ? null : Arrays.copyOf(bestIds, bestCount);
+        }
+
+        /**
+         * Similarità tra due libri, dai valori accumulati da {@link #computeNeighbors}.
+         */
+        private float similarity(int bookId, int other) {
+            float similarity = 0;
+            int common = coRatings[other];
+            if (common > 0 && squaredNorms[bookId] > 0 && squaredNorms[other] > 0) {
+                double cosine = dots[other] / Math.sqrt(squaredNorms[bookId] * squaredNorms[other]);
+                similarity += (float) cosine * common / (common + SHRINKAGE);
+            }
+            int linked = recommendations[other];
+            if (linked > 0) {
+                similarity += RECOMMENDATION_WEIGHT * linked / (linked + 1f);
+            }
+            return similarity;
+        }
+
+        private static boolean isBetter(float score, int bookId, float otherScore, int otherId) {
+            return score > otherScore || (score == otherScore && bookId < otherId);
+        }
+
+        private boolean isKnownBook(int bookId) {
+            return bookId > 0 && bookId < books.length && books[bookId] != null;
+        }
+
+        private void markAffected(int bookId) {
+            if (affected[bookId]) {
+                return;
+            }
+            affected[bookId] = true;
+            if (affectedCount == affectedList.length) {
+                affectedList = Arrays.copyOf(affectedList, affectedCount * 2);
+            }
+            affectedList[affectedCount++] = bookId;
+        }
+
+        /**
+         * Restituisce l'indice denso di un utente, assegnandone uno nuovo se necessario.
+         */
+        private int user(String userId) {
+            Integer index = users.get(userId);
+            if (index != null) {
+                return index;
+            }
+            int user = users.size();
+            users.put(userId, user);
+            if (user == userSizes.length) {
+                int capacity = user * 2;
+                userBooks = Arrays.copyOf(userBooks, capacity);
+                userScores = Arrays.copyOf(userScores, capacity);
+                userSizes = Arrays.copyOf(userSizes, capacity);
+            }
+            userBooks[user] = new int[4];
+            userScores[user] = new float[4];
+            return user;
+        }
+
+        private void addRating(int user, int bookId, float score) {
+            int size = userSizes[user];
+            if (size == userBooks[user].length) {
+                userBooks[user] = Arrays.copyOf(userBooks[user], size * 2);
+                userScores[user] = Arrays.copyOf(userScores[user], size * 2);
+            }
+            userBooks[user][size] = bookId;
+            userScores[user][size] = score;
+            userSizes[user] = size + 1;
+
+            size = bookSizes[bookId];
+            if (bookUsers[bookId] == null) {
+                bookUsers[bookId] = new int[4];
+                bookScores[bookId] = new float[4];
+            } else if (size == bookUsers[bookId].length) {
+                bookUsers[bookId] = Arrays.copyOf(bookUsers[bookId], size * 2);
+                bookScores[bookId] = Arrays.copyOf(bookScores[bookId], size * 2);
+            }
+            bookUsers[bookId][size] = user;
+            bookScores[bookId][size] = score;
+            bookSizes[bookId] = size + 1;
+            squaredNorms[bookId] += (double) score * score;
+        }
+
+        /**
+         * Rimuove tutte le valutazioni di un libro, anche dalle liste dei suoi utenti.
+         */
+        private void clearRatings(int bookId) {
+            for (int i = 0; i < bookSizes[bookId]; i++) {
+                int user = bookUsers[bookId][i];
+                int size = userSizes[user];
+                for (int j = 0; j < size; j++) {
+                    if (userBooks[user][j] == bookId) {
+                        userBooks[user][j] = userBooks[user][size - 1];
+                        userScores[user][j] = userScores[user][size - 1];
+                        userSizes[user] = --size;
+                        j--;
+                    }
+                }
+            }
+            bookSizes[bookId] = 0;
+            squaredNorms[bookId] = 0;
+        }
+
+        private void addRecommendation(int source, int target) {
+            recommendedFrom[source] = append(recommendedFrom[source], recommendedFromSizes[source], target);
+            recommendedFromSizes[source]++;
+            recommendedBy[target] = append(recommendedBy[target], recommendedBySizes[target], source);
+            recommendedBySizes[target]++;
+        }
+
+        /**
+         * Rimuove tutti i consigli che partono da un libro, anche dalle liste dei libri consigliati.
+         */
+        private void clearRecommendations(int source) {
+            for (int i = 0; i < recommendedFromSizes[source]; i++) {
+                int target = recommendedFrom[source][i];
+                int size = recommendedBySizes[target];
+                for (int j = 0; j < size; j++) {
+                    if (recommendedBy[target][j] == source) {
+                        recommendedBy[target][j] = recommendedBy[target][--size];
+                        recommendedBySizes[target] = size;
+                        break;
+                    }
+                }
+            }
+            recommendedFromSizes[source] = 0;
+        }
+
+        private static int[] append(int[] values, int size, int value) {
+            if (values == null) {
+                values = new int[4];
+            } else if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            return values;
+        }
+
+        private void ensureBookCapacity(int bookId) {
+            if (bookId < books.length) {
+                return;
+            }
+            int capacity = Math.max(bookId + 1, books.length * 2);
+            books = Arrays.copyOf(books, capacity);
+            bookUsers = Arrays.copyOf(bookUsers, capacity);
+            bookScores = Arrays.copyOf(bookScores, capacity);
+            bookSizes = Arrays.copyOf(bookSizes, capacity);
+            squaredNorms = Arrays.copyOf(squaredNorms, capacity);
+            recommendedFrom = Arrays.copyOf(recommendedFrom, capacity);
+            recommendedFromSizes = Arrays.copyOf(recommendedFromSizes, capacity);
+            recommendedBy = Arrays.copyOf(recommendedBy, capacity);
+            recommendedBySizes = Arrays.copyOf(recommendedBySizes, capacity);
+            affected = Arrays.copyOf(affected, capacity);
+        }
+
+        private void ensureScratchCapacity() {
+            if (dots.length < books.length) {
+                dots = new float[books.length];
+                coRatings = new int[books.length];
+                recommendations = new int[books.length];
+                touched = new int[books.length];
+            }
+        }
+    }
+
+    /**
+     * Lista di interi su array, senza conversione in oggetti.
+     */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package book_recommender.lab_b;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Istogramma delle latenze a intervalli logaritmici, sul modello di HdrHistogram.
+ *
+ * <p>I valori (in nanosecondi) sotto {@code 2 * SUB_BUCKETS} hanno ciascuno il proprio
+ * intervallo; sopra, ogni potenza di due è divisa in {@code SUB_BUCKETS} intervalli uguali,
+ * quindi l'errore relativo di un percentile non supera 1/32 (circa il 3%) su tutto
+ * l'intervallo, da pochi nanosecondi a oltre un quarto d'ora. I valori più grandi finiscono
+ * nell'ultimo intervallo.</p>
+ *
+ * <p>La registrazione è un incremento atomico senza lock, quindi l'istogramma può essere
+ * aggiornato da più thread contemporaneamente. Le letture si fanno su una copia
+ * ({@link #copy()}), così percentili e conteggi sono coerenti tra loro.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class LatencyHistogram {
+
+    /** Bit dei sotto-intervalli di ogni potenza di due */
+    private static final int SUB_BUCKET_BITS = 5;
+    /** Numero di sotto-intervalli di ogni potenza di due */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Esponente massimo registrabile: 2^40 ns, circa 18 minuti */
+    private static final int MAX_EXPONENT = 40;
+    /** Numero totale di intervalli */
+    private static final int BUCKETS = 2 * SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /** Conteggi degli intervalli */
+    private final AtomicLongArray counts;
+    /** Somma dei valori registrati */
+    private final LongAdder sum = new LongAdder();
+    /** Valore massimo registrato */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Crea un istogramma vuoto.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * Registra un valore.
+     *
+     * @param nanos Latenza in nanosecondi (i valori negativi valgono 0)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Restituisce una copia dell'istogramma, da usare per le letture.
+     *
+     * @return La copia
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count != 0) {
+                copy.counts.set(i, count);
+            }
+        }
+        copy.sum.add(sum.sum());
+        copy.max.set(max.get());
+        return copy;
+    }
+
+    /**
+     * Aggiunge a questo istogramma i valori di un altro.
+     *
+     * @param other L'istogramma da aggiungere
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        sum.add(other.sum.sum());
+        long otherMax = other.max.get();
+        long current = max.get();
+        while (otherMax > current && !max.compareAndSet(current, otherMax)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @return Il numero di valori registrati
+     */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @return La somma dei valori registrati, in nanosecondi
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return Il valore massimo registrato, in nanosecondi
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Restituisce il valore sotto cui cade la percentuale indicata dei valori registrati,
+     * arrotondato all'estremo superiore del suo intervallo (come HdrHistogram).
+     *
+     * @param percentile Percentile tra 0 e 100
+     * @return Il valore in nanosecondi (0 se l'istogramma è vuoto)
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Restituisce il numero di valori minori o uguali al limite indicato. I valori che cadono
+     * nello stesso intervallo del limite vengono contati se il limite ne raggiunge l'estremo
+     * superiore.
+     *
+     * @param nanos Limite in nanosecondi
+     * @return Il numero di valori
+     */
+    public long getCountAtOrBelow(long nanos) {
+        if (nanos < 0) {
+            return 0;
+        }
+        int last = bucketOf(nanos);
+        if (upperBound(last) > nanos) {
+            last--;
+        }
+        long total = 0;
+        for (int i = 0; i <= last; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @return L'indice dell'intervallo di un valore
+     */
+    private static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return 2 * SUB_BUCKETS + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return Il valore più alto che cade nell'intervallo indicato
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int index = bucket - 2 * SUB_BUCKETS;
+        int shift = index / SUB_BUCKETS + 1;
+        long sub = SUB_BUCKETS + index % SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,53 @@
+package book_recommender.lab_b;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Tiene traccia dell'ultima query avviata da una schermata.
+ *
+ * <p>Quando l'utente avvia una nuova ricerca prima che la precedente sia terminata,
+ * la query precedente viene annullata: il suo risultato non serve più e non deve
+ * sovrascrivere quello della ricerca più recente.</p>
+ *
+ * @param <T> il tipo del risultato della query
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class LatestQuery<T> {
+
+    /** Query attualmente in corso (o l'ultima completata) */
+    private CompletableFuture<T> current;
+
+    /**
+     * Avvia una nuova query annullando quella precedente, se ancora in corso.
+     *
+     * @param query il fornitore della nuova query
+     * @return il future della nuova query
+     */
+    public synchronized CompletableFuture<T> submit(Supplier<? extends CompletableFuture<T>> query) {
+        cancel();
+        current = query.get();
+        return current;
+    }
+
+    /**
+     * Verifica se il future indicato corrisponde all'ultima query avviata.
+     * Utile per scartare risultati arrivati dopo che una nuova ricerca è già partita.
+     *
+     * @param future il future da controllare
+     * @return true se è l'ultima query avviata, false altrimenti
+     */
+    public synchronized boolean isLatest(CompletableFuture<T> future) {
+        return current == future;
+    }
+
+    /**
+     * Annulla la query in corso, se presente.
+     */
+    public synchronized void cancel() {
+        if (current != null && !current.isDone()) {
+            current.cancel(false);
+        }
+    }
+}
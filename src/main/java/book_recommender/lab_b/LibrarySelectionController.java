@@ -14,7 +14,7 @@ import javafx.scene.input.KeyEvent;
 import javafx.stage.Stage;
 
 import java.io.IOException;
-import java.sql.*;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -35,19 +35,6 @@ public class LibrarySelectionController {
     private String userId;
     private final List<String> libraries = new ArrayList<>();
     private String operationType = "select";
-    private DatabaseManager dbManager;
-
-    /**
-     * Costruttore del controller.
-     * Inizializza la connessione al database manager.
-     */
-    public LibrarySelectionController() {
-        try {
-            dbManager = DatabaseManager.getInstance();
-        } catch (SQLException e) {
-            // Gestione silenziosa dell'errore - verrà gestito in altri metodi
-        }
-    }
 
     /**
      * Inizializza l'interfaccia utente dopo che l'FXML è stato caricato.
@@ -130,20 +117,8 @@ public class LibrarySelectionController {
         libraries.clear();
         librariesListView.getItems().clear();
 
-        String sql = "SELECT library_name FROM libraries WHERE user_id = ?";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                String libraryName = rs.getString("library_name");
-                if (!libraries.contains(libraryName)) {
-                    libraries.add(libraryName);
-                }
-            }
+        try {
+            libraries.addAll(LibraryService.getLibraries(userId));
 
             if (!libraries.isEmpty()) {
                 librariesListView.getItems().addAll(libraries);
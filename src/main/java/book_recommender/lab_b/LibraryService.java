@@ -0,0 +1,241 @@
+package book_recommender.lab_b;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Servizio per la gestione delle librerie personali degli utenti.
+ *
+ * <p>Se il client è collegato al server dei libri ({@link BookServerClient}) le operazioni
+ * vengono inoltrate al server, altrimenti vengono eseguite direttamente sul database.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class LibraryService {
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private LibraryService() {
+    }
+
+    /**
+     * Restituisce i nomi delle librerie di un utente, senza duplicati.
+     *
+     * @param userId L'utente
+     * @return I nomi delle librerie
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public static List<String> getLibraries(String userId) throws SQLException {
+        BookServerClient server = BookServerClient.active();
+        if (server != null) {
+            try {
+                return server.getLibraries(userId);
+            } catch (IOException e) {
+                // Server non raggiungibile o in ritardo: la richiesta viene eseguita sul database
+            }
+        }
+        return queryLibraries(userId);
+    }
+
+    /**
+     * Restituisce i titoli dei libri contenuti in una libreria.
+     *
+     * @param userId L'utente proprietario della libreria
+     * @param libraryName Il nome della libreria
+     * @return I titoli dei libri
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public static List<String> getLibraryBooks(String userId, String libraryName) throws SQLException {
+        BookServerClient server = BookServerClient.active();
+        if (server != null) {
+            try {
+                return server.getLibraryBooks(userId, libraryName);
+            } catch (IOException e) {
+                // Server non raggiungibile o in ritardo: la richiesta viene eseguita sul database
+            }
+        }
+        return queryLibraryBooks(userId, libraryName);
+    }
+
+    /**
+     * Crea una libreria vuota, se l'utente non ne ha già una con lo stesso nome.
+     *
+     * @param userId L'utente
+     * @param libraryName Il nome della nuova libreria
+     * @return true se la libreria è stata creata, false se esisteva già
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public static boolean createLibrary(String userId, String libraryName) throws SQLException {
+        BookServerClient server = BookServerClient.active();
+        if (server != null) {
+            try {
+                return server.createLibrary(userId, libraryName);
+            } catch (IOException e) {
+                // Server non raggiungibile o in ritardo: il salvataggio viene eseguito sul database
+            }
+        }
+        return insertLibrary(userId, libraryName);
+    }
+
+    /**
+     * Sostituisce i libri di una libreria con quelli indicati, creando la libreria se non esiste.
+     *
+     * @param userId L'utente proprietario della libreria
+     * @param libraryName Il nome della libreria
+     * @param titles I titoli dei libri da inserire
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public static void saveLibraryBooks(String userId, String libraryName, Collection<String> titles) throws SQLException {
+        BookServerClient server = BookServerClient.active();
+        if (server != null) {
+            try {
+                server.saveLibraryBooks(userId, libraryName, titles);
+                return;
+            } catch (IOException e) {
+                // Server non raggiungibile o in ritardo: il salvataggio viene eseguito sul database
+            }
+        }
+        storeLibraryBooks(userId, libraryName, titles);
+    }
+
+    /**
+     * Legge dal database i nomi delle librerie di un utente.
+     */
+    static List<String> queryLibraries(String userId) throws SQLException {
+        Set<String> libraries = new LinkedHashSet<>();
+        String sql = "SELECT library_name FROM libraries WHERE user_id = ?";
+
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    libraries.add(rs.getString("library_name"));
+                }
+            }
+        }
+        return new ArrayList<>(libraries);
+    }
+
+    /**
+     * Legge dal database i titoli dei libri di una libreria.
+     */
+    static List<String> queryLibraryBooks(String userId, String libraryName) throws SQLException {
+        List<String> titles = new ArrayList<>();
+        String sql = "SELECT b.title FROM books b " +
+                "JOIN library_books lb ON b.id = lb.book_id " +
+                "JOIN libraries l ON lb.library_id = l.id " +
+                "WHERE l.user_id = ? AND l.library_name = ?";
+
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            pstmt.setString(2, libraryName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    titles.add(rs.getString("title"));
+                }
+            }
+        }
+        return titles;
+    }
+
+    /**
+     * Crea sul database una libreria vuota, se non esiste già.
+     */
+    static boolean insertLibrary(String userId, String libraryName) throws SQLException {
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            if (findLibrary(conn, userId, libraryName) != null) {
+                return false;
+            }
+
+            String sql = "INSERT INTO libraries (user_id, library_name) VALUES (?, ?)";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, userId);
+                pstmt.setString(2, libraryName);
+                pstmt.executeUpdate();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Sostituisce sul database i libri di una libreria in un'unica transazione.
+     * Gli ID dei libri vengono ricavati dai titoli tramite {@link TitleResolver}, senza
+     * interrogare il database per ogni libro, e gli inserimenti vengono inviati in un unico batch.
+     */
+    static void storeLibraryBooks(String userId, String libraryName, Collection<String> titles) throws SQLException {
+        // Titoli diversi possono corrispondere allo stesso libro: ogni libro va inserito una sola volta
+        Set<Integer> bookIds = new LinkedHashSet<>(TitleResolver.getInstance().resolveAll(titles).values());
+
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int libraryId = getOrCreateLibrary(conn, userId, libraryName);
+
+                try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM library_books WHERE library_id = ?")) {
+                    pstmt.setInt(1, libraryId);
+                    pstmt.executeUpdate();
+                }
+
+                String insertSql = "INSERT INTO library_books (library_id, book_id) VALUES (?, ?)";
+                try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+                    for (int bookId : bookIds) {
+                        insertStmt.setInt(1, libraryId);
+                        insertStmt.setInt(2, bookId);
+                        insertStmt.addBatch();
+                    }
+                    insertStmt.executeBatch();
+                }
+
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Cerca una libreria per utente e nome.
+     *
+     * @return L'id della libreria, oppure null se non esiste
+     */
+    private static Integer findLibrary(Connection conn, String userId, String libraryName) throws SQLException {
+        String sql = "SELECT id FROM libraries WHERE user_id = ? AND library_name = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            pstmt.setString(2, libraryName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt("id") : null;
+            }
+        }
+    }
+
+    /**
+     * Ottiene l'ID di una libreria esistente o ne crea una nuova.
+     */
+    private static int getOrCreateLibrary(Connection conn, String userId, String libraryName) throws SQLException {
+        Integer libraryId = findLibrary(conn, userId, libraryName);
+        if (libraryId != null) {
+            return libraryId;
+        }
+
+        String insertSql = "INSERT INTO libraries (user_id, library_name) VALUES (?, ?) RETURNING id";
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+            pstmt.setString(1, userId);
+            pstmt.setString(2, libraryName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("id");
+                }
+            }
+            throw new SQLException("Failed to create library");
+        }
+    }
+}
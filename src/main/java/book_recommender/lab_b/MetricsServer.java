@@ -0,0 +1,436 @@
+package book_recommender.lab_b;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Espone le metriche del server su HTTP nel formato testuale di Prometheus, all'indirizzo
+ * {@code /metrics}, usando il server HTTP incluso nel JDK.
+ *
+ * <p>Metriche esportate:</p>
+ * <ul>
+ *   <li>JVM: memoria, garbage collector, thread, classi caricate, tempo di attività;</li>
+ *   <li>pool di connessioni: connessioni attive, inattive, totali, massime e richieste in coda;</li>
+ *   <li>query: istogramma delle latenze, righe ed errori per modello di query
+ *       ({@link QueryMetrics});</li>
+ *   <li>importazione: righe, byte letti, tempi e file importati per tipo di file
+ *       ({@link ImportPipeline#getTotals});</li>
+ *   <li>cache: richieste servite o meno da {@link BookPageCache} e {@link TopRatedCache};</li>
+ *   <li>client: connessioni aperte verso il server dei libri e client registrati nel database.</li>
+ * </ul>
+ *
+ * <p>La porta si imposta con {@code bookrecommender.metrics.port} (predefinita 9464, 0 per
+ * disattivare l'endpoint) e l'indirizzo di ascolto con {@code bookrecommender.metrics.host}
+ * (predefinito {@code 127.0.0.1}). L'endpoint non richiede autenticazione e mostra query SQL,
+ * stato del pool e latenze, quindi di norma è raggiungibile solo dalla macchina del server;
+ * per esporlo su altre interfacce va indicato esplicitamente l'indirizzo (ad esempio
+ * {@code 0.0.0.0}). Le richieste sono servite da un solo thread daemon.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class MetricsServer {
+
+    /**
+     * Prefisso delle proprietà di sistema utilizzate per configurare l'endpoint.
+     */
+    private static final String PROPERTY_PREFIX = "bookrecommender.metrics.";
+
+    /**
+     * Porta predefinita dell'endpoint.
+     */
+    private static final int DEFAULT_PORT = 9464;
+
+    /**
+     * Indirizzo di ascolto predefinito: solo la macchina locale.
+     */
+    private static final String DEFAULT_HOST = "127.0.0.1";
+
+    /**
+     * Tipo di contenuto del formato testuale di Prometheus.
+     */
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Limiti superiori (in secondi) degli intervalli dell'istogramma delle latenze delle query.
+     */
+    private static final String[] LATENCY_BUCKETS = {
+            "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05",
+            "0.1", "0.25", "0.5", "1", "2.5", "5", "10"
+    };
+
+    /**
+     * Istanza Singleton dell'endpoint.
+     */
+    private static MetricsServer instance;
+
+    /** Server HTTP, null se l'endpoint non è attivo */
+    private HttpServer server;
+    /** Thread che serve le richieste */
+    private ExecutorService executor;
+    /** Server dei libri di cui esportare le connessioni (può essere null) */
+    private volatile BookServer bookServer;
+
+    /**
+     * Costruttore privato per impedire l'istanziazione diretta (pattern Singleton).
+     */
+    private MetricsServer() {
+    }
+
+    /**
+     * Ottiene l'istanza singleton dell'endpoint.
+     *
+     * @return l'istanza singleton
+     */
+    public static synchronized MetricsServer getInstance() {
+        if (instance == null) {
+            instance = new MetricsServer();
+        }
+        return instance;
+    }
+
+    /**
+     * Avvia l'endpoint, se non è già attivo e non è stato disattivato.
+     *
+     * @throws IOException se non è possibile mettersi in ascolto sulla porta
+     */
+    public synchronized void start() throws IOException {
+        int port = Integer.getInteger(PROPERTY_PREFIX + "port", DEFAULT_PORT);
+        if (server != null || port <= 0) {
+            return;
+        }
+
+        String host = System.getProperty(PROPERTY_PREFIX + "host", DEFAULT_HOST);
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/metrics", this::handle);
+
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-server");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Ferma l'endpoint.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @return true se l'endpoint è in ascolto
+     */
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * @return La porta su cui l'endpoint è in ascolto, o -1 se non è attivo
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    /**
+     * Imposta il server dei libri di cui esportare le connessioni.
+     *
+     * @param bookServer Il server dei libri, o null quando viene chiuso
+     */
+    public void setBookServer(BookServer bookServer) {
+        this.bookServer = bookServer;
+    }
+
+    /**
+     * Risponde a una richiesta HTTP con le metriche correnti.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Raccoglie tutte le metriche nel formato testuale di Prometheus.
+     *
+     * @return Il testo delle metriche
+     */
+    public String scrape() {
+        MetricsText out = new MetricsText();
+        writeJvmMetrics(out);
+        writePoolMetrics(out);
+        writeQueryMetrics(out);
+        writeImportMetrics(out);
+        writeCacheMetrics(out);
+        writeClientMetrics(out);
+        return out.toString();
+    }
+
+    private void writeJvmMetrics(MetricsText out) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        out.header("jvm_memory_used_bytes", "gauge", "Memoria in uso");
+        out.sample("jvm_memory_used_bytes", "area", "heap", heap.getUsed());
+        out.sample("jvm_memory_used_bytes", "area", "nonheap", nonHeap.getUsed());
+        out.header("jvm_memory_committed_bytes", "gauge", "Memoria riservata dal sistema operativo");
+        out.sample("jvm_memory_committed_bytes", "area", "heap", heap.getCommitted());
+        out.sample("jvm_memory_committed_bytes", "area", "nonheap", nonHeap.getCommitted());
+        out.header("jvm_memory_max_bytes", "gauge", "Memoria massima utilizzabile (-1 se non definita)");
+        out.sample("jvm_memory_max_bytes", "area", "heap", heap.getMax());
+        out.sample("jvm_memory_max_bytes", "area", "nonheap", nonHeap.getMax());
+
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        out.header("jvm_gc_collections_total", "counter", "Esecuzioni del garbage collector");
+        for (GarbageCollectorMXBean gc : collectors) {
+            out.sample("jvm_gc_collections_total", "gc", gc.getName(), Math.max(0, gc.getCollectionCount()));
+        }
+        out.header("jvm_gc_collection_seconds_total", "counter", "Tempo trascorso nel garbage collector");
+        for (GarbageCollectorMXBean gc : collectors) {
+            out.sample("jvm_gc_collection_seconds_total", "gc", gc.getName(), Math.max(0, gc.getCollectionTime()) / 1000.0);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        out.header("jvm_threads_current", "gauge", "Thread di piattaforma attivi");
+        out.sample("jvm_threads_current", threads.getThreadCount());
+        out.header("jvm_threads_daemon", "gauge", "Thread daemon attivi");
+        out.sample("jvm_threads_daemon", threads.getDaemonThreadCount());
+        out.header("jvm_threads_peak", "gauge", "Numero massimo di thread attivi contemporaneamente");
+        out.sample("jvm_threads_peak", threads.getPeakThreadCount());
+
+        out.header("jvm_classes_loaded", "gauge", "Classi caricate");
+        out.sample("jvm_classes_loaded", ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        out.header("process_start_time_seconds", "gauge", "Istante di avvio del processo (secondi dall'epoca Unix)");
+        out.sample("process_start_time_seconds", runtime.getStartTime() / 1000.0);
+        out.header("process_uptime_seconds", "gauge", "Tempo di attività del processo");
+        out.sample("process_uptime_seconds", runtime.getUptime() / 1000.0);
+        out.header("process_available_processors", "gauge", "Processori disponibili alla JVM");
+        out.sample("process_available_processors", Runtime.getRuntime().availableProcessors());
+    }
+
+    private void writePoolMetrics(MetricsText out) {
+        ConnectionPool pool;
+        try {
+            pool = DatabaseManager.getInstance().getPool();
+        } catch (SQLException e) {
+            // Database non raggiungibile: le metriche del pool vengono omesse
+            return;
+        }
+        if (pool == null) {
+            return;
+        }
+
+        out.header("bookrecommender_pool_connections", "gauge", "Connessioni fisiche del pool per stato");
+        out.sample("bookrecommender_pool_connections", "state", "active", pool.getActiveConnections());
+        out.sample("bookrecommender_pool_connections", "state", "idle", pool.getIdleConnections());
+        out.header("bookrecommender_pool_connections_total", "gauge", "Connessioni fisiche aperte");
+        out.sample("bookrecommender_pool_connections_total", pool.getTotalConnections());
+        out.header("bookrecommender_pool_connections_max", "gauge", "Dimensione massima del pool");
+        out.sample("bookrecommender_pool_connections_max", pool.getMaxSize());
+        out.header("bookrecommender_pool_pending_requests", "gauge", "Thread in attesa di una connessione");
+        out.sample("bookrecommender_pool_pending_requests", pool.getPendingRequests());
+    }
+
+    private void writeQueryMetrics(MetricsText out) {
+        List<QueryMetrics.StatementSnapshot> metrics = QueryMetrics.getInstance().snapshot();
+
+        out.header("bookrecommender_query_duration_seconds", "histogram", "Latenza delle query per modello");
+        for (QueryMetrics.StatementSnapshot snapshot : metrics) {
+            LatencyHistogram latency = snapshot.getLatency();
+            String query = snapshot.getTemplate();
+            for (String bucket : LATENCY_BUCKETS) {
+                long limit = (long) (Double.parseDouble(bucket) * 1_000_000_000L);
+                out.sample("bookrecommender_query_duration_seconds_bucket",
+                        "query", query, "le", bucket, latency.getCountAtOrBelow(limit));
+            }
+            long count = latency.getCount();
+            out.sample("bookrecommender_query_duration_seconds_bucket", "query", query, "le", "+Inf", count);
+            out.sample("bookrecommender_query_duration_seconds_sum", "query", query, latency.getSum() / 1e9);
+            out.sample("bookrecommender_query_duration_seconds_count", "query", query, count);
+        }
+
+        out.header("bookrecommender_query_errors_total", "counter", "Query terminate con un errore per modello");
+        for (QueryMetrics.StatementSnapshot snapshot : metrics) {
+            out.sample("bookrecommender_query_errors_total", "query", snapshot.getTemplate(), snapshot.getErrors());
+        }
+        out.header("bookrecommender_query_rows_total", "counter", "Righe lette o modificate per modello");
+        for (QueryMetrics.StatementSnapshot snapshot : metrics) {
+            out.sample("bookrecommender_query_rows_total", "query", snapshot.getTemplate(), snapshot.getRows());
+        }
+    }
+
+    private void writeImportMetrics(MetricsText out) {
+        BulkImporter.Dataset[] datasets = BulkImporter.Dataset.values();
+
+        out.header("bookrecommender_import_rows_total", "counter", "Righe importate per tipo di file");
+        for (BulkImporter.Dataset dataset : datasets) {
+            out.sample("bookrecommender_import_rows_total", "dataset", datasetLabel(dataset),
+                    ImportPipeline.getTotals(dataset).getRows());
+        }
+        out.header("bookrecommender_import_read_bytes_total", "counter", "Byte letti dai file importati");
+        for (BulkImporter.Dataset dataset : datasets) {
+            out.sample("bookrecommender_import_read_bytes_total", "dataset", datasetLabel(dataset),
+                    ImportPipeline.getTotals(dataset).getBytes());
+        }
+        out.header("bookrecommender_import_load_seconds_total", "counter", "Tempo di caricamento nelle tabelle di appoggio");
+        for (BulkImporter.Dataset dataset : datasets) {
+            out.sample("bookrecommender_import_load_seconds_total", "dataset", datasetLabel(dataset),
+                    ImportPipeline.getTotals(dataset).getLoadNanos() / 1e9);
+        }
+        out.header("bookrecommender_import_merge_seconds_total", "counter", "Tempo di unione alle tabelle definitive");
+        for (BulkImporter.Dataset dataset : datasets) {
+            out.sample("bookrecommender_import_merge_seconds_total", "dataset", datasetLabel(dataset),
+                    ImportPipeline.getTotals(dataset).getMergeNanos() / 1e9);
+        }
+        out.header("bookrecommender_import_files_total", "counter", "File importati e confermati");
+        for (BulkImporter.Dataset dataset : datasets) {
+            out.sample("bookrecommender_import_files_total", "dataset", datasetLabel(dataset),
+                    ImportPipeline.getTotals(dataset).getFiles());
+        }
+    }
+
+    private void writeCacheMetrics(MetricsText out) {
+        BookPageCache pages = BookPageCache.getInstance();
+        TopRatedCache topRated = TopRatedCache.getInstance();
+
+        out.header("bookrecommender_cache_requests_total", "counter", "Richieste alle cache per esito");
+        out.sample("bookrecommender_cache_requests_total", "cache", "book_page", "result", "hit", pages.getHitCount());
+        out.sample("bookrecommender_cache_requests_total", "cache", "book_page", "result", "miss", pages.getMissCount());
+        out.sample("bookrecommender_cache_requests_total", "cache", "top_rated", "result", "hit", topRated.getHitCount());
+        out.sample("bookrecommender_cache_requests_total", "cache", "top_rated", "result", "miss", topRated.getMissCount());
+        out.header("bookrecommender_cache_evictions_total", "counter", "Voci uscite dalla cache per fare posto ad altre");
+        out.sample("bookrecommender_cache_evictions_total", "cache", "book_page", pages.getEvictionCount());
+        out.header("bookrecommender_cache_invalidations_total", "counter", "Voci scartate perché modificate");
+        out.sample("bookrecommender_cache_invalidations_total", "cache", "book_page", pages.getInvalidationCount());
+        out.header("bookrecommender_cache_reloads_total", "counter", "Caricamenti completi della cache");
+        out.sample("bookrecommender_cache_reloads_total", "cache", "top_rated", topRated.getReloadCount());
+        out.header("bookrecommender_cache_size", "gauge", "Voci in cache");
+        out.sample("bookrecommender_cache_size", "cache", "book_page", pages.size());
+    }
+
+    private void writeClientMetrics(MetricsText out) {
+        BookServer server = bookServer;
+        if (server != null) {
+            out.header("bookrecommender_server_connections", "gauge", "Connessioni aperte verso il server dei libri");
+            out.sample("bookrecommender_server_connections", server.getConnectionCount());
+            out.header("bookrecommender_server_rejected_connections_total", "counter", "Connessioni rifiutate dal server dei libri");
+            out.sample("bookrecommender_server_rejected_connections_total", server.getRejectedConnectionCount());
+        }
+
+        try {
+            int activeClients = DatabaseManager.getInstance().getConnectedClientCount();
+            out.header("bookrecommender_active_clients", "gauge", "Client registrati come connessi nel database");
+            out.sample("bookrecommender_active_clients", activeClients);
+        } catch (SQLException e) {
+            // Gestione silenziosa dell'errore - la metrica viene omessa da questa lettura
+        }
+    }
+
+    private static String datasetLabel(BulkImporter.Dataset dataset) {
+        return dataset.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Costruisce il testo delle metriche, con l'escape dei valori delle etichette.
+     */
+    private static final class MetricsText {
+        private final StringBuilder text = new StringBuilder(16 * 1024);
+
+        void header(String name, String type, String help) {
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+
+        void sample(String name, double value) {
+            text.append(name).append(' ');
+            appendValue(value);
+        }
+
+        void sample(String name, String label, String labelValue, double value) {
+            text.append(name).append('{');
+            appendLabel(label, labelValue);
+            text.append("} ");
+            appendValue(value);
+        }
+
+        void sample(String name, String label1, String value1, String label2, String value2, double value) {
+            text.append(name).append('{');
+            appendLabel(label1, value1);
+            text.append(',');
+            appendLabel(label2, value2);
+            text.append("} ");
+            appendValue(value);
+        }
+
+        private void appendLabel(String label, String value) {
+            text.append(label).append("=\"");
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> text.append("\\\\");
+                    case '"' -> text.append("\\\"");
+                    case '\n' -> text.append("\\n");
+                    default -> text.append(c);
+                }
+            }
+            text.append('"');
+        }
+
+        private void appendValue(double value) {
+            if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                text.append((long) value);
+            } else {
+                text.append(value);
+            }
+            text.append('\n');
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
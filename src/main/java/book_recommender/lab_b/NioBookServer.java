@@ -0,0 +1,525 @@
+package book_recommender.lab_b;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server dei libri non bloccante: un unico thread gestisce tutte le connessioni con un
+ * {@link Selector}, mentre le richieste vengono eseguite da un piccolo gruppo di thread di lavoro.
+ *
+ * <p>Il thread del selettore legge i dati disponibili in un buffer diretto condiviso e ne estrae
+ * tutti i frame completi: un client può quindi inviare più richieste senza attendere le risposte
+ * (pipelining). Le richieste di una stessa connessione vengono eseguite una alla volta e nell'ordine
+ * di arrivo, quelle di connessioni diverse in parallelo. Le risposte pronte vengono accodate e
+ * inviate dal thread del selettore, raggruppando in un'unica scrittura quelle della stessa
+ * connessione. Il numero di thread non dipende quindi dal numero di client collegati.</p>
+ *
+ * <p>Oltre ai limiti descritti in {@link BookServer} si possono configurare:</p>
+ * <ul>
+ *     <li>{@code bookrecommender.server.workers}: numero di thread che eseguono le richieste
+ *         sul database (predefinito il numero di processori);</li>
+ *     <li>{@code bookrecommender.server.maxPipelined}: richieste in attesa oltre le quali si smette
+ *         di leggere da una connessione finché non vengono eseguite (predefinito 32).</li>
+ * </ul>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class NioBookServer extends BookServer {
+
+    private static final int WORKERS = Integer.getInteger("bookrecommender.server.workers",
+            Runtime.getRuntime().availableProcessors());
+    private static final int MAX_PIPELINED = Integer.getInteger("bookrecommender.server.maxPipelined", 32);
+
+    /**
+     * Dimensione dei buffer diretti di lettura e scrittura condivisi dal thread del selettore.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Intervallo massimo tra due controlli dei timeout delle connessioni, in millisecondi.
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Queue<Connection> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicLong rejectedConnections = new AtomicLong();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private Thread selectorThread;
+    private volatile boolean running = false;
+
+    /**
+     * Crea il server sul canale indicato, già collegato alla sua porta.
+     *
+     * @param serverChannel Il canale su cui accettare le connessioni
+     * @throws IOException se non è possibile aprire il selettore
+     */
+    public NioBookServer(ServerSocketChannel serverChannel) throws IOException {
+        this.serverChannel = serverChannel;
+        this.selector = Selector.open();
+        this.workers = Executors.newFixedThreadPool(WORKERS, runnable -> {
+            Thread thread = new Thread(runnable, "book-server-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Avvia il thread del selettore.
+     */
+    @Override
+    public void start() {
+        running = true;
+        selectorThread = new Thread(this::runSelector, "book-server-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * @return La porta su cui il server accetta le connessioni
+     */
+    @Override
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return Il numero di client attualmente collegati
+     */
+    @Override
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * @return Il numero di connessioni rifiutate perché era stato raggiunto il limite
+     */
+    @Override
+    public long getRejectedConnectionCount() {
+        return rejectedConnections.get();
+    }
+
+    /**
+     * Chiede al thread del selettore di spegnere il server e ne attende la fine: le connessioni
+     * smettono di essere lette, quelle senza richieste in corso vengono chiuse subito e le altre
+     * dopo aver inviato le risposte.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        if (selectorThread != null) {
+            try {
+                selectorThread.join(DRAIN_TIMEOUT_MILLIS + SWEEP_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            closeQuietly(serverChannel);
+        }
+        workers.shutdownNow();
+    }
+
+    /**
+     * Ciclo del thread del selettore: accetta le connessioni, legge le richieste, invia le
+     * risposte completate dai thread di lavoro e controlla i timeout.
+     */
+    private void runSelector() {
+        long drainDeadline = 0;
+        long nextSweep = System.currentTimeMillis() + SWEEP_INTERVAL_MILLIS;
+        try {
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+            while (true) {
+                if (!running && drainDeadline == 0) {
+                    drainDeadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+                    beginDrain();
+                }
+                if (drainDeadline != 0 && (connections.isEmpty() || System.currentTimeMillis() > drainDeadline)) {
+                    break;
+                }
+
+                selector.select(SWEEP_INTERVAL_MILLIS);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        acceptConnections();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isReadable()) {
+                        read(connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(connection);
+                    }
+                }
+
+                Connection connection;
+                while ((connection = completed.poll()) != null) {
+                    onCompleted(connection);
+                }
+
+                long now = System.currentTimeMillis();
+                if (now >= nextSweep) {
+                    closeExpired(now);
+                    nextSweep = now + SWEEP_INTERVAL_MILLIS;
+                }
+            }
+        } catch (IOException e) {
+            // Gestione silenziosa dell'errore - il selettore non è più utilizzabile
+        } finally {
+            for (Connection connection : connections) {
+                close(connection);
+            }
+            closeQuietly(serverChannel);
+            closeQuietly(selector);
+        }
+    }
+
+    /**
+     * Inizio dello spegnimento: non accetta più connessioni e non legge nuove richieste.
+     * Le connessioni senza richieste in corso vengono chiuse subito.
+     */
+    private void beginDrain() {
+        closeQuietly(serverChannel);
+        for (Connection connection : connections) {
+            if (connection.isIdle()) {
+                close(connection);
+            } else if (connection.key.isValid()) {
+                connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    /**
+     * Accetta tutte le connessioni in attesa, chiudendo quelle oltre il limite.
+     */
+    private void acceptConnections() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            if (connections.size() >= MAX_CONNECTIONS) {
+                // Limite raggiunto: il client riceve la chiusura e usa direttamente il database
+                rejectedConnections.incrementAndGet();
+                closeQuietly(channel);
+                continue;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                // Permette di accorgersi dei client scomparsi senza chiudere la connessione
+                channel.socket().setKeepAlive(true);
+                Connection connection = new Connection(channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                connections.add(connection);
+            } catch (IOException e) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    /**
+     * Legge i dati disponibili su una connessione e avvia l'esecuzione dei frame completi.
+     * I byte di un frame non ancora completo vengono conservati nel buffer della connessione.
+     */
+    private void read(Connection connection) {
+        try {
+            readBuffer.clear();
+            if (connection.channel.read(readBuffer) < 0) {
+                // Il client ha chiuso la connessione: restano da inviare solo le risposte in corso
+                connection.inputClosed = true;
+                if (connection.isIdle()) {
+                    close(connection);
+                } else {
+                    connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+                }
+                return;
+            }
+            readBuffer.flip();
+            connection.lastActivity = System.currentTimeMillis();
+
+            ByteBuffer source = readBuffer;
+            if (connection.partial != null) {
+                connection.append(readBuffer);
+                connection.partial.flip();
+                source = connection.partial;
+            }
+
+            while (source.remaining() >= Integer.BYTES) {
+                int length = source.getInt(source.position());
+                BookProtocol.checkFrameLength(length);
+                if (source.remaining() < Integer.BYTES + length) {
+                    break;
+                }
+                source.position(source.position() + Integer.BYTES);
+                byte[] request = new byte[length];
+                source.get(request);
+                submit(connection, request);
+            }
+
+            if (!source.hasRemaining()) {
+                connection.partial = null;
+            } else if (source == connection.partial) {
+                connection.partial.compact();
+            } else {
+                connection.keep(source);
+            }
+
+            if (connection.pending.get() >= MAX_PIPELINED) {
+                // Troppe richieste in attesa: la lettura riprende quando vengono eseguite
+                connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            // Gestione silenziosa dell'errore - frame non valido o connessione interrotta
+            close(connection);
+        }
+    }
+
+    /**
+     * Accoda una richiesta ed esegue la connessione su un thread di lavoro, se non è già in esecuzione.
+     */
+    private void submit(Connection connection, byte[] request) {
+        connection.requests.add(request);
+        connection.pending.incrementAndGet();
+        schedule(connection);
+    }
+
+    /**
+     * Affida la connessione a un thread di lavoro, se non ne ha già uno.
+     */
+    private void schedule(Connection connection) {
+        if (connection.scheduled.compareAndSet(false, true)) {
+            try {
+                workers.execute(() -> execute(connection));
+            } catch (RejectedExecutionException e) {
+                // Il server è in fase di spegnimento
+                connection.scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Eseguito dai thread di lavoro: esegue la prossima richiesta della connessione, accoda la
+     * risposta e la segnala al thread del selettore. Un thread esegue una sola richiesta per volta,
+     * così le connessioni con molte richieste in attesa non bloccano le altre.
+     */
+    private void execute(Connection connection) {
+        byte[] request = connection.requests.poll();
+        if (request != null) {
+            connection.responses.add(frame(request, BookRequestHandler.handle(request)));
+            connection.pending.decrementAndGet();
+            completed.add(connection);
+            selector.wakeup();
+        }
+
+        connection.scheduled.set(false);
+        if (!connection.requests.isEmpty()) {
+            schedule(connection);
+        }
+    }
+
+    /**
+     * Eseguito dal thread del selettore quando una connessione ha nuove risposte da inviare.
+     */
+    private void onCompleted(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        flush(connection);
+        if (!connection.key.isValid()) {
+            return;
+        }
+        if (!running || connection.inputClosed) {
+            // Spegnimento o client che ha chiuso in scrittura: si chiude dopo l'ultima risposta
+            if (connection.isIdle()) {
+                close(connection);
+            }
+        } else if (connection.pending.get() < MAX_PIPELINED) {
+            connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Invia le risposte accodate di una connessione, copiandole nel buffer diretto di scrittura
+     * per inviarne il più possibile con ogni chiamata. Se il client non riceve tutti i dati
+     * il resto viene inviato quando la connessione torna scrivibile.
+     */
+    private void flush(Connection connection) {
+        try {
+            while (!connection.responses.isEmpty()) {
+                writeBuffer.clear();
+                for (ByteBuffer response : connection.responses) {
+                    if (!writeBuffer.hasRemaining()) {
+                        break;
+                    }
+                    ByteBuffer slice = response.duplicate();
+                    if (slice.remaining() > writeBuffer.remaining()) {
+                        slice.limit(slice.position() + writeBuffer.remaining());
+                    }
+                    writeBuffer.put(slice);
+                }
+                writeBuffer.flip();
+
+                int written = connection.channel.write(writeBuffer);
+                while (written > 0) {
+                    ByteBuffer head = connection.responses.peek();
+                    int consumed = Math.min(written, head.remaining());
+                    head.position(head.position() + consumed);
+                    written -= consumed;
+                    if (!head.hasRemaining()) {
+                        connection.responses.poll();
+                    }
+                }
+
+                if (writeBuffer.hasRemaining()) {
+                    if (connection.writeBlockedSince == 0) {
+                        connection.writeBlockedSince = System.currentTimeMillis();
+                    }
+                    connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            connection.writeBlockedSince = 0;
+            connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException | CancelledKeyException e) {
+            // Gestione silenziosa dell'errore - connessione interrotta
+            close(connection);
+        }
+    }
+
+    /**
+     * Chiude le connessioni inattive, quelle che non completano un frame e quelle che non
+     * ricevono le risposte entro i rispettivi timeout.
+     */
+    private void closeExpired(long now) {
+        for (Connection connection : connections) {
+            boolean expired;
+            if (connection.writeBlockedSince != 0) {
+                expired = now - connection.writeBlockedSince > WRITE_TIMEOUT_MILLIS;
+            } else if (connection.partial != null) {
+                expired = now - connection.lastActivity > READ_TIMEOUT_MILLIS;
+            } else {
+                expired = IDLE_TIMEOUT_MILLIS > 0 && connection.isIdle()
+                        && now - connection.lastActivity > IDLE_TIMEOUT_MILLIS;
+            }
+            if (expired) {
+                close(connection);
+            }
+        }
+    }
+
+    /**
+     * Crea il frame di risposta. Se la risposta supera la dimensione massima di un frame,
+     * al client viene inviato un errore.
+     */
+    private static ByteBuffer frame(byte[] request, byte[] response) {
+        try {
+            BookProtocol.checkFrameLength(response.length);
+        } catch (IOException e) {
+            response = BookProtocol.errorResponse(ByteBuffer.wrap(request).getInt(), e.getMessage());
+        }
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + response.length);
+        frame.putInt(response.length).put(response).flip();
+        return frame;
+    }
+
+    /**
+     * Chiude una connessione e la rimuove da quelle attive.
+     */
+    private void close(Connection connection) {
+        connections.remove(connection);
+        if (connection.key != null) {
+            connection.key.cancel();
+        }
+        closeQuietly(connection.channel);
+    }
+
+    /**
+     * Chiude una risorsa ignorando gli errori.
+     */
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Gestione silenziosa dell'errore durante la chiusura
+        }
+    }
+
+    /**
+     * Stato di una connessione. I campi senza sincronizzazione sono usati solo dal thread
+     * del selettore; le code e i contatori sono condivisi con i thread di lavoro.
+     */
+    private static final class Connection {
+        /** Canale del client */
+        final SocketChannel channel;
+        /** Chiave di registrazione sul selettore */
+        SelectionKey key;
+        /** Byte di un frame non ancora completo, in modalità scrittura, oppure null */
+        ByteBuffer partial;
+        /** Istante dell'ultima lettura dal client */
+        long lastActivity = System.currentTimeMillis();
+        /** Istante dal quale il client non riceve le risposte, oppure 0 */
+        long writeBlockedSince = 0;
+        /** Flag che indica se il client ha chiuso il proprio lato della connessione */
+        boolean inputClosed = false;
+        /** Richieste ricevute e non ancora eseguite */
+        final Queue<byte[]> requests = new ConcurrentLinkedQueue<>();
+        /** Frame di risposta non ancora inviati */
+        final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+        /** Numero di richieste ricevute e non ancora eseguite */
+        final AtomicLong pending = new AtomicLong();
+        /** Flag che indica se un thread di lavoro sta eseguendo le richieste della connessione */
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @return true se la connessione non ha richieste da eseguire né risposte da inviare
+         */
+        boolean isIdle() {
+            return pending.get() == 0 && responses.isEmpty();
+        }
+
+        /**
+         * Conserva i byte rimasti di un frame incompleto.
+         */
+        void keep(ByteBuffer remaining) {
+            partial = ByteBuffer.allocate(Math.max(remaining.remaining() * 2, 1024));
+            partial.put(remaining);
+        }
+
+        /**
+         * Aggiunge i byte letti a quelli di un frame incompleto, ingrandendo il buffer se serve.
+         */
+        void append(ByteBuffer data) {
+            if (partial.remaining() < data.remaining()) {
+                int required = partial.position() + data.remaining();
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(partial.capacity() * 2, required));
+                partial.flip();
+                larger.put(partial);
+                partial = larger;
+            }
+            partial.put(data);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package book_recommender.lab_b;
+
+import javafx.application.Platform;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.util.Callback;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Collega una {@link ListView} di libri alle ricerche paginate di {@link BookService}.
+ *
+ * <p>La ListView è virtualizzata: crea solo le celle necessarie a riempire l'area visibile e
+ * le riutilizza durante lo scorrimento, quindi il numero di nodi nella scena non dipende dal
+ * numero di risultati. Questa classe carica la prima pagina di risultati quando viene avviata
+ * una ricerca e le pagine successive quando l'utente scorre fino in fondo alla lista.</p>
+ *
+ * <p>Le pagine vengono lette in background; una nuova ricerca annulla il caricamento della
+ * precedente e ne scarta i risultati.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class PagedBookList {
+
+    /**
+     * Numero predefinito di libri letti per ogni pagina.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * Numero di righe dalla fine della lista entro cui viene richiesta la pagina successiva.
+     */
+    private static final int PREFETCH_ROWS = 10;
+
+    /** Lista collegata */
+    private final ListView<Book> listView;
+    /** Etichetta mostrata quando la lista è vuota */
+    private final Label placeholder = new Label();
+    /** Numero di libri per pagina */
+    private final int pageSize;
+
+    /** Ricerca corrente, null se la lista mostra un elenco fisso di libri */
+    private BookQuery query;
+    /** Cursore della prossima pagina, null se non ci sono altre pagine */
+    private SearchCursor nextCursor;
+    /** Caricamento di pagina in corso */
+    private CompletableFuture<?> pending;
+    /** Contatore incrementato a ogni nuova ricerca, per scartare risultati di ricerche superate */
+    private int generation = 0;
+    /** Filtro applicato ai libri prima di aggiungerli alla lista */
+    private Predicate<Book> filter = book -> true;
+    /** Messaggio mostrato quando la ricerca non ha risultati */
+    private String emptyMessage = "Nessun libro trovato.";
+
+    /**
+     * Crea il collegamento con la ListView indicata e imposta la factory delle celle.
+     *
+     * @param listView La lista da popolare
+     * @param cellFactory Factory delle celle che visualizzano i libri
+     */
+    public PagedBookList(ListView<Book> listView, Callback<ListView<Book>, ListCell<Book>> cellFactory) {
+        this(listView, cellFactory, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Crea il collegamento con la ListView indicata e imposta la factory delle celle.
+     *
+     * @param listView La lista da popolare
+     * @param cellFactory Factory delle celle che visualizzano i libri
+     * @param pageSize Numero di libri letti per ogni pagina
+     */
+    public PagedBookList(ListView<Book> listView, Callback<ListView<Book>, ListCell<Book>> cellFactory, int pageSize) {
+        this.listView = listView;
+        this.pageSize = pageSize;
+
+        placeholder.setStyle("-fx-font-size: 14px; -fx-text-fill: #777777; -fx-padding: 20px;");
+        listView.setPlaceholder(placeholder);
+
+        // Ogni cella, quando viene associata a una riga vicina alla fine, richiede la pagina successiva
+        listView.setCellFactory(view -> {
+            ListCell<Book> cell = cellFactory.call(view);
+            cell.indexProperty().addListener((obs, oldIndex, newIndex) -> {
+                int index = newIndex.intValue();
+                if (index >= 0 && index >= listView.getItems().size() - PREFETCH_ROWS) {
+                    loadNextPage();
+                }
+            });
+            return cell;
+        });
+    }
+
+    /**
+     * Imposta un filtro sui libri da mostrare (ad esempio per escludere il libro corrente).
+     *
+     * @param filter Predicato che restituisce true per i libri da mostrare
+     */
+    public void setFilter(Predicate<Book> filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Imposta il messaggio mostrato quando la ricerca non trova libri.
+     *
+     * @param emptyMessage Il messaggio da mostrare
+     */
+    public void setEmptyMessage(String emptyMessage) {
+        this.emptyMessage = emptyMessage;
+    }
+
+    /**
+     * Avvia una nuova ricerca, sostituendo i risultati attuali con la prima pagina.
+     *
+     * @param query I criteri di ricerca
+     */
+    public void search(BookQuery query) {
+        reset();
+        this.query = query;
+        placeholder.setText("Ricerca in corso...");
+        loadPage(null);
+    }
+
+    /**
+     * Mostra un elenco fisso di libri, senza paginazione.
+     *
+     * @param books I libri da mostrare
+     * @param emptyText Il messaggio da mostrare se l'elenco è vuoto
+     */
+    public void showBooks(List<Book> books, String emptyText) {
+        reset();
+        placeholder.setText(emptyText);
+        listView.getItems().setAll(books.stream().filter(filter).toList());
+    }
+
+    /**
+     * Ridisegna le celle visibili, ad esempio dopo che è cambiato lo stato di selezione dei libri.
+     */
+    public void refresh() {
+        listView.refresh();
+    }
+
+    /**
+     * Indica se la lista contiene dei libri.
+     *
+     * @return true se la lista non è vuota
+     */
+    public boolean hasResults() {
+        return !listView.getItems().isEmpty();
+    }
+
+    /**
+     * Annulla l'eventuale caricamento in corso e svuota la lista.
+     */
+    public void clear() {
+        reset();
+        placeholder.setText("");
+    }
+
+    /**
+     * Annulla il caricamento in corso, se presente.
+     */
+    public void cancel() {
+        generation++;
+        if (pending != null && !pending.isDone()) {
+            pending.cancel(false);
+        }
+        pending = null;
+    }
+
+    /**
+     * Annulla il caricamento in corso e riporta la lista allo stato iniziale.
+     */
+    private void reset() {
+        cancel();
+        query = null;
+        nextCursor = null;
+        listView.getItems().clear();
+        listView.scrollTo(0);
+    }
+
+    /**
+     * Richiede la pagina successiva, se esiste e se non è già in corso un caricamento.
+     */
+    private void loadNextPage() {
+        if (query != null && nextCursor != null && pending == null) {
+            loadPage(nextCursor);
+        }
+    }
+
+    /**
+     * Legge in background una pagina di risultati e la aggiunge alla lista.
+     *
+     * @param after Cursore da cui iniziare (null per la prima pagina)
+     */
+    private void loadPage(SearchCursor after) {
+        int requestGeneration = generation;
+        CompletableFuture<SearchPage> future = BookService.searchBooksPageAsync(query, after, pageSize);
+        pending = future;
+
+        future.whenComplete((page, error) -> Platform.runLater(() -> {
+            // Ignora i risultati di ricerche annullate o superate
+            if (requestGeneration != generation || future.isCancelled()) {
+                return;
+            }
+            pending = null;
+
+            if (error != null) {
+                nextCursor = null;
+                placeholder.setText("Errore durante la ricerca.");
+                return;
+            }
+
+            nextCursor = page.getNextCursor();
+            listView.getItems().addAll(page.getBooks().stream().filter(filter).toList());
+            placeholder.setText(emptyMessage);
+
+            // Se il filtro ha scartato quasi tutta la pagina non ci sono celle che richiedano
+            // la pagina successiva: la si carica subito
+            if (nextCursor != null && listView.getItems().size() < PREFETCH_ROWS) {
+                loadNextPage();
+            }
+        }));
+    }
+}
@@ -0,0 +1,142 @@
+package book_recommender.lab_b;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Risultato asincrono di una query al database che può essere annullata.
+ *
+ * <p>A differenza di un normale {@link CompletableFuture}, l'annullamento con
+ * {@link #cancel(boolean)} non si limita a scartare il risultato: lo statement
+ * JDBC in esecuzione viene interrotto con {@link Statement#cancel()}, in modo che
+ * il server smetta di elaborare la query e la connessione torni subito al pool.</p>
+ *
+ * <p>Il thread che esegue la query non viene mai interrotto, qualunque sia il valore
+ * passato a {@link #cancel(boolean)}: un thread virtuale interrotto mentre attende sul
+ * socket del database lo chiude, e la connessione fisica del pool andrebbe persa.
+ * L'annullamento dello statement basta a sbloccarlo, e la connessione resta valida.</p>
+ *
+ * <p>Le query vengono eseguite su un executor a thread virtuali condiviso, così
+ * molte ricerche possono essere in corso contemporaneamente senza occupare il
+ * JavaFX Application Thread.</p>
+ *
+ * @param <T> il tipo del risultato della query
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class QueryFuture<T> extends CompletableFuture<T> {
+
+    /**
+     * Executor condiviso a thread virtuali su cui vengono eseguite tutte le query asincrone.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Operazione sul database eseguita in modo asincrono.
+     *
+     * @param <T> il tipo del risultato
+     */
+    @FunctionalInterface
+    public interface QueryTask<T> {
+        /**
+         * Esegue la query. Gli statement creati devono essere registrati con
+         * {@link QueryFuture#register(Statement)} per poter essere annullati.
+         *
+         * @param handle il future associato all'esecuzione
+         * @return il risultato della query
+         * @throws SQLException se si verifica un errore di accesso al database
+         */
+        T run(QueryFuture<T> handle) throws SQLException;
+    }
+
+    /** Statement attualmente in esecuzione, annullato in caso di cancellazione */
+    private volatile Statement currentStatement;
+
+    /** Attività in esecuzione sull'executor */
+    private volatile Future<?> worker;
+
+    /**
+     * Costruttore privato: le istanze si ottengono con {@link #supply(QueryTask)}.
+     */
+    private QueryFuture() {
+    }
+
+    /**
+     * Avvia una query in modo asincrono sull'executor a thread virtuali.
+     *
+     * @param task l'operazione da eseguire
+     * @param <T> il tipo del risultato
+     * @return il future che verrà completato con il risultato della query
+     */
+    public static <T> QueryFuture<T> supply(QueryTask<T> task) {
+        QueryFuture<T> future = new QueryFuture<>();
+        future.worker = EXECUTOR.submit(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(task.run(future));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                future.currentStatement = null;
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Registra lo statement in esecuzione, in modo che possa essere annullato.
+     * Se la query è già stata annullata, lo statement viene interrotto immediatamente.
+     *
+     * @param statement lo statement appena creato
+     * @throws SQLException se la query è già stata annullata
+     */
+    public void register(Statement statement) throws SQLException {
+        currentStatement = statement;
+        if (isCancelled()) {
+            cancelStatement(statement);
+            throw new SQLException("Query annullata");
+        }
+    }
+
+    /**
+     * Annulla la query interrompendo lo statement JDBC in esecuzione. Il thread che la
+     * esegue non viene interrotto, per non chiudere il socket della connessione.
+     *
+     * @param mayInterruptIfRunning ignorato: il thread in esecuzione non viene mai interrotto
+     * @return true se il future è stato annullato da questa chiamata
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(false);
+        if (cancelled) {
+            Statement statement = currentStatement;
+            if (statement != null) {
+                cancelStatement(statement);
+            }
+            Future<?> running = worker;
+            if (running != null) {
+                running.cancel(false);
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Richiede al driver l'annullamento di uno statement, ignorando eventuali errori.
+     *
+     * @param statement lo statement da annullare
+     */
+    private static void cancelStatement(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            // Lo statement potrebbe essere già terminato o chiuso
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package book_recommender.lab_b;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Metriche delle query eseguite sulle connessioni consegnate da {@link DatabaseManager}.
+ *
+ * <p>Le connessioni vengono avvolte in un proxy che a sua volta avvolge gli statement
+ * creati: ogni esecuzione viene attribuita al modello della sua query (il testo SQL con
+ * spazi normalizzati e valori letterali sostituiti da {@code ?}) e ne vengono registrati
+ * numero di esecuzioni, errori, righe restituite o modificate e latenza, in un
+ * {@link LatencyHistogram}. La latenza misura la sola chiamata di esecuzione; le righe di
+ * una query vengono contate da {@link CountingResultSet} mentre il chiamante scorre il
+ * {@link ResultSet}, senza intercettare i getter delle colonne.</p>
+ *
+ * <p>Il modello di ogni testo SQL viene calcolato una volta sola e ricordato, e le statistiche
+ * vengono cercate a ogni esecuzione: ogni esecuzione costa una lettura di mappa, due letture
+ * dell'orologio e qualche incremento atomico, e dopo {@link #reset()} anche gli statement già
+ * preparati registrano nelle statistiche nuove. Le metriche si disattivano con
+ * {@code -Dbookrecommender.queryMetrics.enabled=false}.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class QueryMetrics {
+
+    /**
+     * Numero massimo di modelli distinti: le query oltre il limite vengono sommate
+     * in un'unica voce, così SQL generato dinamicamente non fa crescere la mappa senza limiti.
+     */
+    private static final int MAX_TEMPLATES = 500;
+
+    /**
+     * Numero massimo di testi SQL distinti ricordati con il loro modello: il codice usa poche
+     * query preparate, quindi oltre il limite i testi nuovi vengono solo normalizzati.
+     */
+    private static final int MAX_STATEMENTS = 2000;
+
+    /**
+     * Lunghezza massima del testo di un modello.
+     */
+    private static final int MAX_TEMPLATE_LENGTH = 300;
+
+    /**
+     * Modello a cui vengono attribuite le query oltre {@link #MAX_TEMPLATES}.
+     */
+    static final String OTHER_TEMPLATE = "(altre query)";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+
+    /** Istanza Singleton */
+    private static final QueryMetrics INSTANCE = new QueryMetrics(
+            Boolean.parseBoolean(System.getProperty("bookrecommender.queryMetrics.enabled", "true")));
+
+    /** Flag che indica se le connessioni vengono strumentate */
+    private final boolean enabled;
+    /** Statistiche per modello di query */
+    private final ConcurrentHashMap<String, StatementStats> templates = new ConcurrentHashMap<>();
+    /** Statistiche per testo SQL, così ogni testo viene normalizzato una volta sola */
+    private final ConcurrentHashMap<String, StatementStats> statements = new ConcurrentHashMap<>();
+
+    private QueryMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Restituisce l'istanza Singleton delle metriche.
+     *
+     * @return L'istanza di QueryMetrics
+     */
+    public static QueryMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true se le connessioni vengono strumentate
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Avvolge una connessione in modo che le query eseguite su di essa vengano misurate.
+     * Se le metriche sono disattivate la connessione viene restituita invariata.
+     *
+     * @param conn La connessione da strumentare
+     * @return La connessione strumentata
+     */
+    public Connection instrument(Connection conn) {
+        if (!enabled) {
+            return conn;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(conn));
+    }
+
+    /**
+     * Restituisce una copia delle metriche di tutti i modelli di query, ordinati per
+     * tempo totale di esecuzione decrescente.
+     *
+     * @return Le metriche dei modelli
+     */
+    public List<StatementSnapshot> snapshot() {
+        List<StatementSnapshot> result = new ArrayList<>(templates.size());
+        for (StatementStats stats : templates.values()) {
+            result.add(stats.snapshot());
+        }
+        result.sort(Comparator.comparingLong(StatementSnapshot::getTotalNanos).reversed());
+        return result;
+    }
+
+    /**
+     * Azzera le metriche raccolte.
+     */
+    public void reset() {
+        statements.clear();
+        templates.clear();
+    }
+
+    /**
+     * Restituisce le statistiche di un modello di query, creandole se necessario.
+     *
+     * @param sql Testo SQL della query
+     * @return Le statistiche del modello
+     */
+    StatementStats statsFor(String sql) {
+        if (sql == null) {
+            return templateStats(OTHER_TEMPLATE);
+        }
+        StatementStats stats = statements.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        stats = templateStats(normalize(sql));
+        if (statements.size() < MAX_STATEMENTS) {
+            statements.putIfAbsent(sql, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Restituisce le statistiche di un modello, creandole se il limite dei modelli lo consente.
+     */
+    private StatementStats templateStats(String template) {
+        StatementStats stats = templates.get(template);
+        if (stats != null) {
+            return stats;
+        }
+        if (templates.size() >= MAX_TEMPLATES) {
+            template = OTHER_TEMPLATE;
+        }
+        return templates.computeIfAbsent(template, StatementStats::new);
+    }
+
+    /**
+     * Riduce un testo SQL al suo modello: spazi compressi, stringhe e numeri letterali
+     * sostituiti da {@code ?} e liste di parametri ridotte a {@code ?, ...}.
+     *
+     * @param sql Testo SQL
+     * @return Il modello
+     */
+    static String normalize(String sql) {
+        if (sql == null) {
+            return OTHER_TEMPLATE;
+        }
+        String template = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        template = STRING_LITERAL.matcher(template).replaceAll("?");
+        template = NUMBER_LITERAL.matcher(template).replaceAll("?");
+        template = PARAMETER_LIST.matcher(template).replaceAll("?, ...");
+        return template.length() > MAX_TEMPLATE_LENGTH
+                ? template.substring(0, MAX_TEMPLATE_LENGTH) + "..."
+                : template;
+    }
+
+    /**
+     * Statistiche di un modello di query, aggiornate dai thread che eseguono le query.
+     */
+    static final class StatementStats {
+        final String template;
+        final LongAdder executions = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+        volatile String lastError;
+
+        StatementStats(String template) {
+            this.template = template;
+        }
+
+        void success(long nanos) {
+            executions.increment();
+            latency.record(nanos);
+        }
+
+        void failure(long nanos, Throwable error) {
+            executions.increment();
+            errors.increment();
+            latency.record(nanos);
+            lastError = error.getMessage();
+        }
+
+        StatementSnapshot snapshot() {
+            return new StatementSnapshot(template, executions.sum(), errors.sum(), rows.sum(),
+                    latency.copy(), lastError);
+        }
+    }
+
+    /**
+     * Copia immutabile delle metriche di un modello di query.
+     */
+    public static final class StatementSnapshot {
+        private final String template;
+        private final long executions;
+        private final long errors;
+        private final long rows;
+        private final LatencyHistogram latency;
+        private final String lastError;
+
+        StatementSnapshot(String template, long executions, long errors, long rows,
+                          LatencyHistogram latency, String lastError) {
+            this.template = template;
+            this.executions = executions;
+            this.errors = errors;
+            this.rows = rows;
+            this.latency = latency;
+            this.lastError = lastError;
+        }
+
+        /**
+         * @return Il modello della query
+         */
+        public String getTemplate() {
+            return template;
+        }
+
+        /**
+         * @return Il numero di esecuzioni, riuscite o meno
+         */
+        public long getExecutions() {
+            return executions;
+        }
+
+        /**
+         * @return Il numero di esecuzioni terminate con un errore
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return Il numero di righe lette o modificate
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @return Il tempo totale di esecuzione in nanosecondi
+         */
+        public long getTotalNanos() {
+            return latency.getSum();
+        }
+
+        /**
+         * @return L'istogramma delle latenze (una copia, non più aggiornata)
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Restituisce un percentile della latenza in millisecondi.
+         *
+         * @param percentile Percentile tra 0 e 100
+         * @return La latenza in millisecondi
+         */
+        public double getLatencyMillis(double percentile) {
+            return latency.getValueAtPercentile(percentile) / 1_000_000.0;
+        }
+
+        /**
+         * @return Il messaggio dell'ultimo errore, o null se non ce ne sono stati
+         */
+        public String getLastError() {
+            return lastError;
+        }
+    }
+
+    /**
+     * Proxy della connessione: avvolge gli statement creati.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (result instanceof CallableStatement statement) {
+                return wrap(CallableStatement.class, statement, (String) args[0]);
+            }
+            if (result instanceof PreparedStatement statement) {
+                return wrap(PreparedStatement.class, statement, (String) args[0]);
+            }
+            if (result instanceof Statement statement) {
+                return wrap(Statement.class, statement, null);
+            }
+            return result;
+        }
+    }
+
+    private <T extends Statement> T wrap(Class<T> type, T statement, String preparedSql) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new StatementHandler(statement, preparedSql)));
+    }
+
+    /**
+     * Proxy di uno statement: misura le esecuzioni e avvolge i ResultSet restituiti.
+     * Per gli statement preparati il testo SQL è quello della preparazione; per gli altri è
+     * quello passato a ogni esecuzione. Le statistiche vengono cercate a ogni registrazione.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        /** Testo SQL dello statement preparato, null per gli statement semplici */
+        private final String preparedSql;
+        /** Testo SQL dell'ultima esecuzione o dell'ultimo batch, a cui attribuire le righe dei ResultSet */
+        private String currentSql;
+
+        StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+            this.currentSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            if (!name.startsWith("execute")) {
+                if (name.equals("addBatch") && preparedSql == null && args != null && args[0] instanceof String sql) {
+                    currentSql = sql;
+                }
+                Object result = invokeTarget(method, args);
+                return name.equals("getResultSet") && result instanceof ResultSet resultSet
+                        ? countRows(resultSet, (Statement) proxy, currentSql)
+                        : result;
+            }
+
+            if (args != null && args.length > 0 && args[0] instanceof String sql) {
+                currentSql = sql;
+            }
+            String sql = currentSql;
+
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = invokeTarget(method, args);
+            } catch (Throwable e) {
+                statsFor(sql).failure(System.nanoTime() - start, e);
+                throw e;
+            }
+            StatementStats stats = statsFor(sql);
+            stats.success(System.nanoTime() - start);
+
+            if (result instanceof ResultSet resultSet) {
+                return countRows(resultSet, (Statement) proxy, sql);
+            }
+            if (result instanceof Integer count && count > 0) {
+                stats.rows.add(count);
+            } else if (result instanceof Long count && count > 0) {
+                stats.rows.add(count);
+            } else if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    if (count > 0) {
+                        stats.rows.add(count);
+                    }
+                }
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    if (count > 0) {
+                        stats.rows.add(count);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Avvolge un ResultSet in modo che le righe lette vengano attribuite al modello della query.
+     *
+     * @param resultSet Il ResultSet del driver
+     * @param statement Lo statement strumentato che lo ha prodotto
+     * @param sql Testo SQL della query, null se sconosciuto
+     * @return Il ResultSet che conta le righe
+     */
+    private ResultSet countRows(ResultSet resultSet, Statement statement, String sql) {
+        return new CountingResultSet(resultSet, statement, rows -> statsFor(sql).rows.add(rows));
+    }
+}
@@ -2,7 +2,7 @@ package book_recommender.lab_b;
 
 import java.io.*;
 import java.net.URL;
-import java.sql.*;
+import java.sql.SQLException;
 import java.text.DecimalFormat;
 import java.util.ResourceBundle;
 
@@ -114,9 +114,6 @@ public class RateBookController implements Initializable {
     /** Nome della biblioteca a cui appartiene il libro */
     private String libraryName;
 
-    /** ID del libro nel database */
-    private int bookId;
-
     // Valutazioni assegnate (da 1 a 5)
     /** Valutazione assegnata allo stile del libro (0-5) */
     private int styleRating = 0;
@@ -140,13 +137,10 @@ public class RateBookController implements Initializable {
     /** Codice colore per le stelle inattive (grigio) */
     private static final String STAR_INACTIVE_COLOR = "#dddddd";
 
-    /** Gestore del database per le operazioni di lettura/scrittura */
-    private DatabaseManager dbManager;
-
     /**
      * Inizializza il controller e i suoi componenti.
      * Questo metodo viene chiamato automaticamente dopo il caricamento del file FXML.
-     * Inizializza il gestore del database, configura i limiti delle aree di testo,
+     * Configura i limiti delle aree di testo,
      * reimposta tutte le stelle e aggiorna la valutazione media.
      *
      * @param location La posizione del file FXML
@@ -154,12 +148,6 @@ public class RateBookController implements Initializable {
      */
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        try {
-            dbManager = DatabaseManager.getInstance();
-        } catch (SQLException e) {
-            // Gestione dell'eccezione omessa
-        }
-
         // Nasconde l'etichetta di errore all'avvio
         errorLabel.setVisible(false);
 
@@ -206,8 +194,8 @@ public class RateBookController implements Initializable {
 
     /**
      * Imposta i dati iniziali per il controller.
-     * Aggiorna le etichette nell'interfaccia con i dati dell'utente e del libro,
-     * recupera l'ID del libro dal database e verifica se l'utente ha già valutato questo libro.
+     * Aggiorna le etichette nell'interfaccia con i dati dell'utente e del libro
+     * e verifica se l'utente ha già valutato questo libro.
      *
      * @param userId L'ID dell'utente corrente
      * @param bookTitle Il titolo del libro da valutare
@@ -222,20 +210,6 @@ public class RateBookController implements Initializable {
         userIdLabel.setText(userId);
         bookTitleLabel.setText(bookTitle);
 
-        // Ottieni l'ID del libro dal database
-        try (Connection conn = dbManager.getConnection()) {
-            String sql = "SELECT id FROM books WHERE title = ?";
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, bookTitle);
-                ResultSet rs = pstmt.executeQuery();
-                if (rs.next()) {
-                    this.bookId = rs.getInt("id");
-                }
-            }
-        } catch (SQLException e) {
-            // Gestione dell'eccezione omessa
-        }
-
         // Controlla se l'utente ha già valutato questo libro
         checkExistingRating();
     }
@@ -246,43 +220,41 @@ public class RateBookController implements Initializable {
      * Recupera le valutazioni e i commenti dal database per popolare l'interfaccia utente.
      */
     private void checkExistingRating() {
-        try (Connection conn = dbManager.getConnection()) {
-            String sql = "SELECT * FROM book_ratings WHERE user_id = ? AND book_id = ?";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, userId);
-                pstmt.setInt(2, bookId);
-                ResultSet rs = pstmt.executeQuery();
-
-                if (rs.next()) {
-                    // Carica le valutazioni
-                    styleRating = rs.getInt("style_rating");
-                    contentRating = rs.getInt("content_rating");
-                    pleasantnessRating = rs.getInt("pleasantness_rating");
-                    originalityRating = rs.getInt("originality_rating");
-                    editionRating = rs.getInt("edition_rating");
-
-                    // Aggiorna le stelle
-                    updateStars(styleStar1, styleStar2, styleStar3, styleStar4, styleStar5, styleRating);
-                    updateStars(contentStar1, contentStar2, contentStar3, contentStar4, contentStar5, contentRating);
-                    updateStars(pleasantnessStar1, pleasantnessStar2, pleasantnessStar3, pleasantnessStar4, pleasantnessStar5, pleasantnessRating);
-                    updateStars(originalityStar1, originalityStar2, originalityStar3, originalityStar4, originalityStar5, originalityRating);
-                    updateStars(editionStar1, editionStar2, editionStar3, editionStar4, editionStar5, editionRating);
-
-                    // Aggiorna la media
-                    updateAverageRating();
-
-                    // Carica i commenti
-                    finalCommentArea.setText(rs.getString("general_comment"));
-                    styleCommentArea.setText(rs.getString("style_comment"));
-                    contentCommentArea.setText(rs.getString("content_comment"));
-                    pleasantnessCommentArea.setText(rs.getString("pleasantness_comment"));
-                    originalityCommentArea.setText(rs.getString("originality_comment"));
-                    editionCommentArea.setText(rs.getString("edition_comment"));
-                }
-            }
+        BookRating rating;
+        try {
+            rating = RatingService.findRating(userId, bookTitle);
         } catch (SQLException e) {
             // Gestione dell'eccezione omessa
+            return;
+        }
+
+        if (rating != null) {
+            // Carica le valutazioni
+            int[] values = rating.getRatings();
+            styleRating = values[0];
+            contentRating = values[1];
+            pleasantnessRating = values[2];
+            originalityRating = values[3];
+            editionRating = values[4];
+
+            // Aggiorna le stelle
+            updateStars(styleStar1, styleStar2, styleStar3, styleStar4, styleStar5, styleRating);
+            updateStars(contentStar1, contentStar2, contentStar3, contentStar4, contentStar5, contentRating);
+            updateStars(pleasantnessStar1, pleasantnessStar2, pleasantnessStar3, pleasantnessStar4, pleasantnessStar5, pleasantnessRating);
+            updateStars(originalityStar1, originalityStar2, originalityStar3, originalityStar4, originalityStar5, originalityRating);
+            updateStars(editionStar1, editionStar2, editionStar3, editionStar4, editionStar5, editionRating);
+
+            // Aggiorna la media
+            updateAverageRating();
+
+            // Carica i commenti
+            String[] comments = rating.getComments();
+            finalCommentArea.setText(rating.getGeneralComment());
+            styleCommentArea.setText(comments[0]);
+            contentCommentArea.setText(comments[1]);
+            pleasantnessCommentArea.setText(comments[2]);
+            originalityCommentArea.setText(comments[3]);
+            editionCommentArea.setText(comments[4]);
         }
     }
 
@@ -355,49 +327,24 @@ public class RateBookController implements Initializable {
     }
 
     /**
-     * Salva o aggiorna la valutazione nel database.
-     * Utilizza una query UPSERT per inserire una nuova valutazione o aggiornare una esistente.
+     * Salva o aggiorna la valutazione nel database tramite {@link RatingService}, che
+     * aggiorna nella stessa transazione anche le statistiche del libro.
      *
      * @return true se il salvataggio è avvenuto con successo, false altrimenti
      */
     private boolean saveRating() {
-        try (Connection conn = dbManager.getConnection()) {
-            // Usa UPSERT per inserire o aggiornare la valutazione
-            String sql = "INSERT INTO book_ratings (user_id, book_id, style_rating, content_rating, " +
-                    "pleasantness_rating, originality_rating, edition_rating, general_comment, " +
-                    "style_comment, content_comment, pleasantness_comment, originality_comment, edition_comment) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
-                    "ON CONFLICT (user_id, book_id) DO UPDATE SET " +
-                    "style_rating = EXCLUDED.style_rating, " +
-                    "content_rating = EXCLUDED.content_rating, " +
-                    "pleasantness_rating = EXCLUDED.pleasantness_rating, " +
-                    "originality_rating = EXCLUDED.originality_rating, " +
-                    "edition_rating = EXCLUDED.edition_rating, " +
-                    "general_comment = EXCLUDED.general_comment, " +
-                    "style_comment = EXCLUDED.style_comment, " +
-                    "content_comment = EXCLUDED.content_comment, " +
-                    "pleasantness_comment = EXCLUDED.pleasantness_comment, " +
-                    "originality_comment = EXCLUDED.originality_comment, " +
-                    "edition_comment = EXCLUDED.edition_comment";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, userId);
-                pstmt.setInt(2, bookId);
-                pstmt.setInt(3, styleRating);
-                pstmt.setInt(4, contentRating);
-                pstmt.setInt(5, pleasantnessRating);
-                pstmt.setInt(6, originalityRating);
-                pstmt.setInt(7, editionRating);
-                pstmt.setString(8, finalCommentArea.getText().trim());
-                pstmt.setString(9, styleCommentArea.getText().trim());
-                pstmt.setString(10, contentCommentArea.getText().trim());
-                pstmt.setString(11, pleasantnessCommentArea.getText().trim());
-                pstmt.setString(12, originalityCommentArea.getText().trim());
-                pstmt.setString(13, editionCommentArea.getText().trim());
-
-                pstmt.executeUpdate();
-                return true;
-            }
+        int[] ratings = {styleRating, contentRating, pleasantnessRating, originalityRating, editionRating};
+        String[] comments = {
+                styleCommentArea.getText().trim(),
+                contentCommentArea.getText().trim(),
+                pleasantnessCommentArea.getText().trim(),
+                originalityCommentArea.getText().trim(),
+                editionCommentArea.getText().trim()
+        };
+
+        try {
+            RatingService.saveRating(userId, bookTitle, new BookRating(ratings, comments, finalCommentArea.getText().trim()));
+            return true;
         } catch (SQLException e) {
             return false;
         }
@@ -0,0 +1,167 @@
+package book_recommender.lab_b;
+
+import java.io.IOException;
+import java.sql.*;
+
+/**
+ * Servizio per la lettura e il salvataggio delle valutazioni dei libri.
+ *
+ * <p>Se il client è collegato al server dei libri ({@link BookServerClient}) le operazioni
+ * vengono inoltrate al server, altrimenti vengono eseguite direttamente sul database.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class RatingService {
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private RatingService() {
+    }
+
+    /**
+     * Restituisce la valutazione già espressa da un utente per un libro.
+     *
+     * @param userId L'utente
+     * @param title Il titolo del libro
+     * @return La valutazione, oppure null se l'utente non ha ancora valutato il libro
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public static BookRating findRating(String userId, String title) throws SQLException {
+        BookServerClient server = BookServerClient.active();
+        if (server != null) {
+            try {
+                return server.getRating(userId, title);
+            } catch (IOException e) {
+                // Server non raggiungibile o in ritardo: la richiesta viene eseguita sul database
+            }
+        }
+        return queryRating(userId, title);
+    }
+
+    /**
+     * Salva la valutazione di un utente per un libro, sostituendo quella precedente.
+     *
+     * @param userId L'utente
+     * @param title Il titolo del libro
+     * @param rating La valutazione
+     * @throws SQLException se il libro non esiste o si verifica un errore di accesso al database
+     */
+    public static void saveRating(String userId, String title, BookRating rating) throws SQLException {
+        BookServerClient server = BookServerClient.active();
+        if (server != null) {
+            try {
+                server.saveRating(userId, title, rating);
+                BookPageCache.getClientInstance().invalidate(title);
+                return;
+            } catch (IOException e) {
+                // Server non raggiungibile o in ritardo: il salvataggio viene eseguito sul database
+            }
+        }
+        storeRating(userId, title, rating);
+        BookPageCache.getClientInstance().invalidate(title);
+    }
+
+    /**
+     * Legge dal database la valutazione di un utente per un libro.
+     */
+    static BookRating queryRating(String userId, String title) throws SQLException {
+        Integer bookId = TitleResolver.getInstance().resolve(title);
+        if (bookId == null) {
+            return null;
+        }
+
+        String sql = "SELECT style_rating, content_rating, pleasantness_rating, originality_rating, edition_rating, " +
+                "style_comment, content_comment, pleasantness_comment, originality_comment, edition_comment, " +
+                "general_comment FROM book_ratings WHERE user_id = ? AND book_id = ?";
+
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            pstmt.setInt(2, bookId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                int[] ratings = new int[RatingStats.DIMENSIONS];
+                String[] comments = new String[RatingStats.DIMENSIONS];
+                for (int i = 0; i < RatingStats.DIMENSIONS; i++) {
+                    ratings[i] = rs.getInt(1 + i);
+                    comments[i] = rs.getString(6 + i);
+                }
+                return new BookRating(ratings, comments, rs.getString(11));
+            }
+        }
+    }
+
+    /**
+     * Salva sul database la valutazione con una query UPSERT e, nella stessa transazione,
+     * aggiorna le statistiche del libro ({@link RatingStats}). Dopo il commit la pagina del
+     * libro viene scartata da {@link BookPageCache}.
+     */
+    static void storeRating(String userId, String title, BookRating rating) throws SQLException {
+        Integer bookId = TitleResolver.getInstance().resolve(title);
+        if (bookId == null) {
+            throw new SQLException("Libro non trovato: " + title);
+        }
+
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int[] previous = RatingStats.lockAndFindRating(conn, userId, bookId);
+                upsertRating(conn, userId, bookId, rating);
+                RatingStats.applyRating(conn, bookId, previous, rating.getRatings());
+                conn.commit();
+                BookPageCache.getInstance().invalidate(bookId);
+                ItemSimilarityIndex.getInstance().markDirty(bookId);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Inserisce la valutazione o aggiorna quella già espressa dall'utente per il libro.
+     *
+     * @param conn Connessione su cui eseguire l'operazione
+     * @param userId L'utente
+     * @param bookId Il libro
+     * @param rating La valutazione
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    private static void upsertRating(Connection conn, String userId, int bookId, BookRating rating) throws SQLException {
+        // Usa UPSERT per inserire o aggiornare la valutazione
+        String sql = "INSERT INTO book_ratings (user_id, book_id, style_rating, content_rating, " +
+                "pleasantness_rating, originality_rating, edition_rating, style_comment, content_comment, " +
+                "pleasantness_comment, originality_comment, edition_comment, general_comment) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                "ON CONFLICT (user_id, book_id) DO UPDATE SET " +
+                "style_rating = EXCLUDED.style_rating, " +
+                "content_rating = EXCLUDED.content_rating, " +
+                "pleasantness_rating = EXCLUDED.pleasantness_rating, " +
+                "originality_rating = EXCLUDED.originality_rating, " +
+                "edition_rating = EXCLUDED.edition_rating, " +
+                "style_comment = EXCLUDED.style_comment, " +
+                "content_comment = EXCLUDED.content_comment, " +
+                "pleasantness_comment = EXCLUDED.pleasantness_comment, " +
+                "originality_comment = EXCLUDED.originality_comment, " +
+                "edition_comment = EXCLUDED.edition_comment, " +
+                "general_comment = EXCLUDED.general_comment";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            pstmt.setInt(2, bookId);
+            for (int i = 0; i < RatingStats.DIMENSIONS; i++) {
+                pstmt.setInt(3 + i, rating.getRatings()[i]);
+                pstmt.setString(8 + i, rating.getComments()[i]);
+            }
+            pstmt.setString(13, rating.getGeneralComment());
+
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package book_recommender.lab_b;
+
+import java.sql.*;
+
+/**
+ * Gestisce la tabella {@code book_rating_stats}, che contiene per ogni libro il numero di
+ * valutazioni, la somma dei voti di ogni caratteristica e la media complessiva.
+ *
+ * <p>La tabella evita di ricalcolare le medie sull'intera tabella {@code book_ratings}: la
+ * classifica dei libri più votati e le statistiche della pagina di dettaglio leggono una
+ * riga per libro. Viene aggiornata in modo incrementale a ogni valutazione salvata dal client
+ * e ricostruita per intero dopo l'importazione dei file CSV.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class RatingStats {
+
+    /**
+     * Numero di caratteristiche valutate (stile, contenuto, gradevolezza, originalità, edizione).
+     */
+    public static final int DIMENSIONS = 5;
+
+    /**
+     * Istruzione di creazione della tabella.
+     */
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS book_rating_stats (" +
+            "book_id INTEGER PRIMARY KEY REFERENCES books(id) ON DELETE CASCADE," +
+            "rating_count INTEGER NOT NULL DEFAULT 0," +
+            "style_sum INTEGER NOT NULL DEFAULT 0," +
+            "content_sum INTEGER NOT NULL DEFAULT 0," +
+            "pleasantness_sum INTEGER NOT NULL DEFAULT 0," +
+            "originality_sum INTEGER NOT NULL DEFAULT 0," +
+            "edition_sum INTEGER NOT NULL DEFAULT 0," +
+            "average_rating DOUBLE PRECISION NOT NULL DEFAULT 0" +
+            ")";
+
+    /**
+     * Istruzione di creazione dell'indice usato dalla classifica dei libri più votati.
+     */
+    static final String CREATE_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_book_rating_stats_average ON book_rating_stats(average_rating DESC, book_id)";
+
+    /**
+     * Canale su cui viene notificata ogni modifica delle statistiche. Il messaggio contiene
+     * "id:media" del libro modificato, oppure "*" quando la tabella è stata ricostruita.
+     */
+    public static final String NOTIFY_CHANNEL = "book_rating_stats";
+
+    /**
+     * Messaggio che indica la ricostruzione dell'intera tabella.
+     */
+    public static final String REBUILT_PAYLOAD = "*";
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private RatingStats() {
+    }
+
+    /**
+     * Blocca le statistiche del libro fino alla fine della transazione, così le valutazioni
+     * dello stesso libro vengono salvate una alla volta, e restituisce la valutazione già
+     * espressa dall'utente. Deve essere chiamato con l'autocommit disattivato, prima di
+     * salvare la valutazione.
+     *
+     * @param conn Connessione con l'autocommit disattivato
+     * @param userId L'utente che valuta
+     * @param bookId Il libro valutato
+     * @return I voti precedenti dell'utente, oppure null se il libro non era ancora stato valutato
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public static int[] lockAndFindRating(Connection conn, String userId, int bookId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO book_rating_stats (book_id) VALUES (?) ON CONFLICT (book_id) DO NOTHING")) {
+            pstmt.setInt(1, bookId);
+            pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT book_id FROM book_rating_stats WHERE book_id = ? FOR UPDATE")) {
+            pstmt.setInt(1, bookId);
+            pstmt.executeQuery().close();
+        }
+
+        String sql = "SELECT style_rating, content_rating, pleasantness_rating, originality_rating, edition_rating " +
+                "FROM book_ratings WHERE user_id = ? AND book_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            pstmt.setInt(2, bookId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                int[] ratings = new int[DIMENSIONS];
+                for (int i = 0; i < DIMENSIONS; i++) {
+                    ratings[i] = rs.getInt(i + 1);
+                }
+                return ratings;
+            }
+        }
+    }
+
+    /**
+     * Aggiorna le statistiche del libro sostituendo i voti precedenti dell'utente con quelli nuovi
+     * e, su PostgreSQL, notifica la nuova media sul canale {@link #NOTIFY_CHANNEL}.
+     *
+     * @param conn La connessione usata per {@link #lockAndFindRating}
+     * @param bookId Il libro valutato
+     * @param previous I voti precedenti, oppure null per una nuova valutazione
+     * @param current I nuovi voti
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public static void applyRating(Connection conn, int bookId, int[] previous, int[] current) throws SQLException {
+        int countDelta = previous == null ? 1 : 0;
+        int[] sumDeltas = new int[DIMENSIONS];
+        int totalDelta = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            sumDeltas[i] = current[i] - (previous == null ? 0 : previous[i]);
+            totalDelta += sumDeltas[i];
+        }
+
+        // Le espressioni a destra usano i valori della riga prima dell'aggiornamento
+        String sql = "UPDATE book_rating_stats SET " +
+                "rating_count = rating_count + ?, " +
+                "style_sum = style_sum + ?, " +
+                "content_sum = content_sum + ?, " +
+                "pleasantness_sum = pleasantness_sum + ?, " +
+                "originality_sum = originality_sum + ?, " +
+                "edition_sum = edition_sum + ?, " +
+                "average_rating = (style_sum + content_sum + pleasantness_sum + originality_sum + edition_sum + ?) " +
+                "/ (5.0 * (rating_count + ?)) " +
+                "WHERE book_id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, countDelta);
+            for (int i = 0; i < DIMENSIONS; i++) {
+                pstmt.setInt(2 + i, sumDeltas[i]);
+            }
+            pstmt.setInt(7, totalDelta);
+            pstmt.setInt(8, countDelta);
+            pstmt.setInt(9, bookId);
+            pstmt.executeUpdate();
+        }
+
+        // La notifica viene consegnata ai client in ascolto solo al commit della transazione
+        if (SearchIndexes.isPostgreSQL(conn)) {
+            String notify = "SELECT pg_notify(?, CAST(book_id AS TEXT) || ':' || CAST(average_rating AS TEXT)) " +
+                    "FROM book_rating_stats WHERE book_id = ?";
+            try (PreparedStatement pstmt = conn.prepareStatement(notify)) {
+                pstmt.setString(1, NOTIFY_CHANNEL);
+                pstmt.setInt(2, bookId);
+                pstmt.executeQuery().close();
+            }
+        }
+    }
+
+    /**
+     * Ricalcola le statistiche di tutti i libri dalla tabella {@code book_ratings}.
+     * Va eseguito dopo le importazioni massive, che non aggiornano le statistiche riga per riga.
+     * Su PostgreSQL viene notificato {@link #REBUILT_PAYLOAD} sul canale {@link #NOTIFY_CHANNEL}.
+     *
+     * @param conn Connessione al database
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public static void rebuild(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM book_rating_stats");
+            stmt.executeUpdate("INSERT INTO book_rating_stats (book_id, rating_count, style_sum, content_sum, " +
+                    "pleasantness_sum, originality_sum, edition_sum, average_rating) " +
+                    "SELECT book_id, COUNT(*), SUM(style_rating), SUM(content_rating), SUM(pleasantness_rating), " +
+                    "SUM(originality_rating), SUM(edition_rating), " +
+                    "SUM(style_rating + content_rating + pleasantness_rating + originality_rating + edition_rating) " +
+                    "/ (5.0 * COUNT(*)) " +
+                    "FROM book_ratings WHERE book_id IS NOT NULL GROUP BY book_id");
+        }
+
+        if (SearchIndexes.isPostgreSQL(conn)) {
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT pg_notify(?, ?)")) {
+                pstmt.setString(1, NOTIFY_CHANNEL);
+                pstmt.setString(2, REBUILT_PAYLOAD);
+                pstmt.executeQuery().close();
+            }
+        }
+    }
+}
@@ -17,7 +17,7 @@ import javafx.stage.Stage;
 import javafx.util.Callback;
 
 import java.io.*;
-import java.sql.*;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -92,19 +92,19 @@ public class RecommendBookController {
     @FXML private TextField yearSearchField;
 
     /**
-     * Contenitore per visualizzare i risultati della ricerca per titolo.
+     * Lista virtualizzata per visualizzare i risultati della ricerca per titolo.
      */
-    @FXML private VBox titleResultsContainer;
+    @FXML private ListView<Book> titleResultsList;
 
     /**
-     * Contenitore per visualizzare i risultati della ricerca per autore.
+     * Lista virtualizzata per visualizzare i risultati della ricerca per autore.
      */
-    @FXML private VBox authorResultsContainer;
+    @FXML private ListView<Book> authorResultsList;
 
     /**
-     * Contenitore per visualizzare i risultati della ricerca per autore e anno.
+     * Lista virtualizzata per visualizzare i risultati della ricerca per autore e anno.
      */
-    @FXML private VBox authorYearResultsContainer;
+    @FXML private ListView<Book> authorYearResultsList;
 
     /**
      * ID dell'utente corrente.
@@ -122,37 +122,31 @@ public class RecommendBookController {
     private String libraryName;
 
     /**
-     * ID nel database del libro selezionato.
+     * Lista dei titoli dei libri consigliati.
      */
-    private int selectedBookId;
+    private final List<String> recommendedBooks = new ArrayList<>();
 
     /**
-     * Lista dei titoli dei libri consigliati.
+     * Risultati paginati della ricerca per titolo.
      */
-    private final List<String> recommendedBooks = new ArrayList<>();
+    private PagedBookList titleResults;
 
     /**
-     * Lista di oggetti Book risultanti dall'ultima ricerca.
+     * Risultati paginati della ricerca per autore.
      */
-    private List<Book> searchResults = new ArrayList<>();
+    private PagedBookList authorResults;
 
     /**
-     * Gestore della connessione al database.
+     * Risultati paginati della ricerca per autore e anno.
      */
-    private DatabaseManager dbManager;
+    private PagedBookList authorYearResults;
 
     /**
      * Inizializza il controller.
      * Questo metodo viene chiamato automaticamente quando l'FXML viene caricato.
-     * Configura il layout, gli eventi e ottiene una connessione al database.
+     * Configura il layout e gli eventi.
      */
     public void initialize() {
-        try {
-            dbManager = DatabaseManager.getInstance();
-        } catch (SQLException e) {
-            // Gestione dell'errore silente - potrebbe essere migliorata con log o messaggi
-        }
-
         // Nasconde eventuali messaggi di errore all'avvio
         errorLabel.setVisible(false);
 
@@ -162,6 +156,12 @@ public class RecommendBookController {
         // Configura la ListView per mostrare i libri consigliati con opzioni di eliminazione
         setupRecommendedBooksListView();
 
+        // Collega le liste dei risultati alle ricerche paginate, escludendo il libro selezionato
+        // per evitare autoreferenze
+        titleResults = createResultList(titleResultsList);
+        authorResults = createResultList(authorResultsList);
+        authorYearResults = createResultList(authorYearResultsList);
+
         // Il bottone saveButton è sempre attivo (potrebbe essere cambiato in base alla logica)
         saveButton.setDisable(false);
 
@@ -299,20 +299,6 @@ public class RecommendBookController {
         userIdLabel.setText(userId);
         selectedBookLabel.setText("Libro selezionato: " + selectedBook);
 
-        // Recupera l'ID del libro dal database per utilizzo nelle query successive
-        try (Connection conn = dbManager.getConnection()) {
-            String sql = "SELECT id FROM books WHERE title = ?";
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, selectedBook);
-                ResultSet rs = pstmt.executeQuery();
-                if (rs.next()) {
-                    this.selectedBookId = rs.getInt("id");
-                }
-            }
-        } catch (SQLException e) {
-            // Gestione dell'errore silente
-        }
-
         // Carica le raccomandazioni esistenti per questo libro e utente
         loadExistingRecommendations();
     }
@@ -327,22 +313,8 @@ public class RecommendBookController {
         recommendedBooks.clear();
         recommendedBooksListView.getItems().clear();
 
-        try (Connection conn = dbManager.getConnection()) {
-            // Query per recuperare i titoli dei libri consigliati per il libro selezionato
-            String sql = "SELECT b.title FROM books b " +
-                    "JOIN book_recommendations br ON b.id = br.recommended_book_id " +
-                    "WHERE br.user_id = ? AND br.source_book_id = ?";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, userId);
-                pstmt.setInt(2, selectedBookId);
-                ResultSet rs = pstmt.executeQuery();
-
-                // Popola la lista con i titoli trovati
-                while (rs.next()) {
-                    recommendedBooks.add(rs.getString("title"));
-                }
-            }
+        try {
+            recommendedBooks.addAll(RecommendationService.getRecommendations(userId, selectedBook));
         } catch (SQLException e) {
             // Gestione dell'errore silente
         }
@@ -369,28 +341,10 @@ public class RecommendBookController {
             return;
         }
 
-        // Nasconde messaggi di errore precedenti e pulisce i risultati vecchi
+        // Nasconde messaggi di errore precedenti
         errorLabel.setVisible(false);
-        titleResultsContainer.getChildren().clear();
-
-        // Esegue la ricerca per titolo attraverso il servizio BookService
-        searchResults = BookService.searchBooksByTitle(searchTerm);
-
-        // Esclude il libro selezionato dai risultati per evitare autoreferenze
-        searchResults.removeIf(book -> book.getTitle().equals(selectedBook));
-
-        if (searchResults.isEmpty()) {
-            // Mostra un messaggio se non ci sono risultati
-            Label noResultsLabel = new Label("Nessun risultato trovato.");
-            noResultsLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #777777; -fx-padding: 20px;");
-            titleResultsContainer.getChildren().add(noResultsLabel);
-        } else {
-            // Visualizza i risultati trovati
-            for (Book book : searchResults) {
-                HBox bookBox = createBookResultBox(book);
-                titleResultsContainer.getChildren().add(bookBox);
-            }
-        }
+        // Esegue la ricerca per titolo; i risultati vengono caricati una pagina alla volta
+        titleResults.search(BookQuery.byTitle(searchTerm));
     }
 
     /**
@@ -409,28 +363,10 @@ public class RecommendBookController {
             return;
         }
 
-        // Nasconde messaggi di errore precedenti e pulisce i risultati vecchi
+        // Nasconde messaggi di errore precedenti
         errorLabel.setVisible(false);
-        authorResultsContainer.getChildren().clear();
-
-        // Esegue la ricerca per autore attraverso il servizio BookService
-        searchResults = BookService.searchBooksByAuthor(searchTerm);
-
-        // Esclude il libro selezionato dai risultati
-        searchResults.removeIf(book -> book.getTitle().equals(selectedBook));
-
-        if (searchResults.isEmpty()) {
-            // Mostra un messaggio se non ci sono risultati
-            Label noResultsLabel = new Label("Nessun risultato trovato.");
-            noResultsLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #777777; -fx-padding: 20px;");
-            authorResultsContainer.getChildren().add(noResultsLabel);
-        } else {
-            // Visualizza i risultati trovati
-            for (Book book : searchResults) {
-                HBox bookBox = createBookResultBox(book);
-                authorResultsContainer.getChildren().add(bookBox);
-            }
-        }
+        // Esegue la ricerca per autore; i risultati vengono caricati una pagina alla volta
+        authorResults.search(BookQuery.byAuthor(searchTerm));
     }
 
     /**
@@ -462,107 +398,107 @@ public class RecommendBookController {
             return;
         }
 
-        // Nasconde messaggi di errore precedenti e pulisce i risultati vecchi
+        // Nasconde messaggi di errore precedenti
         errorLabel.setVisible(false);
-        authorYearResultsContainer.getChildren().clear();
-
-        // Esegue la ricerca combinata attraverso il servizio BookService
-        searchResults = BookService.searchBooksByAuthorAndYear(authorTerm, year);
-
-        // Esclude il libro selezionato dai risultati
-        searchResults.removeIf(book -> book.getTitle().equals(selectedBook));
-
-        if (searchResults.isEmpty()) {
-            // Mostra un messaggio se non ci sono risultati
-            Label noResultsLabel = new Label("Nessun risultato trovato.");
-            noResultsLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #777777; -fx-padding: 20px;");
-            authorYearResultsContainer.getChildren().add(noResultsLabel);
-        } else {
-            // Visualizza i risultati trovati
-            for (Book book : searchResults) {
-                HBox bookBox = createBookResultBox(book);
-                authorYearResultsContainer.getChildren().add(bookBox);
-            }
-        }
+        // Esegue la ricerca combinata; i risultati vengono caricati una pagina alla volta
+        authorYearResults.search(BookQuery.byAuthorAndYear(authorTerm, year));
     }
 
     /**
-     * Crea un box per visualizzare un libro nei risultati di ricerca.
-     * Genera un componente grafico che mostra le informazioni del libro e un pulsante
-     * per aggiungerlo o rimuoverlo dai consigli.
+     * Collega una lista di risultati alla ricerca paginata.
      *
-     * @param book Il libro da visualizzare
-     * @return Un HBox contenente le informazioni del libro e un pulsante per aggiungerlo/rimuoverlo
-     */
-    private HBox createBookResultBox(Book book) {
-        // Contenitore principale per il risultato del libro
-        HBox bookBox = new HBox();
-        bookBox.setAlignment(Pos.CENTER_LEFT);
-        bookBox.setSpacing(10);
-        bookBox.setPadding(new Insets(10));
-        bookBox.setStyle("-fx-background-color: white; -fx-border-color: #EEEEEE; -fx-border-radius: 5px;");
-
-        // Contenitore per le informazioni testuali del libro
-        VBox infoBox = new VBox(5);
-        infoBox.setAlignment(Pos.CENTER_LEFT);
-        HBox.setHgrow(infoBox, Priority.ALWAYS);
-
-        // Titolo del libro in evidenza
-        Label titleLabel = new Label(book.getTitle());
-        titleLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #333333;");
-        titleLabel.setWrapText(true);
-        titleLabel.setMaxWidth(480); // Larghezza massima per evitare troncamenti
-
-        // Informazione sull'autore
-        Label authorLabel = new Label("Autore: " + book.getAuthors());
-        authorLabel.setStyle("-fx-font-size: 14px;");
-        authorLabel.setWrapText(true);
-
-        // Dettagli aggiuntivi del libro
-        Label detailsLabel = new Label("Categoria: " + book.getCategory() + " | Editore: " + book.getPublisher() + " | Anno: " + book.getPublishYear());
-        detailsLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #777777;");
-        detailsLabel.setWrapText(true);
-
-        // Aggiungi le etichette al contenitore delle informazioni
-        infoBox.getChildren().addAll(titleLabel, authorLabel, detailsLabel);
-
-        // Crea il pulsante di azione (Aggiungi/Rimuovi)
-        Button actionButton = new Button();
-        actionButton.setPrefHeight(40);
-        actionButton.setPrefWidth(100);
-        actionButton.setMinWidth(100);
-
-        // Determina lo stato del libro e configura il pulsante di conseguenza
-        boolean isRecommended = recommendedBooks.contains(book.getTitle());
-        boolean isLimitReached = recommendedBooks.size() >= 3 && !isRecommended;
-
-        if (isRecommended) {
-            // Il libro è già nella lista dei consigliati - mostra opzione per rimuoverlo
-            actionButton.setText("Rimuovi");
-            actionButton.setStyle("-fx-background-color: red; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 15; -fx-padding: 10px 15px; -fx-cursor: hand;");
-            actionButton.setOnAction(e -> toggleBookSelection(book.getTitle(), actionButton));
-        } else if (isLimitReached) {
-            // Limite massimo di 3 libri raggiunto - pulsante disabilitato
-            actionButton.setText("Aggiungi");
-            actionButton.setStyle("-fx-background-color: #75B965; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 15; -fx-padding: 10px 15px; -fx-cursor: hand;");
-            // Mostra un avviso se si tenta di aggiungere oltre il limite
+     * @param listView La lista da popolare
+     * @return Il gestore della ricerca paginata per la lista
+     */
+    private PagedBookList createResultList(ListView<Book> listView) {
+        PagedBookList results = new PagedBookList(listView, view -> new BookResultCell());
+        results.setFilter(book -> !book.getTitle().equals(selectedBook));
+        results.setEmptyMessage("Nessun risultato trovato.");
+        return results;
+    }
+
+    /**
+     * Cella che visualizza un libro nei risultati di ricerca.
+     * Mostra le informazioni del libro e un pulsante per aggiungerlo o rimuoverlo dai consigli.
+     * I nodi vengono creati una sola volta e riutilizzati durante lo scorrimento della lista.
+     */
+    private class BookResultCell extends ListCell<Book> {
+        private final HBox bookBox = new HBox();
+        private final Label titleLabel = new Label();
+        private final Label authorLabel = new Label();
+        private final Label detailsLabel = new Label();
+        private final Button actionButton = new Button();
+
+        BookResultCell() {
+            // Contenitore principale per il risultato del libro
+            bookBox.setAlignment(Pos.CENTER_LEFT);
+            bookBox.setSpacing(10);
+            bookBox.setPadding(new Insets(10));
+            bookBox.setStyle("-fx-background-color: white; -fx-border-color: #EEEEEE; -fx-border-radius: 5px;");
+
+            // Contenitore per le informazioni testuali del libro
+            VBox infoBox = new VBox(5);
+            infoBox.setAlignment(Pos.CENTER_LEFT);
+            HBox.setHgrow(infoBox, Priority.ALWAYS);
+
+            // Titolo del libro in evidenza
+            titleLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold; -fx-text-fill: #333333;");
+            titleLabel.setWrapText(true);
+            titleLabel.setMaxWidth(480); // Larghezza massima per evitare troncamenti
+
+            // Informazione sull'autore
+            authorLabel.setStyle("-fx-font-size: 14px;");
+            authorLabel.setWrapText(true);
+
+            // Dettagli aggiuntivi del libro
+            detailsLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #777777;");
+            detailsLabel.setWrapText(true);
+
+            // Aggiungi le etichette al contenitore delle informazioni
+            infoBox.getChildren().addAll(titleLabel, authorLabel, detailsLabel);
+
+            // Pulsante di azione (Aggiungi/Rimuovi)
+            actionButton.setPrefHeight(40);
+            actionButton.setPrefWidth(100);
+            actionButton.setMinWidth(100);
             actionButton.setOnAction(e -> {
-                Alert alert = new Alert(Alert.AlertType.WARNING);
-                alert.setTitle("Limite raggiunto");
-                alert.setHeaderText("Limite massimo di libri");
-                alert.setContentText("Puoi consigliare al massimo 3 libri. Rimuovi un libro prima di aggiungerne un altro.");
-                alert.showAndWait();
+                Book book = getItem();
+                if (book != null) {
+                    toggleBookSelection(book.getTitle());
+                }
             });
-        } else {
-            // Possibilità di aggiungere ancora libri
-            actionButton.setText("Aggiungi");
-            actionButton.setStyle("-fx-background-color: #75B965; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 15; -fx-padding: 10px 15px; -fx-cursor: hand;");
-            actionButton.setOnAction(e -> toggleBookSelection(book.getTitle(), actionButton));
+
+            // Assembla il contenitore finale
+            bookBox.getChildren().addAll(infoBox, actionButton);
+            setPadding(new Insets(0, 0, 10, 0));
+            setStyle("-fx-background-color: transparent;");
         }
 
-        // Assembla il contenitore finale
-        bookBox.getChildren().addAll(infoBox, actionButton);
-        return bookBox;
+        @Override
+        protected void updateItem(Book book, boolean empty) {
+            super.updateItem(book, empty);
+
+            if (empty || book == null) {
+                setGraphic(null);
+                return;
+            }
+
+            titleLabel.setText(book.getTitle());
+            authorLabel.setText("Autore: " + book.getAuthors());
+            detailsLabel.setText("Categoria: " + book.getCategory() + " | Editore: " + book.getPublisher() + " | Anno: " + book.getPublishYear());
+
+            // Il pulsante riflette lo stato del libro: consigliato o da aggiungere. Se il limite
+            // di 3 libri è raggiunto, toggleBookSelection mostra l'avviso senza aggiungere il libro
+            if (recommendedBooks.contains(book.getTitle())) {
+                actionButton.setText("Rimuovi");
+                actionButton.setStyle("-fx-background-color: red; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 15; -fx-padding: 10px 15px; -fx-cursor: hand;");
+            } else {
+                actionButton.setText("Aggiungi");
+                actionButton.setStyle("-fx-background-color: #75B965; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 15; -fx-padding: 10px 15px; -fx-cursor: hand;");
+            }
+
+            setGraphic(bookBox);
+        }
     }
 
     /**
@@ -571,16 +507,13 @@ public class RecommendBookController {
      * aggiungendolo o rimuovendolo dalla lista dei libri consigliati.
      *
      * @param bookTitle Il titolo del libro da selezionare/deselezionare
-     * @param button Il pulsante associato al libro per aggiornarne l'aspetto
      */
-    private void toggleBookSelection(String bookTitle, Button button) {
+    private void toggleBookSelection(String bookTitle) {
         // Verifica se il libro è già selezionato
         if (recommendedBooks.contains(bookTitle)) {
             // Rimuovi il libro dalla selezione
             recommendedBooks.remove(bookTitle);
             updateSelectedBooksList();
-            button.setText("Aggiungi");
-            button.setStyle("-fx-background-color: #75B965; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 15; -fx-cursor: hand;");
         } else {
             // Verifica che non si sia già raggiunto il limite di 3 libri
             if (recommendedBooks.size() >= 3) {
@@ -595,8 +528,6 @@ public class RecommendBookController {
             // Aggiungi il libro alla selezione
             recommendedBooks.add(bookTitle);
             updateSelectedBooksList();
-            button.setText("Rimuovi");
-            button.setStyle("-fx-background-color: red; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 15; -fx-cursor: hand;");
         }
 
         // Aggiorna l'interfaccia utente
@@ -632,24 +563,12 @@ public class RecommendBookController {
 
     /**
      * Aggiorna i pulsanti nei risultati di ricerca in base ai libri attualmente consigliati.
-     * Rigenera i risultati di ricerca per riflettere le modifiche nella selezione.
+     * Ridisegna le celle visibili per riflettere le modifiche nella selezione, senza ripetere le ricerche.
      */
     private void updateSearchResults() {
-        // Determina quale contenitore aggiornare in base ai risultati visibili
-        if (!titleResultsContainer.getChildren().isEmpty()) {
-            titleResultsContainer.getChildren().clear();
-            handleTitleSearch(new ActionEvent());
-        }
-
-        if (!authorResultsContainer.getChildren().isEmpty()) {
-            authorResultsContainer.getChildren().clear();
-            handleAuthorSearch(new ActionEvent());
-        }
-
-        if (!authorYearResultsContainer.getChildren().isEmpty()) {
-            authorYearResultsContainer.getChildren().clear();
-            handleAuthorYearSearch(new ActionEvent());
-        }
+        titleResults.refresh();
+        authorResults.refresh();
+        authorYearResults.refresh();
     }
 
     /**
@@ -726,49 +645,9 @@ public class RecommendBookController {
      * @return true se il salvataggio è avvenuto con successo, false altrimenti
      */
     private boolean saveRecommendations() {
-        try (Connection conn = dbManager.getConnection()) {
-            // Disabilita l'auto-commit per gestire l'operazione come una transazione
-            conn.setAutoCommit(false);
-
-            try {
-                // Prima elimina le raccomandazioni esistenti per questo libro
-                String deleteSql = "DELETE FROM book_recommendations WHERE user_id = ? AND source_book_id = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(deleteSql)) {
-                    pstmt.setString(1, userId);
-                    pstmt.setInt(2, selectedBookId);
-                    pstmt.executeUpdate();
-                }
-
-                // Poi inserisce le nuove raccomandazioni
-                String insertSql = "INSERT INTO book_recommendations (user_id, source_book_id, recommended_book_id) VALUES (?, ?, ?)";
-                String findBookSql = "SELECT id FROM books WHERE title = ?";
-
-                try (PreparedStatement findBookStmt = conn.prepareStatement(findBookSql);
-                     PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-
-                    // Per ogni libro consigliato, trova il suo ID e inseriscilo nella tabella delle raccomandazioni
-                    for (String recommendedBookTitle : recommendedBooks) {
-                        findBookStmt.setString(1, recommendedBookTitle);
-                        ResultSet rs = findBookStmt.executeQuery();
-
-                        if (rs.next()) {
-                            int recommendedBookId = rs.getInt("id");
-                            insertStmt.setString(1, userId);
-                            insertStmt.setInt(2, selectedBookId);
-                            insertStmt.setInt(3, recommendedBookId);
-                            insertStmt.executeUpdate();
-                        }
-                    }
-                }
-
-                // Conferma la transazione
-                conn.commit();
-                return true;
-            } catch (SQLException e) {
-                // In caso di errore, annulla tutte le operazioni della transazione
-                conn.rollback();
-                throw e;
-            }
+        try {
+            RecommendationService.saveRecommendations(userId, selectedBook, recommendedBooks);
+            return true;
         } catch (SQLException e) {
             // Mostra l'errore all'utente
             errorLabel.setText("Errore: " + e.getMessage());
@@ -0,0 +1,709 @@
+package book_recommender.lab_b;
+
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grafo in memoria dei consigli di lettura: un arco va dal libro di partenza al libro
+ * consigliato (tabella book_recommendations) e pesa quanto il numero di utenti che hanno
+ * dato quel consiglio.
+ *
+ * <p>Il grafo è memorizzato in formato CSR (compressed sparse row): gli archi uscenti del libro
+ * con id {@code b} occupano le posizioni da {@code offsets[b]} a {@code offsets[b + 1]} degli
+ * array {@code targets} e {@code weights}. Viene mantenuto anche il grafo trasposto, con gli
+ * archi entranti, perché i consigli legano due libri in entrambe le direzioni: chi consiglia B
+ * a chi ha letto A indica che A e B piacciono agli stessi lettori anche partendo da B.
+ * Le visite percorrono quindi gli archi in entrambe le direzioni.</p>
+ *
+ * <p>{@link #getPersonalizedPageRank(int, int)} restituisce i libri più importanti per chi
+ * parte da un libro secondo il PageRank personalizzato, calcolato localmente con l'algoritmo
+ * <i>forward push</i> senza visitare l'intero grafo. Gli array di lavoro delle visite sono
+ * presi in prestito da un piccolo insieme condiviso e restituiti a fine richiesta, così la
+ * memoria occupata non cresce con il numero di thread o di connessioni del server.</p>
+ *
+ * <p>Il grafo è immutabile e viene sostituito atomicamente a ogni aggiornamento. Gli
+ * aggiornamenti sono incrementali: vengono rilette solo le righe dei libri con nuovi consigli
+ * (id superiore all'ultimo letto) o segnalati dal server dopo un salvataggio
+ * ({@link #markDirty(int)}); le altre righe vengono copiate dal grafo precedente.
+ * I consigli eliminati da altri processi sono recepiti alla ricostruzione completa, eseguita
+ * ogni {@code rebuildMinutes} minuti.</p>
+ *
+ * <p>Configurazione tramite proprietà di sistema:</p>
+ * <ul>
+ *   <li>{@code bookrecommender.recommendationGraph.refreshSeconds} - intervallo tra due aggiornamenti (predefinito 60)</li>
+ *   <li>{@code bookrecommender.recommendationGraph.rebuildMinutes} - intervallo tra due ricostruzioni complete (predefinito 60)</li>
+ * </ul>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class RecommendationGraph {
+
+    /**
+     * Intervallo predefinito, in secondi, tra due aggiornamenti incrementali.
+     */
+    private static final long DEFAULT_REFRESH_SECONDS = 60;
+
+    /**
+     * Intervallo predefinito, in minuti, tra due ricostruzioni complete.
+     */
+    private static final long DEFAULT_REBUILD_MINUTES = 60;
+
+    /**
+     * Probabilità di ripartire dal libro iniziale a ogni passo del PageRank personalizzato.
+     */
+    private static final float RESTART_PROBABILITY = 0.15f;
+
+    /**
+     * Residuo sotto il quale il forward push smette di propagare: limita il lavoro di una
+     * richiesta a circa 1 / (RESTART_PROBABILITY * PUSH_THRESHOLD) passi.
+     */
+    private static final float PUSH_THRESHOLD = 1e-4f;
+
+    /**
+     * Numero massimo di array di lavoro conservati tra le richieste: le visite in corso
+     * contemporaneamente oltre questo numero usano array temporanei.
+     */
+    private static final int MAX_POOLED_SCRATCH = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Array vuoto restituito quando un libro non ha libri collegati.
+     */
+    private static final int[] NO_BOOKS = new int[0];
+
+    /**
+     * Istanza Singleton del grafo.
+     */
+    private static RecommendationGraph instance;
+
+    /** Intervallo tra due ricostruzioni complete in millisecondi */
+    private final long rebuildMillis =
+            Long.getLong("bookrecommender.recommendationGraph.rebuildMinutes", DEFAULT_REBUILD_MINUTES) * 60_000;
+
+    /**
+     * Grafo corrente, null finché la prima costruzione non è terminata.
+     */
+    private volatile Graph graph;
+
+    /**
+     * Scheduler che esegue la costruzione iniziale e gli aggiornamenti periodici.
+     */
+    private ScheduledExecutorService refresher;
+
+    /** Libri di partenza dei consigli salvati dopo l'ultimo aggiornamento */
+    private int[] dirtyBooks = new int[16];
+    /** Numero di elementi validi di {@link #dirtyBooks} */
+    private int dirtyCount = 0;
+
+    /** Impedisce due aggiornamenti contemporanei */
+    private final Object refreshLock = new Object();
+    /** Istante della prossima ricostruzione completa */
+    private long rebuildAt = 0;
+
+    /**
+     * Array di lavoro delle visite non in uso, riutilizzati tra le richieste.
+     */
+    private final ArrayDeque<Scratch> scratchPool = new ArrayDeque<>();
+
+    /**
+     * Costruttore privato per impedire l'istanziazione diretta (pattern Singleton).
+     */
+    private RecommendationGraph() {
+    }
+
+    /**
+     * Ottiene l'istanza singleton del grafo.
+     *
+     * @return l'istanza singleton
+     */
+    public static synchronized RecommendationGraph getInstance() {
+        if (instance == null) {
+            instance = new RecommendationGraph();
+        }
+        return instance;
+    }
+
+    /**
+     * Avvia in background la costruzione del grafo e il suo aggiornamento periodico.
+     * Le chiamate successive alla prima non hanno effetto.
+     */
+    public synchronized void start() {
+        if (refresher != null) {
+            return;
+        }
+
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "recommendation-graph");
+            t.setDaemon(true);
+            return t;
+        });
+
+        long period = Long.getLong("bookrecommender.recommendationGraph.refreshSeconds", DEFAULT_REFRESH_SECONDS);
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (SQLException e) {
+                // Gestione silenziosa dell'errore - si riproverà al prossimo aggiornamento,
+                // nel frattempo resta in uso il grafo precedente
+            }
+        }, 0, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Ferma l'aggiornamento periodico e libera il grafo.
+     */
+    public synchronized void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+        graph = null;
+        dirtyCount = 0;
+    }
+
+    /**
+     * Indica se il grafo è stato costruito.
+     *
+     * @return true se il grafo è pronto
+     */
+    public boolean isReady() {
+        return graph != null;
+    }
+
+    /**
+     * @return Il numero di archi del grafo, 0 se non è pronto
+     */
+    public int getEdgeCount() {
+        Graph current = graph;
+        return current == null ? 0 : current.targets.length;
+    }
+
+    /**
+     * Segnala che i consigli che partono da un libro sono cambiati. La sua riga viene riletta
+     * al prossimo aggiornamento.
+     *
+     * @param bookId L'id del libro di partenza
+     */
+    public synchronized void markDirty(int bookId) {
+        if (refresher == null) {
+            return;
+        }
+        if (dirtyCount == dirtyBooks.length) {
+            dirtyBooks = Arrays.copyOf(dirtyBooks, dirtyCount * 2);
+        }
+        dirtyBooks[dirtyCount++] = bookId;
+    }
+
+    /**
+     * Restituisce i libri con il PageRank personalizzato più alto partendo da un libro: la
+     * probabilità che un lettore che segue i consigli, e a ogni passo torna al libro iniziale
+     * con probabilità {@link #RESTART_PROBABILITY}, si trovi su ciascun libro.
+     *
+     * @param bookId L'id del libro di partenza
+     * @param limit Numero massimo di libri da restituire
+     * @return Gli id dei libri, vuoto se il libro non ha consigli o il grafo non è pronto
+     */
+    public int[] getPersonalizedPageRank(int bookId, int limit) {
+        Graph current = graph;
+        if (current == null || !current.hasEdges(bookId)) {
+            return NO_BOOKS;
+        }
+
+        Scratch work = borrowScratch(current.size());
+        int[] result = push(current, work, bookId, limit);
+        // In caso di errore gli array potrebbero non essere azzerati: non vengono restituiti
+        returnScratch(work);
+        return result;
+    }
+
+    /**
+     * Esegue il forward push dal libro indicato usando gli array di lavoro ricevuti.
+     */
+    private static int[] push(Graph current, Scratch work, int bookId, int limit) {
+        float[] estimate = work.estimate;
+        float[] residual = work.residual;
+        IntQueue queue = new IntQueue();
+        residual[bookId] = 1;
+        work.touch(bookId);
+        queue.add(bookId);
+        work.queued[bookId] = true;
+
+        while (!queue.isEmpty()) {
+            int book = queue.poll();
+            work.queued[book] = false;
+            float mass = residual[book];
+            residual[book] = 0;
+            estimate[book] += RESTART_PROBABILITY * mass;
+
+            float spread = (1 - RESTART_PROBABILITY) * mass;
+            float total = current.totalWeight(book);
+            for (int pass = 0; pass < 2; pass++) {
+                int[] offsets = pass == 0 ? current.offsets : current.inOffsets;
+                int[] linked = pass == 0 ? current.targets : current.sources;
+                float[] weights = pass == 0 ? current.weights : current.inWeights;
+                for (int e = offsets[book]; e < offsets[book + 1]; e++) {
+                    int other = linked[e];
+                    work.touch(other);
+                    residual[other] += spread * weights[e] / total;
+                    if (residual[other] > PUSH_THRESHOLD && !work.queued[other]) {
+                        work.queued[other] = true;
+                        queue.add(other);
+                    }
+                }
+            }
+        }
+
+        return work.top(bookId, limit);
+    }
+
+    /**
+     * Prende in prestito gli array di lavoro di una visita, creandoli se non ce ne sono di liberi.
+     *
+     * @param size Numero di libri del grafo
+     * @return Gli array di lavoro, azzerati
+     */
+    private Scratch borrowScratch(int size) {
+        Scratch work;
+        synchronized (scratchPool) {
+            work = scratchPool.pollFirst();
+        }
+        if (work == null) {
+            work = new Scratch();
+        }
+        work.ensureCapacity(size);
+        return work;
+    }
+
+    /**
+     * Restituisce gli array di lavoro di una visita; vengono scartati se l'insieme è pieno.
+     *
+     * @param work Gli array di lavoro, già azzerati da {@link Scratch#top(int, int)}
+     */
+    private void returnScratch(Scratch work) {
+        synchronized (scratchPool) {
+            if (scratchPool.size() < MAX_POOLED_SCRATCH) {
+                scratchPool.addFirst(work);
+            }
+        }
+    }
+
+    /**
+     * Aggiorna il grafo con i consigli salvati dall'ultimo aggiornamento, oppure lo ricostruisce
+     * da zero alla prima chiamata e allo scadere di {@code rebuildMinutes}.
+     *
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public void refresh() throws SQLException {
+        synchronized (refreshLock) {
+            int[] dirty;
+            synchronized (this) {
+                dirty = Arrays.copyOf(dirtyBooks, dirtyCount);
+                dirtyCount = 0;
+            }
+
+            Graph previous = graph;
+            boolean rebuild = previous == null || System.currentTimeMillis() >= rebuildAt;
+            Graph next;
+            try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+                int watermark = queryMaxId(conn);
+                if (rebuild) {
+                    next = Graph.build(new int[0], new int[0][], new float[0][], watermark, 0);
+                    next = next.replaceRows(loadRows(conn, null, watermark));
+                } else {
+                    IntList changed = new IntList();
+                    for (int bookId : dirty) {
+                        changed.add(bookId);
+                    }
+                    for (int bookId : querySourcesAfter(conn, previous.watermark, watermark)) {
+                        changed.add(bookId);
+                    }
+                    int[] sources = Arrays.stream(changed.toArray()).distinct().toArray();
+                    if (sources.length == 0 && watermark == previous.watermark) {
+                        return;
+                    }
+                    Rows rows = loadRows(conn, sources, watermark);
+                    // Le righe rilette ma senza consigli sono state svuotate
+                    for (int source : sources) {
+                        rows.ensure(source);
+                    }
+                    next = previous.withWatermark(watermark).replaceRows(rows);
+                }
+            }
+
+            if (rebuild) {
+                rebuildAt = System.currentTimeMillis() + rebuildMillis;
+            }
+            synchronized (this) {
+                if (refresher != null) {
+                    graph = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return L'id più alto della tabella dei consigli
+     */
+    private static int queryMaxId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM book_recommendations")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * @return I libri di partenza dei consigli con id compreso tra i due valori
+     */
+    private static int[] querySourcesAfter(Connection conn, int after, int upTo) throws SQLException {
+        String sql = "SELECT DISTINCT source_book_id FROM book_recommendations WHERE id > ? AND id <= ?";
+        IntList sources = new IntList();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, after);
+            pstmt.setInt(2, upTo);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    sources.add(rs.getInt(1));
+                }
+            }
+        }
+        return sources.toArray();
+    }
+
+    /**
+     * Legge gli archi uscenti dei libri indicati (di tutti se {@code sources} è null), con il
+     * numero di utenti che hanno dato ciascun consiglio, fino all'id indicato.
+     */
+    private static Rows loadRows(Connection conn, int[] sources, int upTo) throws SQLException {
+        Rows rows = new Rows();
+        if (sources != null && sources.length == 0) {
+            return rows;
+        }
+        String filter = sources == null ? ""
+                : " AND source_book_id IN (" + String.join(", ", Collections.nCopies(sources.length, "?")) + ")";
+        String sql = "SELECT source_book_id, recommended_book_id, COUNT(DISTINCT user_id) AS recommenders " +
+                "FROM book_recommendations WHERE id <= ?" + filter +
+                " GROUP BY source_book_id, recommended_book_id ORDER BY source_book_id, recommended_book_id";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, upTo);
+            if (sources != null) {
+                for (int i = 0; i < sources.length; i++) {
+                    pstmt.setInt(i + 2, sources[i]);
+                }
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int source = rs.getInt("source_book_id");
+                    int target = rs.getInt("recommended_book_id");
+                    if (source != target) {
+                        rows.add(source, target, rs.getInt("recommenders"));
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Grafo immutabile in formato CSR, con il suo trasposto.
+     */
+    private static final class Graph {
+        /** Archi uscenti: il libro b occupa le posizioni da offsets[b] a offsets[b + 1] */
+        private final int[] offsets;
+        private final int[] targets;
+        private final float[] weights;
+        /** Archi entranti, nello stesso formato */
+        private final int[] inOffsets;
+        private final int[] sources;
+        private final float[] inWeights;
+        /** Somma dei pesi degli archi uscenti ed entranti di ciascun libro */
+        private final float[] totals;
+        /** Id più alto dei consigli già letti */
+        private final int watermark;
+
+        private Graph(int[] offsets, int[] targets, float[] weights, int watermark) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+            this.watermark = watermark;
+
+            int size = offsets.length - 1;
+            inOffsets = new int[size + 1];
+            sources = new int[targets.length];
+            inWeights = new float[targets.length];
+            totals = new float[size];
+
+            // Trasposizione con un counting sort sugli id dei libri consigliati
+            for (int target : targets) {
+                inOffsets[target + 1]++;
+            }
+            for (int b = 0; b < size; b++) {
+                inOffsets[b + 1] += inOffsets[b];
+            }
+            int[] next = Arrays.copyOf(inOffsets, size);
+            for (int b = 0; b < size; b++) {
+                for (int e = offsets[b]; e < offsets[b + 1]; e++) {
+                    int position = next[targets[e]]++;
+                    sources[position] = b;
+                    inWeights[position] = weights[e];
+                    totals[b] += weights[e];
+                    totals[targets[e]] += weights[e];
+                }
+            }
+        }
+
+        /**
+         * Costruisce un grafo da righe già ordinate per libro di partenza.
+         */
+        static Graph build(int[] rowIds, int[][] rowTargets, float[][] rowWeights, int watermark, int minSize) {
+            int size = minSize;
+            for (int i = 0; i < rowIds.length; i++) {
+                size = Math.max(size, rowIds[i] + 1);
+                for (int target : rowTargets[i]) {
+                    size = Math.max(size, target + 1);
+                }
+            }
+            int[] offsets = new int[size + 1];
+            int edges = 0;
+            for (int[] row : rowTargets) {
+                edges += row.length;
+            }
+            int[] targets = new int[edges];
+            float[] weights = new float[edges];
+            int position = 0;
+            int row = 0;
+            for (int b = 0; b < size; b++) {
+                offsets[b] = position;
+                if (row < rowIds.length && rowIds[row] == b) {
+                    System.arraycopy(rowTargets[row], 0, targets, position, rowTargets[row].length);
+                    System.arraycopy(rowWeights[row], 0, weights, position, rowWeights[row].length);
+                    position += rowTargets[row].length;
+                    row++;
+                }
+            }
+            offsets[size] = position;
+            return new Graph(offsets, targets, weights, watermark);
+        }
+
+        /**
+         * Restituisce un nuovo grafo in cui le righe indicate sostituiscono quelle correnti.
+         */
+        Graph replaceRows(Rows rows) {
+            int[] ids = rows.sortedIds();
+            int size = size();
+            for (int id : ids) {
+                size = Math.max(size, id + 1);
+            }
+
+            List<int[]> rowTargets = new ArrayList<>();
+            List<float[]> rowWeights = new ArrayList<>();
+            IntList rowIds = new IntList();
+            int changed = 0;
+            for (int b = 0; b < size; b++) {
+                int[] newTargets;
+                float[] newWeights;
+                if (changed < ids.length && ids[changed] == b) {
+                    newTargets = rows.targets(b);
+                    newWeights = rows.weights(b);
+                    changed++;
+                } else if (b < size()) {
+                    newTargets = Arrays.copyOfRange(targets, offsets[b], offsets[b + 1]);
+                    newWeights = Arrays.copyOfRange(weights, offsets[b], offsets[b + 1]);
+                } else {
+                    continue;
+                }
+                if (newTargets.length > 0) {
+                    rowIds.add(b);
+                    rowTargets.add(newTargets);
+                    rowWeights.add(newWeights);
+                }
+            }
+            return build(rowIds.toArray(), rowTargets.toArray(new int[0][]), rowWeights.toArray(new float[0][]),
+                    watermark, size);
+        }
+
+        Graph withWatermark(int newWatermark) {
+            return new Graph(offsets, targets, weights, newWatermark);
+        }
+
+        int size() {
+            return offsets.length - 1;
+        }
+
+        boolean hasEdges(int bookId) {
+            return bookId >= 0 && bookId < size() && totals[bookId] > 0;
+        }
+
+        float totalWeight(int bookId) {
+            return totals[bookId];
+        }
+    }
+
+    /**
+     * Righe del grafo rilette dal database, per libro di partenza.
+     */
+    private static final class Rows {
+        private final Map<Integer, IntList> targets = new HashMap<>();
+        private final Map<Integer, IntList> weights = new HashMap<>();
+
+        void add(int source, int target, int recommenders) {
+            ensure(source);
+            targets.get(source).add(target);
+            weights.get(source).add(recommenders);
+        }
+
+        void ensure(int source) {
+            targets.computeIfAbsent(source, k -> new IntList());
+            weights.computeIfAbsent(source, k -> new IntList());
+        }
+
+        int[] sortedIds() {
+            return targets.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+
+        int[] targets(int source) {
+            return targets.get(source).toArray();
+        }
+
+        float[] weights(int source) {
+            int[] counts = weights.get(source).toArray();
+            float[] values = new float[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                values[i] = counts[i];
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Array di lavoro di una visita, indicizzati per id del libro. Dopo ogni visita vengono
+     * azzerate solo le posizioni toccate.
+     */
+    private static final class Scratch {
+        private float[] estimate = new float[0];
+        private float[] residual = new float[0];
+        private boolean[] queued = new boolean[0];
+        private boolean[] touched = new boolean[0];
+        private final IntList touchedList = new IntList();
+
+        void ensureCapacity(int size) {
+            if (estimate.length < size) {
+                estimate = new float[size];
+                residual = new float[size];
+                queued = new boolean[size];
+                touched = new boolean[size];
+            }
+        }
+
+        void touch(int bookId) {
+            if (!touched[bookId]) {
+                touched[bookId] = true;
+                touchedList.add(bookId);
+            }
+        }
+
+        /**
+         * Restituisce i libri con la stima più alta, escluso quello iniziale, e azzera gli array.
+         */
+        int[] top(int bookId, int limit) {
+            int[] bestIds = new int[limit];
+            float[] bestScores = new float[limit];
+            int bestCount = 0;
+
+            int[] visited = touchedList.toArray();
+            for (int book : visited) {
+                float score = estimate[book];
+                estimate[book] = 0;
+                residual[book] = 0;
+                queued[book] = false;
+                touched[book] = false;
+                if (book == bookId || score <= 0 || limit == 0) {
+                    continue;
+                }
+                if (bestCount == limit && !isBetter(score, book, bestScores[limit - 1], bestIds[limit - 1])) {
+                    continue;
+                }
+                int position = Math.min(bestCount, limit - 1);
+                while (position > 0 && isBetter(score, book, bestScores[position - 1], bestIds[position - 1])) {
+                    bestIds[position] = bestIds[position - 1];
+                    bestScores[position] = bestScores[position - 1];
+                    position--;
+                }
+                bestIds[position] = book;
+                bestScores[position] = score;
+                bestCount = Math.min(bestCount + 1, limit);
+            }
+            touchedList.clear();
+            return Arrays.copyOf(bestIds, bestCount);
+        }
+
+        private static boolean isBetter(float score, int bookId, float otherScore, int otherId) {
+            return score > otherScore || (score == otherScore && bookId < otherId);
+        }
+    }
+
+    /**
+     * Lista di interi su array, senza conversione in oggetti.
+     */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Coda di interi su array circolare.
+     */
+    private static final class IntQueue {
+        private int[] values = new int[64];
+        private int head = 0;
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                int[] grown = new int[size * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = values[(head + i) % values.length];
+                }
+                values = grown;
+                head = 0;
+            }
+            values[(head + size) % values.length] = value;
+            size++;
+        }
+
+        int poll() {
+            int value = values[head];
+            head = (head + 1) % values.length;
+            size--;
+            return value;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
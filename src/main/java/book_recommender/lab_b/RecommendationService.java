@@ -0,0 +1,145 @@
+package book_recommender.lab_b;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Servizio per la lettura e il salvataggio dei libri consigliati dagli utenti.
+ *
+ * <p>Se il client è collegato al server dei libri ({@link BookServerClient}) le operazioni
+ * vengono inoltrate al server, altrimenti vengono eseguite direttamente sul database.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class RecommendationService {
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private RecommendationService() {
+    }
+
+    /**
+     * Restituisce i titoli dei libri consigliati da un utente per un libro.
+     *
+     * @param userId L'utente
+     * @param sourceTitle Il titolo del libro per cui sono stati dati i consigli
+     * @return I titoli dei libri consigliati
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public static List<String> getRecommendations(String userId, String sourceTitle) throws SQLException {
+        BookServerClient server = BookServerClient.active();
+        if (server != null) {
+            try {
+                return server.getRecommendations(userId, sourceTitle);
+            } catch (IOException e) {
+                // Server non raggiungibile o in ritardo: la richiesta viene eseguita sul database
+            }
+        }
+        return queryRecommendations(userId, sourceTitle);
+    }
+
+    /**
+     * Sostituisce i libri consigliati da un utente per un libro.
+     *
+     * @param userId L'utente
+     * @param sourceTitle Il titolo del libro per cui vengono dati i consigli
+     * @param titles I titoli dei libri consigliati
+     * @throws SQLException se il libro non esiste o si verifica un errore di accesso al database
+     */
+    public static void saveRecommendations(String userId, String sourceTitle, Collection<String> titles) throws SQLException {
+        BookServerClient server = BookServerClient.active();
+        if (server != null) {
+            try {
+                server.saveRecommendations(userId, sourceTitle, titles);
+                BookPageCache.getClientInstance().invalidate(sourceTitle);
+                return;
+            } catch (IOException e) {
+                // Server non raggiungibile o in ritardo: il salvataggio viene eseguito sul database
+            }
+        }
+        storeRecommendations(userId, sourceTitle, titles);
+        BookPageCache.getClientInstance().invalidate(sourceTitle);
+    }
+
+    /**
+     * Legge dal database i titoli consigliati da un utente per un libro.
+     */
+    static List<String> queryRecommendations(String userId, String sourceTitle) throws SQLException {
+        List<String> titles = new ArrayList<>();
+        Integer sourceBookId = TitleResolver.getInstance().resolve(sourceTitle);
+        if (sourceBookId == null) {
+            return titles;
+        }
+
+        String sql = "SELECT b.title FROM books b " +
+                "JOIN book_recommendations br ON b.id = br.recommended_book_id " +
+                "WHERE br.user_id = ? AND br.source_book_id = ?";
+
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            pstmt.setInt(2, sourceBookId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    titles.add(rs.getString("title"));
+                }
+            }
+        }
+        return titles;
+    }
+
+    /**
+     * Sostituisce sul database i consigli di un utente per un libro in un'unica transazione:
+     * prima elimina quelli esistenti, poi inserisce i nuovi in un unico batch. Dopo il commit
+     * la pagina del libro di partenza viene scartata da {@link BookPageCache}.
+     */
+    static void storeRecommendations(String userId, String sourceTitle, Collection<String> titles) throws SQLException {
+        Integer sourceBookId = TitleResolver.getInstance().resolve(sourceTitle);
+        if (sourceBookId == null) {
+            throw new SQLException("Libro non trovato: " + sourceTitle);
+        }
+
+        // Ricava gli ID dei libri consigliati dai titoli, senza una query per ogni libro
+        Set<Integer> recommendedBookIds = new LinkedHashSet<>(TitleResolver.getInstance().resolveAll(titles).values());
+
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            // Disabilita l'auto-commit per gestire l'operazione come una transazione
+            conn.setAutoCommit(false);
+
+            try {
+                String deleteSql = "DELETE FROM book_recommendations WHERE user_id = ? AND source_book_id = ?";
+                try (PreparedStatement pstmt = conn.prepareStatement(deleteSql)) {
+                    pstmt.setString(1, userId);
+                    pstmt.setInt(2, sourceBookId);
+                    pstmt.executeUpdate();
+                }
+
+                String insertSql = "INSERT INTO book_recommendations (user_id, source_book_id, recommended_book_id) VALUES (?, ?, ?)";
+                try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+                    for (int recommendedBookId : recommendedBookIds) {
+                        insertStmt.setString(1, userId);
+                        insertStmt.setInt(2, sourceBookId);
+                        insertStmt.setInt(3, recommendedBookId);
+                        insertStmt.addBatch();
+                    }
+                    insertStmt.executeBatch();
+                }
+
+                // Conferma la transazione
+                conn.commit();
+                BookPageCache.getInstance().invalidate(sourceBookId);
+                ItemSimilarityIndex.getInstance().markDirty(sourceBookId);
+                RecommendationGraph.getInstance().markDirty(sourceBookId);
+            } catch (SQLException e) {
+                // In caso di errore, annulla tutte le operazioni della transazione
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
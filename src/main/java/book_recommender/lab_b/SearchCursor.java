@@ -0,0 +1,107 @@
+package book_recommender.lab_b;
+
+/**
+ * Posizione all'interno dei risultati di una ricerca paginata.
+ *
+ * <p>I risultati sono ordinati per titolo e, a parità di titolo, per id. Il cursore
+ * memorizza la coppia (titolo, id) dell'ultimo libro restituito: la pagina successiva
+ * contiene i libri che seguono questa coppia nell'ordinamento (paginazione keyset).
+ * A differenza di OFFSET, il costo di ogni pagina non cresce con il numero di pagine già lette.</p>
+ *
+ * <p>Il cursore ricorda anche da dove sono state lette le pagine ({@link Source}): il database
+ * confronta i titoli con la propria collation, l'indice in memoria carattere per carattere, e i
+ * due ordinamenti possono differire (maiuscole, accenti, punteggiatura). Le pagine successive
+ * vengono quindi lette sempre dalla stessa fonte della prima, anche se nel frattempo l'indice
+ * è diventato pronto, così nessun libro viene saltato o ripetuto.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class SearchCursor {
+
+    /**
+     * Fonte delle pagine di una ricerca.
+     */
+    public enum Source {
+        /** Query sul database (anche tramite il server dei libri), ordinate con la collation del database */
+        DATABASE,
+        /** Indice in memoria ({@link BookSearchIndex}), ordinato con {@link String#compareTo} */
+        INDEX
+    }
+
+    /** Titolo dell'ultimo libro restituito */
+    private final String title;
+    /** Id dell'ultimo libro restituito */
+    private final int id;
+    /** Fonte delle pagine */
+    private final Source source;
+
+    /**
+     * Crea un cursore sulle pagine lette dal database posizionato dopo il libro indicato,
+     * ad esempio quello ricevuto dal server dei libri.
+     *
+     * @param title Titolo dell'ultimo libro restituito
+     * @param id Id dell'ultimo libro restituito
+     */
+    public SearchCursor(String title, int id) {
+        this(title, id, Source.DATABASE);
+    }
+
+    /**
+     * Crea un cursore posizionato dopo il libro indicato.
+     *
+     * @param title Titolo dell'ultimo libro restituito
+     * @param id Id dell'ultimo libro restituito
+     * @param source Fonte delle pagine
+     */
+    public SearchCursor(String title, int id, Source source) {
+        this.title = title;
+        this.id = id;
+        this.source = source;
+    }
+
+    /**
+     * Crea un cursore posizionato dopo il libro indicato.
+     *
+     * @param book L'ultimo libro restituito
+     * @param source Fonte delle pagine
+     * @return Il cursore
+     */
+    public static SearchCursor after(Book book, Source source) {
+        return new SearchCursor(book.getTitle(), book.getId(), source);
+    }
+
+    /**
+     * @return il titolo dell'ultimo libro restituito
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return l'id dell'ultimo libro restituito
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return la fonte delle pagine
+     */
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * Verifica se un libro segue questo cursore nell'ordinamento (titolo, id) dell'indice in
+     * memoria ({@link BookSearchIndex#TITLE_ID_ORDER}). Per i cursori sul database il confronto
+     * va fatto dal database.
+     *
+     * @param book Il libro da verificare
+     * @return true se il libro appartiene alle pagine successive
+     */
+    public boolean precedes(Book book) {
+        int cmp = book.getTitle().compareTo(title);
+        return cmp > 0 || (cmp == 0 && book.getId() > id);
+    }
+}
@@ -0,0 +1,155 @@
+package book_recommender.lab_b;
+
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Gestisce gli indici utilizzati dalle ricerche testuali sui libri.
+ *
+ * <p>Le ricerche per titolo e per autore usano un confronto parziale
+ * ({@code LOWER(col) LIKE '%termine%'}) che non può sfruttare un normale indice B-tree.
+ * Su PostgreSQL vengono quindi creati indici GIN a trigrammi (estensione {@code pg_trgm})
+ * sulle espressioni {@code lower(title)} e {@code lower(authors)}, che il planner utilizza
+ * per i pattern LIKE con caratteri jolly iniziali.</p>
+ *
+ * <p>Su database diversi da PostgreSQL (ad esempio H2 usato per i test e i benchmark)
+ * gli indici a trigrammi non sono disponibili: in questo caso vengono mantenuti i soli
+ * indici B-tree e le ricerche parziali restano a scansione sequenziale.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class SearchIndexes {
+
+    /**
+     * Testo cercato durante la verifica dei piani di esecuzione.
+     * Deve contenere almeno tre caratteri per generare dei trigrammi.
+     */
+    private static final String PROBE_TERM = "%harry%";
+
+    /**
+     * Costruttore privato: la classe espone solo metodi statici.
+     */
+    private SearchIndexes() {
+    }
+
+    /**
+     * Crea gli indici per le ricerche testuali sulla tabella books.
+     * Su PostgreSQL abilita l'estensione pg_trgm e crea gli indici GIN a trigrammi;
+     * se l'estensione non può essere installata (permessi insufficienti) la ricerca
+     * continua a funzionare senza indice.
+     *
+     * @param conn Connessione al database
+     * @throws SQLException se si verifica un errore durante la creazione degli indici
+     */
+    public static void createSearchIndexes(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            if (!isPostgreSQL(conn)) {
+                // Fallback H2: nessun indice a trigrammi, restano gli indici B-tree sulle colonne
+                return;
+            }
+
+            try {
+                stmt.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            } catch (SQLException e) {
+                System.err.println("Impossibile abilitare l'estensione pg_trgm, le ricerche parziali "
+                        + "useranno la scansione sequenziale: " + e.getMessage());
+                return;
+            }
+
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_title_trgm ON books USING gin (lower(title) gin_trgm_ops)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_books_authors_trgm ON books USING gin (lower(authors) gin_trgm_ops)");
+        }
+    }
+
+    /**
+     * Verifica con EXPLAIN che le query di ricerca possano usare gli indici a trigrammi.
+     * La scansione sequenziale viene disabilitata per la sola transazione di verifica, così
+     * il piano riflette la disponibilità dell'indice e non la dimensione attuale della tabella.
+     * Per ogni query che ricade comunque in una scansione sequenziale viene stampato un avviso.
+     *
+     * @param conn Connessione al database
+     * @return true se tutte le query di ricerca usano un indice (o se il database non è PostgreSQL)
+     */
+    public static boolean verifySearchPlans(Connection conn) {
+        try {
+            if (!isPostgreSQL(conn)) {
+                return true;
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("ricerca per titolo", BookService.TITLE_SEARCH_SQL);
+        queries.put("ricerca per autore", BookService.AUTHOR_SEARCH_SQL);
+
+        boolean allIndexed = true;
+        boolean originalAutoCommit = true;
+
+        try {
+            originalAutoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET LOCAL enable_seqscan = off");
+            }
+
+            for (Map.Entry<String, String> query : queries.entrySet()) {
+                String plan = explain(conn, query.getValue());
+                if (plan.contains("Seq Scan on books")) {
+                    allIndexed = false;
+                    System.err.println("Attenzione: la " + query.getKey()
+                            + " non usa gli indici a trigrammi e scansiona l'intera tabella books.\n" + plan);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Impossibile verificare i piani delle query di ricerca: " + e.getMessage());
+            allIndexed = false;
+        } finally {
+            try {
+                conn.rollback();
+                conn.setAutoCommit(originalAutoCommit);
+            } catch (SQLException e) {
+                // Ignora errori durante il ripristino della connessione
+            }
+        }
+
+        return allIndexed;
+    }
+
+    /**
+     * Restituisce il piano di esecuzione di una query di ricerca.
+     *
+     * @param conn Connessione al database
+     * @param sql Query con un solo parametro per il pattern di ricerca
+     * @return Il piano di esecuzione in formato testo
+     * @throws SQLException se si verifica un errore durante l'esecuzione di EXPLAIN
+     */
+    private static String explain(Connection conn, String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            pstmt.setString(1, PROBE_TERM);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+        }
+
+        return plan.toString();
+    }
+
+    /**
+     * Verifica se la connessione punta a un database PostgreSQL.
+     *
+     * @param conn Connessione al database
+     * @return true se il database è PostgreSQL
+     * @throws SQLException se non è possibile leggere i metadati della connessione
+     */
+    static boolean isPostgreSQL(Connection conn) throws SQLException {
+        return "PostgreSQL".equalsIgnoreCase(conn.getMetaData().getDatabaseProductName());
+    }
+}
@@ -0,0 +1,50 @@
+package book_recommender.lab_b;
+
+import java.util.List;
+
+/**
+ * Pagina di risultati di una ricerca paginata.
+ * Contiene i libri della pagina e il cursore da cui leggere la pagina successiva.
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class SearchPage {
+
+    /** Libri della pagina, ordinati per titolo e id */
+    private final List<Book> books;
+    /** Cursore della pagina successiva, null se questa è l'ultima pagina */
+    private final SearchCursor nextCursor;
+
+    /**
+     * Crea una pagina di risultati.
+     *
+     * @param books Libri della pagina
+     * @param nextCursor Cursore della pagina successiva (null se non ci sono altre pagine)
+     */
+    public SearchPage(List<Book> books, SearchCursor nextCursor) {
+        this.books = books;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return i libri della pagina
+     */
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    /**
+     * @return il cursore della pagina successiva, oppure null se questa è l'ultima pagina
+     */
+    public SearchCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return true se esistono altre pagine dopo questa
+     */
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -1,6 +1,8 @@
 package book_recommender.lab_b;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
 import javafx.event.ActionEvent;
 import java.util.Arrays;
 import javafx.fxml.FXML;
@@ -20,6 +22,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -73,6 +76,8 @@ public class ServerInterfaceController {
     private final List<Socket> connectedClientSockets = new ArrayList<>();
     /** Directory temporanea per i file scaricati */
     private static final String TEMP_DIR = "temp_data/";
+    /** Numero massimo di query mostrate nella tabella delle metriche (le più costose) */
+    private static final int QUERY_METRICS_ROWS = 20;
 
     /** Label per lo stato del database */
     @FXML
@@ -83,6 +88,33 @@ public class ServerInterfaceController {
     /** Label per il conteggio dei client */
     @FXML
     private Label clientCountLabel;
+    /** Label con il riepilogo delle query eseguite */
+    @FXML
+    private Label queryStatsLabel;
+    /** Tabella delle metriche per modello di query */
+    @FXML
+    private TableView<QueryMetrics.StatementSnapshot> queryMetricsTable;
+    /** Colonna del modello di query */
+    @FXML
+    private TableColumn<QueryMetrics.StatementSnapshot, String> queryTemplateColumn;
+    /** Colonna del numero di esecuzioni */
+    @FXML
+    private TableColumn<QueryMetrics.StatementSnapshot, Long> queryCountColumn;
+    /** Colonna del numero di errori */
+    @FXML
+    private TableColumn<QueryMetrics.StatementSnapshot, Long> queryErrorsColumn;
+    /** Colonna delle righe lette o modificate */
+    @FXML
+    private TableColumn<QueryMetrics.StatementSnapshot, Long> queryRowsColumn;
+    /** Colonna della latenza mediana */
+    @FXML
+    private TableColumn<QueryMetrics.StatementSnapshot, String> queryP50Column;
+    /** Colonna del 99° percentile della latenza */
+    @FXML
+    private TableColumn<QueryMetrics.StatementSnapshot, String> queryP99Column;
+    /** Colonna della latenza massima */
+    @FXML
+    private TableColumn<QueryMetrics.StatementSnapshot, String> queryMaxColumn;
     /** Label per l'ora di avvio */
     @FXML
     private Label startTimeLabel;
@@ -117,8 +149,8 @@ public class ServerInterfaceController {
     @FXML
     private Button stopButton;
 
-    /** Socket del server */
-    private ServerSocket serverSocket;
+    /** Server dei libri in ascolto sulla socket del server */
+    private BookServer bookServer;
     /** Thread per il server */
     private Thread serverThread;
     /** Ora di avvio del server */
@@ -240,9 +272,77 @@ public class ServerInterfaceController {
             ngrokPortField.setContextMenu(contextMenu);
         }
 
+        // Configura le colonne della tabella delle metriche delle query
+        if (queryMetricsTable != null) {
+            setupQueryMetricsTable();
+        }
+
         // Il codice rimanente resta lo stesso...
     }
 
+    /**
+     * Collega le colonne della tabella delle metriche ai valori di
+     * {@link QueryMetrics.StatementSnapshot}. Il messaggio dell'ultimo errore di ogni
+     * query compare come tooltip della riga.
+     */
+    private void setupQueryMetricsTable() {
+        queryTemplateColumn.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getTemplate()));
+        queryCountColumn.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getExecutions()));
+        queryErrorsColumn.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getErrors()));
+        queryRowsColumn.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getRows()));
+        queryP50Column.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(formatMillis(c.getValue().getLatencyMillis(50))));
+        queryP99Column.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(formatMillis(c.getValue().getLatencyMillis(99))));
+        queryMaxColumn.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(
+                formatMillis(c.getValue().getLatency().getMax() / 1_000_000.0)));
+
+        queryMetricsTable.setRowFactory(table -> new TableRow<>() {
+            @Override
+            protected void updateItem(QueryMetrics.StatementSnapshot item, boolean empty) {
+                super.updateItem(item, empty);
+                setTooltip(item == null || empty || item.getLastError() == null
+                        ? null
+                        : new Tooltip("Ultimo errore: " + item.getLastError()));
+            }
+        });
+        queryMetricsTable.setPlaceholder(new Label("Nessuna query eseguita"));
+    }
+
+    /**
+     * Aggiorna il pannello delle metriche delle query con gli ultimi valori raccolti.
+     * Va chiamato sul thread di JavaFX.
+     *
+     * @param metrics Le metriche di ogni modello di query
+     */
+    private void updateQueryMetrics(List<QueryMetrics.StatementSnapshot> metrics) {
+        if (queryStatsLabel == null || queryMetricsTable == null) {
+            return;
+        }
+
+        long executions = 0;
+        long errors = 0;
+        LatencyHistogram all = new LatencyHistogram();
+        for (QueryMetrics.StatementSnapshot snapshot : metrics) {
+            executions += snapshot.getExecutions();
+            errors += snapshot.getErrors();
+            all.add(snapshot.getLatency());
+        }
+
+        queryStatsLabel.setText(executions + " executions, " + errors + " errors, p99 "
+                + formatMillis(all.getValueAtPercentile(99) / 1_000_000.0) + " ms");
+        queryMetricsTable.setItems(FXCollections.observableArrayList(
+                metrics.subList(0, Math.min(QUERY_METRICS_ROWS, metrics.size()))));
+    }
+
+    /**
+     * Formatta una durata in millisecondi con due cifre decimali.
+     *
+     * @param millis La durata in millisecondi
+     * @return La durata formattata
+     */
+    private static String formatMillis(double millis) {
+        return String.format(Locale.ROOT, "%.2f", millis);
+    }
+
     /**
      * Gestisce l'evento di avvio del server.
      * Avvia il processo di inizializzazione del server in un thread separato,
@@ -546,9 +646,13 @@ public class ServerInterfaceController {
                 DatabaseManager dbManager = DatabaseManager.getInstance();
                 int count = dbManager.getConnectedClientCount();
 
+                // Le metriche delle query vengono copiate qui, fuori dal thread di JavaFX
+                List<QueryMetrics.StatementSnapshot> metrics = dbManager.getQueryMetrics();
+
                 // Update UI
                 Platform.runLater(() -> {
                     clientCountLabel.setText(String.valueOf(count));
+                    updateQueryMetrics(metrics);
                 });
             } catch (SQLException e) {
 
@@ -622,6 +726,10 @@ public class ServerInterfaceController {
             // Passo 1: Inizializza il progresso
             updateProgress(0.0, "Initializing server...");
 
+            // Il server riceve tutte le modifiche dei libri, quindi può tenere in memoria
+            // le pagine di dettaglio lette dal database
+            BookPageCache.enableDatabaseCache();
+
             // Avvia un socket server anticipatamente
             updateProgress(0.1, "Starting socket server...");
             startSocketServer();
@@ -666,6 +774,25 @@ public class ServerInterfaceController {
                 updateProgress(0.7, "Importing data...");
                 populateDatabase(dbUrl, finalDbUser, finalDbPassword);
 
+                // Passo 5.5: Verifica che le ricerche usino gli indici a trigrammi
+                updateProgress(0.75, "Verifying search indexes...");
+                verifySearchIndexes();
+
+                // Carica in background la mappa titolo → id usata dalle richieste dei client
+                TitleResolver.getInstance().start();
+
+                // Costruisce in background l'indice dei libri simili secondo le valutazioni
+                // e il grafo dei consigli di lettura
+                ItemSimilarityIndex.getInstance().start();
+                RecommendationGraph.getInstance().start();
+
+                // Espone le metriche del server in formato Prometheus
+                try {
+                    MetricsServer.getInstance().start();
+                } catch (IOException e) {
+                    // Gestione silenziosa dell'errore - il server funziona anche senza l'endpoint delle metriche
+                }
+
                 // Passo 6: Crea la tabella active_clients per il tracciamento dei client (già fatto in initializeDatabase)
                 updateProgress(0.8, "Setting up client tracking...");
 
@@ -777,9 +904,10 @@ public class ServerInterfaceController {
      * Questo metodo esegue tutte le operazioni necessarie per una chiusura ordinata del server:
      * - Ferma il monitoraggio dei client connessi
      * - Arresta il tunnel ngrok se attivo
+     * - Chiude il server dei libri attendendo la fine delle richieste in corso
      * - Pulisce il database rimuovendo tutte le tabelle
      * - Elimina i file temporanei scaricati
-     * - Chiude il socket del server e lo scheduler
+     * - Arresta lo scheduler
      * - Aggiorna l'interfaccia utente allo stato "server spento"
      */
     public void cleanupDatabaseAndShutdown() {
@@ -813,6 +941,17 @@ public class ServerInterfaceController {
             }
         }
 
+        // Chiudi il server dei libri lasciando terminare le richieste in corso,
+        // prima di eliminare le tabelle che stanno usando
+        if (bookServer != null) {
+            bookServer.close();
+            bookServer = null;
+        }
+        MetricsServer.getInstance().setBookServer(null);
+        MetricsServer.getInstance().stop();
+        ItemSimilarityIndex.getInstance().stop();
+        RecommendationGraph.getInstance().stop();
+
         // Clean up del database
         cleanDatabase();
 
@@ -822,13 +961,9 @@ public class ServerInterfaceController {
         // Ora procedi con il normale arresto
         serverRunning = false;
 
-        // Chiudi il socket del server se esiste
-        if (serverSocket != null && !serverSocket.isClosed()) {
-            try {
-                serverSocket.close();
-            } catch (IOException e) {
-            }
-        }
+        // I titoli e le pagine in memoria si riferiscono al database appena eliminato
+        TitleResolver.getInstance().stop();
+        BookPageCache.getInstance().invalidateAll();
 
         // Arresta lo scheduler
         if (scheduler != null && !scheduler.isShutdown()) {
@@ -979,6 +1114,7 @@ public class ServerInterfaceController {
             String[] dropStatements = {
                     "DROP TABLE IF EXISTS active_clients CASCADE",
                     "DROP TABLE IF EXISTS book_recommendations CASCADE",
+                    "DROP TABLE IF EXISTS book_rating_stats CASCADE",
                     "DROP TABLE IF EXISTS book_ratings CASCADE",
                     "DROP TABLE IF EXISTS library_books CASCADE",
                     "DROP TABLE IF EXISTS libraries CASCADE",
@@ -998,7 +1134,8 @@ public class ServerInterfaceController {
      * Scarica tutti i file necessari per l'applicazione.
      * Questo metodo scarica da Google Drive tutti i file di dati richiesti dall'applicazione,
      * come le valutazioni dei libri, gli utenti registrati, i libri, le librerie, ecc.
-     * Crea la directory temporanea se non esiste.
+     * Crea la directory temporanea se non esiste. Con la proprietà di sistema
+     * {@code bookrecommender.syntheticData} i file vengono invece generati da {@link DatasetGenerator}.
      *
      * @throws IOException Se si verifica un errore durante il download o la creazione della directory
      */
@@ -1012,6 +1149,12 @@ public class ServerInterfaceController {
             }
         }
 
+        // Dati sintetici al posto dei file scaricati, per le prove di carico senza rete
+        if (Boolean.getBoolean("bookrecommender.syntheticData")) {
+            DatasetGenerator.fromSystemProperties().generate(tempDir);
+            return;
+        }
+
         try {
             // Download all required files
             downloadFromGoogleDrive(VALUTAZIONI_FILE_ID, "ValutazioniLibri.csv");
@@ -1103,114 +1246,9 @@ public class ServerInterfaceController {
         try {
             // Use the DatabaseManager instance instead of direct connection
             DatabaseManager dbManager = DatabaseManager.getInstance();
-            Connection conn = dbManager.getConnection();
-
-            try (Statement stmt = conn.createStatement()) {
-                // Drop existing tables if any (in reverse order to handle foreign keys)
-                String[] dropStatements = {
-                        "DROP TABLE IF EXISTS book_recommendations CASCADE",
-                        "DROP TABLE IF EXISTS book_ratings CASCADE",
-                        "DROP TABLE IF EXISTS library_books CASCADE",
-                        "DROP TABLE IF EXISTS libraries CASCADE",
-                        "DROP TABLE IF EXISTS books CASCADE",
-                        "DROP TABLE IF EXISTS users CASCADE",
-                        "DROP TABLE IF EXISTS active_clients CASCADE"
-                };
-
-                for (String sql : dropStatements) {
-                    stmt.execute(sql);
-                }
-
-                // Create tables in proper order
-                String[] createTableStatements = {
-                        // Users table
-                        "CREATE TABLE IF NOT EXISTS users (" +
-                                "user_id VARCHAR(8) PRIMARY KEY UNIQUE," +
-                                "full_name VARCHAR(100) NOT NULL," +
-                                "fiscal_code VARCHAR(16) NOT NULL," +
-                                "email VARCHAR(100) NOT NULL," +
-                                "password VARCHAR(100) NOT NULL" +
-                                ")",
-
-                        // Books table
-                        "CREATE TABLE IF NOT EXISTS books (" +
-                                "id SERIAL PRIMARY KEY," +
-                                "title TEXT NOT NULL," +
-                                "authors TEXT NOT NULL," +
-                                "category TEXT," +
-                                "publisher TEXT," +
-                                "publish_year INTEGER," +
-                                "UNIQUE(title, authors)" +
-                                ")",
-
-                        // Libraries table
-                        "CREATE TABLE IF NOT EXISTS libraries (" +
-                                "id SERIAL PRIMARY KEY," +
-                                "user_id VARCHAR(8) REFERENCES users(user_id) ON DELETE CASCADE," +
-                                "library_name VARCHAR(100) NOT NULL," +
-                                "UNIQUE(user_id, library_name)" +
-                                ")",
-
-                        // Library_Books table (many-to-many relationship)
-                        "CREATE TABLE IF NOT EXISTS library_books (" +
-                                "library_id INTEGER REFERENCES libraries(id) ON DELETE CASCADE," +
-                                "book_id INTEGER REFERENCES books(id) ON DELETE CASCADE," +
-                                "PRIMARY KEY (library_id, book_id)" +
-                                ")",
-
-                        // Book_Ratings table
-                        "CREATE TABLE IF NOT EXISTS book_ratings (" +
-                                "id SERIAL PRIMARY KEY," +
-                                "user_id VARCHAR(8) REFERENCES users(user_id) ON DELETE CASCADE," +
-                                "book_id INTEGER REFERENCES books(id) ON DELETE CASCADE," +
-                                "style_rating INTEGER CHECK (style_rating >= 1 AND style_rating <= 5)," +
-                                "content_rating INTEGER CHECK (content_rating >= 1 AND content_rating <= 5)," +
-                                "pleasantness_rating INTEGER CHECK (pleasantness_rating >= 1 AND pleasantness_rating <= 5)," +
-                                "originality_rating INTEGER CHECK (originality_rating >= 1 AND originality_rating <= 5)," +
-                                "edition_rating INTEGER CHECK (edition_rating >= 1 AND edition_rating <= 5)," +
-                                "average_rating FLOAT," +
-                                "general_comment TEXT," +         // Commento generale
-                                "style_comment TEXT," +           // Commento sullo stile
-                                "content_comment TEXT," +         // Commento sul contenuto
-                                "pleasantness_comment TEXT," +    // Commento sulla gradevolezza
-                                "originality_comment TEXT," +     // Commento sull'originalità
-                                "edition_comment TEXT," +         // Commento sull'edizione
-                                "UNIQUE(user_id, book_id)" +
-                                ")",
-
-                        // Book_Recommendations table
-                        "CREATE TABLE IF NOT EXISTS book_recommendations (" +
-                                "id SERIAL PRIMARY KEY," +
-                                "user_id VARCHAR(8) REFERENCES users(user_id) ON DELETE CASCADE," +
-                                "source_book_id INTEGER REFERENCES books(id) ON DELETE CASCADE," +
-                                "recommended_book_id INTEGER REFERENCES books(id) ON DELETE CASCADE," +
-                                "UNIQUE(user_id, source_book_id, recommended_book_id)" +
-                                ")",
-
-                        // Active_Clients table
-                        "CREATE TABLE IF NOT EXISTS active_clients (" +
-                                "client_id VARCHAR(50) PRIMARY KEY," +
-                                "connect_time TIMESTAMP NOT NULL" +
-                                ")"
-                };
 
-                for (String sql : createTableStatements) {
-                    stmt.execute(sql);
-                }
-
-                // Create indexes for better performance
-                String[] indexStatements = {
-                        "CREATE INDEX IF NOT EXISTS idx_books_title ON books(title)",
-                        "CREATE INDEX IF NOT EXISTS idx_books_authors ON books(authors)",
-                        "CREATE INDEX IF NOT EXISTS idx_book_ratings_user_id ON book_ratings(user_id)",
-                        "CREATE INDEX IF NOT EXISTS idx_book_ratings_book_id ON book_ratings(book_id)",
-                        "CREATE INDEX IF NOT EXISTS idx_library_books_book_id ON library_books(book_id)",
-                        "CREATE INDEX IF NOT EXISTS idx_library_books_library_id ON library_books(library_id)"
-                };
-
-                for (String sql : indexStatements) {
-                    stmt.execute(sql);
-                }
+            try (Connection conn = dbManager.getConnection()) {
+                DatabaseSchema.recreate(conn);
             }
 
         } catch (SQLException e) {
@@ -1220,9 +1258,9 @@ public class ServerInterfaceController {
 
     /**
      * Popola il database con i dati importati dai file CSV.
-     * Questo metodo importa sequenzialmente tutti i dati dai file scaricati nel database,
-     * seguendo l'ordine corretto per rispettare i vincoli di integrità referenziale.
-     * Utilizza transazioni per garantire la consistenza dei dati.
+     * I file scaricati vengono letti e caricati in parallelo tramite {@link ImportPipeline};
+     * l'unione alle tabelle definitive segue l'ordine richiesto dai vincoli di integrità
+     * referenziale, con una transazione per ogni file.
      *
      * @param dbUrl URL di connessione al database
      * @param dbUser Nome utente per l'autenticazione al database
@@ -1234,50 +1272,61 @@ public class ServerInterfaceController {
         try {
             // Use the DatabaseManager instance instead of direct connection
             DatabaseManager dbManager = DatabaseManager.getInstance();
-            Connection conn = dbManager.getConnection();
-
-            // Disable auto-commit for better performance
-            boolean originalAutoCommit = conn.getAutoCommit();
-            conn.setAutoCommit(false);
-
-            try {
-                // Import books from Data.csv first (this contains all book metadata)
-                importBooks(conn, TEMP_DIR + "Data.csv");
-                conn.commit();
-
-                // Import users from UtentiRegistrati.csv
-                importUsers(conn);
-                conn.commit();
 
-                // Import libraries from Librerie.dati.csv
-                importLibraries(conn);
-                conn.commit();
+            // Each file is read, staged and merged by its own workers on separate pooled connections
+            ImportPipeline pipeline = new ImportPipeline(dbManager.getPool())
+                    // Books (Data.csv contains all book metadata) and users are merged first
+                    .addFile(BulkImporter.Dataset.BOOKS, new File(TEMP_DIR + "Data.csv"))
+                    .addFile(BulkImporter.Dataset.USERS, new File(TEMP_DIR + "UtentiRegistrati.csv"))
+                    .addFile(BulkImporter.Dataset.LIBRARIES, new File(TEMP_DIR + "Librerie.dati.csv"))
+                    .addFile(BulkImporter.Dataset.RATINGS, new File(TEMP_DIR + "ValutazioniLibri.csv"));
 
-                // Import ratings from ValutazioniLibri.csv
-                importRatings(conn);
-                conn.commit();
-
-                // Import recommendations from ConsigliLibri.dati.csv or ConsigliLibri.csv
-                importRecommendations(conn);
-                conn.commit();
-
-                // Verify database content
-                verifyDatabaseContent(conn);
+            // Import recommendations from ConsigliLibri.csv or ConsigliLibri.dati.csv
+            File consigliFile = new File(TEMP_DIR + "ConsigliLibri.csv");
+            if (!consigliFile.exists()) {
+                consigliFile = new File(TEMP_DIR + "ConsigliLibri.dati.csv");
+            }
+            if (consigliFile.exists()) {
+                pipeline.addFile(BulkImporter.Dataset.RECOMMENDATIONS, consigliFile);
+            }
 
-            } catch (Exception e) {
-                // Rollback on error
+            try {
+                // Per-file throughput is shown on the progress bar between 70% and 75%
+                pipeline.run((fraction, message) -> updateProgress(0.7 + 0.05 * fraction, message));
+            } catch (SQLException | IOException e) {
                 e.printStackTrace();
-                conn.rollback();
                 throw e;
             } finally {
-                // Restore original auto-commit setting
-                conn.setAutoCommit(originalAutoCommit);
+                // Le pagine servite durante l'importazione non sono più aggiornate
+                BookPageCache.getInstance().invalidateAll();
+            }
+
+            // Verify database content
+            try (Connection conn = dbManager.getConnection()) {
+                verifyDatabaseContent(conn);
             }
         } catch (SQLException e) {
             throw e;
         }
     }
 
+    /**
+     * Aggiorna le statistiche della tabella books e verifica con EXPLAIN che le query
+     * di ricerca per titolo e autore utilizzino gli indici a trigrammi.
+     * Eventuali problemi vengono segnalati come avviso senza interrompere l'avvio del server.
+     */
+    private void verifySearchIndexes() {
+        try (Connection conn = DatabaseManager.getInstance().getConnection()) {
+            // Statistics are needed for the planner to consider the freshly built indexes
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE books");
+            }
+            SearchIndexes.verifySearchPlans(conn);
+        } catch (SQLException e) {
+            // Gestione silenziosa dell'errore - la verifica è solo diagnostica
+        }
+    }
+
     /**
      * Verifica il contenuto del database dopo l'importazione.
      * Questo metodo esegue una serie di query per contare i record in ogni tabella
@@ -1351,247 +1400,6 @@ public class ServerInterfaceController {
         }
     }
 
-    /**
-     * Importa i consigli dei libri nel database dal file CSV.
-     * Questo metodo legge il file di consigli libri e popola la tabella book_recommendations.
-     * Gestisce casi particolari come titoli di libri non trovati esattamente, cercando
-     * corrispondenze approssimative o inserendo nuovi libri quando necessario.
-     *
-     * @param conn Connessione al database da utilizzare per le operazioni di importazione
-     * @throws SQLException Se si verifica un errore durante l'operazione sul database
-     * @throws IOException Se si verifica un errore durante la lettura del file CSV
-     */
-    private void importRecommendations(Connection conn) throws SQLException, IOException {
-        // Try both possible filenames
-        File consigliFile = new File(TEMP_DIR + "ConsigliLibri.csv");
-        if (!consigliFile.exists()) {
-            consigliFile = new File(TEMP_DIR + "ConsigliLibri.dati.csv");
-            if (!consigliFile.exists()) {
-                return;
-            }
-        }
-
-        String findBookByTitleSql = "SELECT id FROM books WHERE title = ?";
-        String findBookByTitleLikeSql = "SELECT id FROM books WHERE title ILIKE ?";
-
-        String insertRecommendationSql =
-                "INSERT INTO book_recommendations (user_id, source_book_id, recommended_book_id) " +
-                        "VALUES (?, ?, ?) ON CONFLICT (user_id, source_book_id, recommended_book_id) DO NOTHING";
-
-        int recommendationCount = 0;
-        int errorCount = 0;
-
-        try (PreparedStatement pstmtFindBook = conn.prepareStatement(findBookByTitleSql);
-             PreparedStatement pstmtFindBookLike = conn.prepareStatement(findBookByTitleLikeSql);
-             PreparedStatement pstmtInsert = conn.prepareStatement(insertRecommendationSql);
-             BufferedReader reader = new BufferedReader(new FileReader(consigliFile))) {
-
-            String line = reader.readLine(); // Skip header
-            int lineNum = 1;
-            while ((line = reader.readLine()) != null) {
-                lineNum++;
-                try {
-                    String[] fields = parseCsvLine(line);
-
-                    if (fields.length < 3) {
-                        continue;
-                    }
-
-                    String userId = fields[0].trim();
-                    String sourceBookTitle = fields[1].trim();
-
-                    // Skip if required fields are empty
-                    if (userId.isEmpty() || sourceBookTitle.isEmpty()) {
-                        continue;
-                    }
-
-                    // Check if user exists
-                    String checkUserSql = "SELECT 1 FROM users WHERE user_id = ?";
-                    try (PreparedStatement pstmtCheckUser = conn.prepareStatement(checkUserSql)) {
-                        pstmtCheckUser.setString(1, userId);
-                        ResultSet userRs = pstmtCheckUser.executeQuery();
-
-                        if (!userRs.next()) {
-                            continue;
-                        }
-                    }
-
-                    // Find source book ID - try exact match first
-                    Integer sourceBookId = null;
-                    pstmtFindBook.setString(1, sourceBookTitle);
-                    ResultSet sourceBookRs = pstmtFindBook.executeQuery();
-
-                    if (sourceBookRs.next()) {
-                        sourceBookId = sourceBookRs.getInt(1);
-                    } else {
-                        // Try LIKE search
-                        pstmtFindBookLike.setString(1, "%" + sourceBookTitle + "%");
-                        sourceBookRs = pstmtFindBookLike.executeQuery();
-
-                        if (sourceBookRs.next()) {
-                            sourceBookId = sourceBookRs.getInt(1);
-                        }
-                    }
-
-                    if (sourceBookId == null) {
-                        // Add the book to the database
-                        String insertBookSql = "INSERT INTO books (title, authors, category, publisher) " +
-                                "VALUES (?, 'Unknown', 'Unknown', 'Unknown') RETURNING id";
-                        try (PreparedStatement pstmtInsertBook = conn.prepareStatement(insertBookSql)) {
-                            pstmtInsertBook.setString(1, sourceBookTitle);
-                            ResultSet newBookRs = pstmtInsertBook.executeQuery();
-
-                            if (newBookRs.next()) {
-                                sourceBookId = newBookRs.getInt(1);
-                            } else {
-                                continue; // Skip if failed to add book
-                            }
-                        }
-                    }
-
-                    // Process recommended books
-                    for (int i = 2; i < fields.length; i++) {
-                        String recBookTitle = fields[i].trim();
-                        if (recBookTitle.isEmpty() || recBookTitle.equalsIgnoreCase("null")) {
-                            continue;
-                        }
-
-                        // Find recommended book ID
-                        Integer recBookId = null;
-                        pstmtFindBook.setString(1, recBookTitle);
-                        ResultSet recBookRs = pstmtFindBook.executeQuery();
-
-                        if (recBookRs.next()) {
-                            recBookId = recBookRs.getInt(1);
-                        } else {
-                            // Try LIKE search
-                            pstmtFindBookLike.setString(1, "%" + recBookTitle + "%");
-                            recBookRs = pstmtFindBookLike.executeQuery();
-
-                            if (recBookRs.next()) {
-                                recBookId = recBookRs.getInt(1);
-                            }
-                        }
-
-                        if (recBookId == null) {
-                            // Add the book to the database
-                            String insertBookSql = "INSERT INTO books (title, authors, category, publisher) " +
-                                    "VALUES (?, 'Unknown', 'Unknown', 'Unknown') RETURNING id";
-                            try (PreparedStatement pstmtInsertBook = conn.prepareStatement(insertBookSql)) {
-                                pstmtInsertBook.setString(1, recBookTitle);
-                                ResultSet newBookRs = pstmtInsertBook.executeQuery();
-
-                                if (newBookRs.next()) {
-                                    recBookId = newBookRs.getInt(1);
-                                } else {
-                                    continue; // Skip if failed to add book
-                                }
-                            }
-                        }
-
-                        // Insert recommendation
-                        pstmtInsert.setString(1, userId);
-                        pstmtInsert.setInt(2, sourceBookId);
-                        pstmtInsert.setInt(3, recBookId);
-
-                        try {
-                            int rowsAffected = pstmtInsert.executeUpdate();
-                            if (rowsAffected > 0) {
-                                recommendationCount++;
-                            }
-                        } catch (SQLException e) {
-                            if (!e.getMessage().contains("duplicate key")) {
-                                throw e; // Re-throw if not a duplicate key error
-                            }
-                        }
-                    }
-
-                } catch (Exception e) {
-                    errorCount++;
-                }
-            }
-        }
-    }
-
-
-
-
-    private void importBooks(Connection conn, String filePath) throws SQLException, IOException {
-       
-        String sql = "INSERT INTO books (title, authors, category, publisher, publish_year) " +
-                "VALUES (?, ?, ?, ?, ?) ON CONFLICT (title, authors) DO NOTHING";
-
-        int successCount = 0;
-        int errorCount = 0;
-
-        try (PreparedStatement pstmt = conn.prepareStatement(sql);
-             BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-
-            String line = reader.readLine(); // Skip header
-            
-            // Process each line
-            int lineNum = 1;
-            while ((line = reader.readLine()) != null) {
-                lineNum++;
-                try {
-                    String[] fields = parseCsvLine(line);
-
-                    if (fields.length < 5) {
-                      continue;
-                    }
-
-                    String title = fields[0].trim();
-                    String authors = fields[1].trim();
-                    String category = fields[2].trim();
-                    String publisher = fields[3].trim();
-
-                    // Skip if title or author is empty
-                    if (title.isEmpty() || authors.isEmpty()) {
-                     continue;
-                    }
-
-                    pstmt.setString(1, title);
-                    pstmt.setString(2, authors);
-                    pstmt.setString(3, category);
-                    pstmt.setString(4, publisher);
-
-                    // Handle publish year
-                    try {
-                        float yearFloat = Float.parseFloat(fields[4].trim());
-                        pstmt.setInt(5, (int) yearFloat);
-                    } catch (NumberFormatException e) {
-                        pstmt.setNull(5, Types.INTEGER);
-                   }
-
-                    int rowsAffected = pstmt.executeUpdate();
-                    if (rowsAffected > 0) {
-                        successCount++;
-                        if (successCount % 100 == 0) {
-                      }
-                    }
-                } catch (Exception e) {
-                    errorCount++;
-                }
-            }
-        }
-}
-    /**
-     * Helper method to parse integers with default value if parsing fails
-     */
-    private int parseInt(String value, int defaultValue) {
-        if (value == null || value.trim().isEmpty()) {
-            return defaultValue;
-        }
-        try {
-            int parsed = Integer.parseInt(value.trim());
-            // Ensure the rating is between 1 and 5
-            if (parsed < 1) parsed = 1;
-            if (parsed > 5) parsed = 5;
-            return parsed;
-        } catch (NumberFormatException e) {
-            return defaultValue;
-        }
-    }
     /**
      * Verifica se PostgreSQL è installato sul sistema
      * @return true se PostgreSQL è installato, false altrimenti
@@ -1944,469 +1752,18 @@ public class ServerInterfaceController {
     }
 
 
-    private void importUsers(Connection conn) throws SQLException, IOException {
-      
-        String sql = "INSERT INTO users (user_id, full_name, fiscal_code, email, password) " +
-                "VALUES (?, ?, ?, ?, ?) ON CONFLICT (user_id) DO UPDATE SET " +
-                "full_name = EXCLUDED.full_name, " +
-                "fiscal_code = EXCLUDED.fiscal_code, " +
-                "email = EXCLUDED.email, " +
-                "password = EXCLUDED.password";
-
-        int userCount = 0;
-        int errorCount = 0;
-
-        try (PreparedStatement pstmt = conn.prepareStatement(sql);
-             BufferedReader reader = new BufferedReader(new FileReader(TEMP_DIR + "UtentiRegistrati.csv"))) {
-
-            String line = reader.readLine(); // Skip header if exists
-       
-            int lineNum = 1;
-            while ((line = reader.readLine()) != null) {
-                lineNum++;
-                try {
-                    String[] fields;
-
-                    // Detect if this is a tab-delimited file
-                    if (line.contains("\t")) {
-                        fields = line.split("\t", -1);
-                    } else {
-                        fields = parseCsvLine(line);
-                    }
-
-                    if (fields.length < 5) {
-                     continue;
-                    }
-
-                    String fullName = fields[0].trim();
-                    String fiscalCode = fields[1].trim();
-                    String email = fields[2].trim();
-                    String userId = fields[3].trim();
-                    String password = fields[4].trim();
-
-                    // Skip if required fields are empty
-                    if (userId.isEmpty() || fullName.isEmpty()) {
-                        continue;
-                    }
-
-                    pstmt.setString(1, userId);
-                    pstmt.setString(2, fullName);
-                    pstmt.setString(3, fiscalCode);
-                    pstmt.setString(4, email);
-                    pstmt.setString(5, password);
-
-                    int rowsAffected = pstmt.executeUpdate();
-                    if (rowsAffected > 0) {
-                        userCount++;
-                        if (userCount % 50 == 0) {
-                        }
-                    }
-                } catch (Exception e) {
-                    errorCount++;
-                }
-            }
-        }
-
-    }
-
-
-    private void importLibraries(Connection conn) throws SQLException, IOException {
-
-        String insertLibrarySql = "INSERT INTO libraries (user_id, library_name) " +
-                "VALUES (?, ?) ON CONFLICT (user_id, library_name) DO NOTHING " +
-                "RETURNING id";
-
-        String insertLibraryBookSql = "INSERT INTO library_books (library_id, book_id) " +
-                "VALUES (?, ?) ON CONFLICT DO NOTHING";
-
-        String findBookSql = "SELECT id FROM books WHERE title ILIKE ?";
-
-        int libraryCount = 0;
-        int bookCount = 0;
-        int errorCount = 0;
-
-        try (PreparedStatement pstmtLib = conn.prepareStatement(insertLibrarySql);
-             PreparedStatement pstmtLibBook = conn.prepareStatement(insertLibraryBookSql);
-             PreparedStatement pstmtFindBook = conn.prepareStatement(findBookSql);
-             BufferedReader reader = new BufferedReader(new FileReader(TEMP_DIR + "Librerie.dati.csv"))) {
-
-            String line = reader.readLine(); // Skip header if exists
-
-            int lineNum = 1;
-            while ((line = reader.readLine()) != null) {
-                lineNum++;
-                try {
-                    String[] fields;
-
-                    // Detect if this is a tab-delimited file
-                    if (line.contains("\t")) {
-                        fields = line.split("\t", -1);
-                    } else {
-                        fields = parseCsvLine(line);
-                    }
-
-                    if (fields.length < 2) {
-                        continue;
-                    }
-
-                    String userId = fields[0].trim();
-                    String libraryName = fields[1].trim();
-
-                    // Skip if required fields are empty
-                    if (userId.isEmpty() || libraryName.isEmpty()) {
-                        continue;
-                    }
-
-                    // If userId contains a tab character, it might be incorrectly parsed
-                    if (userId.contains("\t")) {
-                        String[] parts = userId.split("\t");
-                        userId = parts[0].trim();
-
-                        // Adjust other fields if needed
-                        if (parts.length > 1 && (libraryName == null || libraryName.isEmpty())) {
-                            libraryName = parts[1].trim();
-                        }
-                    }
-
-                    // Check if user exists
-                    String checkUserSql = "SELECT 1 FROM users WHERE user_id = ?";
-                    try (PreparedStatement pstmtCheckUser = conn.prepareStatement(checkUserSql)) {
-                        pstmtCheckUser.setString(1, userId);
-                        ResultSet userRs = pstmtCheckUser.executeQuery();
-
-                        if (!userRs.next()) {
-                            // Try to create the user
-                            try {
-                                String createUserSql = "INSERT INTO users (user_id, full_name, fiscal_code, email, password) " +
-                                        "VALUES (?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
-                                try (PreparedStatement pstmtCreateUser = conn.prepareStatement(createUserSql)) {
-                                    pstmtCreateUser.setString(1, userId);
-                                    pstmtCreateUser.setString(2, userId); // Use userId as name temporarily
-                                    pstmtCreateUser.setString(3, "UNKNOWN");
-                                    pstmtCreateUser.setString(4, userId + "@example.com");
-                                    pstmtCreateUser.setString(5, "password");
-
-                                    int created = pstmtCreateUser.executeUpdate();
-                                    if (created > 0) {
-                                    } else {
-                                        continue; // Skip if we can't create the user
-                                    }
-                                }
-                            } catch (SQLException e) {
-                                continue;
-                            }
-                        }
-                    }
-
-                    // Insert library
-                    pstmtLib.setString(1, userId);
-                    pstmtLib.setString(2, libraryName);
-
-                    ResultSet rs = pstmtLib.executeQuery();
-                    if (rs.next()) {
-                        int libraryId = rs.getInt(1);
-                        libraryCount++;
-
-                        // Add books to library (remaining fields are book titles)
-                        for (int i = 2; i < fields.length; i++) {
-                            String bookTitle = fields[i].trim();
-                            if (bookTitle.isEmpty() || bookTitle.equalsIgnoreCase("null")) {
-                                continue;
-                            }
-
-                            // Try to find the book (case insensitive)
-                            pstmtFindBook.setString(1, "%" + bookTitle + "%");
-                            ResultSet bookRs = pstmtFindBook.executeQuery();
-
-                            if (bookRs.next()) {
-                                int bookId = bookRs.getInt(1);
-                                pstmtLibBook.setInt(1, libraryId);
-                                pstmtLibBook.setInt(2, bookId);
-
-                                int added = pstmtLibBook.executeUpdate();
-                                if (added > 0) {
-                                    bookCount++;
-                                }
-                            } else {
-                                // Create the book
-                                String insertBookSql =
-                                        "INSERT INTO books (title, authors, category, publisher) " +
-                                                "VALUES (?, 'Unknown', 'Unknown', 'Unknown') RETURNING id";
-                                try (PreparedStatement pstmtInsertBook = conn.prepareStatement(insertBookSql)) {
-                                    pstmtInsertBook.setString(1, bookTitle);
-                                    ResultSet newBookRs = pstmtInsertBook.executeQuery();
-
-                                    if (newBookRs.next()) {
-                                        int bookId = newBookRs.getInt(1);
-                                        pstmtLibBook.setInt(1, libraryId);
-                                        pstmtLibBook.setInt(2, bookId);
-
-                                        int added = pstmtLibBook.executeUpdate();
-                                        if (added > 0) {
-                                            bookCount++;
-                                        }
-                                    }
-                                } catch (SQLException e) {
-                                }
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    errorCount++;
-                }
-            }
-        }
-
-   }
-
-    private void importRatings(Connection conn) throws SQLException, IOException {
-        String findBookSql = "SELECT id FROM books WHERE title ILIKE ?";
-
-        String insertRatingSql = "INSERT INTO book_ratings " +
-                "(user_id, book_id, style_rating, content_rating, pleasantness_rating, " +
-                "originality_rating, edition_rating, average_rating, general_comment, " +
-                "style_comment, content_comment, pleasantness_comment, originality_comment, edition_comment) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
-                "ON CONFLICT (user_id, book_id) DO NOTHING";
-
-        int ratingCount = 0;
-        int errorCount = 0;
-
-        try (PreparedStatement pstmtFindBook = conn.prepareStatement(findBookSql);
-             PreparedStatement pstmtRating = conn.prepareStatement(insertRatingSql);
-             BufferedReader reader = new BufferedReader(new FileReader(TEMP_DIR + "ValutazioniLibri.csv"))) {
-
-            String line = reader.readLine(); // Skip header
-
-            // Check if the format is numeric ID or user_id
-            boolean isNumericIdFormat = line != null && line.contains("\"id\"");
-
-            int lineNum = 1;
-            while ((line = reader.readLine()) != null) {
-                lineNum++;
-                try {
-                    // Parse CSV line handling quoted values
-                    String[] fields = parseCsvLine(line);
-
-                    if (fields.length < 5) {
-                        continue;
-                    }
-
-                    String userId;
-                    String bookTitle;
-                    int startIndexForRatings;
-
-                    if (isNumericIdFormat) {
-                        // Format is like: id, user_id, book_id, ...
-                        // Skip the id field
-                        userId = fields[1].trim();
-                        bookTitle = fields[2].trim();
-                        startIndexForRatings = 3;
-                    } else {
-                        // Format is like: user_id, book_title, ...
-                        userId = fields[0].trim();
-                        bookTitle = fields[1].trim();
-                        startIndexForRatings = 2;
-                    }
-
-                    // Skip if required fields are empty
-                    if (userId.isEmpty() || bookTitle.isEmpty()) {
-                        continue;
-                    }
-
-                    // Check if user exists
-                    String checkUserSql = "SELECT 1 FROM users WHERE user_id = ?";
-                    try (PreparedStatement pstmtCheckUser = conn.prepareStatement(checkUserSql)) {
-                        pstmtCheckUser.setString(1, userId);
-                        ResultSet userRs = pstmtCheckUser.executeQuery();
-
-                        if (!userRs.next()) {
-                            // Try to create the user
-                            try {
-                                String createUserSql = "INSERT INTO users (user_id, full_name, fiscal_code, email, password) " +
-                                        "VALUES (?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
-                                try (PreparedStatement pstmtCreateUser = conn.prepareStatement(createUserSql)) {
-                                    pstmtCreateUser.setString(1, userId);
-                                    pstmtCreateUser.setString(2, userId); // Use userId as name temporarily
-                                    pstmtCreateUser.setString(3, "UNKNOWN");
-                                    pstmtCreateUser.setString(4, userId + "@example.com");
-                                    pstmtCreateUser.setString(5, "password");
-
-                                    int created = pstmtCreateUser.executeUpdate();
-                                    if (created <= 0) {
-                                        continue; // Skip if we can't create the user
-                                    }
-                                }
-                            } catch (SQLException e) {
-                                continue;
-                            }
-                        }
-                    }
-
-                    // Find or create book
-                    Integer bookId = null;
-
-                    // Try to find the book (case insensitive)
-                    pstmtFindBook.setString(1, "%" + bookTitle + "%");
-                    ResultSet bookRs = pstmtFindBook.executeQuery();
-
-                    if (bookRs.next()) {
-                        bookId = bookRs.getInt(1);
-                    } else {
-                        // Book not found, create it
-                        String insertBookSql =
-                                "INSERT INTO books (title, authors, category, publisher) " +
-                                        "VALUES (?, 'Unknown', 'Unknown', 'Unknown') RETURNING id";
-                        try (PreparedStatement pstmtInsertBook = conn.prepareStatement(insertBookSql)) {
-                            pstmtInsertBook.setString(1, bookTitle);
-                            ResultSet newBookRs = pstmtInsertBook.executeQuery();
-
-                            if (newBookRs.next()) {
-                                bookId = newBookRs.getInt(1);
-                            }
-                        } catch (SQLException e) {
-                            continue;
-                        }
-                    }
-
-                    if (bookId == null) {
-                        continue;
-                    }
-
-                    // Set user_id and book_id - parametri 1 e 2
-                    pstmtRating.setString(1, userId);
-                    pstmtRating.setInt(2, bookId);
-
-                    // Process ratings from fields
-                    if (fields.length >= startIndexForRatings + 5) {
-                        try {
-                            // Parse the ratings (indexes 3-7 for numeric format, or 2-6 for standard format)
-                            int styleRating = parseInt(fields[startIndexForRatings], 3);
-                            int contentRating = parseInt(fields[startIndexForRatings + 1], 3);
-                            int pleasantnessRating = parseInt(fields[startIndexForRatings + 2], 3);
-                            int originalityRating = parseInt(fields[startIndexForRatings + 3], 3);
-                            int editionRating = parseInt(fields[startIndexForRatings + 4], 3);
-
-                            // Set the ratings - parametri 3-7
-                            pstmtRating.setInt(3, styleRating);
-                            pstmtRating.setInt(4, contentRating);
-                            pstmtRating.setInt(5, pleasantnessRating);
-                            pstmtRating.setInt(6, originalityRating);
-                            pstmtRating.setInt(7, editionRating);
-
-                            // Calculate average rating - parametro 8
-                            float avgRating = (styleRating + contentRating + pleasantnessRating +
-                                    originalityRating + editionRating) / 5.0f;
-                            // Round to one decimal place
-                            avgRating = Math.round(avgRating * 10) / 10.0f;
-                            pstmtRating.setFloat(8, avgRating);
-
-                            // L'indice per accedere all'array fields
-                            int commentIndex = startIndexForRatings + 6;
-
-                            // CORRISPONDENZA TRA INDICI DELL'ARRAY E PARAMETRI JDBC:
-                            // fields[commentIndex] -> parametro 9 (general_comment)
-                            // fields[commentIndex+1] -> parametro 10 (style_comment)
-                            // fields[commentIndex+2] -> parametro 11 (content_comment)
-                            // fields[commentIndex+3] -> parametro 12 (pleasantness_comment)
-                            // fields[commentIndex+4] -> parametro 13 (originality_comment)
-                            // fields[commentIndex+5] -> parametro 14 (edition_comment)
-
-                            // Set general_comment (parametro 9, indice array: commentIndex)
-                            if (fields.length > commentIndex) {
-                                String comment = fields[commentIndex].trim();
-                                pstmtRating.setString(9, comment.isEmpty() ? null : comment);
-                            } else {
-                                pstmtRating.setNull(9, Types.VARCHAR);
-                            }
-
-                            // Set style_comment (parametro 10, indice array: commentIndex+1)
-                            if (fields.length > commentIndex + 1) {
-                                String comment = fields[commentIndex + 1].trim();
-                                pstmtRating.setString(10, comment.isEmpty() ? null : comment);
-                            } else {
-                                pstmtRating.setNull(10, Types.VARCHAR);
-                            }
-
-                            // Set content_comment (parametro 11, indice array: commentIndex+2)
-                            if (fields.length > commentIndex + 2) {
-                                String comment = fields[commentIndex + 2].trim();
-                                pstmtRating.setString(11, comment.isEmpty() ? null : comment);
-                            } else {
-                                pstmtRating.setNull(11, Types.VARCHAR);
-                            }
-
-                            // Set pleasantness_comment (parametro 12, indice array: commentIndex+3)
-                            if (fields.length > commentIndex + 3) {
-                                String comment = fields[commentIndex + 3].trim();
-                                pstmtRating.setString(12, comment.isEmpty() ? null : comment);
-                            } else {
-                                pstmtRating.setNull(12, Types.VARCHAR);
-                            }
-
-                            // Set originality_comment (parametro 13, indice array: commentIndex+4)
-                            if (fields.length > commentIndex + 4) {
-                                String comment = fields[commentIndex + 4].trim();
-                                pstmtRating.setString(13, comment.isEmpty() ? null : comment);
-                            } else {
-                                pstmtRating.setNull(13, Types.VARCHAR);
-                            }
-
-                            // Set edition_comment (parametro 14, indice array: commentIndex+5)
-                            if (fields.length > commentIndex + 5) {
-                                String comment = fields[commentIndex + 5].trim();
-                                pstmtRating.setString(14, comment.isEmpty() ? null : comment);
-                            } else {
-                                pstmtRating.setNull(14, Types.VARCHAR);
-                            }
-
-                            // Execute the query
-                            int rowsAffected = pstmtRating.executeUpdate();
-                            if (rowsAffected > 0) {
-                                ratingCount++;
-                                if (ratingCount % 50 == 0) {
-                                    // Optional logging if needed
-                                }
-                            }
-                        } catch (NumberFormatException e) {
-                            errorCount++;
-                        }
-                    } else {
-                        errorCount++;
-                    }
-                } catch (Exception e) {
-                    errorCount++;
-                }
-            }
-        }
-    }
-
     private void startSocketServer() {
         int[] portsToTry = {8888, 8889, 8890, 8891, 8892};
         boolean success = false;
 
         for (int port : portsToTry) {
             try {
-                // Create a server socket that binds to all network interfaces
-                serverSocket = new ServerSocket(port, 50, InetAddress.getByName("0.0.0.0"));
+                // Bind the book server to all network interfaces, in the configured mode
+                bookServer = BookServer.open(port);
+                bookServer.start();
+                MetricsServer.getInstance().setBookServer(bookServer);
                 success = true;
 
-                // Start a thread for accepting client connections
-                new Thread(() -> {
-                    while (serverRunning) {
-                        try {
-                            Socket clientSocket = serverSocket.accept();
-
-                            // The rest of your code remains the same
-                            // ...
-
-                        } catch (IOException e) {
-                            if (serverRunning) {
-                           }
-                        }
-                    }
-                }).start();
-
                 break; // Exit the loop if successful
 
             } catch (IOException e) {
@@ -2419,80 +1776,6 @@ public class ServerInterfaceController {
         }
     }
 
-    private String[] parseCsvLine(String line) {
-        if (line == null || line.trim().isEmpty()) {
-            return new String[0];
-        }
-
-        // Check if the line contains tabs - if so, use tab delimiter
-        if (line.contains("\t")) {
-            return parseTabDelimitedLine(line);
-        } else {
-            return parseCommaDelimitedLine(line);
-        }
-    }
-
-    /**
-     * Parse a tab-delimited line
-     */
-    private String[] parseTabDelimitedLine(String line) {
-        String[] fields = line.split("\t", -1); // -1 to keep empty fields
-
-        // Trim each field and handle null values
-        for (int i = 0; i < fields.length; i++) {
-            fields[i] = fields[i].trim();
-            if (fields[i].equalsIgnoreCase("null") || fields[i].isEmpty()) {
-                fields[i] = "";
-            }
-        }
-
-        return fields;
-    }
-
-    /**
-     * Parse a comma-delimited line with proper handling of quoted fields
-     */
-    private String[] parseCommaDelimitedLine(String line) {
-        List<String> tokens = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
-        boolean inQuotes = false;
-
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-
-            if (c == '"') {
-                // If we're in quotes and the next char is also a quote, it's an escaped quote
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    sb.append('"');
-                    i++; // Skip the next quote
-                } else {
-                    // Toggle quote state
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                // End of field, add to list
-                tokens.add(sb.toString().trim());
-                sb = new StringBuilder();
-            } else {
-                // Regular character, append
-                sb.append(c);
-            }
-        }
-
-        // Add the last token
-        tokens.add(sb.toString().trim());
-
-        // Process each token to handle "null" values
-        for (int i = 0; i < tokens.size(); i++) {
-            if (tokens.get(i).equalsIgnoreCase("null")) {
-                tokens.set(i, "");
-            }
-        }
-
-        return tokens.toArray(new String[0]);
-    }
-
-
     private void startUptimeCounter() {
         // Cancel the existing scheduler if any
         if (scheduler != null && !scheduler.isShutdown()) {
@@ -0,0 +1,309 @@
+package book_recommender.lab_b;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server dei libri con un thread virtuale per ogni connessione.
+ *
+ * <p>Ogni connessione viene servita da un proprio thread virtuale, che legge un frame alla volta,
+ * lo fa eseguire a {@link BookRequestHandler} e invia la risposta nello stesso ordine. Un client
+ * inattivo occupa solo il proprio thread virtuale in attesa sulla socket, quindi anche migliaia
+ * di connessioni aperte non consumano thread del sistema operativo. I limiti applicati sono
+ * descritti in {@link BookServer}.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class ThreadedBookServer extends BookServer {
+
+    private final ServerSocket serverSocket;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Semaphore slots = new Semaphore(MAX_CONNECTIONS);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong rejectedConnections = new AtomicLong();
+    private ScheduledExecutorService watchdog;
+    private volatile boolean running = false;
+
+    /**
+     * Crea il server sulla socket indicata, già collegata alla sua porta.
+     *
+     * @param serverSocket La socket su cui accettare le connessioni
+     */
+    public ThreadedBookServer(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+    }
+
+    /**
+     * Avvia il thread che accetta le connessioni dei client e quello che chiude le
+     * connessioni bloccate in scrittura.
+     */
+    @Override
+    public void start() {
+        running = true;
+
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "book-server-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleAtFixedRate(this::closeStalledWrites, 1, 1, TimeUnit.SECONDS);
+
+        Thread acceptThread = new Thread(this::acceptConnections, "book-server-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * @return La porta su cui il server accetta le connessioni
+     */
+    @Override
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Il numero di client attualmente collegati
+     */
+    @Override
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * @return Il numero di connessioni rifiutate perché era stato raggiunto il limite
+     */
+    @Override
+    public long getRejectedConnectionCount() {
+        return rejectedConnections.get();
+    }
+
+    /**
+     * Chiude subito le connessioni in attesa di una richiesta e attende che i thread delle
+     * altre terminino dopo aver inviato la risposta in corso.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Gestione silenziosa dell'errore - la socket è comunque inutilizzabile
+        }
+
+        for (Connection connection : connections) {
+            connection.closeIfIdle();
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(DRAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                closeAll();
+            }
+        } catch (InterruptedException e) {
+            closeAll();
+            Thread.currentThread().interrupt();
+        }
+
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+    }
+
+    /**
+     * Chiude tutte le connessioni, comprese quelle con una richiesta in corso.
+     */
+    private void closeAll() {
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Accetta le connessioni finché il server è attivo, avviando un thread virtuale per ciascuna.
+     */
+    private void acceptConnections() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // La socket viene chiusa allo spegnimento del server; altrimenti si riprova
+                if (serverSocket.isClosed()) {
+                    break;
+                }
+                continue;
+            }
+
+            if (!slots.tryAcquire()) {
+                // Limite raggiunto: il client riceve la chiusura e usa direttamente il database
+                rejectedConnections.incrementAndGet();
+                closeQuietly(socket);
+                continue;
+            }
+
+            Connection connection = new Connection(socket);
+            connections.add(connection);
+            try {
+                executor.execute(() -> serve(connection));
+            } catch (RejectedExecutionException e) {
+                // Il server è in fase di spegnimento
+                release(connection);
+            }
+        }
+    }
+
+    /**
+     * Risponde alle richieste di un client finché la connessione resta aperta.
+     *
+     * @param connection La connessione del client
+     */
+    private void serve(Connection connection) {
+        Socket socket = connection.socket;
+        try {
+            socket.setTcpNoDelay(true);
+            // Permette di accorgersi dei client scomparsi senza chiudere la connessione
+            socket.setKeepAlive(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            while (running) {
+                if (!awaitRequest(socket, in)) {
+                    // Il client ha chiuso la connessione
+                    break;
+                }
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                byte[] request = BookProtocol.readFrame(in);
+
+                if (!connection.beginRequest()) {
+                    break;
+                }
+                byte[] response = BookRequestHandler.handle(request);
+
+                connection.writeStartedNanos = System.nanoTime();
+                BookProtocol.writeFrame(out, response);
+                out.flush();
+                connection.writeStartedNanos = 0;
+
+                if (!connection.endRequest()) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // Gestione silenziosa dell'errore - frame non valido, timeout o connessione interrotta
+        } finally {
+            release(connection);
+        }
+    }
+
+    /**
+     * Attende l'arrivo del primo byte della prossima richiesta senza consumarlo.
+     *
+     * @return false se il client ha chiuso la connessione
+     * @throws IOException se scade {@code idleTimeoutMillis} o la connessione si interrompe
+     */
+    private static boolean awaitRequest(Socket socket, DataInputStream in) throws IOException {
+        socket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+        in.mark(1);
+        if (in.read() < 0) {
+            return false;
+        }
+        in.reset();
+        return true;
+    }
+
+    /**
+     * Chiude le connessioni che da più di {@code writeTimeoutMillis} non riescono a inviare
+     * una risposta, perché il client non legge o la rete è bloccata.
+     */
+    private void closeStalledWrites() {
+        long now = System.nanoTime();
+        for (Connection connection : connections) {
+            long started = connection.writeStartedNanos;
+            if (started != 0 && TimeUnit.NANOSECONDS.toMillis(now - started) > WRITE_TIMEOUT_MILLIS) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Chiude una connessione e libera il suo posto.
+     */
+    private void release(Connection connection) {
+        if (connections.remove(connection)) {
+            slots.release();
+        }
+        connection.close();
+    }
+
+    /**
+     * Chiude una connessione ignorando gli errori.
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Gestione silenziosa dell'errore durante la chiusura
+        }
+    }
+
+    /**
+     * Stato di una connessione: serve a distinguere, durante lo spegnimento, le connessioni
+     * in attesa da quelle che stanno eseguendo una richiesta.
+     */
+    private final class Connection {
+        /** Socket del client */
+        final Socket socket;
+        /** Istante di inizio dell'invio della risposta in corso, oppure 0 */
+        volatile long writeStartedNanos = 0;
+        /** Flag che indica se la connessione sta eseguendo una richiesta */
+        private boolean busy = false;
+        /** Flag che indica se la connessione è stata chiusa */
+        private boolean closed = false;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Segna l'inizio dell'esecuzione di una richiesta.
+         *
+         * @return false se la connessione è stata chiusa nel frattempo
+         */
+        synchronized boolean beginRequest() {
+            busy = !closed;
+            return busy;
+        }
+
+        /**
+         * Segna la fine dell'esecuzione di una richiesta.
+         *
+         * @return false se la connessione deve terminare perché il server si sta spegnendo
+         */
+        synchronized boolean endRequest() {
+            busy = false;
+            return running && !closed;
+        }
+
+        /**
+         * Chiude la connessione se non sta eseguendo una richiesta.
+         */
+        synchronized void closeIfIdle() {
+            if (!busy) {
+                close();
+            }
+        }
+
+        /**
+         * Chiude la connessione.
+         */
+        synchronized void close() {
+            closed = true;
+            closeQuietly(socket);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package book_recommender.lab_b;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Risolve i titoli dei libri nei rispettivi id senza interrogare il database per ogni titolo.
+ *
+ * <p>All'avvio vengono letti una sola volta id e titolo di tutti i libri e costruite due
+ * mappe in memoria: dal titolo esatto all'id e dal titolo normalizzato (senza accenti, in
+ * minuscolo, con gli spazi compattati) all'id.</p>
+ *
+ * <p>{@link #resolve} e {@link #resolveAll} accettano solo corrispondenze esatte o normalizzate:
+ * un titolo che ne contiene un altro non identifica lo stesso libro, e salvataggi, valutazioni
+ * e pagine finirebbero sul libro sbagliato. A parità di titolo viene restituito il libro con
+ * l'id più basso.</p>
+ *
+ * <p>Le mappe sono {@link ConcurrentHashMap}, pubblicate in un campo volatile al termine del
+ * caricamento iniziale: le risoluzioni non prendono lock. Il caricamento iniziale e gli
+ * aggiornamenti vengono eseguiti da un solo chiamante alla volta, sotto un
+ * {@link ReentrantLock}; gli aggiornamenti leggono i soli libri con id maggiore dell'ultimo
+ * letto e li aggiungono alle mappe esistenti, senza copiarle. Un titolo non trovato fa partire un aggiornamento al più una volta
+ * ogni {@code bookrecommender.titleResolver.missRefreshSeconds} secondi (predefinito 10), e solo
+ * se nessun altro chiamante lo sta già eseguendo.</p>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class TitleResolver {
+
+    /**
+     * Intervallo minimo predefinito, in secondi, tra due aggiornamenti dovuti a titoli non trovati.
+     */
+    private static final long DEFAULT_MISS_REFRESH_SECONDS = 10;
+
+    /**
+     * Istanza Singleton del servizio.
+     */
+    private static TitleResolver instance;
+
+    /** Intervallo minimo tra due aggiornamenti dovuti a titoli non trovati, in millisecondi */
+    private final long missRefreshMillis =
+            Long.getLong("bookrecommender.titleResolver.missRefreshSeconds", DEFAULT_MISS_REFRESH_SECONDS) * 1000;
+
+    /** Titoli caricati, null finché il primo caricamento non è terminato */
+    private volatile Titles titles;
+    /** Istante dell'ultimo aggiornamento, per limitare quelli dovuti a titoli non trovati */
+    private volatile long lastRefreshAt = 0;
+    /** Garantisce che un solo chiamante alla volta legga i titoli dal database */
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    /**
+     * Costruttore privato per impedire l'istanziazione diretta (pattern Singleton).
+     */
+    private TitleResolver() {
+    }
+
+    /**
+     * Ottiene l'istanza singleton del servizio.
+     *
+     * @return l'istanza singleton
+     */
+    public static synchronized TitleResolver getInstance() {
+        if (instance == null) {
+            instance = new TitleResolver();
+        }
+        return instance;
+    }
+
+    /**
+     * Avvia in background il caricamento dei titoli, così la prima risoluzione non deve attenderlo.
+     */
+    public void start() {
+        Thread.ofVirtual().name("title-resolver").start(() -> {
+            try {
+                loaded();
+            } catch (SQLException e) {
+                // Gestione silenziosa dell'errore - il caricamento verrà ripetuto alla prima risoluzione
+            }
+        });
+    }
+
+    /**
+     * Libera i titoli caricati. La risoluzione successiva li caricherà di nuovo.
+     */
+    public void stop() {
+        refreshLock.lock();
+        try {
+            titles = null;
+            lastRefreshAt = 0;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Restituisce l'id del libro con il titolo indicato.
+     *
+     * @param title Il titolo del libro
+     * @return L'id del libro, oppure null se nessun libro corrisponde
+     * @throws SQLException se si verifica un errore durante il caricamento dei titoli
+     */
+    public Integer resolve(String title) throws SQLException {
+        return resolveAll(List.of(title)).get(title);
+    }
+
+    /**
+     * Restituisce gli id dei libri con i titoli indicati, cercando il titolo esatto e poi quello
+     * normalizzato. Se qualche titolo non viene trovato può essere eseguita una query, per
+     * leggere i libri aggiunti dopo l'ultimo caricamento (vedi la descrizione della classe).
+     *
+     * @param titles I titoli da risolvere
+     * @return Mappa dal titolo all'id del libro; i titoli senza corrispondenza non sono presenti
+     * @throws SQLException se si verifica un errore durante il caricamento dei titoli
+     */
+    public Map<String, Integer> resolveAll(Collection<String> titles) throws SQLException {
+        Titles current = loaded();
+
+        Map<String, Integer> resolved = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String title : titles) {
+            Integer id = current.lookup(title);
+            if (id != null) {
+                resolved.put(title, id);
+            } else {
+                missing.add(title);
+            }
+        }
+
+        // Il libro potrebbe essere stato aggiunto dopo l'ultimo caricamento
+        if (!missing.isEmpty() && refreshAfterMiss()) {
+            for (String title : missing) {
+                Integer id = current.lookup(title);
+                if (id != null) {
+                    resolved.put(title, id);
+                }
+            }
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Legge i libri con id superiore all'ultimo caricato e li aggiunge ai titoli.
+     * Alla prima chiamata viene letto l'intero catalogo. Se un altro chiamante sta
+     * già aggiornando i titoli, il metodo attende che abbia terminato.
+     *
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public void refresh() throws SQLException {
+        refreshLock.lock();
+        try {
+            load(titles);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Restituisce i titoli caricati, eseguendo il primo caricamento se necessario.
+     * I chiamanti che arrivano durante il caricamento attendono il suo risultato.
+     */
+    private Titles loaded() throws SQLException {
+        Titles current = titles;
+        if (current != null) {
+            return current;
+        }
+        refreshLock.lock();
+        try {
+            current = titles;
+            return current != null ? current : load(null);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Aggiorna i titoli dopo una risoluzione fallita, se l'ultimo aggiornamento è abbastanza
+     * lontano e nessun altro chiamante lo sta già eseguendo.
+     *
+     * @return true se è stato eseguito un aggiornamento
+     */
+    private boolean refreshAfterMiss() throws SQLException {
+        if (System.currentTimeMillis() - lastRefreshAt < missRefreshMillis || !refreshLock.tryLock()) {
+            return false;
+        }
+        try {
+            if (System.currentTimeMillis() - lastRefreshAt < missRefreshMillis) {
+                return false;
+            }
+            load(titles);
+            return true;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Aggiunge ai titoli indicati i libri con id superiore all'ultimo letto. Va chiamato
+     * tenendo {@link #refreshLock}.
+     *
+     * @param base Titoli da aggiornare (null per leggere l'intero catalogo)
+     * @return I titoli aggiornati
+     */
+    private Titles load(Titles base) throws SQLException {
+        String sql = "SELECT id, title FROM books WHERE id > ? ORDER BY id";
+
+        // Il primo caricamento viene pubblicato solo quando è completo
+        Titles target = base != null ? base : new Titles();
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, target.maxId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    target.add(rs.getInt("id"), rs.getString("title"));
+                }
+            }
+        }
+
+        titles = target;
+        lastRefreshAt = System.currentTimeMillis();
+        return target;
+    }
+
+    /**
+     * Normalizza un titolo: rimuove accenti e maiuscole e compatta gli spazi.
+     *
+     * @param title Il titolo da normalizzare
+     * @return Il titolo normalizzato
+     */
+    static String normalize(String title) {
+        return BookSearchIndex.fold(title).trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Titoli caricati. Le mappe vengono lette senza lock e aggiornate da un solo chiamante
+     * alla volta; i libri vengono aggiunti in ordine di id, quindi a parità di titolo resta
+     * quello con l'id più basso.
+     */
+    private static final class Titles {
+        /** Titolo esatto → id del primo libro con quel titolo */
+        final Map<String, Integer> exactTitles = new ConcurrentHashMap<>();
+        /** Titolo normalizzato → id del primo libro con quel titolo */
+        final Map<String, Integer> normalizedTitles = new ConcurrentHashMap<>();
+        /** Id più alto caricato, usato per gli aggiornamenti incrementali */
+        volatile int maxId = 0;
+
+        /**
+         * Aggiunge un libro con id maggiore di quelli già caricati.
+         *
+         * @param id L'id del libro
+         * @param title Il titolo del libro
+         */
+        void add(int id, String title) {
+            exactTitles.putIfAbsent(title, id);
+            normalizedTitles.putIfAbsent(normalize(title), id);
+            maxId = id;
+        }
+
+        /**
+         * Cerca un titolo nelle mappe del titolo esatto e del titolo normalizzato.
+         *
+         * @param title Il titolo cercato
+         * @return L'id del libro, oppure null se non trovato
+         */
+        Integer lookup(String title) {
+            if (title == null) {
+                return null;
+            }
+            Integer id = exactTitles.get(title);
+            return id != null ? id : normalizedTitles.get(normalize(title));
+        }
+    }
+}
@@ -0,0 +1,546 @@
+package book_recommender.lab_b;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Mantiene in memoria la classifica dei libri con la valutazione media più alta, mostrata
+ * nella homepage, così che la sua visualizzazione non richieda una query al database.
+ *
+ * <p>La classifica contiene al più {@code capacity} libri, ordinati per media decrescente e,
+ * a parità, per id crescente, come la query su {@code book_rating_stats}. Viene caricata con
+ * una query sull'indice delle medie e poi aggiornata con le notifiche inviate da
+ * {@link RatingStats} a ogni valutazione salvata (PostgreSQL LISTEN/NOTIFY):</p>
+ * <ul>
+ *   <li>un libro in classifica viene riposizionato con la nuova media;</li>
+ *   <li>un libro esterno entra se supera la <i>soglia</i>, cioè la posizione dell'ultimo
+ *   libro escluso: tutti i libri fuori classifica hanno una posizione peggiore della soglia;</li>
+ *   <li>se entra un libro oltre la capacità, esce il peggiore, che diventa la nuova soglia;</li>
+ *   <li>un libro in classifica che scende sotto la soglia esce, perché al suo posto potrebbe
+ *   esserci un libro sconosciuto; quando restano meno libri di quelli richiesti la classifica
+ *   viene ricaricata.</li>
+ * </ul>
+ *
+ * <p>La classifica viene ricaricata anche dopo {@code ttlSeconds} secondi, a copertura delle
+ * notifiche perse (connessione di ascolto caduta, database diverso da PostgreSQL), e quando
+ * le statistiche vengono ricostruite.</p>
+ *
+ * <p>Configurazione tramite proprietà di sistema:</p>
+ * <ul>
+ *   <li>{@code bookrecommender.topRated.capacity} - libri mantenuti (predefinito 10)</li>
+ *   <li>{@code bookrecommender.topRated.ttlSeconds} - durata massima della classifica (predefinito 300)</li>
+ * </ul>
+ *
+ * @author book_recommender.lab_b
+ * @version 1.0
+ */
+public class TopRatedCache {
+
+    /**
+     * Numero predefinito di libri mantenuti in classifica.
+     */
+    private static final int DEFAULT_CAPACITY = 10;
+
+    /**
+     * Durata predefinita della classifica in secondi.
+     */
+    private static final long DEFAULT_TTL_SECONDS = 300;
+
+    /**
+     * Attesa massima di una notifica prima di verificare se l'ascolto deve terminare.
+     */
+    private static final int LISTEN_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Attesa prima di riaprire la connessione di ascolto dopo un errore.
+     */
+    private static final long RECONNECT_DELAY_MILLIS = 5_000;
+
+    /**
+     * Ordine della classifica: media decrescente, poi id crescente.
+     */
+    private static final Comparator<Entry> BEST_FIRST = (a, b) -> {
+        int byScore = Double.compare(b.score, a.score);
+        return byScore != 0 ? byScore : Integer.compare(a.bookId, b.bookId);
+    };
+
+    /**
+     * Istanza Singleton della cache.
+     */
+    private static TopRatedCache instance;
+
+    /** Numero massimo di libri in classifica */
+    private final int capacity = Math.max(1, Integer.getInteger("bookrecommender.topRated.capacity", DEFAULT_CAPACITY));
+    /** Durata della classifica in millisecondi */
+    private final long ttlMillis = Long.getLong("bookrecommender.topRated.ttlSeconds", DEFAULT_TTL_SECONDS) * 1000;
+
+    /** Libri in classifica, con il peggiore in testa per poterlo escludere */
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>(BEST_FIRST.reversed());
+    /** Libri in classifica per id */
+    private final Map<Integer, Entry> members = new HashMap<>();
+    /** true se la classifica è stata caricata e non invalidata */
+    private boolean loaded = false;
+    /** Istante oltre il quale la classifica va ricaricata */
+    private long expiresAt = 0;
+    /** true se nessun libro fuori classifica ha una media positiva: la soglia non esiste */
+    private boolean complete = false;
+    /** Media del libro che fa da soglia */
+    private double thresholdScore;
+    /** Id del libro che fa da soglia */
+    private int thresholdId;
+    /** Richieste servite dalla classifica in memoria */
+    private long hits;
+    /** Richieste che hanno richiesto una query */
+    private long misses;
+    /** Caricamenti completi della classifica */
+    private long reloads;
+    /** Contatore delle modifiche, per scartare i caricamenti superati da una notifica */
+    private long changes;
+
+    /** Thread che riceve le notifiche, null se l'ascolto non è attivo */
+    private Thread listener;
+    /** Connessione di ascolto, chiusa da {@link #stop()} per interrompere l'attesa */
+    private volatile Connection listenerConnection;
+    /** false quando l'ascolto deve terminare */
+    private volatile boolean running = false;
+
+    /**
+     * Costruttore privato per impedire l'istanziazione diretta (pattern Singleton).
+     */
+    private TopRatedCache() {
+    }
+
+    /**
+     * Ottiene l'istanza singleton della cache.
+     *
+     * @return l'istanza singleton
+     */
+    public static synchronized TopRatedCache getInstance() {
+        if (instance == null) {
+            instance = new TopRatedCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Avvia in background l'ascolto delle notifiche di modifica delle valutazioni.
+     */
+    public synchronized void start() {
+        if (listener != null) {
+            return;
+        }
+        running = true;
+        listener = Thread.ofVirtual().name("top-rated-listener").start(this::listen);
+    }
+
+    /**
+     * Termina l'ascolto delle notifiche e svuota la classifica.
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = listener;
+            listener = null;
+            invalidate();
+        }
+
+        Connection conn = listenerConnection;
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // Gestione silenziosa dell'errore - la connessione viene comunque abbandonata
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Restituisce i libri con la valutazione media più alta, ricaricando la classifica
+     * se necessario.
+     *
+     * @param limit Numero massimo di libri da restituire
+     * @return I libri ordinati per valutazione media decrescente
+     * @throws SQLException se si verifica un errore di accesso al database
+     */
+    public List<Book> getTopRated(int limit) throws SQLException {
+        if (limit > capacity) {
+            // Oltre la capacità la classifica non basta: si interroga direttamente il database
+            synchronized (this) {
+                misses++;
+            }
+            return toBooks(queryTopRated(limit), limit);
+        }
+
+        // Le query vengono eseguite fuori dal lock, così le notifiche e le altre richieste
+        // non restano in attesa del database; il risultato viene applicato sotto il lock
+        boolean reload;
+        long version;
+        List<Integer> missing;
+        synchronized (this) {
+            List<Book> books = freshBooks(limit);
+            if (books != null) {
+                hits++;
+                return books;
+            }
+            misses++;
+            reload = !isFresh(limit);
+            version = changes;
+            missing = reload ? List.of() : missingBookIds();
+        }
+
+        if (reload) {
+            List<Entry> entries = queryTopRated(capacity);
+            synchronized (this) {
+                reloads++;
+                if (changes == version) {
+                    install(entries);
+                    return toBooks(sortedEntries(), limit);
+                }
+            }
+            // La classifica è cambiata durante la query: il risultato vale solo per questa richiesta
+            return toBooks(entries, limit);
+        }
+
+        Map<Integer, Book> found = queryBooks(missing);
+        synchronized (this) {
+            fillMissingBooks(missing, found);
+            List<Book> books = freshBooks(limit);
+            if (books != null) {
+                return books;
+            }
+        }
+        // Sono entrati altri libri durante la query: si interroga direttamente il database
+        return toBooks(queryTopRated(limit), limit);
+    }
+
+    /**
+     * Restituisce i libri con la valutazione media più alta solo se la classifica in memoria
+     * è sufficiente, senza accedere al database.
+     *
+     * @param limit Numero massimo di libri da restituire
+     * @return I libri ordinati per valutazione media decrescente, oppure null se serve una query
+     */
+    public synchronized List<Book> getIfFresh(int limit) {
+        List<Book> books = freshBooks(limit);
+        if (books != null) {
+            hits++;
+        }
+        return books;
+    }
+
+    /**
+     * @return Il numero di richieste servite dalla classifica in memoria
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return Il numero di richieste per cui è stato necessario interrogare il database
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return Il numero di caricamenti completi della classifica
+     */
+    public synchronized long getReloadCount() {
+        return reloads;
+    }
+
+    /**
+     * Restituisce i libri della classifica in memoria se bastano, senza contare la richiesta.
+     */
+    private List<Book> freshBooks(int limit) {
+        if (limit > capacity || !isFresh(limit)) {
+            return null;
+        }
+        List<Entry> entries = sortedEntries();
+        for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+            if (entries.get(i).book == null) {
+                return null;
+            }
+        }
+        return toBooks(entries, limit);
+    }
+
+    /**
+     * Scarta la classifica; la prossima richiesta la ricaricherà dal database.
+     */
+    public synchronized void invalidate() {
+        changes++;
+        heap.clear();
+        members.clear();
+        loaded = false;
+    }
+
+    /**
+     * Applica la nuova media di un libro alla classifica.
+     *
+     * @param bookId Il libro modificato
+     * @param score La nuova media del libro
+     */
+    synchronized void update(int bookId, double score) {
+        changes++;
+        if (!loaded) {
+            return;
+        }
+
+        boolean qualifies = score > 0 && (complete || isBetter(score, bookId, thresholdScore, thresholdId));
+        Entry member = members.get(bookId);
+
+        if (member != null) {
+            heap.remove(member);
+            if (qualifies) {
+                member.score = score;
+                heap.add(member);
+            } else {
+                // Sotto la soglia il suo posto potrebbe spettare a un libro non in classifica
+                members.remove(bookId);
+            }
+        } else if (qualifies) {
+            Entry entry = new Entry(bookId, score, null);
+            heap.add(entry);
+            members.put(bookId, entry);
+
+            if (heap.size() > capacity) {
+                // Il libro escluso diventa la soglia: tutti gli altri esclusi sono peggiori
+                Entry worst = heap.poll();
+                members.remove(worst.bookId);
+                complete = false;
+                thresholdScore = worst.score;
+                thresholdId = worst.bookId;
+            }
+        }
+    }
+
+    /**
+     * Indica se la classifica contiene tutti i libri necessari per una richiesta.
+     */
+    private boolean isFresh(int limit) {
+        if (!loaded || System.currentTimeMillis() >= expiresAt) {
+            return false;
+        }
+        return complete || heap.size() >= limit;
+    }
+
+    /**
+     * Sostituisce la classifica con quella letta dal database.
+     */
+    private void install(List<Entry> entries) {
+        heap.clear();
+        members.clear();
+        for (Entry entry : entries) {
+            heap.add(entry);
+            members.put(entry.bookId, entry);
+        }
+
+        complete = entries.size() < capacity;
+        if (!complete) {
+            Entry last = entries.get(entries.size() - 1);
+            thresholdScore = last.score;
+            thresholdId = last.bookId;
+        }
+        loaded = true;
+        expiresAt = System.currentTimeMillis() + ttlMillis;
+    }
+
+    /**
+     * Restituisce gli id dei libri entrati in classifica tramite le notifiche, di cui mancano i dati.
+     */
+    private List<Integer> missingBookIds() {
+        List<Integer> missing = new ArrayList<>();
+        for (Entry entry : members.values()) {
+            if (entry.book == null) {
+                missing.add(entry.bookId);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Completa i libri in classifica con i dati letti dal database.
+     */
+    private void fillMissingBooks(List<Integer> missing, Map<Integer, Book> found) {
+        for (Integer bookId : missing) {
+            Entry entry = members.get(bookId);
+            if (entry == null || entry.book != null) {
+                continue;
+            }
+            Book book = found.get(bookId);
+            if (book != null) {
+                entry.book = book;
+            } else {
+                // I libri non più presenti nel catalogo escono dalla classifica
+                heap.remove(entry);
+                members.remove(bookId);
+            }
+        }
+    }
+
+    /**
+     * Legge dal database i dati dei libri indicati.
+     */
+    private static Map<Integer, Book> queryBooks(List<Integer> bookIds) throws SQLException {
+        Map<Integer, Book> books = new HashMap<>();
+        if (bookIds.isEmpty()) {
+            return books;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(bookIds.size(), "?"));
+        String sql = "SELECT id, title, authors, category, publisher, publish_year FROM books WHERE id IN (" + placeholders + ")";
+
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < bookIds.size(); i++) {
+                pstmt.setInt(i + 1, bookIds.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    books.put(rs.getInt("id"), BookService.mapBook(rs));
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Legge i libri con la media più alta dall'indice di {@code book_rating_stats}.
+     */
+    private static List<Entry> queryTopRated(int limit) throws SQLException {
+        String sql = "SELECT b.id, b.title, b.authors, b.category, b.publisher, b.publish_year, s.average_rating " +
+                "FROM book_rating_stats s " +
+                "JOIN books b ON b.id = s.book_id " +
+                "WHERE s.average_rating > 0 " +
+                "ORDER BY s.average_rating DESC, s.book_id " +
+                "LIMIT ?";
+
+        List<Entry> entries = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getInstance().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new Entry(rs.getInt("id"), rs.getDouble("average_rating"), BookService.mapBook(rs)));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Riceve le notifiche sul canale {@link RatingStats#NOTIFY_CHANNEL} finché la cache è attiva,
+     * riaprendo la connessione in caso di errore.
+     */
+    private void listen() {
+        while (running) {
+            try (Connection conn = DatabaseManager.getInstance().getPool().openDedicatedConnection()) {
+                if (!SearchIndexes.isPostgreSQL(conn)) {
+                    // Senza LISTEN/NOTIFY la classifica viene aggiornata solo alla scadenza
+                    return;
+                }
+                listenerConnection = conn;
+
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + RatingStats.NOTIFY_CHANNEL);
+                }
+                // Le modifiche avvenute mentre non si era in ascolto sono andate perse
+                invalidate();
+
+                PGConnection pgConnection = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(LISTEN_TIMEOUT_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            onNotification(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                // Gestione silenziosa dell'errore - la classifica viene ricaricata e l'ascolto ripreso
+                invalidate();
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } finally {
+                listenerConnection = null;
+            }
+        }
+    }
+
+    /**
+     * Applica una notifica: "id:media" aggiorna un libro, qualunque altro messaggio
+     * (ad esempio la ricostruzione delle statistiche) scarta la classifica.
+     *
+     * @param payload Il contenuto della notifica
+     */
+    private void onNotification(String payload) {
+        int separator = payload.indexOf(':');
+        if (separator < 0) {
+            invalidate();
+            return;
+        }
+        try {
+            update(Integer.parseInt(payload.substring(0, separator)), Double.parseDouble(payload.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Restituisce i libri in classifica in ordine.
+     */
+    private List<Entry> sortedEntries() {
+        List<Entry> entries = new ArrayList<>(heap);
+        entries.sort(BEST_FIRST);
+        return entries;
+    }
+
+    /**
+     * Restituisce i libri delle prime posizioni indicate.
+     */
+    private static List<Book> toBooks(List<Entry> entries, int limit) {
+        List<Book> books = new ArrayList<>(Math.min(limit, entries.size()));
+        for (Entry entry : entries) {
+            if (books.size() == limit) {
+                break;
+            }
+            books.add(entry.book);
+        }
+        return books;
+    }
+
+    /**
+     * Indica se la posizione (media, id) è migliore di quella della soglia.
+     */
+    private static boolean isBetter(double score, int bookId, double otherScore, int otherId) {
+        return score > otherScore || (score == otherScore && bookId < otherId);
+    }
+
+    /**
+     * Libro in classifica.
+     */
+    private static class Entry {
+        private final int bookId;
+        private double score;
+        /** Dati del libro, null finché non vengono letti dal database */
+        private Book book;
+
+        Entry(int bookId, double score, Book book) {
+            this.bookId = bookId;
+            this.score = score;
+            this.book = book;
+        }
+    }
+}
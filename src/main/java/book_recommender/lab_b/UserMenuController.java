@@ -106,11 +106,11 @@ public class UserMenuController {
                 // Esegue una query SQL per eliminare tutte le connessioni dell'utente
                 String sql = "DELETE FROM active_clients WHERE client_id LIKE ?";
 
-                java.sql.Connection conn = dbManager.getConnection();
-                java.sql.PreparedStatement pstmt = conn.prepareStatement(sql);
-                pstmt.setString(1, clientIdPattern);
-                pstmt.executeUpdate();
-                pstmt.close();
+                try (java.sql.Connection conn = dbManager.getConnection();
+                     java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, clientIdPattern);
+                    pstmt.executeUpdate();
+                }
             }
         } catch (SQLException e) {
             // Gestione silenziosa dell'errore - l'utente può comunque essere disconnesso
@@ -2,8 +2,11 @@ module book_recommender.lab_b {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.sql;
+    requires org.postgresql.jdbc;
     requires java.desktop;
     requires java.net.http;
+    requires java.management;
+    requires jdk.httpserver;
     requires javafx.graphics;
     requires org.controlsfx.controls;
     requires com.dlsc.formsfx;